@@ -22,6 +22,7 @@ public class ArrayFileBench {
   public static void main(String[] args) {
     benchEndian();
     benchStream();
+    benchMapped();
   }
 
   ///////////////////////////////////////////////////////////////////////////
@@ -82,6 +83,39 @@ public class ArrayFileBench {
     System.out.println(" ArrayInputStream: sum="+s+" nr="+nr+" rate="+rate);
   }
 
+  private static void benchMapped() {
+    ByteOrder[] orders = {ByteOrder.BIG_ENDIAN,ByteOrder.LITTLE_ENDIAN};
+    for (ByteOrder order:orders) {
+      System.out.println("mapped order="+order);
+      int n1 = 1000, n2 = 1000;
+      try {
+        File file = File.createTempFile("junk","dat");
+        file.deleteOnExit();
+        MappedArrayFile af = new MappedArrayFile(file,"rw",order,order);
+        af.setLength(4L*n1*n2);
+        float[][] a = randfloat(n1,n2);
+        float[][] b = zerofloat(n1,n2);
+        int nio;
+        Stopwatch sw = new Stopwatch();
+        sw.start();
+        for (nio=0; sw.time()<5.0; ++nio) {
+          af.writeFloats(0,a);
+          af.readFloats(0,b);
+        }
+        sw.stop();
+        af.close();
+        for (int i2=0; i2<n2; ++i2)
+          for (int i1=0; i1<n1; ++i1)
+            if (a[i2][i1]!=b[i2][i1])
+              throw new RuntimeException(" float: i/o failure");
+        double rate = 2.0*4.0e-6*nio*n1*n2/sw.time();
+        System.out.println(" float: rate="+rate+" MB/s");
+      } catch (IOException ioe) {
+        throw new RuntimeException(ioe);
+      }
+    }
+  }
+
   private static void benchEndian() {
     benchBigEndian();
     benchLittleEndian();
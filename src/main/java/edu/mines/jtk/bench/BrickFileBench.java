@@ -0,0 +1,120 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.bench;
+
+import java.io.*;
+import java.nio.ByteOrder;
+
+import edu.mines.jtk.io.*;
+import static edu.mines.jtk.util.ArrayMath.*;
+import edu.mines.jtk.util.Stopwatch;
+
+/**
+ * Benchmark for {@link edu.mines.jtk.io.BrickFile}. Compares times to get
+ * slices along all three axes from a brick file and from a file in which
+ * the array is stored with index i1 varying fastest.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class BrickFileBench {
+  public static void main(String[] args) {
+    int n1 = 251, n2 = 252, n3 = 253;
+    int b = 64;
+    try {
+      File flat = File.createTempFile("junk","dat");
+      File brick = File.createTempFile("junk","dat");
+      flat.deleteOnExit();
+      brick.deleteOnExit();
+      ArrayFile af = new ArrayFile(flat,"rw");
+      for (int i3=0; i3<n3; ++i3)
+        af.writeFloats(randfloat(n1,n2));
+      af.close();
+      Stopwatch sw = new Stopwatch();
+      sw.start();
+      BrickFile.convert(flat,ByteOrder.BIG_ENDIAN,n1,n2,n3,brick,b,b,b);
+      sw.stop();
+      System.out.printf("convert: time=%.3f s\n",sw.time());
+      for (int niter=0; niter<3; ++niter) {
+        af = new ArrayFile(flat,"r");
+        BrickFile cold = new BrickFile(brick,"r",0);
+        BrickFile warm = new BrickFile(brick,"r");
+        for (int axis=1; axis<=3; ++axis) {
+          double tf = timeFlat(af,axis,n1,n2,n3);
+          double tc = timeBrick(cold,axis);
+          double tw = timeBrick(warm,axis);
+          System.out.printf(
+            "axis=%d flat=%.2f ms brick: cold=%.2f ms warm=%.2f ms\n",
+            axis,tf,tc,tw);
+        }
+        af.close();
+        cold.close();
+        warm.close();
+      }
+    } catch (IOException ioe) {
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static double maxtime = 2.0;
+
+  // Returns the average time in milliseconds to get one slice.
+  private static double timeFlat(
+    ArrayFile af, int axis, int n1, int n2, int n3)
+    throws IOException
+  {
+    int count;
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    for (count=0; sw.time()<maxtime; ++count) {
+      if (axis==1) {
+        int i1 = count%n1;
+        float[][] s = new float[n3][n2];
+        for (int i3=0; i3<n3; ++i3) {
+          for (int i2=0; i2<n2; ++i2) {
+            af.seek(4L*(i1+n1*(i2+(long)n2*i3)));
+            s[i3][i2] = af.readFloat();
+          }
+        }
+      } else if (axis==2) {
+        int i2 = count%n2;
+        float[][] s = new float[n3][n1];
+        for (int i3=0; i3<n3; ++i3) {
+          af.seek(4L*n1*(i2+(long)n2*i3));
+          af.readFloats(s[i3]);
+        }
+      } else {
+        int i3 = count%n3;
+        float[][] s = new float[n2][n1];
+        af.seek(4L*n1*n2*i3);
+        af.readFloats(s);
+      }
+    }
+    sw.stop();
+    return 1000.0*sw.time()/count;
+  }
+
+  // Returns the average time in milliseconds to get one slice.
+  private static double timeBrick(BrickFile bf, int axis) {
+    int count;
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    for (count=0; sw.time()<maxtime; ++count) {
+      if (axis==1) {
+        bf.getSlice1(count%bf.getN1());
+      } else if (axis==2) {
+        bf.getSlice2(count%bf.getN2());
+      } else {
+        bf.getSlice3(count%bf.getN3());
+      }
+    }
+    sw.stop();
+    return 1000.0*sw.time()/count;
+  }
+}
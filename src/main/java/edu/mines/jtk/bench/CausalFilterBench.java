@@ -0,0 +1,186 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.bench;
+
+import edu.mines.jtk.dsp.LocalCausalFilter;
+import edu.mines.jtk.dsp.MinimumPhaseFilter;
+import edu.mines.jtk.util.Parallel;
+import edu.mines.jtk.util.Stopwatch;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Benchmarks serial and parallel (wavefront) recursive inverse and
+ * inverse-transpose filters for minimum-phase and local causal filters.
+ * For 2-D and 3-D arrays, reports rates for the serial recursions and
+ * for parallel recursions with 1, 2, 4, ..., 64 threads, and speedups
+ * relative to the serial rates.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class CausalFilterBench {
+
+  public static void main(String[] args) {
+    bench2(1001,1001);
+    bench3(201,201,201);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static final double MAXTIME = 2.0;
+  private static final int NTHREAD_MAX = 64;
+
+  private interface Method {
+    public void apply();
+  }
+
+  private static void bench2(int n1, int n2) {
+    int[] lag1 = {
+       0, 1, 2, 3, 4,
+      -4,-3,-2,-1, 0
+    };
+    int[] lag2 = {
+       0, 0, 0, 0, 0,
+       1, 1, 1, 1, 1
+    };
+    final float[] a = {
+       1.79548454f, -0.64490664f, -0.03850411f, -0.01793403f, -0.00708972f,
+      -0.02290331f, -0.04141619f, -0.08457147f, -0.20031442f, -0.55659920f
+    };
+    final MinimumPhaseFilter mpf = new MinimumPhaseFilter(lag1,lag2,a);
+    final LocalCausalFilter lcf = new LocalCausalFilter(lag1,lag2);
+    final LocalCausalFilter.A2 a2 = new LocalCausalFilter.A2() {
+      public void get(int i1, int i2, float[] ai) {
+        copy(a,ai);
+      }
+    };
+    final float[][] x = sub(randfloat(n1,n2),0.5f);
+    final float[][] y = zerofloat(n1,n2);
+    System.out.println("2-D: n1="+n1+" n2="+n2+" m="+a.length);
+    bench("mpf inverse",n1*n2,mpf,null,new Method() {
+      public void apply() {
+        mpf.applyInverse(x,y);
+      }
+    });
+    bench("mpf inverse transpose",n1*n2,mpf,null,new Method() {
+      public void apply() {
+        mpf.applyInverseTranspose(x,y);
+      }
+    });
+    bench("lcf inverse",n1*n2,null,lcf,new Method() {
+      public void apply() {
+        lcf.applyInverse(a2,x,y);
+      }
+    });
+    bench("lcf inverse transpose",n1*n2,null,lcf,new Method() {
+      public void apply() {
+        lcf.applyInverseTranspose(a2,x,y);
+      }
+    });
+  }
+
+  private static void bench3(int n1, int n2, int n3) {
+    int[] lag1 = {
+                   0, 1, 2,
+            -2,-1, 0, 1, 2,
+            -2,-1, 0, 1, 2,
+            -2,-1, 0,
+    };
+    int[] lag2 = {
+                   0, 0, 0,
+             1, 1, 1, 1, 1,
+            -1,-1,-1,-1,-1,
+             0, 0, 0,
+    };
+    int[] lag3 = {
+                   0, 0, 0,
+             0, 0, 0, 0, 0,
+             1, 1, 1, 1, 1,
+             1, 1, 1,
+    };
+    final float[] a = {
+                                 2.3110454f, -0.4805547f, -0.0143204f,
+      -0.0291793f, -0.1057476f, -0.4572746f, -0.0115732f, -0.0047283f,
+      -0.0149963f, -0.0408317f, -0.0945958f, -0.0223166f, -0.0062781f,
+      -0.0213786f, -0.0898909f, -0.4322719f
+    };
+    final MinimumPhaseFilter mpf = new MinimumPhaseFilter(lag1,lag2,lag3,a);
+    final LocalCausalFilter lcf = new LocalCausalFilter(lag1,lag2,lag3);
+    final LocalCausalFilter.A3 a3 = new LocalCausalFilter.A3() {
+      public void get(int i1, int i2, int i3, float[] ai) {
+        copy(a,ai);
+      }
+    };
+    final float[][][] x = sub(randfloat(n1,n2,n3),0.5f);
+    final float[][][] y = zerofloat(n1,n2,n3);
+    int n = n1*n2*n3;
+    System.out.println("3-D: n1="+n1+" n2="+n2+" n3="+n3+" m="+a.length);
+    bench("mpf inverse",n,mpf,null,new Method() {
+      public void apply() {
+        mpf.applyInverse(x,y);
+      }
+    });
+    bench("mpf inverse transpose",n,mpf,null,new Method() {
+      public void apply() {
+        mpf.applyInverseTranspose(x,y);
+      }
+    });
+    bench("lcf inverse",n,null,lcf,new Method() {
+      public void apply() {
+        lcf.applyInverse(a3,x,y);
+      }
+    });
+    bench("lcf inverse transpose",n,null,lcf,new Method() {
+      public void apply() {
+        lcf.applyInverseTranspose(a3,x,y);
+      }
+    });
+  }
+
+  private static void bench(
+    String name, final long n,
+    MinimumPhaseFilter mpf, LocalCausalFilter lcf,
+    final Method method)
+  {
+    System.out.println("  "+name+":");
+    setParallel(mpf,lcf,false);
+    double rs = rate(n,method);
+    System.out.printf("    serial:     rate=%7.2f Msample/s%n",rs);
+    setParallel(mpf,lcf,true);
+    for (int nthread=1; nthread<=NTHREAD_MAX; nthread*=2) {
+      Parallel.Context context = new Parallel.Context(nthread);
+      final double[] rp = new double[1];
+      context.run(new Runnable() {
+        public void run() {
+          rp[0] = rate(n,method);
+        }
+      });
+      context.shutdown();
+      System.out.printf(
+        "    nthread=%2d: rate=%7.2f Msample/s speedup=%5.2f%n",
+        nthread,rp[0],rp[0]/rs);
+    }
+  }
+
+  private static void setParallel(
+    MinimumPhaseFilter mpf, LocalCausalFilter lcf, boolean parallel)
+  {
+    if (mpf!=null) mpf.setParallel(parallel);
+    if (lcf!=null) lcf.setParallel(parallel);
+  }
+
+  private static double rate(long n, Method method) {
+    method.apply(); // warm up
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    int napply;
+    for (napply=0; sw.time()<MAXTIME; ++napply)
+      method.apply();
+    sw.stop();
+    return 1.0e-6*napply*n/sw.time();
+  }
+}
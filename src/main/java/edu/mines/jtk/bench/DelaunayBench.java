@@ -0,0 +1,98 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.bench;
+
+import java.util.Random;
+
+import edu.mines.jtk.mesh.TetMesh;
+import edu.mines.jtk.mesh.TriMesh;
+import edu.mines.jtk.util.Stopwatch;
+
+/**
+ * Benchmarks construction of Delaunay meshes. For random points in the
+ * unit square and cube, compares times to construct tri and tet meshes
+ * by adding nodes one at a time, in the order in which their points were
+ * generated, and by adding all nodes at once in a spatially sorted order.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class DelaunayBench {
+
+  public static void main(String[] args) {
+    for (int n=10000; n<=1000000; n*=10)
+      bench2(n);
+    for (int n=10000; n<=1000000; n*=10)
+      bench3(n);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static void bench2(int n) {
+    Random r = new Random(314159);
+    float[] x = new float[n];
+    float[] y = new float[n];
+    for (int i=0; i<n; ++i) {
+      x[i] = r.nextFloat();
+      y[i] = r.nextFloat();
+    }
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    TriMesh tma = new TriMesh();
+    for (int i=0; i<n; ++i)
+      tma.addNode(new TriMesh.Node(x[i],y[i]));
+    sw.stop();
+    double ta = sw.time();
+    tma = null; // let the first mesh be collected
+    sw.restart();
+    TriMesh tmb = new TriMesh();
+    TriMesh.Node[] nodes = new TriMesh.Node[n];
+    for (int i=0; i<n; ++i)
+      nodes[i] = new TriMesh.Node(x[i],y[i]);
+    tmb.addNodes(nodes);
+    sw.stop();
+    double tb = sw.time();
+    print("2-D",n,ta,tb,tmb.countTris());
+  }
+
+  private static void bench3(int n) {
+    Random r = new Random(314159);
+    float[] x = new float[n];
+    float[] y = new float[n];
+    float[] z = new float[n];
+    for (int i=0; i<n; ++i) {
+      x[i] = r.nextFloat();
+      y[i] = r.nextFloat();
+      z[i] = r.nextFloat();
+    }
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    TetMesh tma = new TetMesh();
+    for (int i=0; i<n; ++i)
+      tma.addNode(new TetMesh.Node(x[i],y[i],z[i]));
+    sw.stop();
+    double ta = sw.time();
+    tma = null; // let the first mesh be collected
+    sw.restart();
+    TetMesh tmb = new TetMesh();
+    TetMesh.Node[] nodes = new TetMesh.Node[n];
+    for (int i=0; i<n; ++i)
+      nodes[i] = new TetMesh.Node(x[i],y[i],z[i]);
+    tmb.addNodes(nodes);
+    sw.stop();
+    double tb = sw.time();
+    print("3-D",n,ta,tb,tmb.countTets());
+  }
+
+  private static void print(
+    String label, int n, double ta, double tb, int ne)
+  {
+    System.out.printf(
+      "%s: n=%8d elements=%9d addNode: time=%7.3f s "+
+      " addNodes: time=%7.3f s speedup=%5.2f%n",label,n,ne,ta,tb,ta/tb);
+  }
+}
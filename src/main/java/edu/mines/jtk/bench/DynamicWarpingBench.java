@@ -0,0 +1,125 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Random;
+
+import edu.mines.jtk.dsp.DynamicWarping;
+import edu.mines.jtk.dsp.RecursiveGaussianFilter;
+import edu.mines.jtk.util.Stopwatch;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Benchmarks dynamic warping with alignment errors stored with different
+ * precisions. For each precision, reports the peak heap memory used to
+ * find shifts, measured with the memory pool beans of the JVM, and the
+ * number of lags that would fit in one GB of that memory, the time to
+ * find shifts, and the rms errors in shifts found, relative to known
+ * shifts and to shifts found with errors stored as floats.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class DynamicWarpingBench {
+
+  public static void main(String[] args) {
+    int n1 = 501;
+    int n2 = 201;
+    int shiftMax = 20;
+    double maxtime = 5.0;
+    float[][] g = makeImage(n1,n2);
+    float[][] u = makeShifts(n1,n2,0.5f*shiftMax);
+    DynamicWarping dw = new DynamicWarping(-shiftMax,shiftMax);
+    float[][] f = dw.applyShifts(u,g);
+    int nl = 1+2*shiftMax;
+    DynamicWarping.ErrorPrecision[] eps = DynamicWarping.ErrorPrecision.values();
+    for (int esmooth=0; esmooth<=2; ++esmooth) {
+      System.out.println("n1="+n1+" n2="+n2+" nl="+nl+" esmooth="+esmooth);
+      float[][] uf = null;
+      for (DynamicWarping.ErrorPrecision ep:eps) {
+        dw.setStrainMax(0.25,0.25);
+        dw.setErrorSmoothing(esmooth);
+        dw.setErrorPrecision(ep);
+        long heap = peakHeapUsed(dw,f,g);
+        float[][] ue = null;
+        Stopwatch sw = new Stopwatch();
+        sw.start();
+        int nfind;
+        for (nfind=0; sw.time()<maxtime; ++nfind)
+          ue = dw.findShifts(f,g);
+        sw.stop();
+        if (uf==null)
+          uf = ue;
+        long lagsPerGB = (long)(1.0e9*nl/heap);
+        double rate = 1.0e-6*nfind*n1*n2*nl/sw.time();
+        System.out.printf(
+          "  %5s: heap=%6.2f MB lags/GB=%5d rate=%6.2f Mlag/s"+
+          " rms(u-true)=%6.3f rms(u-float)=%6.3f%n",
+          ep,1.0e-6*heap,lagsPerGB,rate,rms(u,ue),rms(uf,ue));
+      }
+    }
+  }
+
+  // Returns the peak heap memory used while finding shifts once, beyond
+  // that used before. Includes all memory used by dynamic warping, not
+  // only that for alignment errors.
+  private static long peakHeapUsed(
+    DynamicWarping dw, float[][] f, float[][] g)
+  {
+    System.gc();
+    long before = 0;
+    for (MemoryPoolMXBean mp:ManagementFactory.getMemoryPoolMXBeans()) {
+      if (mp.getType()==MemoryType.HEAP) {
+        before += mp.getUsage().getUsed();
+        mp.resetPeakUsage();
+      }
+    }
+    dw.findShifts(f,g);
+    long peak = 0;
+    for (MemoryPoolMXBean mp:ManagementFactory.getMemoryPoolMXBeans()) {
+      if (mp.getType()==MemoryType.HEAP)
+        peak += mp.getPeakUsage().getUsed();
+    }
+    return peak-before;
+  }
+
+  private static float[][] makeImage(int n1, int n2) {
+    Random r = new Random(314159);
+    float[][] g = new float[n2][n1];
+    for (int i2=0; i2<n2; ++i2)
+      for (int i1=0; i1<n1; ++i1)
+        g[i2][i1] = r.nextFloat()-0.5f;
+    RecursiveGaussianFilter rgf = new RecursiveGaussianFilter(1.0);
+    rgf.apply0X(g,g);
+    rgf = new RecursiveGaussianFilter(8.0);
+    rgf.applyX0(g,g);
+    return g;
+  }
+
+  private static float[][] makeShifts(int n1, int n2, float umax) {
+    float[][] u = new float[n2][n1];
+    for (int i2=0; i2<n2; ++i2)
+      for (int i1=0; i1<n1; ++i1)
+        u[i2][i1] = umax*sin(2.0f*FLT_PI*i1/n1)*cos(FLT_PI*i2/n2);
+    return u;
+  }
+
+  private static float rms(float[][] a, float[][] b) {
+    int n1 = a[0].length;
+    int n2 = a.length;
+    double sum = 0.0;
+    for (int i2=0; i2<n2; ++i2) {
+      for (int i1=0; i1<n1; ++i1) {
+        double d = a[i2][i1]-b[i2][i1];
+        sum += d*d;
+      }
+    }
+    return (float)Math.sqrt(sum/n1/n2);
+  }
+}
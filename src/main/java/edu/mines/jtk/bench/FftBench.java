@@ -1,13 +1,16 @@
 /****************************************************************************
 Copyright (c) 2005, Colorado School of Mines and others. All rights reserved.
 This program and accompanying materials are made available under the terms of
-the Common Public License - v1.0, which accompanies this distribution, and is 
+the Common Public License - v1.0, which accompanies this distribution, and is
 available at http://www.eclipse.org/legal/cpl-v10.html
 ****************************************************************************/
 package edu.mines.jtk.bench;
 
+import edu.mines.jtk.dsp.Fft;
 import edu.mines.jtk.dsp.FftComplex;
+import edu.mines.jtk.dsp.FftReal;
 import static edu.mines.jtk.util.ArrayMath.crandfloat;
+import static edu.mines.jtk.util.ArrayMath.randfloat;
 import edu.mines.jtk.util.Stopwatch;
 
 /**
@@ -17,6 +20,12 @@ import edu.mines.jtk.util.Stopwatch;
  */
 public class FftBench {
   public static void main(String[] args) {
+    benchSmall();
+    benchFft3();
+    benchNfft();
+  }
+
+  private static void benchNfft() {
     for (int niter=0; niter<5; ++niter) {
       for (int nfft=1; nfft<=720720;) {
         int nfftSmall = FftComplex.nfftSmall(nfft);
@@ -52,4 +61,72 @@ public class FftBench {
     double time = sw.time()/(float)count;
     return time;
   }
+
+  /**
+   * Measures times per call for short real FFTs, for which per-call 
+   * overhead is significant. Times are measured both for one FFT that 
+   * is reused and for a new FFT constructed for every call.
+   */
+  private static void benchSmall() {
+    int[] ns = {16,60,256,1000,4096};
+    for (int niter=0; niter<3; ++niter) {
+      for (int n:ns) {
+        int nfft = FftReal.nfftSmall(n);
+        double timeReuse = time(nfft,false);
+        double timeCreate = time(nfft,true);
+        System.out.printf("nfft=%d reuse=%.3e create=%.3e\n",
+          nfft,timeReuse,timeCreate);
+      }
+    }
+  }
+
+  private static double time(int nfft, boolean create) {
+    double maxtime = 2.0;
+    FftReal fft = new FftReal(nfft);
+    float[] x = randfloat(nfft+2);
+    int count;
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    for (count=0; sw.time()<maxtime; ++count) {
+      if (create)
+        fft = new FftReal(nfft);
+      fft.realToComplex(-1,x,x);
+      fft.complexToReal( 1,x,x);
+      fft.scale(nfft,x);
+    }
+    sw.stop();
+    return sw.time()/count;
+  }
+
+  /**
+   * Compares times for serial and parallel forward and inverse 3D FFTs.
+   */
+  private static void benchFft3() {
+    int[][] sizes = {{100,100,100},{250,250,250},{500,200,200}};
+    for (int[] size:sizes) {
+      int n1 = size[0], n2 = size[1], n3 = size[2];
+      float[][][] f = randfloat(n1,n2,n3);
+      for (int niter=0; niter<3; ++niter) {
+        double timeSerial = time(false,f);
+        double timeParallel = time(true,f);
+        System.out.printf(
+          "n1=%d n2=%d n3=%d serial=%.3f parallel=%.3f speedup=%.2f\n",
+          n1,n2,n3,timeSerial,timeParallel,timeSerial/timeParallel);
+      }
+    }
+  }
+
+  private static double time(boolean parallel, float[][][] f) {
+    double maxtime = 5.0;
+    Fft fft = new Fft(f);
+    fft.setParallel(parallel);
+    fft.setOverwrite(true);
+    int count;
+    Stopwatch sw = new Stopwatch();
+    sw.start();
+    for (count=0; sw.time()<maxtime; ++count)
+      fft.applyInverse(fft.applyForward(f));
+    sw.stop();
+    return sw.time()/count;
+  }
 }
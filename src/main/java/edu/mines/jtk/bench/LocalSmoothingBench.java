@@ -0,0 +1,119 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.bench;
+
+import java.util.Random;
+
+import edu.mines.jtk.dsp.EigenTensors2;
+import edu.mines.jtk.dsp.EigenTensors3;
+import edu.mines.jtk.dsp.LocalSmoothingFilter;
+import edu.mines.jtk.dsp.RecursiveGaussianFilter;
+import edu.mines.jtk.util.Stopwatch;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Benchmarks preconditioners for local smoothing filters. For 2-D and 3-D
+ * arrays of random numbers, before and after Gaussian smoothing, and for
+ * anisotropic tensors with increasing scale factors c, reports numbers of
+ * conjugate-gradient iterations and times (including the time to construct
+ * the preconditioners) for each preconditioner.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class LocalSmoothingBench {
+
+  public static void main(String[] args) {
+    bench2(501,501,0.01f,FLT_PI/2.0f);
+    bench2(501,501,0.01f,0.3f);
+    bench2(501,501,1.0f,0.0f);
+    bench3(101,101,101,1.0f);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static final float[] C = {10.0f,100.0f,1000.0f};
+  private static final double SMALL = 0.001;
+  private static final int NITER = 2000;
+
+  // Tensors with eigenvalues du and 1, and eigenvectors u that vary
+  // slowly about the specified angle from the 1st axis.
+  private static void bench2(int n1, int n2, float du, float angle) {
+    EigenTensors2 d = new EigenTensors2(n1,n2);
+    for (int i2=0; i2<n2; ++i2) {
+      for (int i1=0; i1<n1; ++i1) {
+        float a = angle+0.3f*sin(0.02f*i1+0.01f*i2);
+        d.setEigenvectorU(i1,i2,cos(a),sin(a));
+        d.setEigenvalues(i1,i2,du,1.0f);
+      }
+    }
+    System.out.println("2-D: n1="+n1+" n2="+n2+" du="+du+" angle="+angle);
+    for (int ismooth=0; ismooth<2; ++ismooth) {
+      float[][] x = sub(randfloat(new Random(314159),n1,n2),0.5f);
+      if (ismooth==1)
+        new RecursiveGaussianFilter(2.0).apply00(x,x);
+      float[][] y = zerofloat(n1,n2);
+      System.out.println((ismooth==0)?"  random:":"  smoothed random:");
+      for (float c:C) {
+        for (LocalSmoothingFilter.Preconditioner pc:
+             LocalSmoothingFilter.Preconditioner.values()) {
+          LocalSmoothingFilter lsf = new LocalSmoothingFilter(SMALL,NITER);
+          lsf.setPreconditioner(pc);
+          lsf.apply(d,c,x,y); // warm up
+          Stopwatch sw = new Stopwatch();
+          sw.start();
+          lsf.apply(d,c,x,y);
+          sw.stop();
+          print(c,pc,lsf.getIterationCount(),sw.time());
+        }
+      }
+    }
+  }
+
+  // Tensors with eigenvalues du, 1 and 1, and eigenvectors u that vary
+  // slowly in the plane of the 1st and 2nd axes.
+  private static void bench3(int n1, int n2, int n3, float du) {
+    EigenTensors3 d = new EigenTensors3(n1,n2,n3,true);
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        for (int i1=0; i1<n1; ++i1) {
+          float a = 0.3f+0.3f*sin(0.02f*i1+0.01f*i2);
+          d.setEigenvectorU(i1,i2,i3,cos(a),sin(a),0.0f);
+          d.setEigenvectorW(i1,i2,i3,0.0f,0.0f,1.0f);
+          d.setEigenvalues(i1,i2,i3,du,1.0f,1.0f);
+        }
+      }
+    }
+    System.out.println("3-D: n1="+n1+" n2="+n2+" n3="+n3+" du="+du);
+    for (int ismooth=0; ismooth<2; ++ismooth) {
+      float[][][] x = sub(randfloat(new Random(314159),n1,n2,n3),0.5f);
+      if (ismooth==1)
+        new RecursiveGaussianFilter(2.0).apply000(x,x);
+      float[][][] y = zerofloat(n1,n2,n3);
+      System.out.println((ismooth==0)?"  random:":"  smoothed random:");
+      for (float c:C) {
+        for (LocalSmoothingFilter.Preconditioner pc:
+             LocalSmoothingFilter.Preconditioner.values()) {
+          LocalSmoothingFilter lsf = new LocalSmoothingFilter(SMALL,NITER);
+          lsf.setPreconditioner(pc);
+          Stopwatch sw = new Stopwatch();
+          sw.start();
+          lsf.apply(d,c,x,y);
+          sw.stop();
+          print(c,pc,lsf.getIterationCount(),sw.time());
+        }
+      }
+    }
+  }
+
+  private static void print(
+    float c, LocalSmoothingFilter.Preconditioner pc, int niter, double time)
+  {
+    System.out.printf("    c=%6.1f %-12s niter=%4d time=%7.3f s%n",
+      c,pc,niter,time);
+  }
+}
@@ -62,6 +62,14 @@ import static edu.mines.jtk.util.ArrayMath.*;
  * Unlike convolution, cross-correlation is not commutative. In other words,
  * the cross-correlation of x and y does not equal the cross-correlation of 
  * y and x.
+ * <p>
+ * For long sequences x and y, convolution and cross-correlation are
+ * computed with fast Fourier transforms, when doing so is likely to be 
+ * faster than direct summation. The choice depends only on the lengths 
+ * of the sequences, and does not change the sample indices of outputs; 
+ * results differ from those of direct summation by only rounding errors.
+ * To convolve a short sequence with a sequence that is too long to be
+ * held in memory, see {@link ConvStream}.
  * @author Dave Hale, Colorado School of Mines
  * @version 2005.08.15
  */
@@ -84,7 +92,11 @@ public class Conv {
     int ly, int ky, float[] y,
     int lz, int kz, float[] z)
   {
-    convFast(lx,kx,x,ly,ky,y,lz,kz,z);
+    if (useFft(lx,ly,lz)) {
+      convFft(lx,kx,x,ly,ky,y,lz,kz,z);
+    } else {
+      convFast(lx,kx,x,ly,ky,y,lz,kz,z);
+    }
   }
 
   /**
@@ -110,6 +122,10 @@ public class Conv {
     int ly1, int ly2, int ky1, int ky2, float[][] y,
     int lz1, int lz2, int kz1, int kz2, float[][] z)
   {
+    if (useFft(lx1,ly1,lz1,lx2,ly2,lz2)) {
+      convFft(lx1,lx2,kx1,kx2,x,ly1,ly2,ky1,ky2,y,lz1,lz2,kz1,kz2,z);
+      return;
+    }
     zero(lz1,lz2,z);
     int ilo2 = kz2-kx2-ky2;
     int ihi2 = ilo2+lz2-1;
@@ -151,6 +167,12 @@ public class Conv {
     int ly1, int ly2, int ly3, int ky1, int ky2, int ky3, float[][][] y,
     int lz1, int lz2, int lz3, int kz1, int kz2, int kz3, float[][][] z)
   {
+    if (useFft(lx1,ly1,lz1,lx2,ly2,lz2,lx3,ly3,lz3)) {
+      convFft(lx1,lx2,lx3,kx1,kx2,kx3,x,
+              ly1,ly2,ly3,ky1,ky2,ky3,y,
+              lz1,lz2,lz3,kz1,kz2,kz3,z);
+      return;
+    }
     zero(lz1,lz2,lz3,z);
     int ilo2 = kz2-kx2-ky2;
     int ilo3 = kz3-kx3-ky3;
@@ -274,6 +296,144 @@ public class Conv {
   ///////////////////////////////////////////////////////////////////////////
   // private
 
+  // Convolution via FFTs is used only if both sequences x and y have at 
+  // least this many samples, in every dimension, because direct summation
+  // for shorter sequences is fast and has smaller rounding errors.
+  private static final int LFFT_MIN = 32;
+
+  // Estimated costs per sample of FFTs, relative to the cost of one 
+  // multiply-add in direct summation. The costs for FFTs include those 
+  // of the three transforms required for each convolution.
+  private static final double FFT_COST = 5.0;
+
+  /**
+   * Returns true if convolution via FFTs is likely to be faster than
+   * direct summation, for sequences with specified lengths. Lengths
+   * are specified as triples {lx,ly,lz}, one triple per dimension.
+   */
+  private static boolean useFft(int... l) {
+    double cdirect = 1.0;
+    double nfft = 1.0;
+    for (int i=0; i<l.length; i+=3) {
+      int lx = l[i], ly = l[i+1], lz = l[i+2];
+      int lxy = lx+ly-1;
+      if (min(lx,ly)<LFFT_MIN || lxy>((i==0)?1441440:720720))
+        return false;
+      cdirect *= min((double)lz*min(lx,ly),(double)lx*ly);
+      nfft *= (i==0)?FftReal.nfftFast(lxy):FftComplex.nfftFast(lxy);
+    }
+    double cfft = FFT_COST*nfft*log(nfft)/log(2.0);
+    return cfft<cdirect;
+  }
+
+  /**
+   * Copies into z the samples of a full convolution c[nc] computed with 
+   * FFTs, for which c[0] has sample index kx+ky.
+   */
+  private static void copyFull(int k, int nc, float[] c, int lz, float[] z) {
+    for (int iz=0,i=k; iz<lz; ++iz,++i)
+      z[iz] = (0<=i && i<nc)?c[i]:0.0f;
+  }
+
+  private static void convFft(
+    int lx, int kx, float[] x,
+    int ly, int ky, float[] y,
+    int lz, int kz, float[] z)
+  {
+    int nfft = FftReal.nfftFast(lx+ly-1);
+    FftReal fft = new FftReal(nfft);
+    float[] xf = new float[nfft+2];
+    float[] yf = new float[nfft+2];
+    copy(lx,x,xf);
+    copy(ly,y,yf);
+    fft.realToComplex(-1,xf,xf);
+    fft.realToComplex(-1,yf,yf);
+    cmul(xf,yf,xf);
+    fft.complexToReal(1,xf,xf);
+    fft.scale(nfft,xf);
+    copyFull(kz-kx-ky,lx+ly-1,xf,lz,z);
+  }
+
+  private static void convFft(
+    int lx1, int lx2, int kx1, int kx2, float[][] x,
+    int ly1, int ly2, int ky1, int ky2, float[][] y,
+    int lz1, int lz2, int kz1, int kz2, float[][] z)
+  {
+    int nfft1 = FftReal.nfftFast(lx1+ly1-1);
+    int nfft2 = FftComplex.nfftFast(lx2+ly2-1);
+    int nk1 = nfft1/2+1;
+    FftReal fft1 = new FftReal(nfft1);
+    FftComplex fft2 = new FftComplex(nfft2);
+    float[][] xf = new float[nfft2][nfft1+2];
+    float[][] yf = new float[nfft2][nfft1+2];
+    copy(lx1,lx2,x,xf);
+    copy(ly1,ly2,y,yf);
+    fft1.realToComplex1(-1,lx2,xf,xf);
+    fft1.realToComplex1(-1,ly2,yf,yf);
+    fft2.complexToComplex2(-1,nk1,xf,xf);
+    fft2.complexToComplex2(-1,nk1,yf,yf);
+    cmul(xf,yf,xf);
+    fft2.complexToComplex2(1,nk1,xf,xf);
+    fft1.complexToReal1(1,nfft2,xf,xf);
+    float s = 1.0f/((float)nfft1*(float)nfft2);
+    int k1 = kz1-kx1-ky1, nc1 = lx1+ly1-1;
+    int k2 = kz2-kx2-ky2, nc2 = lx2+ly2-1;
+    for (int iz2=0,i2=k2; iz2<lz2; ++iz2,++i2) {
+      float[] z2 = z[iz2];
+      if (0<=i2 && i2<nc2) {
+        copyFull(k1,nc1,xf[i2],lz1,z2);
+        for (int iz1=0; iz1<lz1; ++iz1)
+          z2[iz1] *= s;
+      } else {
+        zero(lz1,z2);
+      }
+    }
+  }
+
+  private static void convFft(
+    int lx1, int lx2, int lx3, int kx1, int kx2, int kx3, float[][][] x,
+    int ly1, int ly2, int ly3, int ky1, int ky2, int ky3, float[][][] y,
+    int lz1, int lz2, int lz3, int kz1, int kz2, int kz3, float[][][] z)
+  {
+    int nfft1 = FftReal.nfftFast(lx1+ly1-1);
+    int nfft2 = FftComplex.nfftFast(lx2+ly2-1);
+    int nfft3 = FftComplex.nfftFast(lx3+ly3-1);
+    int nk1 = nfft1/2+1;
+    FftReal fft1 = new FftReal(nfft1);
+    FftComplex fft2 = new FftComplex(nfft2);
+    FftComplex fft3 = new FftComplex(nfft3);
+    float[][][] xf = new float[nfft3][nfft2][nfft1+2];
+    float[][][] yf = new float[nfft3][nfft2][nfft1+2];
+    copy(lx1,lx2,lx3,x,xf);
+    copy(ly1,ly2,ly3,y,yf);
+    fft1.realToComplex1(-1,lx2,lx3,xf,xf);
+    fft1.realToComplex1(-1,ly2,ly3,yf,yf);
+    fft2.complexToComplex2(-1,nk1,lx3,xf,xf);
+    fft2.complexToComplex2(-1,nk1,ly3,yf,yf);
+    fft3.complexToComplex3(-1,nk1,nfft2,xf,xf);
+    fft3.complexToComplex3(-1,nk1,nfft2,yf,yf);
+    cmul(xf,yf,xf);
+    fft3.complexToComplex3(1,nk1,nfft2,xf,xf);
+    fft2.complexToComplex2(1,nk1,nfft3,xf,xf);
+    fft1.complexToReal1(1,nfft2,nfft3,xf,xf);
+    float s = 1.0f/((float)nfft1*(float)nfft2*(float)nfft3);
+    int k1 = kz1-kx1-ky1, nc1 = lx1+ly1-1;
+    int k2 = kz2-kx2-ky2, nc2 = lx2+ly2-1;
+    int k3 = kz3-kx3-ky3, nc3 = lx3+ly3-1;
+    for (int iz3=0,i3=k3; iz3<lz3; ++iz3,++i3) {
+      for (int iz2=0,i2=k2; iz2<lz2; ++iz2,++i2) {
+        float[] z32 = z[iz3][iz2];
+        if (0<=i3 && i3<nc3 && 0<=i2 && i2<nc2) {
+          copyFull(k1,nc1,xf[i3][i2],lz1,z32);
+          for (int iz1=0; iz1<lz1; ++iz1)
+            z32[iz1] *= s;
+        } else {
+          zero(lz1,z32);
+        }
+      }
+    }
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // Convolution with only (slightly more than) one load per multiply-add. 
   // Simpler and slower alternatives to this method require at least two 
@@ -0,0 +1,199 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import edu.mines.jtk.util.Check;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Convolution of a sequence h with a sequence x that is input in blocks.
+ * The sequence x may be arbitrarily long, because only the most recent
+ * lh-1 samples of x are retained between blocks, where lh denotes the
+ * length of h. Such streaming convolution is useful for sequences x
+ * that are too long to be held in memory.
+ * <p>
+ * Sequences are defined as in {@link Conv}. The sample index of h[0]
+ * is kh, and the sample index of the first sample x[0] input to this
+ * convolution is kx. Then the first output sample z[0] has sample index
+ * kz = kx+kh, and z is the full convolution of x and h. For each block
+ * of samples x input, the same number of samples z is output; for that
+ * many samples of z, no more samples of x are required.
+ * <p>
+ * After all samples of x have been input, the last lh-1 samples of z
+ * may be obtained by inputting a block of lh-1 zeros.
+ * <p>
+ * For long sequences h, this convolution uses overlap-save with fast
+ * Fourier transforms of a length chosen to be efficient for lh. For
+ * short sequences h, this convolution uses direct summation. The choice
+ * is made when this convolution is constructed, and depends only on lh.
+ * <p>
+ * Cross-correlation of h and x may be computed as convolution with the
+ * reverse of h, for which the sample index of the first sample is
+ * 1-kh-lh.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class ConvStream {
+
+  /**
+   * Constructs a streaming convolution with the specified sequence h.
+   * @param lh the length of h.
+   * @param kh the sample index of h[0].
+   * @param h array[lh] of h values; copied, not referenced.
+   */
+  public ConvStream(int lh, int kh, float[] h) {
+    Check.argument(lh>0,"lh>0");
+    _lh = lh;
+    _kh = kh;
+    _h = copy(lh,h);
+    _xs = new float[lh-1];
+    if (lh>=LH_FFT) {
+      _nfft = FftReal.nfftFast(NFFT_PER_LH*lh);
+      _nb = _nfft-lh+1;
+      _fft = new FftReal(_nfft);
+      _hf = new float[_nfft+2];
+      copy(lh,h,_hf);
+      _fft.realToComplex(-1,_hf,_hf);
+      _fft.scale(_nfft+2,_hf);
+      _xf = new float[_nfft+2];
+    } else {
+      _nb = BLOCK_DIRECT;
+      _xd = new float[lh-1+_nb];
+    }
+  }
+
+  /**
+   * Gets the sample index of h[0].
+   * @return the sample index.
+   */
+  public int getFirstH() {
+    return _kh;
+  }
+
+  /**
+   * Returns true if this convolution uses FFTs.
+   * @return true, if FFTs; false, if direct summation.
+   */
+  public boolean isFft() {
+    return _fft!=null;
+  }
+
+  /**
+   * Gets the number of samples of x input so far.
+   * @return the number of samples.
+   */
+  public long getCount() {
+    return _count;
+  }
+
+  /**
+   * Resets this convolution, so that the next sample input is x[0].
+   * After reset, this convolution may be applied to a new sequence x.
+   */
+  public void reset() {
+    zero(_xs);
+    _count = 0;
+  }
+
+  /**
+   * Inputs the next block of samples x and outputs the next block of z.
+   * @param x array[n] of next samples x.
+   * @param z array[n] of next samples z; may be the same array as x.
+   */
+  public void apply(float[] x, float[] z) {
+    apply(x.length,x,z);
+  }
+
+  /**
+   * Inputs the next block of samples x and outputs the next block of z.
+   * @param n the number of samples in the block.
+   * @param x array[n] of next samples x.
+   * @param z array[n] of next samples z; may be the same array as x.
+   */
+  public void apply(int n, float[] x, float[] z) {
+    for (int j=0; j<n; j+=_nb) {
+      int m = min(_nb,n-j);
+      if (_fft!=null) {
+        applyFft(m,j,x,z);
+      } else {
+        applyDirect(m,j,x,z);
+      }
+    }
+    _count += n;
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  // Filters h with lengths not less than this are applied with FFTs.
+  private static final int LH_FFT = 64;
+
+  // For FFTs, the ratio of FFT length to filter length. The number of
+  // new output samples computed per FFT is nfft-lh+1.
+  private static final int NFFT_PER_LH = 8;
+
+  // For direct summation, the maximum number of samples in each block.
+  private static final int BLOCK_DIRECT = 4096;
+
+  private int _lh,_kh; // length and first sample index of h
+  private float[] _h; // copy of h
+  private float[] _xs; // most recent lh-1 samples of x
+  private int _nb; // maximum number of samples in each block
+  private long _count; // number of samples input so far
+  private int _nfft; // FFT length, if using FFTs
+  private FftReal _fft; // FFT, if using FFTs
+  private float[] _hf; // scaled Fourier transform of h
+  private float[] _xf; // work array for Fourier transform of x
+  private float[] _xd; // work array for direct summation
+
+  // Computes m samples of z from m samples of x, beginning at index j.
+  // The work array holds the lh-1 most recent samples of x preceding
+  // x[j], followed by the m samples x[j:j+m-1].
+  private void applyFft(int m, int j, float[] x, float[] z) {
+    int lh = _lh;
+    int ls = lh-1+m;
+    float[] xf = _xf;
+    copy(lh-1,_xs,xf);
+    copy(m,j,x,lh-1,xf);
+    zeroFrom(ls,xf);
+    saveRecent(m,j,x);
+    _fft.realToComplex(-1,xf,xf);
+    cmul(xf,_hf,xf);
+    _fft.complexToReal(1,xf,xf);
+    copy(m,lh-1,xf,j,z);
+  }
+  private void applyDirect(int m, int j, float[] x, float[] z) {
+    int lh = _lh;
+    int ls = lh-1+m;
+    float[] xd = _xd;
+    copy(lh-1,_xs,xd);
+    copy(m,j,x,lh-1,xd);
+    saveRecent(m,j,x);
+    float[] zj = (j==0 && z.length==m && z!=x)?z:new float[m];
+    Conv.conv(lh,0,_h,ls,0,xd,m,lh-1,zj);
+    if (zj!=z)
+      copy(m,0,zj,j,z);
+  }
+
+  // Saves the lh-1 most recent samples of x, up to and including x[j+m-1].
+  // This method must be called before z (which may be x) is modified.
+  private void saveRecent(int m, int j, float[] x) {
+    int ns = _lh-1;
+    if (m>=ns) {
+      copy(ns,j+m-ns,x,0,_xs);
+    } else {
+      copy(ns-m,m,_xs,0,_xs);
+      copy(m,j,x,ns-m,_xs);
+    }
+  }
+
+  // Zeros elements of x beginning at index j.
+  private static void zeroFrom(int j, float[] x) {
+    for (int i=j; i<x.length; ++i)
+      x[i] = 0.0f;
+  }
+}
@@ -105,24 +105,8 @@ public class EigenTensors3 implements Tensors3,Serializable {
     boolean compressed)
   {
     this(u1[0][0].length,u1[0].length,u1.length,compressed);
-    for (int i3=0; i3<_n3; ++i3) {
-      for (int i2=0; i2<_n2; ++i2) {
-        for (int i1=0; i1<_n1; ++i1) {
-          float aui = au[i3][i2][i1];
-          float avi = av[i3][i2][i1];
-          float awi = aw[i3][i2][i1];
-          float u1i = u1[i3][i2][i1];
-          float u2i = u2[i3][i2][i1];
-          float u3i = c3(u1i,u2i);
-          float w1i = w1[i3][i2][i1];
-          float w2i = w2[i3][i2][i1];
-          float w3i = c3(w1i,w2i);
-          setEigenvalues(i1,i2,i3,aui,avi,awi);
-          setEigenvectorU(i1,i2,i3,u1i,u2i,u3i);
-          setEigenvectorW(i1,i2,i3,w1i,w2i,w3i);
-        }
-      }
-    }
+    for (int i3=0; i3<_n3; ++i3)
+      set(i3,u1[i3],u2[i3],w1[i3],w2[i3],au[i3],av[i3],aw[i3]);
   }
 
   /**
@@ -706,6 +690,46 @@ public class EigenTensors3 implements Tensors3,Serializable {
     }
   }
 
+  ///////////////////////////////////////////////////////////////////////////
+  // package
+
+  /**
+   * Sets eigenvalues and eigenvectors for all tensors with the specified
+   * index in the 3rd dimension. As for the constructor with arrays of
+   * components and eigenvalues, the 3rd components of eigenvectors u 
+   * and w are computed from the 1st and 2nd components.
+   * @param i3 index for 3rd dimension.
+   * @param u1 array of 1st components of u.
+   * @param u2 array of 2nd components of u.
+   * @param w1 array of 1st components of w.
+   * @param w2 array of 2nd components of w.
+   * @param au array of eigenvalues au.
+   * @param av array of eigenvalues av.
+   * @param aw array of eigenvalues aw.
+   */
+  void set(int i3, 
+    float[][] u1, float[][] u2,
+    float[][] w1, float[][] w2,
+    float[][] au, float[][] av, float[][] aw)
+  {
+    for (int i2=0; i2<_n2; ++i2) {
+      for (int i1=0; i1<_n1; ++i1) {
+        float aui = au[i2][i1];
+        float avi = av[i2][i1];
+        float awi = aw[i2][i1];
+        float u1i = u1[i2][i1];
+        float u2i = u2[i2][i1];
+        float u3i = c3(u1i,u2i);
+        float w1i = w1[i2][i1];
+        float w2i = w2[i2][i1];
+        float w3i = c3(w1i,w2i);
+        setEigenvalues(i1,i2,i3,aui,avi,awi);
+        setEigenvectorU(i1,i2,i3,u1i,u2i,u3i);
+        setEigenvectorW(i1,i2,i3,w1i,w2i,w3i);
+      }
+    }
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // private
 
@@ -7,6 +7,7 @@ available at http://www.eclipse.org/legal/cpl-v10.html
 package edu.mines.jtk.dsp;
 
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -245,6 +246,19 @@ public class Fft {
     _overwrite = overwrite;
   }
 
+  /**
+   * Sets the use of parallel processing in transforms of 2D and 3D arrays.
+   * If parallel, then the 1D transforms along each array dimension are
+   * distributed among threads, and transforms along the 2nd and 3rd 
+   * dimensions are computed for blocks of adjacent sequences that are
+   * copied into smaller arrays, for better use of memory caches. Results 
+   * are the same as those of serial transforms. The default is false.
+   * @param parallel true, for parallel transforms; false, for serial.
+   */
+  public void setParallel(boolean parallel) {
+    _parallel = parallel;
+  }
+
   /**
    * Gets the frequency sampling for the 1st dimension.
    * @return the frequency sampling.
@@ -448,7 +462,11 @@ public class Fft {
     ensureSamplingX2(f);
     float[][] fpad = pad(f);
     int nx2 = _sx2.getCount();
-    if (_complex) {
+    if (_parallel) {
+      int nk1 = (_complex)?_nfft1:_nfft1/2+1;
+      transform1(true,_sign1,nx2,fpad);
+      transform2(_sign2,_nfft2,nk1,fpad);
+    } else if (_complex) {
       _fft1c.complexToComplex1(_sign1,nx2,fpad,fpad);
       _fft2.complexToComplex2(_sign2,_nfft1,fpad,fpad);
     } else {
@@ -470,7 +488,12 @@ public class Fft {
     float[][][] fpad = pad(f);
     int nx2 = _sx2.getCount();
     int nx3 = _sx3.getCount();
-    if (_complex) {
+    if (_parallel) {
+      int nk1 = (_complex)?_nfft1:_nfft1/2+1;
+      transform1(true,_sign1,nx2,nx3,fpad);
+      transform2(_sign2,_nfft2,nk1,nx3,fpad,null);
+      transform3(_sign3,_nfft3,nk1,_nfft2,fpad,null);
+    } else if (_complex) {
       _fft1c.complexToComplex1(_sign1,nx2,nx3,fpad,fpad);
       _fft2.complexToComplex2(_sign2,_nfft1,nx3,fpad,fpad);
       _fft3.complexToComplex3(_sign3,_nfft1,_nfft2,fpad,fpad);
@@ -518,7 +541,13 @@ public class Fft {
     int nx2 = _sx2.getCount();
     uncenter(gpad);
     unphase(gpad);
-    if (_complex) {
+    if (_parallel) {
+      int nk1 = (_complex)?_nfft1:_nfft1/2+1;
+      transform2(-_sign2,_nfft2,nk1,gpad);
+      _fft2.scale(nk1,nx2,gpad);
+      transform1(false,-_sign1,nx2,gpad);
+      return (_complex)?ccopy(nx1,nx2,gpad):copy(nx1,nx2,gpad);
+    } else if (_complex) {
       _fft2.complexToComplex2(-_sign2,_nfft1,gpad,gpad);
       _fft2.scale(_nfft1,nx2,gpad);
       _fft1c.complexToComplex1(-_sign1,nx2,gpad,gpad);
@@ -546,7 +575,13 @@ public class Fft {
     int nx3 = _sx3.getCount();
     uncenter(gpad);
     unphase(gpad);
-    if (_complex) {
+    if (_parallel) {
+      int nk1 = (_complex)?_nfft1:_nfft1/2+1;
+      transform3(-_sign3,_nfft3,nk1,_nfft2,gpad,_fft3);
+      transform2(-_sign2,_nfft2,nk1,nx3,gpad,_fft2);
+      transform1(false,-_sign1,nx2,nx3,gpad);
+      return (_complex)?ccopy(nx1,nx2,nx3,gpad):copy(nx1,nx2,nx3,gpad);
+    } else if (_complex) {
       _fft3.complexToComplex3(-_sign3,_nfft1,_nfft2,gpad,gpad);
       _fft3.scale(_nfft1,_nfft2,nx3,gpad);
       _fft2.complexToComplex2(-_sign2,_nfft1,nx3,gpad,gpad);
@@ -578,6 +613,127 @@ public class Fft {
   private boolean _center1,_center2,_center3;
   private boolean _complex;
   private boolean _overwrite;
+  private boolean _parallel;
+
+  // Number of complex sequences in each block transformed along the 2nd 
+  // or 3rd dimensions in parallel transforms. A block of NBLOCK sequences 
+  // with length nfft uses 8*NBLOCK*nfft bytes, small enough to fit in cache.
+  private static final int NBLOCK = 16;
+
+  // Parallel transforms along the 1st dimension, with scaling for inverse
+  // transforms included, because scaling is cheap when the array is hot.
+  private void transform1(
+    final boolean forward, final int sign, final int n2, final float[][] f)
+  {
+    Parallel.loop(n2,new Parallel.LoopInt() {
+      public void compute(int i2) {
+        transform1(forward,sign,f[i2]);
+      }
+    });
+  }
+  private void transform1(
+    final boolean forward, final int sign, 
+    final int n2, final int n3, final float[][][] f)
+  {
+    Parallel.loop(n3,new Parallel.LoopInt() {
+      public void compute(int i3) {
+        float[][] f3 = f[i3];
+        for (int i2=0; i2<n2; ++i2)
+          transform1(forward,sign,f3[i2]);
+      }
+    });
+  }
+  private void transform1(boolean forward, int sign, float[] f) {
+    if (_complex) {
+      _fft1c.complexToComplex(sign,f,f);
+      if (!forward)
+        _fft1c.scale(_sx1.getCount(),f);
+    } else if (forward) {
+      _fft1r.realToComplex(sign,f,f);
+    } else {
+      _fft1r.complexToReal(sign,f,f);
+      _fft1r.scale(_sx1.getCount(),f);
+    }
+  }
+
+  // Parallel transform along the 2nd dimension of a 2D array f[nfft][2*n1],
+  // in which blocks of adjacent sequences are transformed in parallel.
+  private static void transform2(
+    final int sign, final int nfft, final int n1, final float[][] f)
+  {
+    int nb = (n1+NBLOCK-1)/NBLOCK;
+    final Parallel.Unsafe<float[][]> bu = new Parallel.Unsafe<float[][]>();
+    Parallel.loop(nb,new Parallel.LoopInt() {
+      public void compute(int ib) {
+        float[][] b = bu.get();
+        if (b==null) bu.set(b=new float[nfft][2*NBLOCK]);
+        transformBlock(sign,nfft,ib*NBLOCK,min(NBLOCK,n1-ib*NBLOCK),f,b);
+      }
+    });
+  }
+
+  // Parallel transform along the 2nd dimension of a 3D array with
+  // dimensions [n3][nfft][2*n1]. If the specified FFT is not null, 
+  // the first nx2 of the nfft transformed sequences are then scaled.
+  private void transform2(
+    final int sign, final int nfft, final int n1, final int n3, 
+    final float[][][] f, final FftComplex fft)
+  {
+    final int nx2 = _sx2.getCount();
+    final Parallel.Unsafe<float[][]> bu = new Parallel.Unsafe<float[][]>();
+    Parallel.loop(n3,new Parallel.LoopInt() {
+      public void compute(int i3) {
+        float[][] b = bu.get();
+        if (b==null) bu.set(b=new float[nfft][2*NBLOCK]);
+        float[][] f3 = f[i3];
+        for (int j1=0; j1<n1; j1+=NBLOCK)
+          transformBlock(sign,nfft,j1,min(NBLOCK,n1-j1),f3,b);
+        if (fft!=null)
+          fft.scale(n1,nx2,f3);
+      }
+    });
+  }
+
+  // Parallel transform along the 3rd dimension of a 3D array with
+  // dimensions [nfft][n2][2*n1]. If the specified FFT is not null, 
+  // the first nx3 of the nfft transformed sequences are then scaled.
+  private void transform3(
+    final int sign, final int nfft, final int n1, final int n2,
+    final float[][][] f, final FftComplex fft)
+  {
+    final int nx3 = _sx3.getCount();
+    final Parallel.Unsafe<float[][][]> bu = new Parallel.Unsafe<float[][][]>();
+    Parallel.loop(n2,new Parallel.LoopInt() {
+      public void compute(int i2) {
+        float[][][] b = bu.get();
+        if (b==null) bu.set(b=new float[][][]{
+          new float[nfft][],new float[nfft][2*NBLOCK]});
+        float[][] f2 = b[0];
+        for (int i3=0; i3<nfft; ++i3)
+          f2[i3] = f[i3][i2];
+        for (int j1=0; j1<n1; j1+=NBLOCK)
+          transformBlock(sign,nfft,j1,min(NBLOCK,n1-j1),f2,b[1]);
+        if (fft!=null) {
+          for (int i3=0; i3<nx3; ++i3)
+            fft.scale(n1,f2[i3]);
+        }
+      }
+    });
+  }
+
+  // Transforms nb complex sequences f[0:nfft-1][j1:j1+nb-1] by copying 
+  // them into a block b[nfft][2*NBLOCK], transforming, and copying back.
+  private static void transformBlock(
+    int sign, int nfft, int j1, int nb, float[][] f, float[][] b) 
+  {
+    int k1 = 2*j1;
+    int mb = 2*nb;
+    for (int i=0; i<nfft; ++i)
+      System.arraycopy(f[i],k1,b[i],0,mb);
+    Pfacc.transform2a(sign,nb,nfft,b);
+    for (int i=0; i<nfft; ++i)
+      System.arraycopy(b[i],0,f[i],k1,mb);
+  }
 
   private void updateSampling1() {
     if (_sx1==null)
@@ -45,6 +45,7 @@ public class FftComplex {
   public FftComplex(int nfft) {
     Check.argument(Pfacc.nfftValid(nfft),"nfft="+nfft+" is valid FFT length");
     _nfft = nfft;
+    _plan = Pfacc.plan(nfft);
   }
 
   /**
@@ -97,7 +98,7 @@ public class FftComplex {
     checkArray(2*_nfft,cy,"cy");
     if (cx!=cy)
       ccopy(_nfft,cx,cy);
-    Pfacc.transform(sign,_nfft,cy);
+    Pfacc.transform(sign,_plan,cy);
   }
 
   /**
@@ -132,7 +133,7 @@ public class FftComplex {
     checkArray(2*n1,_nfft,cy,"cy");
     if (cx!=cy) 
       ccopy(n1,_nfft,cx,cy);
-    Pfacc.transform2a(sign,n1,_nfft,cy);
+    Pfacc.transform2a(sign,n1,_plan,cy);
   }
 
   /**
@@ -250,6 +251,7 @@ public class FftComplex {
   // private
 
   private int _nfft; // FFT length (number of complex numbers to transform)
+  private Pfacc.Plan _plan; // plan shared by all FFTs with this length
 
   private static void checkSign(int sign) {
     Check.argument(sign==1 || sign==-1,"sign equals 1 or -1");
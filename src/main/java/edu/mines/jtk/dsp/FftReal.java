@@ -6,6 +6,8 @@ available at http://www.eclipse.org/legal/cpl-v10.html
 ****************************************************************************/
 package edu.mines.jtk.dsp;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import static java.lang.Math.PI;
 import static java.lang.Math.sin;
 
@@ -62,6 +64,10 @@ public class FftReal {
       nfft%2==0 && Pfacc.nfftValid(nfft/2),
       "nfft="+nfft+" is valid FFT length");
     _nfft = nfft;
+    _plan = Pfacc.plan(nfft/2);
+    double[][][] w = twiddles(nfft);
+    _wr = w[0];
+    _wi = w[1];
   }
 
   /**
@@ -115,31 +121,24 @@ public class FftReal {
     int n = _nfft;
     while (--n>=0)
       cy[n] = 0.5f*rx[n];
-    Pfacc.transform(sign,_nfft/2,cy);
+    Pfacc.transform(sign,_plan,cy);
     cy[_nfft] = 2.0f*(cy[0]-cy[1]);
     cy[0    ] = 2.0f*(cy[0]+cy[1]);
     cy[_nfft+1] = 0.0f;
     cy[1      ] = 0.0f;
-    double theta = sign*2.0*PI/_nfft;
-    double wt = sin(0.5*theta);
-    double wpr = -2.0*wt*wt; // = cos(theta)-1, with less rounding error
-    double wpi = sin(theta); // = sin(theta)
-    double wr = 1.0+wpr;
-    double wi = wpi;
-    for (int j=2,k=_nfft-2; j<=k; j+=2,k-=2) {
+    double[] wr = _wr[(sign>0)?1:0];
+    double[] wi = _wi[(sign>0)?1:0];
+    for (int j=2,k=_nfft-2,l=0; j<=k; j+=2,k-=2,++l) {
       float sumr = cy[j  ]+cy[k  ];
       float sumi = cy[j+1]+cy[k+1];
       float difr = cy[j  ]-cy[k  ];
       float difi = cy[j+1]-cy[k+1];
-      float tmpr = (float)(wi*difr+wr*sumi);
-      float tmpi = (float)(wi*sumi-wr*difr);
+      float tmpr = (float)(wi[l]*difr+wr[l]*sumi);
+      float tmpi = (float)(wi[l]*sumi-wr[l]*difr);
       cy[j  ] = sumr+tmpr;
       cy[j+1] = tmpi+difi;
       cy[k  ] = sumr-tmpr;
       cy[k+1] = tmpi-difi;
-      wt = wr;
-      wr += wr*wpr-wi*wpi;
-      wi += wi*wpr+wt*wpi;
     }
   }
 
@@ -162,28 +161,21 @@ public class FftReal {
     }
     ry[1] = cx[0]-cx[_nfft];
     ry[0] = cx[0]+cx[_nfft];
-    double theta = -sign*2.0*PI/_nfft;
-    double wt = sin(0.5*theta);
-    double wpr = -2.0*wt*wt; // = cos(theta)-1, with less rounding error
-    double wpi = sin(theta); // = sin(theta)
-    double wr = 1.0+wpr;
-    double wi = wpi;
-    for (int j=2,k=_nfft-2; j<=k; j+=2,k-=2) {
+    double[] wr = _wr[(sign>0)?0:1];
+    double[] wi = _wi[(sign>0)?0:1];
+    for (int j=2,k=_nfft-2,l=0; j<=k; j+=2,k-=2,++l) {
       float sumr = ry[j  ]+ry[k  ];
       float sumi = ry[j+1]+ry[k+1];
       float difr = ry[j  ]-ry[k  ];
       float difi = ry[j+1]-ry[k+1];
-      float tmpr = (float)(wi*difr-wr*sumi);
-      float tmpi = (float)(wi*sumi+wr*difr);
+      float tmpr = (float)(wi[l]*difr-wr[l]*sumi);
+      float tmpi = (float)(wi[l]*sumi+wr[l]*difr);
       ry[j  ] = sumr+tmpr;
       ry[j+1] = tmpi+difi;
       ry[k  ] = sumr-tmpr;
       ry[k+1] = tmpi-difi;
-      wt = wr;
-      wr += wr*wpr-wi*wpi;
-      wi += wi*wpr+wt*wpi;
     }
-    Pfacc.transform(sign,_nfft/2,ry);
+    Pfacc.transform(sign,_plan,ry);
   }
 
   /**
@@ -244,7 +236,7 @@ public class FftReal {
     }
 
     // Dimension-2 complex-to-complex transform.
-    Pfacc.transform2a(sign,n1,_nfft/2,cy);
+    Pfacc.transform2a(sign,n1,_plan,cy);
 
     // Finish transform.
     float[] cy0 = cy[0];
@@ -255,13 +247,9 @@ public class FftReal {
       cyn[i1+1] = 0.0f;
       cy0[i1+1] = 0.0f;
     }
-    double theta = sign*2.0*PI/_nfft;
-    double wt = sin(0.5*theta);
-    double wpr = -2.0*wt*wt; // = cos(theta)-1, with less rounding error
-    double wpi = sin(theta); // = sin(theta)
-    double wr = 1.0+wpr;
-    double wi = wpi;
-    for (int j2=1,k2=_nfft/2-1; j2<=k2; ++j2,--k2) {
+    double[] wr = _wr[(sign>0)?1:0];
+    double[] wi = _wi[(sign>0)?1:0];
+    for (int j2=1,k2=_nfft/2-1,l=0; j2<=k2; ++j2,--k2,++l) {
       float[] cyj2 = cy[j2];
       float[] cyk2 = cy[k2];
       for (int i1=0,j1=0; i1<n1; ++i1,j1+=2) {
@@ -269,16 +257,13 @@ public class FftReal {
         float sumi = cyj2[j1+1]+cyk2[j1+1];
         float difr = cyj2[j1  ]-cyk2[j1  ];
         float difi = cyj2[j1+1]-cyk2[j1+1];
-        float tmpr = (float)(wi*difr+wr*sumi);
-        float tmpi = (float)(wi*sumi-wr*difr);
+        float tmpr = (float)(wi[l]*difr+wr[l]*sumi);
+        float tmpi = (float)(wi[l]*sumi-wr[l]*difr);
         cyj2[j1  ] = sumr+tmpr;
         cyj2[j1+1] = tmpi+difi;
         cyk2[j1  ] = sumr-tmpr;
         cyk2[j1+1] = tmpi-difi;
       }
-      wt = wr;
-      wr += wr*wpr-wi*wpi;
-      wi += wi*wpr+wt*wpi;
     }
   }
 
@@ -310,13 +295,9 @@ public class FftReal {
     }
 
     // Begin transform.
-    double theta = -sign*2.0*PI/_nfft;
-    double wt = sin(0.5*theta);
-    double wpr = -2.0*wt*wt; // = cos(theta)-1, with less rounding error
-    double wpi = sin(theta); // = sin(theta)
-    double wr = 1.0+wpr;
-    double wi = wpi;
-    for (int j2=2,k2=_nfft-2; j2<=k2; j2+=2,k2-=2) {
+    double[] wr = _wr[(sign>0)?0:1];
+    double[] wi = _wi[(sign>0)?0:1];
+    for (int j2=2,k2=_nfft-2,l=0; j2<=k2; j2+=2,k2-=2,++l) {
       float[] ryj2r = ry[j2  ];
       float[] ryj2i = ry[j2+1];
       float[] ryk2r = ry[k2  ];
@@ -326,20 +307,17 @@ public class FftReal {
         float sumi = ryj2i[i1]+ryk2i[i1];
         float difr = ryj2r[i1]-ryk2r[i1];
         float difi = ryj2i[i1]-ryk2i[i1];
-        float tmpr = (float)(wi*difr-wr*sumi);
-        float tmpi = (float)(wi*sumi+wr*difr);
+        float tmpr = (float)(wi[l]*difr-wr[l]*sumi);
+        float tmpi = (float)(wi[l]*sumi+wr[l]*difr);
         ryj2r[i1] = sumr+tmpr;
         ryj2i[i1] = tmpi+difi;
         ryk2r[i1] = sumr-tmpr;
         ryk2i[i1] = tmpi-difi;
       }
-      wt = wr;
-      wr += wr*wpr-wi*wpi;
-      wi += wi*wpr+wt*wpi;
     }
 
     // Dimension-2 complex-to-complex transform.
-    Pfacc.transform2b(sign,n1,_nfft/2,ry);
+    Pfacc.transform2b(sign,n1,_plan,ry);
   }
 
   /**
@@ -428,6 +406,47 @@ public class FftReal {
   // private
 
   private int _nfft; // FFT length (number of real numbers to transform)
+  private Pfacc.Plan _plan; // plan for complex FFT of length nfft/2
+  private double[][] _wr,_wi; // twiddle factors for signs -1 and 1
+
+  // Twiddle factors, shared by all FFTs with the same length.
+  private static ConcurrentHashMap<Integer,double[][][]> _twiddles =
+    new ConcurrentHashMap<Integer,double[][][]>();
+
+  /**
+   * Returns twiddle factors {wr,wi} for the specified FFT length, where
+   * wr[0] and wi[0] are for sign -1, and wr[1] and wi[1] are for sign 1.
+   * Factors are computed with the same trigonometric recurrence, and
+   * therefore yield the same transforms, as factors computed on the fly.
+   */
+  private static double[][][] twiddles(int nfft) {
+    double[][][] w = _twiddles.get(nfft);
+    if (w==null) {
+      int nw = (nfft>=4)?(nfft-4)/4+1:0;
+      double[][] wr = new double[2][nw];
+      double[][] wi = new double[2][nw];
+      for (int is=0,sign=-1; is<2; ++is,sign+=2) {
+        double theta = sign*2.0*PI/nfft;
+        double wt = sin(0.5*theta);
+        double wpr = -2.0*wt*wt; // = cos(theta)-1, with less rounding error
+        double wpi = sin(theta); // = sin(theta)
+        double wrl = 1.0+wpr;
+        double wil = wpi;
+        for (int l=0; l<nw; ++l) {
+          wr[is][l] = wrl;
+          wi[is][l] = wil;
+          wt = wrl;
+          wrl += wrl*wpr-wil*wpi;
+          wil += wil*wpr+wt*wpi;
+        }
+      }
+      w = new double[][][]{wr,wi};
+      double[][][] v = _twiddles.putIfAbsent(nfft,w);
+      if (v!=null)
+        w = v;
+    }
+    return w;
+  }
 
   private static void checkSign(int sign) {
     Check.argument(sign==1 || sign==-1,"sign equals 1 or -1");
@@ -6,6 +6,9 @@ available at http://www.eclipse.org/legal/cpl-v10.html
 ****************************************************************************/
 package edu.mines.jtk.dsp;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 import static edu.mines.jtk.util.ArrayMath.*;
 import edu.mines.jtk.util.Check;
 
@@ -153,6 +156,23 @@ public class LocalCausalFilter {
     return copy(_lag3);
   }
 
+  /**
+   * Sets the parallel mode for inverse and inverse-transpose filters.
+   * In parallel mode, these recursive filters of 2-D and 3-D arrays are
+   * applied to tiles of samples in parallel wavefronts. Results are the
+   * same as those computed serially.
+   * <p>
+   * In parallel mode, filter coefficients are got concurrently by multiple
+   * threads, so implementations of the interfaces A2 and A3 must be
+   * thread-safe. Also, the inverse-transpose filter stores coefficients
+   * got for a band of samples, which requires more memory. The default
+   * is serial.
+   * @param parallel true, for parallel; false, for serial.
+   */
+  public void setParallel(boolean parallel) {
+    _parallel = parallel;
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // Note to programmers:
   // The filter implementations below are optimized to minimize if-tests in
@@ -445,6 +465,10 @@ public class LocalCausalFilter {
    * @param x output array.
    */
   public void applyInverse(A2 a2, float[][] y, float[][] x) {
+    if (_parallel) {
+      applyInverseParallel(a2,y,x);
+      return;
+    }
     float[] a = new float[_m];
     int n1 = y[0].length;
     int n2 = y.length;
@@ -512,6 +536,10 @@ public class LocalCausalFilter {
    */
   public void applyInverseTranspose(A2 a2, float[][] y, float[][] x) {
     Check.argument(x!=y,"x!=y");
+    if (_parallel) {
+      applyInverseTransposeParallel(a2,y,x);
+      return;
+    }
     zero(x);
     float[] a = new float[_m];
     int n1 = y[0].length;
@@ -785,6 +813,10 @@ public class LocalCausalFilter {
    * @param x input array.
    */
   public void applyInverse(A3 a3, float[][][] y, float[][][] x) {
+    if (_parallel) {
+      applyInverseParallel(a3,y,x);
+      return;
+    }
     float[] a = new float[_m];
     int n1 = y[0][0].length;
     int n2 = y[0].length;
@@ -891,6 +923,10 @@ public class LocalCausalFilter {
    */
   public void applyInverseTranspose(A3 a3, float[][][] y, float[][][] x) {
     Check.argument(x!=y,"x!=y");
+    if (_parallel) {
+      applyInverseTransposeParallel(a3,y,x);
+      return;
+    }
     zero(x);
     float[] a = new float[_m];
     int n1 = y[0][0].length;
@@ -990,6 +1026,7 @@ public class LocalCausalFilter {
   private int[] _lag1; // lags in 1st dimension
   private int[] _lag2; // lags in 2nd dimension
   private int[] _lag3; // lags in 3rd dimension
+  private boolean _parallel; // true, for parallel wavefront recursions
 
   private void initLags(int[] lag1) {
     Check.argument(lag1.length>0,"lag1.length>0");
@@ -1047,6 +1084,271 @@ public class LocalCausalFilter {
     _max3 = max(lag3);
   }
 
+  // Parallel recursions in wavefronts of tiles. For 2-D arrays, the units
+  // scheduled are samples; for 3-D arrays, units are lines of samples
+  // indexed by (i2,i3). Within each tile, samples are computed in the same
+  // order as in the serial recursions, with the same terms.
+  //
+  // The serial inverse transpose scatters terms a[j]*x[i] to samples i-lag,
+  // and those terms are accumulated in the order of decreasing indices i.
+  // In parallel, each sample instead gathers the same terms in the same
+  // order, which requires coefficients got for samples already computed.
+  // Those coefficients are stored for each tile, until all tiles that use
+  // them have been computed.
+
+  private void applyInverseParallel(
+    final A2 a2, final float[][] y, final float[][] x)
+  {
+    final int n1 = y[0].length;
+    final int n2 = y.length;
+    final Wavefront wf = new Wavefront(n1,n2,_lag1,_lag2,
+      Wavefront.tileCount(n1,32),Wavefront.tileCount(n2,8));
+    wf.forward(new Wavefront.Tile() {
+      public void compute(int b, int r) {
+        float[] a = new float[_m];
+        for (int i2=wf.j2lo(r); i2<wf.j2hi(r); ++i2) {
+          for (int i1=wf.j1lo(b,i2); i1<wf.j1hi(b,i2); ++i1) {
+            a2.get(i1,i2,a);
+            float xi = 0.0f;
+            for (int j=1; j<_m; ++j) {
+              int k1 = i1-_lag1[j];
+              int k2 = i2-_lag2[j];
+              if (0<=k1 && k1<n1 && 0<=k2)
+                xi += a[j]*x[k2][k1];
+            }
+            x[i2][i1] = (y[i2][i1]-xi)/a[0];
+          }
+        }
+      }
+    });
+  }
+
+  private void applyInverseParallel(
+    final A3 a3, final float[][][] y, final float[][][] x)
+  {
+    final int n1 = y[0][0].length;
+    final int n2 = y[0].length;
+    final int n3 = y.length;
+    final Wavefront wf = new Wavefront(n2,n3,_lag2,_lag3,
+      Wavefront.tileCount(n2,1),Wavefront.tileCount(n3,1));
+    wf.forward(new Wavefront.Tile() {
+      public void compute(int b, int r) {
+        float[] a = new float[_m];
+        for (int i3=wf.j2lo(r); i3<wf.j2hi(r); ++i3) {
+          for (int i2=wf.j1lo(b,i3); i2<wf.j1hi(b,i3); ++i2) {
+            for (int i1=0; i1<n1; ++i1) {
+              a3.get(i1,i2,i3,a);
+              float xi = 0.0f;
+              for (int j=1; j<_m; ++j) {
+                int k1 = i1-_lag1[j];
+                int k2 = i2-_lag2[j];
+                int k3 = i3-_lag3[j];
+                if (0<=k1 && k1<n1 && 0<=k2 && k2<n2 && 0<=k3)
+                  xi += a[j]*x[k3][k2][k1];
+              }
+              x[i3][i2][i1] = (y[i3][i2][i1]-xi)/a[0];
+            }
+          }
+        }
+      }
+    });
+  }
+
+  private void applyInverseTransposeParallel(
+    final A2 a2, final float[][] y, final float[][] x)
+  {
+    final int n1 = y[0].length;
+    final int n2 = y.length;
+    final Wavefront wf = new Wavefront(n1,n2,_lag1,_lag2,
+      Wavefront.tileCount(n1,32),max(1,n2/8));
+    final int s = wf.getSkew();
+    final int bu = wf.getTileWidth();
+    final int br = wf.getTileHeight();
+    final int[] jo = scatterOrder(_lag1,_lag2,zeroint(_m));
+    final int nj = jo.length;
+    final int[] ko = new int[nj]; // offsets of coefficients in tiles
+    int du = 0;
+    for (int jj=0; jj<nj; ++jj) {
+      int j = jo[jj];
+      ko[jj] = (_lag2[j]*bu+_lag1[j]+s*_lag2[j])*_m+j;
+      du = max(du,_lag1[j]+s*_lag2[j]);
+    }
+    final int dumax = du;
+    final float[][][] at =
+      new float[wf.getTileCount1()][wf.getTileCount2()][];
+    final Queue<float[]> pool = new ConcurrentLinkedQueue<float[]>();
+    wf.reverse(new Wavefront.Tile() {
+      public void compute(int b, int r) {
+        int ub = (b+1)*bu; // sources with ku >= ub are in tile b+1
+        int rb = (r+1)*br; // sources in rows >= rb are in tile r+1
+        int i2lo = wf.j2lo(r);
+        int i2hi = wf.j2hi(r);
+        float[] a = new float[_m];
+        float[] ab = at[b][r] = allocate(bu*br*_m,pool);
+        for (int i2=i2hi-1; i2>=i2lo; --i2) {
+          boolean in2 = i2+_max2<min(rb,n2);
+          for (int i1=wf.j1hi(b,i2)-1; i1>=wf.j1lo(b,i2); --i1) {
+            int ui = i1+s*i2;
+            int ia = ((i2-i2lo)*bu+ui-b*bu)*_m;
+            a2.get(i1,i2,a);
+            copy(_m,0,a,ia,ab);
+            float xi = 0.0f;
+            if (in2 && ui+dumax<ub && 0<=i1+_min1 && i1+_max1<n1) {
+              for (int jj=0; jj<nj; ++jj) {
+                int j = jo[jj];
+                xi += ab[ia+ko[jj]]*x[i2+_lag2[j]][i1+_lag1[j]];
+              }
+            } else {
+              for (int jj=0; jj<nj; ++jj) {
+                int j = jo[jj];
+                int k1 = i1+_lag1[j];
+                int k2 = i2+_lag2[j];
+                if (0<=k1 && k1<n1 && k2<n2) {
+                  int ku = k1+s*k2;
+                  int kb = (ku<ub)?b:b+1;
+                  int kr = (k2<rb)?r:r+1;
+                  int ka = ((k2-kr*br)*bu+ku-kb*bu)*_m+j;
+                  xi += at[kb][kr][ka]*x[k2][k1];
+                }
+              }
+            }
+            x[i2][i1] = (y[i2][i1]-xi)/a[0];
+          }
+        }
+        release(at,b,r,pool);
+      }
+    });
+  }
+
+  private void applyInverseTransposeParallel(
+    final A3 a3, final float[][][] y, final float[][][] x)
+  {
+    final int n1 = y[0][0].length;
+    final int n2 = y[0].length;
+    final int n3 = y.length;
+    final Wavefront wf = new Wavefront(n2,n3,_lag2,_lag3,
+      Wavefront.tileCount(n2,1),n3);
+    final int s = wf.getSkew();
+    final int bu = wf.getTileWidth();
+    final int br = wf.getTileHeight();
+    final int[] jo = scatterOrder(_lag1,_lag2,_lag3);
+    final int nj = jo.length;
+    final int[] ko = new int[nj]; // offsets of coefficients in tiles
+    int du = 0;
+    for (int jj=0; jj<nj; ++jj) {
+      int j = jo[jj];
+      ko[jj] = ((_lag3[j]*bu+_lag2[j]+s*_lag3[j])*n1+_lag1[j])*_m+j;
+      du = max(du,_lag2[j]+s*_lag3[j]);
+    }
+    final int dumax = du;
+    final float[][][] at =
+      new float[wf.getTileCount1()][wf.getTileCount2()][];
+    final Queue<float[]> pool = new ConcurrentLinkedQueue<float[]>();
+    wf.reverse(new Wavefront.Tile() {
+      public void compute(int b, int r) {
+        int ub = (b+1)*bu; // sources with ku >= ub are in tile b+1
+        int rb = (r+1)*br; // sources in rows >= rb are in tile r+1
+        int i3lo = wf.j2lo(r);
+        int i3hi = wf.j2hi(r);
+        float[] a = new float[_m];
+        float[] ab = at[b][r] = allocate(bu*br*n1*_m,pool);
+        for (int i3=i3hi-1; i3>=i3lo; --i3) {
+          boolean in3 = i3+_max3<min(rb,n3);
+          for (int i2=wf.j1hi(b,i3)-1; i2>=wf.j1lo(b,i3); --i2) {
+            int ui = i2+s*i3;
+            boolean in23 = in3 && ui+dumax<ub && 0<=i2+_min2 && i2+_max2<n2;
+            for (int i1=n1-1; i1>=0; --i1) {
+              int ia = (((i3-i3lo)*bu+ui-b*bu)*n1+i1)*_m;
+              a3.get(i1,i2,i3,a);
+              copy(_m,0,a,ia,ab);
+              float xi = 0.0f;
+              if (in23 && 0<=i1+_min1 && i1+_max1<n1) {
+                for (int jj=0; jj<nj; ++jj) {
+                  int j = jo[jj];
+                  int k1 = i1+_lag1[j];
+                  int k2 = i2+_lag2[j];
+                  int k3 = i3+_lag3[j];
+                  xi += ab[ia+ko[jj]]*x[k3][k2][k1];
+                }
+              } else {
+                for (int jj=0; jj<nj; ++jj) {
+                  int j = jo[jj];
+                  int k1 = i1+_lag1[j];
+                  int k2 = i2+_lag2[j];
+                  int k3 = i3+_lag3[j];
+                  if (0<=k1 && k1<n1 && 0<=k2 && k2<n2 && k3<n3) {
+                    int ku = k2+s*k3;
+                    int kb = (ku<ub)?b:b+1;
+                    int kr = (k3<rb)?r:r+1;
+                    int ka = (((k3-kr*br)*bu+ku-kb*bu)*n1+k1)*_m+j;
+                    xi += at[kb][kr][ka]*x[k3][k2][k1];
+                  }
+                }
+              }
+              x[i3][i2][i1] = (y[i3][i2][i1]-xi)/a[0];
+            }
+          }
+        }
+        release(at,b,r,pool);
+      }
+    });
+  }
+
+  // Returns indices j>0 of lags in the order in which the serial inverse
+  // transpose accumulates terms for each sample: decreasing lag3, lag2,
+  // and lag1, and increasing j for equal lags.
+  private static int[] scatterOrder(int[] lag1, int[] lag2, int[] lag3) {
+    int m = lag1.length;
+    int[] jo = new int[m-1];
+    for (int j=1; j<m; ++j) {
+      int k = j-1;
+      for (; k>0 && after(lag1,lag2,lag3,jo[k-1],j); --k)
+        jo[k] = jo[k-1];
+      jo[k] = j;
+    }
+    return jo;
+  }
+  private static boolean after(
+    int[] lag1, int[] lag2, int[] lag3, int i, int j)
+  {
+    if (lag3[i]!=lag3[j]) return lag3[i]<lag3[j];
+    if (lag2[i]!=lag2[j]) return lag2[i]<lag2[j];
+    return lag1[i]<lag1[j];
+  }
+
+  // Allocates an array for coefficients stored for one tile, reusing an
+  // array released for another tile, if possible. Because coefficients
+  // are stored before they are used, arrays need not be zeroed.
+  private static float[] allocate(int n, Queue<float[]> pool) {
+    float[] a = pool.poll();
+    return (a!=null)?a:new float[n];
+  }
+
+  // Releases coefficients stored for tiles that are not used after tile
+  // (b,r) has been computed. Each tile is used by itself and by the three
+  // tiles below and to the left, the last of which is computed last.
+  private static void release(
+    float[][][] at, int b, int r, Queue<float[]> pool)
+  {
+    int nb = at.length;
+    int nr = at[0].length;
+    if (b+1<nb && r+1<nr)
+      free(at,b+1,r+1,pool);
+    if (b==0 && r+1<nr)
+      free(at,0,r+1,pool);
+    if (r==0 && b+1<nb)
+      free(at,b+1,0,pool);
+    if (b==0 && r==0)
+      free(at,0,0,pool);
+  }
+  private static void free(
+    float[][][] at, int b, int r, Queue<float[]> pool)
+  {
+    pool.add(at[b][r]);
+    at[b][r] = null;
+  }
+
+
   ///////////////////////////////////////////////////////////////////////////
   // Testing interface for linear interpolation of table-driven filters.
   // Not working, so keep private for now.
@@ -8,6 +8,7 @@ package edu.mines.jtk.dsp;
 
 import static edu.mines.jtk.util.ArrayMath.*;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 
 /**
  * Local cross-correlation of two arrays with seamless overlapping windows.
@@ -377,6 +378,158 @@ public class LocalCorrelationFilter {
     }
   }
 
+  /**
+   * Correlates the current inputs for a range of lags. Correlations for 
+   * different lags are computed in parallel.
+   * @param min the minimum lag.
+   * @param max the maximum lag.
+   * @param c array[1+max-min][n1] of output correlations; c[ilag] is the
+   *  correlation for lag min+ilag. Cannot include inputs f or g.
+   */
+  public void correlateLags(final int min, int max, final float[][] c) {
+    checkLags(min,max,c.length);
+    for (int ilag=0; ilag<c.length; ++ilag)
+      checkDimensions(c[ilag]);
+    final float[] f = _f[0][0];
+    final float[] g = _g[0][0];
+    Parallel.loop(c.length,new Parallel.LoopInt() {
+      public void compute(int ilag) {
+        correlate(min+ilag,f,g,c[ilag]);
+      }
+    });
+  }
+
+  /**
+   * Correlates the current inputs for a range of lags in one dimension.
+   * Lags in the other dimension are zero. Correlations for different lags 
+   * are computed in parallel.
+   * @param dim the dimension, 1 or 2, in which lags vary.
+   * @param min the minimum lag.
+   * @param max the maximum lag.
+   * @param c array[1+max-min][n2][n1] of output correlations; c[ilag] is 
+   *  the correlation for lag min+ilag. Cannot include inputs f or g.
+   */
+  public void correlateLags(
+    final int dim, final int min, int max, final float[][][] c) 
+  {
+    checkLags(dim,2,min,max,c.length);
+    for (int ilag=0; ilag<c.length; ++ilag)
+      checkDimensions(c[ilag]);
+    final float[][] f = _f[0];
+    final float[][] g = _g[0];
+    Parallel.loop(c.length,new Parallel.LoopInt() {
+      public void compute(int ilag) {
+        int lag = min+ilag;
+        int lag1 = (dim==1)?lag:0;
+        int lag2 = (dim==2)?lag:0;
+        correlate(lag1,lag2,f,g,c[ilag]);
+      }
+    });
+  }
+
+  /**
+   * Correlates the current inputs for a range of lags in one dimension.
+   * Lags in the other dimensions are zero. Correlations for different 
+   * lags are computed in parallel, and each correlation is computed in
+   * parallel for different slabs.
+   * @param dim the dimension, 1, 2, or 3, in which lags vary.
+   * @param min the minimum lag.
+   * @param max the maximum lag.
+   * @param c array[1+max-min][n3][n2][n1] of output correlations; c[ilag] 
+   *  is the correlation for lag min+ilag. Cannot include inputs f or g.
+   */
+  public void correlateLags(
+    final int dim, final int min, int max, final float[][][][] c) 
+  {
+    checkLags(dim,3,min,max,c.length);
+    for (int ilag=0; ilag<c.length; ++ilag)
+      checkDimensions(c[ilag]);
+    final float[][][] f = _f;
+    final float[][][] g = _g;
+    Parallel.loop(c.length,new Parallel.LoopInt() {
+      public void compute(int ilag) {
+        int lag = min+ilag;
+        int lag1 = (dim==1)?lag:0;
+        int lag2 = (dim==2)?lag:0;
+        int lag3 = (dim==3)?lag:0;
+        correlate(lag1,lag2,lag3,f,g,c[ilag]);
+      }
+    });
+  }
+
+  /**
+   * Normalizes cross-correlations for a range of lags. Normalization 
+   * scale factors are computed only once for the current inputs, and 
+   * are shared by all lags, which are normalized in parallel.
+   * @param min the minimum lag.
+   * @param max the maximum lag.
+   * @param c array[1+max-min][n1] of cross-correlations to be modified;
+   *  c[ilag] is the correlation for lag min+ilag.
+   */
+  public void normalizeLags(final int min, int max, final float[][] c) {
+    checkLags(min,max,c.length);
+    if (_s==null)
+      updateNormalize();
+    Parallel.loop(c.length,new Parallel.LoopInt() {
+      public void compute(int ilag) {
+        normalize(min+ilag,c[ilag]);
+      }
+    });
+  }
+
+  /**
+   * Normalizes cross-correlations for a range of lags in one dimension.
+   * Normalization scale factors are computed only once for the current 
+   * inputs, and are shared by all lags, which are normalized in parallel.
+   * @param dim the dimension, 1 or 2, in which lags vary.
+   * @param min the minimum lag.
+   * @param max the maximum lag.
+   * @param c array[1+max-min][n2][n1] of cross-correlations to be 
+   *  modified; c[ilag] is the correlation for lag min+ilag.
+   */
+  public void normalizeLags(
+    final int dim, final int min, int max, final float[][][] c) 
+  {
+    checkLags(dim,2,min,max,c.length);
+    if (_s==null)
+      updateNormalize();
+    Parallel.loop(c.length,new Parallel.LoopInt() {
+      public void compute(int ilag) {
+        int lag = min+ilag;
+        int lag1 = (dim==1)?lag:0;
+        int lag2 = (dim==2)?lag:0;
+        normalize(lag1,lag2,c[ilag]);
+      }
+    });
+  }
+
+  /**
+   * Normalizes cross-correlations for a range of lags in one dimension.
+   * Normalization scale factors are computed only once for the current 
+   * inputs, and are shared by all lags, which are normalized in parallel.
+   * @param dim the dimension, 1, 2, or 3, in which lags vary.
+   * @param min the minimum lag.
+   * @param max the maximum lag.
+   * @param c array[1+max-min][n3][n2][n1] of cross-correlations to be 
+   *  modified; c[ilag] is the correlation for lag min+ilag.
+   */
+  public void normalizeLags(
+    final int dim, final int min, int max, final float[][][][] c) 
+  {
+    checkLags(dim,3,min,max,c.length);
+    if (_s==null)
+      updateNormalize();
+    Parallel.loop(c.length,new Parallel.LoopInt() {
+      public void compute(int ilag) {
+        int lag = min+ilag;
+        int lag1 = (dim==1)?lag:0;
+        int lag2 = (dim==2)?lag:0;
+        int lag3 = (dim==3)?lag:0;
+        normalize(lag1,lag2,lag3,c[ilag]);
+      }
+    });
+  }
+
   /** 
    * Removes bias by subtracting local means from the specified array.
    * @param f the input array.
@@ -665,25 +818,7 @@ public class LocalCorrelationFilter {
 
     // Correlation product.
     float[][][] h = new float[n3][n2][n1];
-    int i1min = max(0,l1f,-l1g);
-    int i1max = min(n1,n1+l1f,n1-l1g);
-    int i2min = max(0,l2f,-l2g);
-    int i2max = min(n2,n2+l2f,n2-l2g);
-    int i3min = max(0,l3f,-l3g);
-    int i3max = min(n3,n3+l3f,n3-l3g);
-    for (int i3=i3min; i3<i3max; ++i3) {
-      float[][] f3 = f[i3-l3f];
-      float[][] g3 = g[i3+l3g];
-      float[][] h3 = h[i3];
-      for (int i2=i2min; i2<i2max; ++i2) {
-        float[] f32 = f3[i2-l2f];
-        float[] g32 = g3[i2+l2g];
-        float[] h32 = h3[i2];
-        for (int i1=i1min; i1<i1max; ++i1) {
-          h32[i1] = scale*f32[i1-l1f]*g32[i1+l1g];
-        }
-      }
-    }
+    multiply(scale,l1f,l1g,l2f,l2g,l3f,l3g,f,g,h);
 
     // If Gaussian and symmetric and odd lag, delay (shift) by 1/2 sample.
     if (_window==Window.GAUSSIAN && _type==Type.SYMMETRIC) {
@@ -719,6 +854,44 @@ public class LocalCorrelationFilter {
     f3.apply3(h,c);
   }
 
+  // Computes the correlation product h = scale*f*g for specified lags of
+  // f and g. Samples of h for which f or g are undefined are not set.
+  // Slabs i3 of the product are computed in parallel.
+  private static void multiply(
+    final float scale,
+    final int l1f, final int l1g,
+    final int l2f, final int l2g,
+    final int l3f, final int l3g,
+    final float[][][] f, final float[][][] g, final float[][][] h) 
+  {
+    int n1 = f[0][0].length;
+    int n2 = f[0].length;
+    int n3 = f.length;
+    final int i1min = max(0,l1f,-l1g);
+    final int i1max = min(n1,n1+l1f,n1-l1g);
+    final int i2min = max(0,l2f,-l2g);
+    final int i2max = min(n2,n2+l2f,n2-l2g);
+    int i3min = max(0,l3f,-l3g);
+    int i3max = min(n3,n3+l3f,n3-l3g);
+    if (i3min>=i3max)
+      return;
+    Parallel.loop(i3min,i3max,new Parallel.LoopInt() {
+      public void compute(int i3) {
+        float[][] f3 = f[i3-l3f];
+        float[][] g3 = g[i3+l3g];
+        float[][] h3 = h[i3];
+        for (int i2=i2min; i2<i2max; ++i2) {
+          float[] f32 = f3[i2-l2f];
+          float[] g32 = g3[i2+l2g];
+          float[] h32 = h3[i2];
+          for (int i1=i1min; i1<i1max; ++i1) {
+            h32[i1] = scale*f32[i1-l1f]*g32[i1+l1g];
+          }
+        }
+      }
+    });
+  }
+
   private void updateNormalize() {
     if (_dimension==0)
       return;
@@ -921,6 +1094,16 @@ public class LocalCorrelationFilter {
     }
   }
 
+  private void checkLags(int min, int max, int nlag) {
+    Check.argument(min<=max,"min<=max");
+    Check.argument(nlag==1+max-min,"number of lags is valid");
+  }
+
+  private void checkLags(int dim, int dimension, int min, int max, int nlag) {
+    Check.argument(1<=dim && dim<=dimension,"dim is valid");
+    checkLags(min,max,nlag);
+  }
+
   private void checkDimension(int dimension) {
     Check.state(_dimension==dimension,"dimension is valid");
   }
@@ -6,6 +6,7 @@ available at http://www.eclipse.org/legal/cpl-v10.html
 ****************************************************************************/
 package edu.mines.jtk.dsp;
 
+import edu.mines.jtk.util.Check;
 import edu.mines.jtk.util.Parallel;
 import static edu.mines.jtk.util.ArrayMath.*;
 
@@ -91,6 +92,7 @@ public class LocalOrientFilter {
     } else {
       _rgfSmoother3 = (sigma3>=1.0)?new RecursiveGaussianFilter(sigma3):null;
     }
+    _sigmaSmoother3 = (sigma3>=1.0)?sigma3:0.0;
     setGradientSmoothing(1.0);
   }
 
@@ -143,6 +145,7 @@ public class LocalOrientFilter {
     } else {
       _rgfGradient3 = new RecursiveGaussianFilter(sigma3);
     }
+    _sigmaGradient = max(sigma1,sigma2,sigma3);
   }
   
   /**
@@ -455,23 +458,68 @@ public class LocalOrientFilter {
 
     // Compute u1 such that u3 > 0.
     float[][][] u1 = u3;
-    for (int i3=0; i3<n3; ++i3) {
-      for (int i2=0; i2<n2; ++i2) {
-        for (int i1=0; i1<n1; ++i1) {
-          float u2i = u2[i3][i2][i1];
-          float u3i = u3[i3][i2][i1];
-          float u1s = 1.0f-u2i*u2i-u3i*u3i;
-          float u1i = (u1s>0.0f)?sqrt(u1s):0.0f;
-          if (u3i<0.0f) {
-            u1i = -u1i;
-            u2i = -u2i;
-          }
-          u1[i3][i2][i1] = u1i;
-          u2[i3][i2][i1] = u2i;
-        }
+    for (int i3=0; i3<n3; ++i3)
+      computeU1(u2[i3],u3[i3]);
+    return new EigenTensors3(u1,u2,w1,w2,eu,ev,ew,compressed);
+  }
+
+  /**
+   * Applies this filter to estimate 3-D structure tensors for slabs of 
+   * the image, one slab at a time. Each slab has at most m3 samples in 
+   * the 3rd dimension, and is extended by halos of samples on both sides 
+   * as necessary for the Gaussian derivative and smoothing filters. 
+   * Except for the input image and the output tensors, this method
+   * requires only seven arrays with the size of one extended slab.
+   * <p>
+   * The recursive Gaussian filters have impulse responses that are
+   * truncated at the halos. Halos are wide enough that the resulting
+   * tensors are the same as those computed for the entire image, except 
+   * for differences comparable to those caused by rounding errors.
+   * @param x input array for 3-D image.
+   * @param compressed true, for compressed tensors; false, otherwise.
+   * @param m3 maximum number of samples in the 3rd dimension of each slab,
+   *  not including halos.
+   * @return structure tensors.
+   */
+  public EigenTensors3 applyForTensors(
+    float[][][] x, boolean compressed, int m3) 
+  {
+    Check.argument(m3>0,"m3>0");
+    int n1 = x[0][0].length;
+    int n2 = x[0].length;
+    int n3 = x.length;
+    int nh = getHalo();
+    int ms = min(n3,m3+2*nh);
+
+    // The seven arrays for outputs are also workspace for the smoothed
+    // gradient products, as in the method apply, and they are reused for
+    // all slabs. Only arrays of references to slices are constructed for
+    // each slab.
+    float[][][][] a = new float[7][ms][n2][n1];
+    float[][][] xs = new float[ms][][];
+    EigenTensors3 et = new EigenTensors3(n1,n2,n3,compressed);
+    for (int j3=0; j3<n3; j3+=m3) {
+      int k3 = min(n3,j3+m3);
+      int l3 = max(0,j3-nh);
+      int ns = min(n3,k3+nh)-l3;
+      for (int is=0; is<ns; ++is)
+        xs[is] = x[l3+is];
+      float[][][] u2 = slab(ns,a[0]);
+      float[][][] u3 = slab(ns,a[1]);
+      float[][][] w1 = slab(ns,a[2]);
+      float[][][] w2 = slab(ns,a[3]);
+      float[][][] eu = slab(ns,a[4]);
+      float[][][] ev = slab(ns,a[5]);
+      float[][][] ew = slab(ns,a[6]);
+      computeTensors(slab(ns,xs),u2,w2,eu,u3,ev,w1,ew);
+      solveEigenproblems(u2,w2,eu,u3,ev,w1,
+        null,null,null,u2,u3,null,null,null,w1,w2,null,eu,ev,ew,null,null);
+      for (int i3=j3,is=j3-l3; i3<k3; ++i3,++is) {
+        computeU1(u2[is],u3[is]);
+        et.set(i3,u3[is],u2[is],w1[is],w2[is],eu[is],ev[is],ew[is]);
       }
     }
-    return new EigenTensors3(u1,u2,w1,w2,eu,ev,ew,compressed);
+    return et;
   }
 
   /**
@@ -523,64 +571,20 @@ public class LocalOrientFilter {
     if (ep!=null) t[nt++] = ep;
     if (el!=null) t[nt++] = el;
 
-    // Gradient.
+    // Smoothed gradient products comprise the structure tensor.
     int n1 = x[0][0].length;
     int n2 = x[0].length;
     int n3 = x.length;
-    float[][][] g1 = (nt>0)?t[0]:new float[n3][n2][n1];
-    float[][][] g2 = (nt>1)?t[1]:new float[n3][n2][n1];
-    float[][][] g3 = (nt>2)?t[2]:new float[n3][n2][n1];
-    _rgfGradient1.apply100(x,g1);
-    _rgfGradient2.apply010(x,g2);
-    _rgfGradient3.apply001(x,g3);
-
-    // Gradient products.
-    float[][][] g11 = g1;
-    float[][][] g22 = g2;
-    float[][][] g33 = g3;
+    float[][][] g11 = (nt>0)?t[0]:new float[n3][n2][n1];
+    float[][][] g22 = (nt>1)?t[1]:new float[n3][n2][n1];
+    float[][][] g33 = (nt>2)?t[2]:new float[n3][n2][n1];
     float[][][] g12 = (nt>3)?t[3]:new float[n3][n2][n1];
     float[][][] g13 = (nt>4)?t[4]:new float[n3][n2][n1];
     float[][][] g23 = (nt>5)?t[5]:new float[n3][n2][n1];
-    computeGradientProducts(g1,g2,g3,g11,g12,g13,g22,g23,g33);
-    /*
-    for (int i3=0; i3<n3; ++i3) {
-      for (int i2=0; i2<n2; ++i2) {
-        for (int i1=0; i1<n1; ++i1) {
-          float g1i = g1[i3][i2][i1];
-          float g2i = g2[i3][i2][i1];
-          float g3i = g3[i3][i2][i1];
-          g11[i3][i2][i1] = g1i*g1i;
-          g22[i3][i2][i1] = g2i*g2i;
-          g33[i3][i2][i1] = g3i*g3i;
-          g12[i3][i2][i1] = g1i*g2i;
-          g13[i3][i2][i1] = g1i*g3i;
-          g23[i3][i2][i1] = g2i*g3i;
-        }
-      }
-    }
-    */
-    
-    // Smoothed gradient products comprise the structure tensor.
-    if (_rgfSmoother1!=null || _rgfSmoother2!=null || _rgfSmoother3!=null) {
-      float[][][] h = (nt>6)?t[6]:new float[n3][n2][n1];
-      float[][][][] gs = {g11,g22,g33,g12,g13,g23};
-      for (float[][][] g:gs) {
-        if (_rgfSmoother1!=null) {
-          _rgfSmoother1.apply0XX(g,h);
-        } else {
-          copy(g,h);
-        }
-        if (_rgfSmoother2!=null) {
-          _rgfSmoother2.applyX0X(h,g);
-        } else {
-          copy(h,g);
-        }
-        if (_rgfSmoother3!=null) {
-          _rgfSmoother3.applyXX0(g,h);
-          copy(h,g);
-        }
-      }
-    }
+    float[][][] h = null;
+    if (_rgfSmoother1!=null || _rgfSmoother2!=null || _rgfSmoother3!=null)
+      h = (nt>6)?t[6]:new float[n3][n2][n1];
+    computeTensors(x,g11,g12,g13,g22,g23,g33,h);
 
     // Compute eigenvectors, eigenvalues, and outputs that depend on them.
     solveEigenproblems(g11,g12,g13,g22,g23,g33,
@@ -661,6 +665,108 @@ public class LocalOrientFilter {
   private RecursiveGaussianFilter _rgfSmoother1;
   private RecursiveGaussianFilter _rgfSmoother2;
   private RecursiveGaussianFilter _rgfSmoother3;
+  private double _sigmaGradient; // largest half-width of derivatives
+  private double _sigmaSmoother3; // half-width of window in 3rd dimension
+
+  // Halos for slabs are this many times the sum of half-widths of filters
+  // applied in the 3rd dimension. The recursive Gaussian filters have
+  // impulse responses that decay exponentially, and beyond this distance 
+  // are less than rounding errors.
+  private static final double HALO_SIGMA = 12.0;
+
+  private int getHalo() {
+    return (int)ceil(HALO_SIGMA*(_sigmaGradient+_sigmaSmoother3));
+  }
+
+  // Returns the first n3 slices of the specified array.
+  private static float[][][] slab(int n3, float[][][] x) {
+    if (n3==x.length)
+      return x;
+    float[][][] y = new float[n3][][];
+    for (int i3=0; i3<n3; ++i3)
+      y[i3] = x[i3];
+    return y;
+  }
+
+  // Computes smoothed gradient products g11, ..., g33 for the image x.
+  // The array h is workspace for smoothing, and may be null if no
+  // smoothing filters are applied. No other arrays are constructed.
+  private void computeTensors(float[][][] x,
+    float[][][] g11, float[][][] g12, float[][][] g13,
+    float[][][] g22, float[][][] g23, float[][][] g33,
+    float[][][] h)
+  {
+    // Gradient, in the arrays for g11, g22, and g33.
+    float[][][] g1 = g11;
+    float[][][] g2 = g22;
+    float[][][] g3 = g33;
+    _rgfGradient1.apply100(x,g1);
+    _rgfGradient2.apply010(x,g2);
+    _rgfGradient3.apply001(x,g3);
+
+    // Gradient products.
+    computeGradientProducts(g1,g2,g3,g11,g12,g13,g22,g23,g33);
+    /*
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        for (int i1=0; i1<n1; ++i1) {
+          float g1i = g1[i3][i2][i1];
+          float g2i = g2[i3][i2][i1];
+          float g3i = g3[i3][i2][i1];
+          g11[i3][i2][i1] = g1i*g1i;
+          g22[i3][i2][i1] = g2i*g2i;
+          g33[i3][i2][i1] = g3i*g3i;
+          g12[i3][i2][i1] = g1i*g2i;
+          g13[i3][i2][i1] = g1i*g3i;
+          g23[i3][i2][i1] = g2i*g3i;
+        }
+      }
+    }
+    */
+
+    // Smoothed gradient products.
+    if (_rgfSmoother1!=null || _rgfSmoother2!=null || _rgfSmoother3!=null) {
+      float[][][][] gs = {g11,g22,g33,g12,g13,g23};
+      for (float[][][] g:gs) {
+        if (_rgfSmoother1!=null) {
+          _rgfSmoother1.apply0XX(g,h);
+        } else {
+          copy(g,h);
+        }
+        if (_rgfSmoother2!=null) {
+          _rgfSmoother2.applyX0X(h,g);
+        } else {
+          copy(h,g);
+        }
+        if (_rgfSmoother3!=null) {
+          _rgfSmoother3.applyXX0(g,h);
+          copy(h,g);
+        }
+      }
+    }
+  }
+
+  // Replaces components (u2,u3) of eigenvectors u with components (u2,u1)
+  // for the same eigenvectors, negated where necessary so that u3 > 0.
+  private static void computeU1(float[][] u2, float[][] u3) {
+    int n2 = u2.length;
+    int n1 = u2[0].length;
+    float[][] u1 = u3;
+    for (int i2=0; i2<n2; ++i2) {
+      for (int i1=0; i1<n1; ++i1) {
+        float u2i = u2[i2][i1];
+        float u3i = u3[i2][i1];
+        float u1s = 1.0f-u2i*u2i-u3i*u3i;
+        float u1i = (u1s>0.0f)?sqrt(u1s):0.0f;
+        if (u3i<0.0f) {
+          u1i = -u1i;
+          u2i = -u2i;
+        }
+        u1[i2][i1] = u1i;
+        u2[i2][i1] = u2i;
+      }
+    }
+  }
 
   private void computeGradientProducts(
     final float[][][] g1, final float[][][] g2, final float[][][] g3,
@@ -6,6 +6,10 @@ available at http://www.eclipse.org/legal/cpl-v10.html
 ****************************************************************************/
 package edu.mines.jtk.dsp;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -47,10 +51,37 @@ public class LocalSemblanceFilter {
    * @param halfWidth2 half-width of 2nd smoothing filter.
    */
   public LocalSemblanceFilter(int halfWidth1, int halfWidth2) {
+    _halfWidth1 = halfWidth1;
+    _halfWidth2 = halfWidth2;
     _smoother1 = new LaplacianSmoother(halfWidth1);
     _smoother2 = new LaplacianSmoother(halfWidth2);
   }
 
+  /**
+   * Sets the slabs used to compute semblance for 3D arrays.
+   * If the slab thickness is positive, semblance is computed in parallel
+   * for slabs of m3 samples in the 3rd dimension. To compute semblance for
+   * a slab, this filter smooths a sub-array that extends the slab by h3 
+   * halo samples on both sides. Semblance in the slab is then approximately 
+   * that computed for the entire array, provided that the halo is wide 
+   * relative to the smoothing half-widths. A halo of 2*(halfWidth1+
+   * halfWidth2) samples is typically sufficient.
+   * <p>
+   * Temporary arrays are allocated for each slab, not for the entire 
+   * array, and tensors for the entire array are not modified.
+   * <p>
+   * The default slab thickness is zero, for which semblance is computed 
+   * for the entire array at once.
+   * @param m3 the slab thickness, in samples; zero for no slabs.
+   * @param h3 the halo thickness, in samples.
+   */
+  public void setSlabs(int m3, int h3) {
+    Check.argument(m3>=0,"m3>=0");
+    Check.argument(h3>=0,"h3>=0");
+    _m3 = m3;
+    _h3 = h3;
+  }
+
   /**
    * Computes local semblance for a 1D array.
    * @param f the array of input values.
@@ -146,30 +177,10 @@ public class LocalSemblanceFilter {
   public void semblance(
     Direction3 d, EigenTensors3 t, float[][][] f, float[][][] s) 
   {
-    int n1 = f[0][0].length;
-    int n2 = f[0].length;
-    int n3 = f.length;
-    float[][][] sn,sd;
-    sn = smooth1(d,t,f);
-    sn = mul(sn,sn);
-    sn = smooth2(d,t,sn);
-    sd = mul(f,f);
-    sd = smooth1(d,t,sd);
-    sd = smooth2(d,t,sd);
-    for (int i3=0; i3<n3; ++i3) {
-      for (int i2=0; i2<n2; ++i2) {
-        for (int i1=0; i1<n1; ++i1) {
-          float sni = sn[i3][i2][i1];
-          float sdi = sd[i3][i2][i1];
-          if (sdi<=0.0f || sni<0.0f) {
-            s[i3][i2][i1] = 0.0f;
-          } else if (sdi<sni) {
-            s[i3][i2][i1] = 1.0f;
-          } else {
-            s[i3][i2][i1] = sni/sdi;
-          }
-        }
-      }
+    if (0<_m3 && _m3<f.length) {
+      semblanceSlabs(d,t,f,s);
+    } else {
+      semblance(_smoother1,_smoother2,d,t,f,s);
     }
   }
 
@@ -390,12 +401,119 @@ public class LocalSemblanceFilter {
     private static final LocalDiffusionKernel _ldk = 
       //new LocalDiffusionKernel(LocalDiffusionKernel.Stencil.D22);
       new LocalDiffusionKernel(LocalDiffusionKernel.Stencil.D71);
-    private static final LocalSmoothingFilter _lsf = 
+    private final LocalSmoothingFilter _lsf = // not thread-safe
       new LocalSmoothingFilter(_small,_niter,_ldk);
     private static final double _kmax = 0.35;
   }
 
+  private int _halfWidth1,_halfWidth2; // half-widths of smoothers
   private LaplacianSmoother _smoother1,_smoother2;
+  private int _m3,_h3; // slab and halo thickness; zero for no slabs
+
+  // Computes semblance for a 3D array, using the specified smoothers.
+  private static void semblance(
+    LaplacianSmoother smoother1, LaplacianSmoother smoother2,
+    Direction3 d, EigenTensors3 t, float[][][] f, float[][][] s)
+  {
+    int n1 = f[0][0].length;
+    int n2 = f[0].length;
+    int n3 = f.length;
+    float[][][] sn,sd;
+    Direction3 e = orthogonal(d);
+    sn = like(f);
+    smoother1.apply(d,t,f,sn);
+    sn = mul(sn,sn);
+    smoother2.apply(e,t,sn,sn);
+    sd = mul(f,f);
+    smoother1.apply(d,t,sd,sd);
+    smoother2.apply(e,t,sd,sd);
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        for (int i1=0; i1<n1; ++i1) {
+          float sni = sn[i3][i2][i1];
+          float sdi = sd[i3][i2][i1];
+          if (sdi<=0.0f || sni<0.0f) {
+            s[i3][i2][i1] = 0.0f;
+          } else if (sdi<sni) {
+            s[i3][i2][i1] = 1.0f;
+          } else {
+            s[i3][i2][i1] = sni/sdi;
+          }
+        }
+      }
+    }
+  }
+
+  // Computes semblance for a 3D array in parallel, one slab at a time.
+  // Each slab is computed by a worker with its own smoothers, because 
+  // smoothers are not thread-safe. Workers are not bound to threads, 
+  // because the smoothers themselves use parallel loops, and a thread 
+  // waiting for those loops may begin computing another slab.
+  private void semblanceSlabs(
+    final Direction3 d, final EigenTensors3 t, 
+    final float[][][] f, final float[][][] s)
+  {
+    final int n1 = f[0][0].length;
+    final int n2 = f[0].length;
+    final int n3 = f.length;
+    final int m3 = _m3;
+    final int h3 = _h3;
+    final int hw1 = _halfWidth1;
+    final int hw2 = _halfWidth2;
+    final ConcurrentLinkedQueue<LaplacianSmoother[]> idle = 
+      new ConcurrentLinkedQueue<LaplacianSmoother[]>();
+    int nslab = 1+(n3-1)/m3;
+    Parallel.loop(nslab,new Parallel.LoopInt() {
+      public void compute(int islab) {
+        LaplacianSmoother[] ls = idle.poll();
+        if (ls==null) {
+          ls = new LaplacianSmoother[]{
+            new LaplacianSmoother(hw1),
+            new LaplacianSmoother(hw2)
+          };
+        }
+
+        // Sub-arrays for the slab [j3,k3) with halo [j3h,k3h). Sub-arrays 
+        // of input and output samples in the slab refer to the arrays f 
+        // and s; only output samples in the halo are allocated here.
+        int j3 = islab*m3;
+        int k3 = min(j3+m3,n3);
+        int j3h = max(0,j3-h3);
+        int k3h = min(n3,k3+h3);
+        int n3h = k3h-j3h;
+        float[][][] fs = new float[n3h][][];
+        float[][][] ss = new float[n3h][][];
+        for (int i3=j3h; i3<k3h; ++i3) {
+          fs[i3-j3h] = f[i3];
+          ss[i3-j3h] = (j3<=i3 && i3<k3)?s[i3]:new float[n2][n1];
+        }
+        EigenTensors3 ts = slab(t,j3h,n3h);
+        semblance(ls[0],ls[1],d,ts,fs,ss);
+        idle.offer(ls);
+      }
+    });
+  }
+
+  // Returns a copy of eigenvectors of tensors t for n3 samples beginning
+  // with sample j3 in the 3rd dimension. Eigenvalues are not copied.
+  private static EigenTensors3 slab(EigenTensors3 t, int j3, int n3) {
+    int n1 = t.getN1();
+    int n2 = t.getN2();
+    EigenTensors3 ts = new EigenTensors3(n1,n2,n3,false);
+    float[] u = new float[3];
+    float[] w = new float[3];
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        for (int i1=0; i1<n1; ++i1) {
+          t.getEigenvectorU(i1,i2,i3+j3,u);
+          t.getEigenvectorW(i1,i2,i3+j3,w);
+          ts.setEigenvectorU(i1,i2,i3,u);
+          ts.setEigenvectorW(i1,i2,i3,w);
+        }
+      }
+    }
+    return ts;
+  }
 
   private static void setEigenvalues(Direction2 d, EigenTensors2 t) {
     float au = 0.0f;
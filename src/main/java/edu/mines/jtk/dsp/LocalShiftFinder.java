@@ -8,6 +8,7 @@ package edu.mines.jtk.dsp;
 
 import static edu.mines.jtk.util.ArrayMath.*;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 
 /**
  * Estimates displacement vector fields for two images. For example, given 
@@ -658,6 +659,48 @@ public class LocalShiftFinder {
   private SincInterpolator _si;
   private boolean _interpolateDisplacements = true;
 
+  // Number of lags to correlate in each batch, when scanning nlag lags
+  // with correlations of n samples. Lags in a batch are correlated in 
+  // parallel, but correlations for all lags in a batch must fit within 
+  // a modest amount of memory.
+  private static int lagBatch(int nlag, long n) {
+    int nthread = Parallel.getContext().getThreadCount();
+    long nb = min((long)nthread,BATCH_FLOATS/n);
+    return (int)max(1L,min(nb,(long)nlag));
+  }
+  private static final long BATCH_FLOATS = 1L<<24; // 64 MB of floats
+
+  // Correlates and normalizes lags in [lmin,lmax]. The correlation for each
+  // lag is stored in the ring of arrays c, with index (lag-min)%c.length.
+  private void correlateLags(int min, int lmin, int lmax, float[][] c) {
+    int nr = c.length;
+    float[][] cl = new float[1+lmax-lmin][];
+    for (int lag=lmin; lag<=lmax; ++lag)
+      cl[lag-lmin] = c[(lag-min)%nr];
+    _lcfSimple.correlateLags(lmin,lmax,cl);
+    _lcfSimple.normalizeLags(lmin,lmax,cl);
+  }
+  private void correlateLags(
+    int dim, int min, int lmin, int lmax, float[][][] c) 
+  {
+    int nr = c.length;
+    float[][][] cl = new float[1+lmax-lmin][][];
+    for (int lag=lmin; lag<=lmax; ++lag)
+      cl[lag-lmin] = c[(lag-min)%nr];
+    _lcfSimple.correlateLags(dim,lmin,lmax,cl);
+    _lcfSimple.normalizeLags(dim,lmin,lmax,cl);
+  }
+  private void correlateLags(
+    int dim, int min, int lmin, int lmax, float[][][][] c) 
+  {
+    int nr = c.length;
+    float[][][][] cl = new float[1+lmax-lmin][][][];
+    for (int lag=lmin; lag<=lmax; ++lag)
+      cl[lag-lmin] = c[(lag-min)%nr];
+    _lcfSimple.correlateLags(dim,lmin,lmax,cl);
+    _lcfSimple.normalizeLags(dim,lmin,lmax,cl);
+  }
+
   private void findShifts(
     int min, int max, float[] f, float[] g, float[] u, float[] c, float[] d) 
   {
@@ -672,19 +715,26 @@ public class LocalShiftFinder {
     if (d!=null) 
       zero(d);
 
-    // Arrays to contain cross-correlations for three consecutive lags.
-    float[][] c3 = new float[3][n1];
-
-    // Correlate for min lag.
-    LocalCorrelationFilter lcf = _lcfSimple;
-    lcf.setInputs(f,g);
-    int lag1 = min;
-    lcf.correlate(lag1,c3[1]);
-    lcf.normalize(lag1,c3[1]);
+    // Ring of arrays to contain cross-correlations for consecutive lags.
+    // Lags are correlated in parallel, in batches of nb lags, and the ring
+    // also contains correlations for the two lags that precede a batch.
+    int nb = lagBatch(1+max-min,n1);
+    int nr = nb+2;
+    float[][] c3 = new float[nr][n1];
+    _lcfSimple.setInputs(f,g);
+    int lmax = min-1; // the maximum lag correlated so far
 
     // For all lags in range [min,max], ...
     for (int lag=min; lag<=max; ++lag) {
 
+      // Except for last lag, ensure that correlation for next lag has been
+      // computed, by correlating the next batch of lags if necessary.
+      while (lmax<min(lag+1,max)) {
+        int lmin = lmax+1;
+        lmax = min(max,lmax+nb);
+        correlateLags(min,lmin,lmax,c3);
+      }
+
       // Arrays ca, cb, and cc will contain three cross-correlations. For 
       // first and last lags, buffers a and c are the same. In other words, 
       // assume that correlation values are symmetric about the min and max 
@@ -692,16 +742,9 @@ public class LocalShiftFinder {
       // specified min and max lags, but forces displacements to lie within 
       // the range [min,max].
       int i = lag-min;
-      float[] ca = (lag>min)?c3[(i  )%3]:c3[(i+2)%3];
-      float[] cb =           c3[(i+1)%3];
-      float[] cc = (lag<max)?c3[(i+2)%3]:c3[(i  )%3];
-
-      // Except for last lag, compute correlation for next lag in array cc.
-      if (lag<max) {
-        lag1 = lag+1;
-        lcf.correlate(lag1,cc);
-        lcf.normalize(lag1,cc);
-      }
+      float[] ca = (lag>min)?c3[(i-1)%nr]:c3[(i+1)%nr];
+      float[] cb =           c3[(i  )%nr];
+      float[] cc = (lag<max)?c3[(i+1)%nr]:ca;
 
       // For each sample, check for a local max correlation value. For each 
       // local max, update the correlation maximum value and displacement
@@ -734,22 +777,30 @@ public class LocalShiftFinder {
     // Default shifts are zero.
     zero(u);
 
-    // Arrays to contain cross-correlations for three consecutive lags.
-    float[][] c = new float[3][n1];
+    // Ring of arrays to contain cross-correlations for consecutive lags.
+    // Lags are correlated in parallel, in batches of nb lags, and the ring
+    // also contains correlations for the two lags that precede a batch.
+    int nb = lagBatch(1+max-min,n1);
+    int nr = nb+2;
+    float[][] c = new float[nr][n1];
 
     // Array for current correlation maximum values.
     float[] cmax = new float[n1];
 
-    // Correlate for min lag.
-    LocalCorrelationFilter lcf = _lcfSimple;
-    lcf.setInputs(f,g);
-    int lag1 = min;
-    lcf.correlate(lag1,c[1]);
-    lcf.normalize(lag1,c[1]);
+    _lcfSimple.setInputs(f,g);
+    int lmax = min-1; // the maximum lag correlated so far
 
     // For all lags in range [min,max], ...
     for (int lag=min; lag<=max; ++lag) {
 
+      // Except for last lag, ensure that correlation for next lag has been
+      // computed, by correlating the next batch of lags if necessary.
+      while (lmax<min(lag+1,max)) {
+        int lmin = lmax+1;
+        lmax = min(max,lmax+nb);
+        correlateLags(min,lmin,lmax,c);
+      }
+
       // Arrays ca, cb, and cc will contain three cross-correlations. For 
       // first and last lags, buffers a and c are the same. In other words, 
       // assume that correlation values are symmetric about the min and max 
@@ -757,16 +808,9 @@ public class LocalShiftFinder {
       // specified min and max lags, but forces displacements to lie within 
       // the range [min,max].
       int i = lag-min;
-      float[] ca = (lag>min)?c[(i  )%3]:c[(i+2)%3];
-      float[] cb =           c[(i+1)%3];
-      float[] cc = (lag<max)?c[(i+2)%3]:c[(i  )%3];
-
-      // Except for last lag, compute correlation for next lag in array cc.
-      if (lag<max) {
-        lag1 = lag+1;
-        lcf.correlate(lag1,cc);
-        lcf.normalize(lag1,cc);
-      }
+      float[] ca = (lag>min)?c[(i-1)%nr]:c[(i+1)%nr];
+      float[] cb =           c[(i  )%nr];
+      float[] cc = (lag<max)?c[(i+1)%nr]:ca;
 
       // For each sample, check for a local max correlation value. For each 
       // local max, update the correlation maximum value and displacement
@@ -799,23 +843,30 @@ public class LocalShiftFinder {
     // Default shifts are zero.
     zero(u);
 
-    // Arrays to contain cross-correlations for three consecutive lags.
-    float[][][] c = new float[3][n2][n1];
+    // Ring of arrays to contain cross-correlations for consecutive lags.
+    // Lags are correlated in parallel, in batches of nb lags, and the ring
+    // also contains correlations for the two lags that precede a batch.
+    int nb = lagBatch(1+max-min,(long)n1*n2);
+    int nr = nb+2;
+    float[][][] c = new float[nr][n2][n1];
 
     // Array for current correlation maximum values.
     float[][] cmax = new float[n2][n1];
 
-    // Correlate for min lag.
-    LocalCorrelationFilter lcf = _lcfSimple;
-    lcf.setInputs(f,g);
-    int lag1 = (dim==1)?min:0;
-    int lag2 = (dim==2)?min:0;
-    lcf.correlate(lag1,lag2,c[1]);
-    lcf.normalize(lag1,lag2,c[1]);
+    _lcfSimple.setInputs(f,g);
+    int lmax = min-1; // the maximum lag correlated so far
 
     // For all lags in range [min,max], ...
     for (int lag=min; lag<=max; ++lag) {
 
+      // Except for last lag, ensure that correlation for next lag has been
+      // computed, by correlating the next batch of lags if necessary.
+      while (lmax<min(lag+1,max)) {
+        int lmin = lmax+1;
+        lmax = min(max,lmax+nb);
+        correlateLags(dim,min,lmin,lmax,c);
+      }
+
       // Arrays ca, cb, and cc will contain three cross-correlations. For 
       // first and last lags, buffers a and c are the same. In other words, 
       // assume that correlation values are symmetric about the min and max 
@@ -823,17 +874,9 @@ public class LocalShiftFinder {
       // specified min and max lags, but forces displacements to lie within 
       // the range [min,max].
       int i = lag-min;
-      float[][] ca = (lag>min)?c[(i  )%3]:c[(i+2)%3];
-      float[][] cb =           c[(i+1)%3];
-      float[][] cc = (lag<max)?c[(i+2)%3]:c[(i  )%3];
-
-      // Except for last lag, compute correlation for next lag in array cc.
-      if (lag<max) {
-        lag1 = (dim==1)?lag+1:0;
-        lag2 = (dim==2)?lag+1:0;
-        lcf.correlate(lag1,lag2,cc);
-        lcf.normalize(lag1,lag2,cc);
-      }
+      float[][] ca = (lag>min)?c[(i-1)%nr]:c[(i+1)%nr];
+      float[][] cb =           c[(i  )%nr];
+      float[][] cc = (lag<max)?c[(i+1)%nr]:ca;
 
       // For each sample, check for a local max correlation value. For each 
       // local max, update the correlation maximum value and displacement
@@ -872,24 +915,30 @@ public class LocalShiftFinder {
     // Default shifts are zero.
     zero(u);
 
-    // Arrays to contain cross-correlations for three consecutive lags.
-    float[][][][] c = new float[3][n3][n2][n1];
+    // Ring of arrays to contain cross-correlations for consecutive lags.
+    // Lags are correlated in parallel, in batches of nb lags, and the ring
+    // also contains correlations for the two lags that precede a batch.
+    int nb = lagBatch(1+max-min,(long)n1*n2*n3);
+    int nr = nb+2;
+    float[][][][] c = new float[nr][n3][n2][n1];
 
     // Array for current correlation maximum values.
     float[][][] cmax = new float[n3][n2][n1];
 
-    // Correlate for min lag.
-    LocalCorrelationFilter lcf = _lcfSimple;
-    lcf.setInputs(f,g);
-    int lag1 = (dim==1)?min:0;
-    int lag2 = (dim==2)?min:0;
-    int lag3 = (dim==3)?min:0;
-    lcf.correlate(lag1,lag2,lag3,c[1]);
-    lcf.normalize(lag1,lag2,lag3,c[1]);
+    _lcfSimple.setInputs(f,g);
+    int lmax = min-1; // the maximum lag correlated so far
 
     // For all lags in range [min,max], ...
     for (int lag=min; lag<=max; ++lag) {
 
+      // Except for last lag, ensure that correlation for next lag has been
+      // computed, by correlating the next batch of lags if necessary.
+      while (lmax<min(lag+1,max)) {
+        int lmin = lmax+1;
+        lmax = min(max,lmax+nb);
+        correlateLags(dim,min,lmin,lmax,c);
+      }
+
       // Arrays ca, cb, and cc will contain three cross-correlations. For 
       // first and last lags, buffers a and c are the same. In other words, 
       // assume that correlation values are symmetric about the min and max 
@@ -897,18 +946,9 @@ public class LocalShiftFinder {
       // specified min and max lags, but forces displacements to lie within 
       // the range [min,max].
       int i = lag-min;
-      float[][][] ca = (lag>min)?c[(i  )%3]:c[(i+2)%3];
-      float[][][] cb =           c[(i+1)%3];
-      float[][][] cc = (lag<max)?c[(i+2)%3]:c[(i  )%3];
-
-      // Except for last lag, compute correlation for next lag in array cc.
-      if (lag<max) {
-        lag1 = (dim==1)?lag+1:0;
-        lag2 = (dim==2)?lag+1:0;
-        lag3 = (dim==3)?lag+1:0;
-        lcf.correlate(lag1,lag2,lag3,cc);
-        lcf.normalize(lag1,lag2,lag3,cc);
-      }
+      float[][][] ca = (lag>min)?c[(i-1)%nr]:c[(i+1)%nr];
+      float[][][] cb =           c[(i  )%nr];
+      float[][][] cc = (lag<max)?c[(i+1)%nr]:ca;
 
       // For each sample, check for a local max correlation value. For each 
       // local max, update the correlation maximum value and displacement
@@ -45,12 +45,58 @@ import static edu.mines.jtk.util.ArrayMath.*;
  * Although slower than S, the cost of applying L to the input image x is 
  * likely to be insignificant relative to the cost of solving the sparse 
  * system of equations for the output image y.
+ * <p>
+ * The number of conjugate-gradient iterations required to solve the
+ * sparse system of equations increases with the scale of smoothing.
+ * Preconditioners may reduce the number of iterations, but require more
+ * computing time per iteration. For large scales, a multigrid
+ * preconditioner may reduce the number of iterations by much more than
+ * the simpler diagonal and block-Jacobi preconditioners.
  *
  * @author Dave Hale, Colorado School of Mines
  * @version 2009.12.31
  */
 public class LocalSmoothingFilter {
 
+  /**
+   * Preconditioners for conjugate-gradient iterations.
+   */
+  public enum Preconditioner {
+    /**
+     * No preconditioner.
+     */
+    NONE,
+    /**
+     * Inverse of the diagonal of I+G'DG.
+     */
+    DIAGONAL,
+    /**
+     * Block-Jacobi inverse of the tridiagonal parts of I+G'DG that couple
+     * samples in lines in the 1st dimension. Each block is solved exactly.
+     * This preconditioner is most effective when the tensors D couple
+     * samples most strongly in the 1st dimension.
+     */
+    BLOCK_JACOBI,
+    /**
+     * One multigrid V-cycle. Coarse grids have half the number of samples
+     * as finer grids in each dimension, with coarse tensors D averaged
+     * from those for finer grids. On each grid, one Jacobi iteration
+     * precedes and follows the coarse-grid correction. Each iteration
+     * with this preconditioner requires about three to four times the
+     * computing time required with the diagonal preconditioner, but for
+     * large scales of smoothing the number of iterations may be much
+     * smaller.
+     * <p>
+     * Because the gradient operator G is poor for wavenumbers near the
+     * Nyquist limit, features with those wavenumbers are also poorly
+     * represented on coarse grids. This preconditioner is therefore less
+     * effective for images, such as random noise, with much energy near
+     * the Nyquist limit. The additional smoothing filters S and L described
+     * above attenuate such features.
+     */
+    MULTIGRID
+  }
+
   /**
    * Constructs a local smoothing filter with default parameters.
    * The default parameter small is 0.01 and the default maximum 
@@ -94,12 +140,31 @@ public class LocalSmoothingFilter {
    * A preconditioner requires extra memory and more computing time
    * per iteration, but may result in fewer iterations.
    * The default is to not use a preconditioner.
-   * @param pc true, to use a preconditioner; false, otherwise.
+   * @param pc true, to use the diagonal preconditioner; false, otherwise.
    */
   public void setPreconditioner(boolean pc) {
+    setPreconditioner(pc?Preconditioner.DIAGONAL:Preconditioner.NONE);
+  }
+
+  /**
+   * Sets the preconditioner used in this local smoothing filter.
+   * The default is no preconditioner. Preconditioners are used when
+   * smoothing 2D and 3D arrays.
+   * @param pc the preconditioner.
+   */
+  public void setPreconditioner(Preconditioner pc) {
     _pc = pc;
   }
 
+  /**
+   * Gets the number of conjugate-gradient iterations performed in the
+   * most recent application of this filter to a 2D or 3D array.
+   * @return the number of iterations.
+   */
+  public int getIterationCount() {
+    return _niterLast;
+  }
+
   /**
    * Applies this filter for specified constant scale factor.
    * Local smoothing for 1D arrays is a special case that requires no tensors. 
@@ -221,9 +286,12 @@ public class LocalSmoothingFilter {
   {
     Operator2 a = new A2(_ldk,d,c,s);
     scopy(x,y);
-    if (_pc) {
-      Operator2 m = new M2(d,c,s,x);
-      solve(a,m,x,y);
+    if (_pc==Preconditioner.DIAGONAL) {
+      solve(a,new M2(d,c,s,x),x,y);
+    } else if (_pc==Preconditioner.BLOCK_JACOBI) {
+      solve(a,new B2(d,c,s,x),x,y);
+    } else if (_pc==Preconditioner.MULTIGRID) {
+      solve(a,new V2(_ldk,d,c,s,x),x,y);
     } else {
       solve(a,x,y);
     }
@@ -295,9 +363,12 @@ public class LocalSmoothingFilter {
   {
     Operator3 a = new A3(_ldk,d,c,s);
     scopy(x,y);
-    if (_pc) {
-      Operator3 m = new M3(d,c,s,x);
-      solve(a,m,x,y);
+    if (_pc==Preconditioner.DIAGONAL) {
+      solve(a,new M3(d,c,s,x),x,y);
+    } else if (_pc==Preconditioner.BLOCK_JACOBI) {
+      solve(a,new B3(d,c,s,x),x,y);
+    } else if (_pc==Preconditioner.MULTIGRID) {
+      solve(a,new V3(_ldk,d,c,s,x),x,y);
     } else {
       solve(a,x,y);
     }
@@ -355,7 +426,8 @@ public class LocalSmoothingFilter {
 
   private float _small; // stop iterations when residuals are small
   private int _niter; // number of iterations
-  private boolean _pc; // true, for preconditioned CG iterations
+  private Preconditioner _pc = Preconditioner.NONE; // for CG iterations
+  private int _niterLast; // number of iterations in most recent apply
   private LocalDiffusionKernel _ldk; // computes y += (I+G'DG)x
   private BandPassFilter _lpf; // lowpass filter, null until applied
   private double _kmax; // maximum wavenumber for lowpass filter
@@ -421,6 +493,162 @@ public class LocalSmoothingFilter {
     private float[][] _p;
   }
 
+  // Block-Jacobi preconditioner. Solves exactly the symmetric tridiagonal
+  // systems of equations that couple samples in lines in the 1st dimension.
+  private static class B2 implements Operator2 {
+    B2(Tensors2 d, float c, float[][] s, float[][] x)  {
+      int n1 = x[0].length;
+      int n2 = x.length;
+      _r = fillfloat(1.0f,n1,n2);
+      _w = new float[n2][n1];
+      c *= 0.25f;
+      float[] di = new float[3];
+      for (int i2=1,m2=0; i2<n2; ++i2,++m2) {
+        for (int i1=1,m1=0; i1<n1; ++i1,++m1) {
+          float si = s!=null?s[i2][i1]:1.0f;
+          float csi = c*si;
+          float d11 = csi;
+          float d12 = 0.0f;
+          float d22 = csi;
+          if (d!=null) {
+            d.getTensor(i1,i2,di);
+            d11 = di[0]*csi;
+            d12 = di[1]*csi;
+            d22 = di[2]*csi;
+          }
+          _r[i2][i1] += (d11+d12)+( d12+d22);
+          _r[m2][m1] += (d11+d12)+( d12+d22);
+          _r[i2][m1] += (d11-d12)+(-d12+d22);
+          _r[m2][i1] += (d11-d12)+(-d12+d22);
+          _w[i2][i1] += d22-d11;
+          _w[m2][i1] += d22-d11;
+        }
+      }
+      for (int i2=0; i2<n2; ++i2)
+        factorTridiagonal(_r[i2],_w[i2]);
+    }
+    public void apply(float[][] x, float[][] y) {
+      int n2 = x.length;
+      for (int i2=0; i2<n2; ++i2)
+        solveTridiagonal(_r[i2],_w[i2],x[i2],y[i2]);
+    }
+    private float[][] _r; // reciprocals of diagonal of D in LDL'
+    private float[][] _w; // sub-diagonal of L in LDL'
+  }
+
+  // Tensors for a coarse grid, averaged from those for a finer grid.
+  // Coarse sample j corresponds to fine sample 2j, so that each coarse
+  // cell j, between samples j-1 and j, contains the fine cells 2j-1 and
+  // 2j. (For an even number of fine samples, the last fine cell lies
+  // outside the coarse grid and is ignored.) Factors c and s for the fine
+  // grid are included in these tensors, which are also scaled by 1/4 to
+  // account for the coarser sampling.
+  private static class T2 implements Tensors2 {
+    T2(Tensors2 d, float c, float[][] s, int n1, int n2) {
+      int m1 = (n1+1)/2;
+      int m2 = (n2+1)/2;
+      _d11 = new float[m2][m1];
+      _d12 = new float[m2][m1];
+      _d22 = new float[m2][m1];
+      float[] di = new float[3];
+      for (int i2=1; i2<2*m2-1; ++i2) {
+        int j2 = (i2+1)/2;
+        for (int i1=1; i1<2*m1-1; ++i1) {
+          int j1 = (i1+1)/2;
+          float csi = s!=null?c*s[i2][i1]:c;
+          float d11 = 1.0f;
+          float d12 = 0.0f;
+          float d22 = 1.0f;
+          if (d!=null) {
+            d.getTensor(i1,i2,di);
+            d11 = di[0];
+            d12 = di[1];
+            d22 = di[2];
+          }
+          _d11[j2][j1] += d11*csi;
+          _d12[j2][j1] += d12*csi;
+          _d22[j2][j1] += d22*csi;
+        }
+      }
+      mul(0.0625f,_d11,_d11);
+      mul(0.0625f,_d12,_d12);
+      mul(0.0625f,_d22,_d22);
+    }
+    public void getTensor(int i1, int i2, float[] d) {
+      d[0] = _d11[i2][i1];
+      d[1] = _d12[i2][i1];
+      d[2] = _d22[i2][i1];
+    }
+    private float[][] _d11,_d12,_d22;
+  }
+
+  // Multigrid preconditioner, one symmetric V-cycle. On each grid, one
+  // Jacobi iteration precedes and follows the coarse-grid correction.
+  // On the coarsest grid, a few Jacobi iterations replace that correction.
+  private static class V2 implements Operator2 {
+    V2(LocalDiffusionKernel ldk,
+       Tensors2 d, float c, float[][] s, float[][] x)
+    {
+      int n1 = x[0].length;
+      int n2 = x.length;
+      int nlevel = 1;
+      for (int m1=n1,m2=n2; m1>=NCOARSEN && m2>=NCOARSEN; ++nlevel) {
+        m1 = (m1+1)/2;
+        m2 = (m2+1)/2;
+      }
+      _a = new Operator2[nlevel];
+      _p = new float[nlevel][][];
+      _r = new float[nlevel][][];
+      _b = new float[nlevel][][];
+      _x = new float[nlevel][][];
+      _t = new float[nlevel][][];
+      for (int l=0; l<nlevel; ++l) {
+        _a[l] = new A2(ldk,d,c,s);
+        _p[l] = jacobiWeights(d,c,s,n1,n2);
+        _r[l] = new float[n2][n1];
+        if (l>0) {
+          _b[l] = new float[n2][n1];
+          _x[l] = new float[n2][n1];
+        }
+        if (l<nlevel-1) {
+          d = new T2(d,c,s,n1,n2);
+          c = 1.0f;
+          s = null;
+          n2 = (n2+1)/2;
+          _t[l] = new float[n2][n1];
+          n1 = (n1+1)/2;
+        }
+      }
+    }
+    public void apply(float[][] x, float[][] y) {
+      vcycle(0,x,y);
+    }
+    private Operator2[] _a; // operators I+G'DG
+    private float[][][] _p; // weights for Jacobi iterations
+    private float[][][] _r; // residuals
+    private float[][][] _b,_x; // right-hand sides and solutions
+    private float[][][] _t; // work arrays for restriction and prolongation
+    private void vcycle(int l, float[][] b, float[][] x) {
+      Operator2 a = _a[l];
+      float[][] p = _p[l];
+      float[][] r = _r[l];
+      sxy(p,b,x);
+      if (l<_a.length-1) {
+        a.apply(x,r); sxpay(-1.0f,b,r); // r = b-Ax
+        restrict(_t[l],r,_b[l+1]);
+        vcycle(l+1,_b[l+1],_x[l+1]);
+        prolong(_t[l],_x[l+1],x);
+        a.apply(x,r); sxpay(-1.0f,b,r);
+        sxy(p,r,r); saxpy(1.0f,r,x);
+      } else {
+        for (int isweep=1; isweep<NSWEEP; ++isweep) {
+          a.apply(x,r); sxpay(-1.0f,b,r);
+          sxy(p,r,r); saxpy(1.0f,r,x);
+        }
+      }
+    }
+  }
+
   private static class A3 implements Operator3 {
     A3(LocalDiffusionKernel ldk, Tensors3 d, float c, float[][][] s) {
       _ldk = ldk;
@@ -485,6 +713,403 @@ public class LocalSmoothingFilter {
     private float[][][] _p;
   }
 
+  private static class B3 implements Operator3 {
+    B3(Tensors3 d, float c, float[][][] s, float[][][] x)  {
+      int n1 = x[0][0].length;
+      int n2 = x[0].length;
+      int n3 = x.length;
+      _r = fillfloat(1.0f,n1,n2,n3);
+      _w = new float[n3][n2][n1];
+      c *= 0.0625f;
+      float[] di = new float[6];
+      for (int i3=1,m3=0; i3<n3; ++i3,++m3) {
+        for (int i2=1,m2=0; i2<n2; ++i2,++m2) {
+          for (int i1=1,m1=0; i1<n1; ++i1,++m1) {
+            float si = s!=null?s[i3][i2][i1]:1.0f;
+            float csi = c*si;
+            float d11 = csi;
+            float d12 = 0.0f;
+            float d13 = 0.0f;
+            float d22 = csi;
+            float d23 = 0.0f;
+            float d33 = csi;
+            if (d!=null) {
+              d.getTensor(i1,i2,i3,di);
+              d11 = di[0]*csi;
+              d12 = di[1]*csi;
+              d13 = di[2]*csi;
+              d22 = di[3]*csi;
+              d23 = di[4]*csi;
+              d33 = di[5]*csi;
+            }
+            _r[i3][i2][i1] += ( d11+d12+d13)+( d12+d22+d23)+( d13+d23+d33);
+            _r[m3][m2][m1] += ( d11+d12+d13)+( d12+d22+d23)+( d13+d23+d33);
+            _r[i3][m2][i1] += ( d11-d12+d13)+(-d12+d22-d23)+( d13-d23+d33);
+            _r[m3][i2][m1] += ( d11-d12+d13)+(-d12+d22-d23)+( d13-d23+d33);
+            _r[m3][i2][i1] += ( d11+d12-d13)+( d12+d22-d23)+(-d13-d23+d33);
+            _r[i3][m2][m1] += ( d11+d12-d13)+( d12+d22-d23)+(-d13-d23+d33);
+            _r[m3][m2][i1] += ( d11-d12-d13)+(-d12+d22+d23)+(-d13+d23+d33);
+            _r[i3][i2][m1] += ( d11-d12-d13)+(-d12+d22+d23)+(-d13+d23+d33);
+            float e = -d11+d22+d33;
+            _w[i3][i2][i1] += e+2.0f*d23;
+            _w[m3][m2][i1] += e+2.0f*d23;
+            _w[m3][i2][i1] += e-2.0f*d23;
+            _w[i3][m2][i1] += e-2.0f*d23;
+          }
+        }
+      }
+      for (int i3=0; i3<n3; ++i3)
+        for (int i2=0; i2<n2; ++i2)
+          factorTridiagonal(_r[i3][i2],_w[i3][i2]);
+    }
+    public void apply(final float[][][] x, final float[][][] y) {
+      final int n2 = x[0].length;
+      final int n3 = x.length;
+      Parallel.loop(n3,new Parallel.LoopInt() {
+        public void compute(int i3) {
+          for (int i2=0; i2<n2; ++i2)
+            solveTridiagonal(_r[i3][i2],_w[i3][i2],x[i3][i2],y[i3][i2]);
+        }
+      });
+    }
+    private float[][][] _r;
+    private float[][][] _w;
+  }
+
+  private static class T3 implements Tensors3 {
+    T3(Tensors3 d, float c, float[][][] s, int n1, int n2, int n3) {
+      int m1 = (n1+1)/2;
+      int m2 = (n2+1)/2;
+      int m3 = (n3+1)/2;
+      _d = new float[6][m3][m2][m1];
+      float[] di = {1.0f,0.0f,0.0f,1.0f,0.0f,1.0f};
+      for (int i3=1; i3<2*m3-1; ++i3) {
+        int j3 = (i3+1)/2;
+        for (int i2=1; i2<2*m2-1; ++i2) {
+          int j2 = (i2+1)/2;
+          for (int i1=1; i1<2*m1-1; ++i1) {
+            int j1 = (i1+1)/2;
+            float csi = s!=null?c*s[i3][i2][i1]:c;
+            if (d!=null)
+              d.getTensor(i1,i2,i3,di);
+            for (int k=0; k<6; ++k)
+              _d[k][j3][j2][j1] += di[k]*csi;
+          }
+        }
+      }
+      for (int k=0; k<6; ++k)
+        mul(0.03125f,_d[k],_d[k]);
+    }
+    public void getTensor(int i1, int i2, int i3, float[] d) {
+      for (int k=0; k<6; ++k)
+        d[k] = _d[k][i3][i2][i1];
+    }
+    private float[][][][] _d; // d11, d12, d13, d22, d23, d33
+  }
+
+  private static class V3 implements Operator3 {
+    V3(LocalDiffusionKernel ldk,
+       Tensors3 d, float c, float[][][] s, float[][][] x)
+    {
+      int n1 = x[0][0].length;
+      int n2 = x[0].length;
+      int n3 = x.length;
+      int nlevel = 1;
+      for (int m1=n1,m2=n2,m3=n3;
+           m1>=NCOARSEN && m2>=NCOARSEN && m3>=NCOARSEN; ++nlevel) {
+        m1 = (m1+1)/2;
+        m2 = (m2+1)/2;
+        m3 = (m3+1)/2;
+      }
+      _a = new Operator3[nlevel];
+      _p = new float[nlevel][][][];
+      _r = new float[nlevel][][][];
+      _b = new float[nlevel][][][];
+      _x = new float[nlevel][][][];
+      _t = new float[nlevel][][][];
+      _u = new float[nlevel][][][];
+      for (int l=0; l<nlevel; ++l) {
+        _a[l] = new A3(ldk,d,c,s);
+        _p[l] = jacobiWeights(d,c,s,n1,n2,n3);
+        _r[l] = new float[n3][n2][n1];
+        if (l>0) {
+          _b[l] = new float[n3][n2][n1];
+          _x[l] = new float[n3][n2][n1];
+        }
+        if (l<nlevel-1) {
+          d = new T3(d,c,s,n1,n2,n3);
+          c = 1.0f;
+          s = null;
+          n3 = (n3+1)/2;
+          _u[l] = new float[n3][n2][n1];
+          n2 = (n2+1)/2;
+          _t[l] = new float[n3][n2][n1];
+          n1 = (n1+1)/2;
+        }
+      }
+    }
+    public void apply(float[][][] x, float[][][] y) {
+      vcycle(0,x,y);
+    }
+    private Operator3[] _a;
+    private float[][][][] _p;
+    private float[][][][] _r;
+    private float[][][][] _b,_x;
+    private float[][][][] _t,_u;
+    private void vcycle(int l, float[][][] b, float[][][] x) {
+      Operator3 a = _a[l];
+      float[][][] p = _p[l];
+      float[][][] r = _r[l];
+      sxy(p,b,x);
+      if (l<_a.length-1) {
+        a.apply(x,r); sxpay(-1.0f,b,r); // r = b-Ax
+        restrict(_t[l],_u[l],r,_b[l+1]);
+        vcycle(l+1,_b[l+1],_x[l+1]);
+        prolong(_t[l],_u[l],_x[l+1],x);
+        a.apply(x,r); sxpay(-1.0f,b,r);
+        sxy(p,r,r); saxpy(1.0f,r,x);
+      } else {
+        for (int isweep=1; isweep<NSWEEP; ++isweep) {
+          a.apply(x,r); sxpay(-1.0f,b,r);
+          sxy(p,r,r); saxpy(1.0f,r,x);
+        }
+      }
+    }
+  }
+
+  // Multigrid parameters: grids are coarsened only while they have at least
+  // NCOARSEN samples in every dimension, and the number of Jacobi
+  // iterations on the coarsest grid is NSWEEP.
+  private static final int NCOARSEN = 16;
+  private static final int NSWEEP = 8;
+
+  // Factors a symmetric tridiagonal matrix A = LDL', for diagonal r and
+  // sub-diagonal w, where w[i] couples samples i-1 and i. Replaces r with
+  // reciprocals of the diagonal of D and w with the sub-diagonal of L.
+  private static void factorTridiagonal(float[] r, float[] w) {
+    int n = r.length;
+    r[0] = 1.0f/r[0];
+    for (int i=1; i<n; ++i) {
+      float ei = w[i];
+      w[i] = ei*r[i-1];
+      r[i] = 1.0f/(r[i]-w[i]*ei);
+    }
+  }
+
+  // Solves LDL'y = x, for factors computed by factorTridiagonal.
+  private static void solveTridiagonal(
+    float[] r, float[] w, float[] x, float[] y)
+  {
+    int n = r.length;
+    float yi = y[0] = x[0];
+    for (int i=1; i<n; ++i)
+      y[i] = yi = x[i]-w[i]*yi;
+    y[n-1] = yi = yi*r[n-1];
+    for (int i=n-2; i>=0; --i)
+      y[i] = yi = y[i]*r[i]-w[i+1]*yi;
+  }
+
+  // Weights for Jacobi iterations in multigrid. Each weight is the
+  // reciprocal of a sum of absolute values of coefficients in one row
+  // of I+G'DG, accumulated cell by cell. Because the diagonal matrix of
+  // these sums minus I+G'DG is positive-semidefinite, Jacobi iterations
+  // with these weights converge, without a damping factor.
+  private static float[][] jacobiWeights(
+    Tensors2 d, float c, float[][] s, int n1, int n2)
+  {
+    float[][] p = fillfloat(1.0f,n1,n2);
+    c *= 0.5f;
+    float[] di = new float[3];
+    for (int i2=1,m2=0; i2<n2; ++i2,++m2) {
+      for (int i1=1,m1=0; i1<n1; ++i1,++m1) {
+        float si = s!=null?s[i2][i1]:1.0f;
+        float csi = c*si;
+        float d11 = csi;
+        float d12 = 0.0f;
+        float d22 = csi;
+        if (d!=null) {
+          d.getTensor(i1,i2,di);
+          d11 = di[0]*csi;
+          d12 = di[1]*csi;
+          d22 = di[2]*csi;
+        }
+        float dpp = abs(d11+d12+d12+d22);
+        float dmp = abs(d11-d12-d12+d22);
+        float e = abs(d22-d11);
+        p[i2][i1] += dpp+e;
+        p[m2][m1] += dpp+e;
+        p[i2][m1] += dmp+e;
+        p[m2][i1] += dmp+e;
+      }
+    }
+    div(1.0f,p,p);
+    return p;
+  }
+  private static float[][][] jacobiWeights(
+    Tensors3 d, float c, float[][][] s, int n1, int n2, int n3)
+  {
+    float[][][] p = fillfloat(1.0f,n1,n2,n3);
+    c *= 0.125f;
+    float[] di = new float[6];
+    float[] q = new float[4];
+    for (int i3=1,m3=0; i3<n3; ++i3,++m3) {
+      for (int i2=1,m2=0; i2<n2; ++i2,++m2) {
+        for (int i1=1,m1=0; i1<n1; ++i1,++m1) {
+          float si = s!=null?s[i3][i2][i1]:1.0f;
+          float csi = c*si;
+          float d11 = csi;
+          float d12 = 0.0f;
+          float d13 = 0.0f;
+          float d22 = csi;
+          float d23 = 0.0f;
+          float d33 = csi;
+          if (d!=null) {
+            d.getTensor(i1,i2,i3,di);
+            d11 = di[0]*csi;
+            d12 = di[1]*csi;
+            d13 = di[2]*csi;
+            d22 = di[3]*csi;
+            d23 = di[4]*csi;
+            d33 = di[5]*csi;
+          }
+
+          // Corners with signs (+1,s2,s3) in the gradient, and opposite
+          // corners with signs (-1,-s2,-s3), have the same sums.
+          for (int ja=0; ja<4; ++ja) {
+            float sa2 = ((ja&1)==0)?1.0f:-1.0f;
+            float sa3 = ((ja&2)==0)?1.0f:-1.0f;
+            float v1 = d11+sa2*d12+sa3*d13;
+            float v2 = d12+sa2*d22+sa3*d23;
+            float v3 = d13+sa2*d23+sa3*d33;
+            float qa = 0.0f;
+            for (int jb=0; jb<4; ++jb) {
+              float sb2 = ((jb&1)==0)?1.0f:-1.0f;
+              float sb3 = ((jb&2)==0)?1.0f:-1.0f;
+              qa += abs(v1+sb2*v2+sb3*v3);
+            }
+            q[ja] = qa;
+          }
+          p[i3][i2][i1] += q[0];
+          p[m3][m2][m1] += q[0];
+          p[i3][m2][i1] += q[1];
+          p[m3][i2][m1] += q[1];
+          p[m3][i2][i1] += q[2];
+          p[i3][m2][m1] += q[2];
+          p[m3][m2][i1] += q[3];
+          p[i3][i2][m1] += q[3];
+        }
+      }
+    }
+    div(1.0f,p,p);
+    return p;
+  }
+
+  // Prolongation x = x+Py and restriction y = Rx, for fine arrays x with n
+  // samples and coarse arrays y with (n+1)/2 samples in each dimension.
+  // Coarse sample j corresponds to fine sample 2j, and P interpolates
+  // linearly between coarse samples. In each dimension, R = P'/2. Work
+  // arrays t and u have fine dimensions 1 and 1-2, respectively.
+  private static void prolong(float[] y, float[] x) {
+    int m = y.length;
+    int n = x.length;
+    for (int i=0,j=0; i<n; i+=2,++j) {
+      x[i] += y[j];
+      if (i+1<n)
+        x[i+1] += (j+1<m)?0.5f*(y[j]+y[j+1]):y[j];
+    }
+  }
+  private static void prolong(float[][] t, float[][] y, float[][] x) {
+    int m2 = y.length;
+    int n2 = x.length;
+    for (int j2=0; j2<m2; ++j2) {
+      szero(t[j2]);
+      prolong(y[j2],t[j2]);
+    }
+    for (int i2=0,j2=0; i2<n2; i2+=2,++j2) {
+      saxpy(1.0f,t[j2],x[i2]);
+      if (i2+1<n2) {
+        if (j2+1<m2) {
+          saxpy(0.5f,t[j2],x[i2+1]);
+          saxpy(0.5f,t[j2+1],x[i2+1]);
+        } else {
+          saxpy(1.0f,t[j2],x[i2+1]);
+        }
+      }
+    }
+  }
+  private static void prolong(
+    final float[][][] t, final float[][][] u,
+    final float[][][] y, final float[][][] x)
+  {
+    final int m3 = y.length;
+    final int n3 = x.length;
+    Parallel.loop(m3,new Parallel.LoopInt() {
+      public void compute(int j3) {
+        szero(u[j3]);
+        prolong(t[j3],y[j3],u[j3]);
+      }
+    });
+    Parallel.loop(n3,new Parallel.LoopInt() {
+      public void compute(int i3) {
+        int j3 = i3/2;
+        if (i3%2==0) {
+          saxpy(1.0f,u[j3],x[i3]);
+        } else if (j3+1<m3) {
+          saxpy(0.5f,u[j3],x[i3]);
+          saxpy(0.5f,u[j3+1],x[i3]);
+        } else {
+          saxpy(1.0f,u[j3],x[i3]);
+        }
+      }
+    });
+  }
+  private static void restrict(float[] x, float[] y) {
+    int m = y.length;
+    int n = x.length;
+    for (int j=0,i=0; j<m; ++j,i+=2) {
+      float yj = 0.5f*x[i];
+      if (i>0)
+        yj += 0.25f*x[i-1];
+      if (i+1<n)
+        yj += ((j+1<m)?0.25f:0.5f)*x[i+1];
+      y[j] = yj;
+    }
+  }
+  private static void restrict(float[][] t, float[][] x, float[][] y) {
+    int m2 = y.length;
+    int n2 = x.length;
+    for (int j2=0,i2=0; j2<m2; ++j2,i2+=2) {
+      float[] t2 = t[j2];
+      szero(t2);
+      saxpy(0.5f,x[i2],t2);
+      if (i2>0)
+        saxpy(0.25f,x[i2-1],t2);
+      if (i2+1<n2)
+        saxpy((j2+1<m2)?0.25f:0.5f,x[i2+1],t2);
+      restrict(t2,y[j2]);
+    }
+  }
+  private static void restrict(
+    final float[][][] t, final float[][][] u,
+    final float[][][] x, final float[][][] y)
+  {
+    final int m3 = y.length;
+    final int n3 = x.length;
+    Parallel.loop(m3,new Parallel.LoopInt() {
+      public void compute(int j3) {
+        int i3 = 2*j3;
+        float[][] u3 = u[j3];
+        szero(u3);
+        saxpy(0.5f,x[i3],u3);
+        if (i3>0)
+          saxpy(0.25f,x[i3-1],u3);
+        if (i3+1<n3)
+          saxpy((j3+1<m3)?0.25f:0.5f,x[i3+1],u3);
+        restrict(t[j3],u3,y[j3]);
+      }
+    });
+  }
+
   /*
    * Computes y = lowpass(x). Arrays x and y may be the same array.
    */
@@ -600,37 +1225,36 @@ public class LocalSmoothingFilter {
 
   // Conjugate-gradient solution of Ax = b, with no preconditioner.
   // Uses the initial values of x; does not assume they are zero.
+  // Dot products are accumulated in double precision, and updates of x
+  // and r are fused with the computation of r'r, in a single pass.
   private void solve(Operator2 a, float[][] b, float[][] x) {
     int n1 = b[0].length;
     int n2 = b.length;
     float[][] d = new float[n2][n1];
     float[][] q = new float[n2][n1];
     float[][] r = new float[n2][n1];
-    scopy(b,r);
     a.apply(x,q);
-    saxpy(-1.0f,q,r); // r = b-Ax
+    double delta = ssub(b,q,r); // r = b-Ax, delta = r'r
     scopy(r,d); // d = r
-    float delta = sdot(r,r); // delta = r'r
-    float bnorm = sqrt(sdot(b,b));
-    float rnorm = sqrt(delta);
-    float rnormBegin = rnorm;
-    float rnormSmall = bnorm*_small;
+    double bnorm = sqrt(sdot(b,b));
+    double rnorm = sqrt(delta);
+    double rnormBegin = rnorm;
+    double rnormSmall = bnorm*_small;
     int iter;
     log.fine("solve: bnorm="+bnorm+" rnorm="+rnorm);
     for (iter=0; iter<_niter && rnorm>rnormSmall; ++iter) {
       log.finer("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
       a.apply(d,q); // q = Ad
-      float dq = sdot(d,q); // d'q = d'Ad
-      float alpha = delta/dq; // alpha = r'r/d'Ad
-      saxpy( alpha,d,x); // x = x+alpha*d
-      saxpy(-alpha,q,r); // r = r-alpha*q
-      float deltaOld = delta;
-      delta = sdot(r,r); // delta = r'r
-      float beta = delta/deltaOld;
+      double dq = sdot(d,q); // d'q = d'Ad
+      float alpha = (float)(delta/dq); // alpha = r'r/d'Ad
+      double deltaOld = delta;
+      delta = supdate(alpha,d,q,x,r); // x += alpha*d, r -= alpha*q, r'r
+      float beta = (float)(delta/deltaOld);
       sxpay(beta,r,d); // d = r+beta*d
       rnorm = sqrt(delta);
     }
     log.fine("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
+    _niterLast = iter;
   }
   private void solve(Operator3 a, float[][][] b, float[][][] x) {
     int n1 = b[0][0].length;
@@ -639,33 +1263,32 @@ public class LocalSmoothingFilter {
     float[][][] d = new float[n3][n2][n1];
     float[][][] q = new float[n3][n2][n1];
     float[][][] r = new float[n3][n2][n1];
-    scopy(b,r); a.apply(x,q); saxpy(-1.0f,q,r); // r = b-Ax
+    a.apply(x,q);
+    double delta = ssub(b,q,r); // r = b-Ax, delta = r'r
     scopy(r,d);
-    float delta = sdot(r,r);
-    float bnorm = sqrt(sdot(b,b));
-    float rnorm = sqrt(delta);
-    float rnormBegin = rnorm;
-    float rnormSmall = bnorm*_small;
+    double bnorm = sqrt(sdot(b,b));
+    double rnorm = sqrt(delta);
+    double rnormBegin = rnorm;
+    double rnormSmall = bnorm*_small;
     int iter;
     log.fine("solve: bnorm="+bnorm+" rnorm="+rnorm);
     for (iter=0; iter<_niter && rnorm>rnormSmall; ++iter) {
       log.finer("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
       a.apply(d,q);
-      float dq = sdot(d,q);
-      float alpha = delta/dq;
-      saxpy( alpha,d,x);
+      double dq = sdot(d,q);
+      float alpha = (float)(delta/dq);
+      double deltaOld = delta;
       if (iter%100<99) {
-        saxpy(-alpha,q,r);
+        delta = supdate(alpha,d,q,x,r);
       } else {
-        scopy(b,r); a.apply(x,q); saxpy(-1.0f,q,r);
+        saxpy(alpha,d,x); a.apply(x,q); delta = ssub(b,q,r);
       }
-      float deltaOld = delta;
-      delta = sdot(r,r);
-      float beta = delta/deltaOld;
+      float beta = (float)(delta/deltaOld);
       sxpay(beta,r,d);
       rnorm = sqrt(delta);
     }
     log.fine("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
+    _niterLast = iter;
   }
 
   // Conjugate-gradient solution of Ax = b, with preconditioner M.
@@ -677,32 +1300,31 @@ public class LocalSmoothingFilter {
     float[][] q = new float[n2][n1];
     float[][] r = new float[n2][n1];
     float[][] s = new float[n2][n1];
-    scopy(b,r);
     a.apply(x,q);
-    saxpy(-1.0f,q,r); // r = b-Ax
-    float bnorm = sqrt(sdot(b,b));
-    float rnorm = sqrt(sdot(r,r));
-    float rnormBegin = rnorm;
-    float rnormSmall = bnorm*_small;
+    double rr = ssub(b,q,r); // r = b-Ax, rr = r'r
+    double bnorm = sqrt(sdot(b,b));
+    double rnorm = sqrt(rr);
+    double rnormBegin = rnorm;
+    double rnormSmall = bnorm*_small;
     m.apply(r,s); // s = Mr
     scopy(s,d); // d = s
-    float delta = sdot(r,s); // r's = r'Mr
+    double delta = sdot(r,s); // r's = r'Mr
     int iter;
     log.fine("msolve: bnorm="+bnorm+" rnorm="+rnorm);
     for (iter=0; iter<_niter && rnorm>rnormSmall; ++iter) {
       log.finer("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
       a.apply(d,q); // q = Ad
-      float alpha = delta/sdot(d,q); // alpha = r'Mr/d'Ad
-      saxpy( alpha,d,x); // x = x+alpha*d
-      saxpy(-alpha,q,r); // r = r-alpha*q
+      float alpha = (float)(delta/sdot(d,q)); // alpha = r'Mr/d'Ad
+      rr = supdate(alpha,d,q,x,r); // x += alpha*d, r -= alpha*q, r'r
       m.apply(r,s); // s = Mr
-      float deltaOld = delta;
+      double deltaOld = delta;
       delta = sdot(r,s); // delta = r's = r'Mr
-      float beta = delta/deltaOld;
+      float beta = (float)(delta/deltaOld);
       sxpay(beta,s,d); // d = s+beta*d
-      rnorm  = sqrt(sdot(r,r));
+      rnorm = sqrt(rr);
     }
     log.fine("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
+    _niterLast = iter;
   }
   private void solve(Operator3 a, Operator3 m, float[][][] b, float[][][] x) {
     int n1 = b[0][0].length;
@@ -712,34 +1334,35 @@ public class LocalSmoothingFilter {
     float[][][] q = new float[n3][n2][n1];
     float[][][] r = new float[n3][n2][n1];
     float[][][] s = new float[n3][n2][n1];
-    scopy(b,r); a.apply(x,q); saxpy(-1.0f,q,r); // r = b-Ax
-    float bnorm = sqrt(sdot(b,b));
-    float rnorm = sqrt(sdot(r,r));
-    float rnormBegin = rnorm;
-    float rnormSmall = bnorm*_small;
+    a.apply(x,q);
+    double rr = ssub(b,q,r); // r = b-Ax, rr = r'r
+    double bnorm = sqrt(sdot(b,b));
+    double rnorm = sqrt(rr);
+    double rnormBegin = rnorm;
+    double rnormSmall = bnorm*_small;
     m.apply(r,s); // s = Mr
     scopy(s,d); // d = s
-    float delta = sdot(r,s); // r's = r'Mr
+    double delta = sdot(r,s); // r's = r'Mr
     int iter;
     log.fine("msolve: bnorm="+bnorm+" rnorm="+rnorm);
     for (iter=0; iter<_niter && rnorm>rnormSmall; ++iter) {
       log.finer("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
       a.apply(d,q); // q = Ad
-      float alpha = delta/sdot(d,q); // alpha = r'Mr/d'Ad
-      saxpy( alpha,d,x); // x = x+alpha*d
+      float alpha = (float)(delta/sdot(d,q)); // alpha = r'Mr/d'Ad
       if (iter%100<99) {
-        saxpy(-alpha,q,r); // r = r-alpha*q
+        rr = supdate(alpha,d,q,x,r); // x += alpha*d, r -= alpha*q, r'r
       } else {
-        scopy(b,r); a.apply(x,q); saxpy(-1.0f,q,r); // r = b-Ax
+        saxpy(alpha,d,x); a.apply(x,q); rr = ssub(b,q,r); // r = b-Ax
       }
       m.apply(r,s); // s = Mr
-      float deltaOld = delta;
+      double deltaOld = delta;
       delta = sdot(r,s); // delta = r's = r'Mr
-      float beta = delta/deltaOld;
+      float beta = (float)(delta/deltaOld);
       sxpay(beta,s,d); // d = s+beta*d
-      rnorm  = sqrt(sdot(r,r));
+      rnorm = sqrt(rr);
     }
     log.fine("  iter="+iter+" rnorm="+rnorm+" ratio="+rnorm/rnormBegin);
+    _niterLast = iter;
   }
 
   // Zeros array x.
@@ -774,11 +1397,11 @@ public class LocalSmoothingFilter {
     });
   }
 
-  // Returns the dot product x'y.
-  private static float sdot(float[][] x, float[][] y) {
+  // Returns the dot product x'y, accumulated in double precision.
+  private static double sdot(float[][] x, float[][] y) {
     int n1 = x[0].length;
     int n2 = x.length;
-    float d = 0.0f;
+    double d = 0.0;
     for (int i2=0; i2<n2; ++i2) {
       float[] x2 = x[i2], y2 = y[i2];
       for (int i1=0; i1<n1; ++i1) {
@@ -787,21 +1410,87 @@ public class LocalSmoothingFilter {
     }
     return d;
   }
-  private static float sdot(final float[][][] x, final float[][][] y) {
+  private static double sdot(final float[][][] x, final float[][][] y) {
     final int n3 = x.length;
-    final float[] d3 = new float[n3];
-    Parallel.loop(n3,new Parallel.LoopInt() {
-      public void compute(int i3) {
-        d3[i3] = sdot(x[i3],y[i3]);
+    return Parallel.reduce(n3,new Parallel.ReduceInt<Double>() {
+      public Double compute(int i3) {
+        return sdot(x[i3],y[i3]);
+      }
+      public Double combine(Double d1, Double d2) {
+        return d1+d2;
       }
     });
-    float d = 0.0f;
-    for (int i3=0; i3<n3; ++i3)
-      d += d3[i3];
+  }
+
+  // Computes r = b-q and returns r'r.
+  private static double ssub(float[][] b, float[][] q, float[][] r) {
+    int n1 = b[0].length;
+    int n2 = b.length;
+    double d = 0.0;
+    for (int i2=0; i2<n2; ++i2) {
+      float[] b2 = b[i2], q2 = q[i2], r2 = r[i2];
+      for (int i1=0; i1<n1; ++i1) {
+        float ri = b2[i1]-q2[i1];
+        r2[i1] = ri;
+        d += ri*ri;
+      }
+    }
     return d;
   }
+  private static double ssub(
+    final float[][][] b, final float[][][] q, final float[][][] r)
+  {
+    final int n3 = b.length;
+    return Parallel.reduce(n3,new Parallel.ReduceInt<Double>() {
+      public Double compute(int i3) {
+        return ssub(b[i3],q[i3],r[i3]);
+      }
+      public Double combine(Double d1, Double d2) {
+        return d1+d2;
+      }
+    });
+  }
+
+  // Computes x = x + a*d and r = r - a*q, and returns r'r.
+  private static double supdate(
+    float a, float[][] d, float[][] q, float[][] x, float[][] r)
+  {
+    int n1 = d[0].length;
+    int n2 = d.length;
+    double s = 0.0;
+    for (int i2=0; i2<n2; ++i2) {
+      float[] d2 = d[i2], q2 = q[i2], x2 = x[i2], r2 = r[i2];
+      for (int i1=0; i1<n1; ++i1) {
+        x2[i1] += a*d2[i1];
+        float ri = r2[i1]-a*q2[i1];
+        r2[i1] = ri;
+        s += ri*ri;
+      }
+    }
+    return s;
+  }
+  private static double supdate(
+    final float a, final float[][][] d, final float[][][] q,
+    final float[][][] x, final float[][][] r)
+  {
+    final int n3 = d.length;
+    return Parallel.reduce(n3,new Parallel.ReduceInt<Double>() {
+      public Double compute(int i3) {
+        return supdate(a,d[i3],q[i3],x[i3],r[i3]);
+      }
+      public Double combine(Double s1, Double s2) {
+        return s1+s2;
+      }
+    });
+  }
 
   // Computes y = y + a*x.
+  private static void saxpy(float a, float[] x, float[] y) {
+    int n1 = x.length;
+    for (int i1=0; i1<n1; ++i1) {
+      y[i1] += a*x[i1];
+    }
+  }
   private static void saxpy(float a, float[][] x, float[][] y) {
     int n1 = x[0].length;
     int n2 = x.length;
@@ -165,6 +165,17 @@ public class MinimumPhaseFilter {
     return copy(_a);
   }
 
+  /**
+   * Sets the parallel mode for inverse and inverse-transpose filters.
+   * In parallel mode, these recursive filters of 2-D and 3-D arrays are
+   * applied to tiles of samples in parallel wavefronts. Results are the
+   * same as those computed serially. The default is serial.
+   * @param parallel true, for parallel; false, for serial.
+   */
+  public void setParallel(boolean parallel) {
+    _parallel = parallel;
+  }
+
   /**
    * Wilson-Burg factorization for the specified 1-D auto-correlation.
    * Modifies this filter using the iterative Wilson-Burg algorithm. If this 
@@ -969,6 +980,10 @@ public class MinimumPhaseFilter {
    * @param y output array.
    */
   public void applyInverse(float[][] x, float[][] y) {
+    if (_parallel) {
+      applyInverseParallel(x,y);
+      return;
+    }
     int n1 = y[0].length;
     int n2 = y.length;
     int i1lo = max(0,_max1);
@@ -1026,6 +1041,10 @@ public class MinimumPhaseFilter {
    * @param y output array.
    */
   public void applyInverse(float[][][] x, float[][][] y) {
+    if (_parallel) {
+      applyInverseParallel(x,y);
+      return;
+    }
     int n1 = y[0][0].length;
     int n2 = y[0].length;
     int n3 = y.length;
@@ -1217,6 +1236,10 @@ public class MinimumPhaseFilter {
    * @param y output array.
    */
   public void applyInverseTranspose(float[][] x, float[][] y) {
+    if (_parallel) {
+      applyInverseTransposeParallel(x,y);
+      return;
+    }
     int n1 = y[0].length;
     int n2 = y.length;
     int i1lo = max(0,-_min1);
@@ -1274,6 +1297,10 @@ public class MinimumPhaseFilter {
    * @param y output array.
    */
   public void applyInverseTranspose(float[][][] x, float[][][] y) {
+    if (_parallel) {
+      applyInverseTransposeParallel(x,y);
+      return;
+    }
     int n1 = y[0][0].length;
     int n2 = y[0].length;
     int n3 = y.length;
@@ -1441,6 +1468,7 @@ public class MinimumPhaseFilter {
   private float _a0,_a0i; // a[0] and 1/a[0]
   private float[][] _ai;
   private float[] _ai0,_ai0i;
+  private boolean _parallel; // true, for parallel wavefront recursions
 
   private static float[] impulse(int nlag) {
     float[] a = new float[nlag];
@@ -1529,4 +1557,115 @@ public class MinimumPhaseFilter {
       _ai0i[ii] = 1.0f/a[ii][0];
     }
   }
+
+  // Parallel recursions in wavefronts of tiles. For 2-D arrays, the units
+  // scheduled are samples; for 3-D arrays, units are lines of samples
+  // indexed by (i2,i3). Within each tile, samples are computed in the same
+  // order as in the serial recursions, with the same terms.
+
+  private void applyInverseParallel(final float[][] x, final float[][] y) {
+    final int n1 = y[0].length;
+    final int n2 = y.length;
+    final Wavefront wf = new Wavefront(n1,n2,_lag1,_lag2,
+      Wavefront.tileCount(n1,32),Wavefront.tileCount(n2,8));
+    wf.forward(new Wavefront.Tile() {
+      public void compute(int b, int r) {
+        for (int i2=wf.j2lo(r); i2<wf.j2hi(r); ++i2) {
+          for (int i1=wf.j1lo(b,i2); i1<wf.j1hi(b,i2); ++i1) {
+            float yi = x[i2][i1];
+            for (int j=1; j<_m; ++j) {
+              int k1 = i1-_lag1[j];
+              int k2 = i2-_lag2[j];
+              if (0<=k1 && k1<n1 && 0<=k2)
+                yi -= _a[j]*y[k2][k1];
+            }
+            y[i2][i1] = _a0i*yi;
+          }
+        }
+      }
+    });
+  }
+
+  private void applyInverseParallel(
+    final float[][][] x, final float[][][] y)
+  {
+    final int n1 = y[0][0].length;
+    final int n2 = y[0].length;
+    final int n3 = y.length;
+    final Wavefront wf = new Wavefront(n2,n3,_lag2,_lag3,
+      Wavefront.tileCount(n2,1),Wavefront.tileCount(n3,1));
+    wf.forward(new Wavefront.Tile() {
+      public void compute(int b, int r) {
+        for (int i3=wf.j2lo(r); i3<wf.j2hi(r); ++i3) {
+          for (int i2=wf.j1lo(b,i3); i2<wf.j1hi(b,i3); ++i2) {
+            for (int i1=0; i1<n1; ++i1) {
+              float yi = x[i3][i2][i1];
+              for (int j=1; j<_m; ++j) {
+                int k1 = i1-_lag1[j];
+                int k2 = i2-_lag2[j];
+                int k3 = i3-_lag3[j];
+                if (0<=k1 && k1<n1 && 0<=k2 && k2<n2 && 0<=k3)
+                  yi -= _a[j]*y[k3][k2][k1];
+              }
+              y[i3][i2][i1] = _a0i*yi;
+            }
+          }
+        }
+      }
+    });
+  }
+
+  private void applyInverseTransposeParallel(
+    final float[][] x, final float[][] y)
+  {
+    final int n1 = y[0].length;
+    final int n2 = y.length;
+    final Wavefront wf = new Wavefront(n1,n2,_lag1,_lag2,
+      Wavefront.tileCount(n1,32),Wavefront.tileCount(n2,8));
+    wf.reverse(new Wavefront.Tile() {
+      public void compute(int b, int r) {
+        for (int i2=wf.j2hi(r)-1; i2>=wf.j2lo(r); --i2) {
+          for (int i1=wf.j1hi(b,i2)-1; i1>=wf.j1lo(b,i2); --i1) {
+            float yi = x[i2][i1];
+            for (int j=1; j<_m; ++j) {
+              int k1 = i1+_lag1[j];
+              int k2 = i2+_lag2[j];
+              if (0<=k1 && k1<n1 && k2<n2)
+                yi -= _a[j]*y[k2][k1];
+            }
+            y[i2][i1] = _a0i*yi;
+          }
+        }
+      }
+    });
+  }
+
+  private void applyInverseTransposeParallel(
+    final float[][][] x, final float[][][] y)
+  {
+    final int n1 = y[0][0].length;
+    final int n2 = y[0].length;
+    final int n3 = y.length;
+    final Wavefront wf = new Wavefront(n2,n3,_lag2,_lag3,
+      Wavefront.tileCount(n2,1),Wavefront.tileCount(n3,1));
+    wf.reverse(new Wavefront.Tile() {
+      public void compute(int b, int r) {
+        for (int i3=wf.j2hi(r)-1; i3>=wf.j2lo(r); --i3) {
+          for (int i2=wf.j1hi(b,i3)-1; i2>=wf.j1lo(b,i3); --i2) {
+            for (int i1=n1-1; i1>=0; --i1) {
+              float yi = x[i3][i2][i1];
+              for (int j=1; j<_m; ++j) {
+                int k1 = i1+_lag1[j];
+                int k2 = i2+_lag2[j];
+                int k3 = i3+_lag3[j];
+                if (0<=k1 && k1<n1 && 0<=k2 && k2<n2 && k3<n3)
+                  yi -= _a[j]*y[k3][k2][k1];
+              }
+              y[i3][i2][i1] = _a0i*yi;
+            }
+          }
+        }
+      }
+    });
+  }
 }
@@ -6,6 +6,9 @@ available at http://www.eclipse.org/legal/cpl-v10.html
 ****************************************************************************/
 package edu.mines.jtk.dsp;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import static edu.mines.jtk.util.ArrayMath.*;
 import edu.mines.jtk.util.Check;
 
@@ -79,116 +82,147 @@ class Pfacc {
   }
 
   /**
-   * Prime-factor complex-to-complex FFT for 1-D arrays.
-   * @param sign the sign of the exponent in the Fourier transform.
-   * @param nfft the FFT length.
-   * @param z array[2*nfft] of nfft packed complex numbers.
+   * A plan for prime-factor FFTs of one length. A plan contains the
+   * mutually prime factors of the FFT length, with corresponding rotation 
+   * factors and array indices, so that these need not be recomputed for 
+   * every transform. Plans are immutable, and are cached so that they are 
+   * shared by all transforms of the same length, in all threads.
    */
-  static void transform(int sign, int nfft, float[] z) {
+  static class Plan {
 
-    // What is left of n after dividing by factors.
-    int nleft = nfft;
+    /** The FFT length. */
+    final int nfft;
 
-    // Loop over all possible factors, from largest to smallest.
-    for (int jfac=0; jfac<NFAC; ++jfac) {
+    /** The number of mutually prime factors of the FFT length. */
+    final int nfac;
 
-      // Skip the current factor, if not a mutually prime factor of n
-      int ifac = _kfac[jfac];
-      int ndiv = nleft/ifac;
-      if (ndiv*ifac!=nleft)
-        continue;
+    /** The factors, in the order in which they are applied. */
+    final int[] ifac;
 
-      // What is left of n (nleft), and n divided by the current factor (m).
-      nleft = ndiv;
-      int m = nfft/ifac;
- 
-      // Rotation factor mu and stride mm.
-      int mu = 0;
-      int mm = 0;
-      for (int kfac=1; kfac<=ifac && mm%ifac!=1; ++kfac) {
-        mu = kfac;
-        mm = kfac*m;
-      }
-      if (sign<0)
-        mu = ifac-mu;
+    /** For each factor ifac, the length nfft/ifac. */
+    final int[] m;
 
-      // Array stride, bound, and indices.
-      int jinc = 2*mm;
-      int jmax = 2*nfft;
-      int j0 = 0;
-      int j1 = j0+jinc;
+    /** For each factor, the rotation factor for positive signs. */
+    final int[] mu;
 
-      // Factor 2.
-      if (ifac==2) {
-        pfa2(z,m,j0,j1);
-        continue;
-      }
-      int j2 = (j1+jinc)%jmax;
-
-      // Factor 3.
-      if (ifac==3) {
-        pfa3(z,mu,m,j0,j1,j2);
-        continue;
-      }
-      int j3 = (j2+jinc)%jmax;
+    /** For each factor, initial indices of complex numbers. */
+    final int[][] j;
 
-      // Factor 4.
-      if (ifac==4) {
-        pfa4(z,mu,m,j0,j1,j2,j3);
-        continue;
-      }
-      int j4 = (j3+jinc)%jmax;
+    /** For each factor, initial indices of floats (2 per complex). */
+    final int[][] jj;
 
-      // Factor 5.
-      if (ifac==5) {
-        pfa5(z,mu,m,j0,j1,j2,j3,j4);
-        continue;
-      }
-      int j5 = (j4+jinc)%jmax;
-      int j6 = (j5+jinc)%jmax;
+    private Plan(int nfft) {
+      int[] ifac = new int[NFAC];
+      int[] m = new int[NFAC];
+      int[] mu = new int[NFAC];
+      int[][] j = new int[NFAC][];
+      int[][] jj = new int[NFAC][];
+      int nfac = 0;
+      int nleft = nfft;
+      for (int jfac=0; jfac<NFAC; ++jfac) {
 
-      // Factor 7.
-      if (ifac==7) {
-        pfa7(z,mu,m,j0,j1,j2,j3,j4,j5,j6);
-        continue;
-      }
-      int j7 = (j6+jinc)%jmax;
+        // Skip the current factor, if not a mutually prime factor of n.
+        int kfac = _kfac[jfac];
+        int ndiv = nleft/kfac;
+        if (ndiv*kfac!=nleft)
+          continue;
+        nleft = ndiv;
+        int mfac = nfft/kfac;
 
-      // Factor 8.
-      if (ifac==8) {
-        pfa8(z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7);
-        continue;
-      }
-      int j8 = (j7+jinc)%jmax;
+        // Rotation factor mu and stride mm.
+        int mufac = 0;
+        int mm = 0;
+        for (int lfac=1; lfac<=kfac && mm%kfac!=1; ++lfac) {
+          mufac = lfac;
+          mm = lfac*mfac;
+        }
 
-      // Factor 9.
-      if (ifac==9) {
-        pfa9(z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8);
-        continue;
+        // Array indices.
+        int[] jf = new int[kfac];
+        int[] jjf = new int[kfac];
+        for (int i=1; i<kfac; ++i) {
+          jf[i] = (jf[i-1]+mm)%nfft;
+          jjf[i] = 2*jf[i];
+        }
+        ifac[nfac] = kfac;
+        m[nfac] = mfac;
+        mu[nfac] = mufac;
+        j[nfac] = jf;
+        jj[nfac] = jjf;
+        ++nfac;
       }
-      int j9 = (j8+jinc)%jmax;
-      int j10 = (j9+jinc)%jmax;
+      this.nfft = nfft;
+      this.nfac = nfac;
+      this.ifac = Arrays.copyOf(ifac,nfac);
+      this.m = Arrays.copyOf(m,nfac);
+      this.mu = Arrays.copyOf(mu,nfac);
+      this.j = Arrays.copyOf(j,nfac);
+      this.jj = Arrays.copyOf(jj,nfac);
+    }
+  }
 
-      // Factor 11.
-      if (ifac==11) {
-        pfa11(z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8,j9,j10);
-        continue;
-      }
-      int j11 = (j10+jinc)%jmax;
-      int j12 = (j11+jinc)%jmax;
+  /**
+   * Returns the plan for the specified FFT length. Plans are constructed
+   * when first needed, and are thereafter shared by all callers.
+   * @param nfft the FFT length, which must be valid.
+   * @return the plan.
+   */
+  static Plan plan(int nfft) {
+    int itable = binarySearch(_ntable,nfft);
+    Check.argument(itable>=0,"nfft="+nfft+" is valid FFT length");
+    Plan plan = _plans.get(itable);
+    if (plan==null) {
+      plan = new Plan(nfft);
+      if (!_plans.compareAndSet(itable,null,plan))
+        plan = _plans.get(itable);
+    }
+    return plan;
+  }
 
-      // Factor 13.
-      if (ifac==13) {
-        pfa13(z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8,j9,j10,j11,j12);
-        continue;
-      }
-      int j13 = (j12+jinc)%jmax;
-      int j14 = (j13+jinc)%jmax;
-      int j15 = (j14+jinc)%jmax;
+  /**
+   * Prime-factor complex-to-complex FFT for 1-D arrays.
+   * @param sign the sign of the exponent in the Fourier transform.
+   * @param nfft the FFT length.
+   * @param z array[2*nfft] of nfft packed complex numbers.
+   */
+  static void transform(int sign, int nfft, float[] z) {
+    transform(sign,plan(nfft),z);
+  }
 
-      // Factor 16.
-      if (ifac==16) {
-        pfa16(z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8,j9,j10,j11,j12,j13,j14,j15);
+  /**
+   * Prime-factor complex-to-complex FFT for 1-D arrays.
+   * @param sign the sign of the exponent in the Fourier transform.
+   * @param plan the plan for the FFT length nfft.
+   * @param z array[2*nfft] of nfft packed complex numbers.
+   */
+  static void transform(int sign, Plan plan, float[] z) {
+    for (int jfac=0; jfac<plan.nfac; ++jfac) {
+      int ifac = plan.ifac[jfac];
+      int m = plan.m[jfac];
+      int mu = (sign<0)?ifac-plan.mu[jfac]:plan.mu[jfac];
+      int[] j = plan.jj[jfac];
+      switch (ifac) {
+        case 2: pfa2(z,m,j[0],j[1]); break;
+        case 3: pfa3(z,mu,m,j[0],j[1],j[2]); break;
+        case 4: pfa4(z,mu,m,j[0],j[1],j[2],j[3]); break;
+        case 5: pfa5(z,mu,m,j[0],j[1],j[2],j[3],j[4]); break;
+        case 7: pfa7(z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6]); break;
+        case 8: pfa8(z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7]); break;
+        case 9:
+          pfa9(z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7],j[8]);
+          break;
+        case 11:
+          pfa11(z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7],j[8],j[9],
+                j[10]);
+          break;
+        case 13:
+          pfa13(z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7],j[8],j[9],
+                j[10],j[11],j[12]);
+          break;
+        case 16:
+          pfa16(z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7],j[8],j[9],
+                j[10],j[11],j[12],j[13],j[14],j[15]);
+          break;
       }
     }
   }
@@ -1344,110 +1378,49 @@ class Pfacc {
    * @param z array[nfft][2*n1] of n1*nfft packed complex numbers.
    */
   static void transform2a(int sign, int n1, int nfft, float[][] z) {
+    transform2a(sign,n1,plan(nfft),z);
+  }
 
-    // What is left of n after dividing by factors.
-    int nleft = nfft;
-
-    // Loop over all possible factors, from largest to smallest.
-    for (int jfac=0; jfac<NFAC; ++jfac) {
-
-      // Skip the current factor, if not a mutually prime factor of n
-      int ifac = _kfac[jfac];
-      int ndiv = nleft/ifac;
-      if (ndiv*ifac!=nleft)
-        continue;
-
-      // What is left of n (nleft), and n divided by the current factor (m).
-      nleft = ndiv;
-      int m = nfft/ifac;
- 
-      // Rotation factor mu and stride mm.
-      int mu = 0;
-      int mm = 0;
-      for (int kfac=1; kfac<=ifac && mm%ifac!=1; ++kfac) {
-        mu = kfac;
-        mm = kfac*m;
-      }
-      if (sign<0)
-        mu = ifac-mu;
-
-      // Array stride, bound, and indices.
-      int jinc = mm;
-      int jmax = nfft;
-      int j0 = 0;
-      int j1 = j0+jinc;
-
-      // Factor 2.
-      if (ifac==2) {
-        pfa2a(n1,z,m,j0,j1);
-        continue;
-      }
-      int j2 = (j1+jinc)%jmax;
-
-      // Factor 3.
-      if (ifac==3) {
-        pfa3a(n1,z,mu,m,j0,j1,j2);
-        continue;
-      }
-      int j3 = (j2+jinc)%jmax;
-
-      // Factor 4.
-      if (ifac==4) {
-        pfa4a(n1,z,mu,m,j0,j1,j2,j3);
-        continue;
-      }
-      int j4 = (j3+jinc)%jmax;
-
-      // Factor 5.
-      if (ifac==5) {
-        pfa5a(n1,z,mu,m,j0,j1,j2,j3,j4);
-        continue;
-      }
-      int j5 = (j4+jinc)%jmax;
-      int j6 = (j5+jinc)%jmax;
-
-      // Factor 7.
-      if (ifac==7) {
-        pfa7a(n1,z,mu,m,j0,j1,j2,j3,j4,j5,j6);
-        continue;
-      }
-      int j7 = (j6+jinc)%jmax;
-
-      // Factor 8.
-      if (ifac==8) {
-        pfa8a(n1,z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7);
-        continue;
-      }
-      int j8 = (j7+jinc)%jmax;
-
-      // Factor 9.
-      if (ifac==9) {
-        pfa9a(n1,z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8);
-        continue;
-      }
-      int j9 = (j8+jinc)%jmax;
-      int j10 = (j9+jinc)%jmax;
-
-      // Factor 11.
-      if (ifac==11) {
-        pfa11a(n1,z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8,j9,j10);
-        continue;
-      }
-      int j11 = (j10+jinc)%jmax;
-      int j12 = (j11+jinc)%jmax;
-
-      // Factor 13.
-      if (ifac==13) {
-        pfa13a(n1,z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8,j9,j10,j11,j12);
-        continue;
-      }
-      int j13 = (j12+jinc)%jmax;
-      int j14 = (j13+jinc)%jmax;
-      int j15 = (j14+jinc)%jmax;
-
-      // Factor 16.
-      if (ifac==16) {
-        pfa16a(n1,z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8,j9,j10,j11,j12,j13,j14,j15);
+  /**
+   * Prime-factor complex-to-complex multiple FFT. Performs multiple
+   * transforms across the 2nd (slowest) dimension of a 2-D array.
+   * In this version, z[0:nfft-1][0,2,4,...] contains the real parts,
+   * and z[0:nfft-1][1,3,5,...] contains the imaginary parts.
+   * @param sign the sign of the exponent in the Fourier transform.
+   * @param n1 the number of transforms (fast dimension).
+   * @param plan the plan for the FFT length nfft (slow dimension).
+   * @param z array[nfft][2*n1] of n1*nfft packed complex numbers.
+   */
+  static void transform2a(int sign, int n1, Plan plan, float[][] z) {
+    for (int jfac=0; jfac<plan.nfac; ++jfac) {
+      int ifac = plan.ifac[jfac];
+      int m = plan.m[jfac];
+      int mu = (sign<0)?ifac-plan.mu[jfac]:plan.mu[jfac];
+      int[] j = plan.j[jfac];
+      switch (ifac) {
+        case 2: pfa2a(n1,z,m,j[0],j[1]); break;
+        case 3: pfa3a(n1,z,mu,m,j[0],j[1],j[2]); break;
+        case 4: pfa4a(n1,z,mu,m,j[0],j[1],j[2],j[3]); break;
+        case 5: pfa5a(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4]); break;
+        case 7: pfa7a(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6]); break;
+        case 8:
+          pfa8a(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7]);
+          break;
+        case 9:
+          pfa9a(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7],j[8]);
+          break;
+        case 11:
+          pfa11a(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7],j[8],j[9],
+                 j[10]);
+          break;
+        case 13:
+          pfa13a(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7],j[8],j[9],
+                 j[10],j[11],j[12]);
+          break;
+        case 16:
+          pfa16a(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7],j[8],j[9],
+                 j[10],j[11],j[12],j[13],j[14],j[15]);
+          break;
       }
     }
   }
@@ -2711,110 +2684,49 @@ class Pfacc {
    * @param z array[nfft*2][n1] of nfft*n1 complex numbers.
    */
   static void transform2b(int sign, int n1, int nfft, float[][] z) {
+    transform2b(sign,n1,plan(nfft),z);
+  }
 
-    // What is left of n after dividing by factors.
-    int nleft = nfft;
-
-    // Loop over all possible factors, from largest to smallest.
-    for (int jfac=0; jfac<NFAC; ++jfac) {
-
-      // Skip the current factor, if not a mutually prime factor of n
-      int ifac = _kfac[jfac];
-      int ndiv = nleft/ifac;
-      if (ndiv*ifac!=nleft)
-        continue;
-
-      // What is left of n (nleft), and n divided by the current factor (m).
-      nleft = ndiv;
-      int m = nfft/ifac;
- 
-      // Rotation factor mu and stride mm.
-      int mu = 0;
-      int mm = 0;
-      for (int kfac=1; kfac<=ifac && mm%ifac!=1; ++kfac) {
-        mu = kfac;
-        mm = kfac*m;
-      }
-      if (sign<0)
-        mu = ifac-mu;
-
-      // Array stride, bound, and indices.
-      int jinc = 2*mm;
-      int jmax = 2*nfft;
-      int j0 = 0;
-      int j1 = j0+jinc;
-
-      // Factor 2.
-      if (ifac==2) {
-        pfa2b(n1,z,m,j0,j1);
-        continue;
-      }
-      int j2 = (j1+jinc)%jmax;
-
-      // Factor 3.
-      if (ifac==3) {
-        pfa3b(n1,z,mu,m,j0,j1,j2);
-        continue;
-      }
-      int j3 = (j2+jinc)%jmax;
-
-      // Factor 4.
-      if (ifac==4) {
-        pfa4b(n1,z,mu,m,j0,j1,j2,j3);
-        continue;
-      }
-      int j4 = (j3+jinc)%jmax;
-
-      // Factor 5.
-      if (ifac==5) {
-        pfa5b(n1,z,mu,m,j0,j1,j2,j3,j4);
-        continue;
-      }
-      int j5 = (j4+jinc)%jmax;
-      int j6 = (j5+jinc)%jmax;
-
-      // Factor 7.
-      if (ifac==7) {
-        pfa7b(n1,z,mu,m,j0,j1,j2,j3,j4,j5,j6);
-        continue;
-      }
-      int j7 = (j6+jinc)%jmax;
-
-      // Factor 8.
-      if (ifac==8) {
-        pfa8b(n1,z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7);
-        continue;
-      }
-      int j8 = (j7+jinc)%jmax;
-
-      // Factor 9.
-      if (ifac==9) {
-        pfa9b(n1,z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8);
-        continue;
-      }
-      int j9 = (j8+jinc)%jmax;
-      int j10 = (j9+jinc)%jmax;
-
-      // Factor 11.
-      if (ifac==11) {
-        pfa11b(n1,z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8,j9,j10);
-        continue;
-      }
-      int j11 = (j10+jinc)%jmax;
-      int j12 = (j11+jinc)%jmax;
-
-      // Factor 13.
-      if (ifac==13) {
-        pfa13b(n1,z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8,j9,j10,j11,j12);
-        continue;
-      }
-      int j13 = (j12+jinc)%jmax;
-      int j14 = (j13+jinc)%jmax;
-      int j15 = (j14+jinc)%jmax;
-
-      // Factor 16.
-      if (ifac==16) {
-        pfa16b(n1,z,mu,m,j0,j1,j2,j3,j4,j5,j6,j7,j8,j9,j10,j11,j12,j13,j14,j15);
+  /**
+   * Prime-factor complex-to-complex multiple FFT. Performs multiple
+   * transforms across the 2nd (slowest) dimension of a 2-D array.
+   * In this version, z[0,2,4,...]][0:n1-1] contains the real parts,
+   * an z[1,3,5,...][0:n1-1] contains the imaginary parts.
+   * @param sign the sign of the exponent in the Fourier transform.
+   * @param n1 the number of transforms (fast dimension).
+   * @param plan the plan for the FFT length nfft (slow dimension).
+   * @param z array[nfft*2][n1] of nfft*n1 complex numbers.
+   */
+  static void transform2b(int sign, int n1, Plan plan, float[][] z) {
+    for (int jfac=0; jfac<plan.nfac; ++jfac) {
+      int ifac = plan.ifac[jfac];
+      int m = plan.m[jfac];
+      int mu = (sign<0)?ifac-plan.mu[jfac]:plan.mu[jfac];
+      int[] j = plan.jj[jfac];
+      switch (ifac) {
+        case 2: pfa2b(n1,z,m,j[0],j[1]); break;
+        case 3: pfa3b(n1,z,mu,m,j[0],j[1],j[2]); break;
+        case 4: pfa4b(n1,z,mu,m,j[0],j[1],j[2],j[3]); break;
+        case 5: pfa5b(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4]); break;
+        case 7: pfa7b(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6]); break;
+        case 8:
+          pfa8b(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7]);
+          break;
+        case 9:
+          pfa9b(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7],j[8]);
+          break;
+        case 11:
+          pfa11b(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7],j[8],j[9],
+                 j[10]);
+          break;
+        case 13:
+          pfa13b(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7],j[8],j[9],
+                 j[10],j[11],j[12]);
+          break;
+        case 16:
+          pfa16b(n1,z,mu,m,j[0],j[1],j[2],j[3],j[4],j[5],j[6],j[7],j[8],j[9],
+                 j[10],j[11],j[12],j[13],j[14],j[15]);
+          break;
       }
     }
   }
@@ -4192,6 +4104,10 @@ class Pfacc {
   // 17 is not in the set above, and 32 = 2*16 is not valid, because the 
   // factors 2 and 16 share the prime factor 2.
   private static final int NTABLE = 240;
+
+  // Plans, one for each FFT length in the table below, constructed lazily.
+  private static final AtomicReferenceArray<Plan> _plans =
+    new AtomicReferenceArray<Plan>(NTABLE);
   private static final int _ntable[] = {
          1, 2, 3, 4, 5, 6, 7, 8, 9, 
         10, 11, 12, 13, 14, 15, 16, 18, 20, 21, 22, 24, 26, 28, 30, 33, 
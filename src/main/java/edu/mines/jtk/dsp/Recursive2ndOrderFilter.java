@@ -1255,6 +1255,69 @@ public class Recursive2ndOrderFilter {
     }
   }
 
+  ///////////////////////////////////////////////////////////////////////////
+  // package
+
+  /**
+   * Applies or accumulates this filter in 2nd dimension for only the n1
+   * samples with indices j1, j1+1, ..., j1+n1-1 in the first n2 arrays. 
+   * Unlike the public methods for 2-D arrays, this method constructs 
+   * no arrays; the filter state is kept in work arrays s[4][j1+n1], 
+   * which need not be zero on input.
+   * <p>
+   * Input and output arrays must be distinct. Results are the same as
+   * those computed by the public methods, except perhaps for the signs
+   * of zero output values.
+   * @param reverse true, for reverse direction; false, for forward.
+   * @param accumulate true, to accumulate output; false, to apply.
+   * @param j1 index of first sample in 1st dimension.
+   * @param n1 number of samples in 1st dimension.
+   * @param n2 number of samples in 2nd dimension.
+   * @param x the input array.
+   * @param y the output array.
+   * @param s work arrays for the filter state.
+   */
+  void apply2(
+    boolean reverse, boolean accumulate, int j1, int n1, int n2,
+    float[][] x, float[][] y, float[][] s)
+  {
+    int k1 = j1+n1;
+    float[] yim2 = s[0];
+    float[] yim1 = s[1];
+    float[] yi = s[2];
+    float[] xim2 = s[3];
+    float[] xim1 = s[3];
+    for (int i1=j1; i1<k1; ++i1) {
+      yim2[i1] = 0.0f;
+      yim1[i1] = 0.0f;
+      xim2[i1] = 0.0f;
+    }
+    for (int j2=0; j2<n2; ++j2) {
+      int i2 = (reverse)?n2-1-j2:j2;
+      float[] xi = x[i2];
+      float[] y2 = y[i2];
+      if (accumulate) {
+        for (int i1=j1; i1<k1; ++i1) {
+          yi[i1] = _b0*xi[i1]+_b1*xim1[i1]+_b2*xim2[i1]-
+                              _a1*yim1[i1]-_a2*yim2[i1];
+          y2[i1] += yi[i1];
+        }
+      } else {
+        for (int i1=j1; i1<k1; ++i1) {
+          yi[i1] = _b0*xi[i1]+_b1*xim1[i1]+_b2*xim2[i1]-
+                              _a1*yim1[i1]-_a2*yim2[i1];
+          y2[i1] = yi[i1];
+        }
+      }
+      float[] yt = yim2;
+      yim2 = yim1;
+      yim1 = yi;
+      yi = yt;
+      xim2 = xim1;
+      xim1 = xi;
+    }
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // private
 
@@ -438,9 +438,112 @@ public class RecursiveGaussianFilter {
     _filter.applyNXX(0,y,y);
   }
 
+  /**
+   * Applies filters for all three components of the gradient.
+   * Outputs are the same as those computed by the methods apply100,
+   * apply010 and apply001, but this method is more efficient, because
+   * it filters fewer times in the 3rd and 2nd dimensions.
+   * @param x the filter input; must not be an output array.
+   * @param g1 the output 1st derivative in the 1st dimension.
+   * @param g2 the output 1st derivative in the 2nd dimension.
+   * @param g3 the output 1st derivative in the 3rd dimension.
+   */
+  public void applyGradient(
+    float[][][] x, float[][][] g1, float[][][] g2, float[][][] g3)
+  {
+    applyDerivatives(GRADIENT,x,new float[][][][]{g1,g2,g3});
+  }
+
+  /**
+   * Applies filters for all six unique components of the Hessian.
+   * Outputs are the same as those computed by the methods apply200,
+   * apply110, apply101, apply020, apply011 and apply002, but this
+   * method is more efficient, because it filters fewer times in the
+   * 3rd and 2nd dimensions.
+   * @param x the filter input; must not be an output array.
+   * @param h11 the output 2nd derivative in the 1st dimension.
+   * @param h12 the output 1st derivative in the 1st and 2nd dimensions.
+   * @param h13 the output 1st derivative in the 1st and 3rd dimensions.
+   * @param h22 the output 2nd derivative in the 2nd dimension.
+   * @param h23 the output 1st derivative in the 2nd and 3rd dimensions.
+   * @param h33 the output 2nd derivative in the 3rd dimension.
+   */
+  public void applyHessian(
+    float[][][] x,
+    float[][][] h11, float[][][] h12, float[][][] h13,
+                     float[][][] h22, float[][][] h23,
+                                      float[][][] h33)
+  {
+    applyDerivatives(HESSIAN,x,new float[][][][]{h11,h12,h13,h22,h23,h33});
+  }
+
+  /**
+   * Applies filters for any combination of derivatives. For each output
+   * array y[iy], the orders of derivatives in the 1st, 2nd and 3rd
+   * dimensions are nd[iy][0], nd[iy][1] and nd[iy][2], respectively.
+   * For example, the orders {1,0,1} yield the same output as the method
+   * apply101. Filtering in the 3rd and 2nd dimensions is shared by all
+   * outputs that require it, and output arrays are used to store
+   * intermediate results, so that no additional arrays are constructed.
+   * Therefore, computing a set of outputs with this method is more
+   * efficient than computing each output separately.
+   * @param nd array[ny][3] of orders of derivatives, each 0, 1 or 2.
+   * @param x the filter input; must not be an output array.
+   * @param y array[ny] of distinct output arrays.
+   */
+  public void applyDerivatives(int[][] nd, float[][][] x, float[][][][] y) {
+    int ny = y.length;
+    Check.argument(nd.length==ny,"nd.length==y.length");
+    for (int iy=0; iy<ny; ++iy) {
+      Check.argument(nd[iy].length==3,"nd[iy].length==3");
+      for (int id=0; id<3; ++id)
+        Check.argument(0<=nd[iy][id] && nd[iy][id]<=2,"0<=nd[iy][id]<=2");
+      Check.argument(y[iy]!=x,"x is not an output array");
+      for (int jy=0; jy<iy; ++jy)
+        Check.argument(y[jy]!=y[iy],"output arrays are distinct");
+    }
+    boolean[] done = new boolean[ny];
+    for (int iy=0; iy<ny; ++iy) {
+      if (done[iy]) continue;
+      _filter.applyXXN(nd[iy][2],x,y[iy]);
+      for (int jy=0; jy<ny; ++jy) {
+        if (!done[jy] && nd[jy][2]==nd[iy][2] && nd[jy][1]!=nd[iy][1])
+          applyDerivativesXN(jy,nd,y[iy],y,done);
+      }
+      applyDerivativesXN(iy,nd,y[iy],y,done);
+    }
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // private
 
+  private static final int[][] GRADIENT = {{1,0,0},{0,1,0},{0,0,1}};
+  private static final int[][] HESSIAN = {
+    {2,0,0},{1,1,0},{1,0,1},{0,2,0},{0,1,1},{0,0,2}
+  };
+
+  /**
+   * Filters t, already filtered in the 3rd dimension, in the 2nd and 1st
+   * dimensions, for all outputs not yet done that require the same
+   * filters in the 3rd and 2nd dimensions as output iy. The output array
+   * y[iy] is used for the intermediate result, and is computed last.
+   */
+  private void applyDerivativesXN(
+    int iy, int[][] nd, float[][][] t, float[][][][] y, boolean[] done)
+  {
+    float[][][] t2 = y[iy];
+    _filter.applyXNX(nd[iy][1],t,t2);
+    for (int jy=0; jy<y.length; ++jy) {
+      if (jy!=iy && !done[jy] &&
+          nd[jy][2]==nd[iy][2] && nd[jy][1]==nd[iy][1]) {
+        _filter.applyNXX(nd[jy][0],t2,y[jy]);
+        done[jy] = true;
+      }
+    }
+    _filter.applyNXX(nd[iy][0],t2,t2);
+    done[iy] = true;
+  }
+
   private Filter _filter;
 
   private static void checkArrays(float[] x, float[] y) {
@@ -492,58 +595,165 @@ public class RecursiveGaussianFilter {
         applyN(nd,x[i2],y[i2]);
     }
 
+    /**
+     * Applies the filter in the 2nd dimension for only the n1 samples 
+     * with indices j1, j1+1, ..., j1+n1-1 in n2 distinct arrays x and y. 
+     * The filter state is kept in work arrays s[NSTATE][j1+n1].
+     */
+    abstract void applyXN(
+      int nd, int j1, int n1, int n2, float[][] x, float[][] y, float[][] s);
+
     void applyNXX(final int nd, final float[][][] x, final float[][][] y) {
-      final int m3 = y.length;
-      Parallel.loop(m3,new Parallel.LoopInt() {
+      checkArrays(x,y);
+      final Parallel.Unsafe<Work> uw = new Parallel.Unsafe<Work>();
+      final int n3 = y.length;
+      final int n2 = y[0].length;
+      final int n1 = y[0][0].length;
+      Parallel.loop(n3,new Parallel.LoopInt() {
         public void compute(int i3) {
-          applyNX(nd,x[i3],y[i3]);
+          Work w = work(uw);
+          float[][] x3 = x[i3];
+          float[][] y3 = y[i3];
+          float[][] s = w.state(NTRACE);
+          float[][] tx = w.xtraces(n1);
+          float[][] ty = w.ytraces(n1);
+          for (int j2=0; j2<n2; j2+=NTRACE) {
+            int nb = min(NTRACE,n2-j2);
+            for (int i2=j2,k=0; k<nb; ++i2,++k) {
+              float[] x32 = x3[i2];
+              for (int i1=0; i1<n1; ++i1)
+                tx[i1][k] = x32[i1];
+            }
+            applyXN(nd,0,nb,n1,tx,ty,s);
+            for (int i2=j2,k=0; k<nb; ++i2,++k) {
+              float[] y32 = y3[i2];
+              for (int i1=0; i1<n1; ++i1)
+                y32[i1] = ty[i1][k];
+            }
+          }
         }
       });
     }
 
     void applyXNX(final int nd, final float[][][] x, final float[][][] y) {
-      final int m3 = y.length;
-      Parallel.loop(m3,new Parallel.LoopInt() {
+      checkArrays(x,y);
+      final Parallel.Unsafe<Work> uw = new Parallel.Unsafe<Work>();
+      final int n3 = y.length;
+      final int n2 = y[0].length;
+      final int n1 = y[0][0].length;
+      Parallel.loop(n3,new Parallel.LoopInt() {
         public void compute(int i3) {
-          applyXN(nd,x[i3],y[i3]);
+          Work w = work(uw);
+          float[][] x3 = x[i3];
+          float[][] y3 = y[i3];
+          float[][] s = w.state(n1);
+          float[][] t = sameArrays(x3,y3)?w.block(n2,n1):null;
+          for (int j1=0; j1<n1; j1+=NBLOCK) {
+            int nb = min(NBLOCK,n1-j1);
+            if (t!=null) {
+              for (int i2=0; i2<n2; ++i2)
+                System.arraycopy(x3[i2],j1,t[i2],j1,nb);
+              applyXN(nd,j1,nb,n2,t,y3,s);
+            } else {
+              applyXN(nd,j1,nb,n2,x3,y3,s);
+            }
+          }
         }
       });
     }
 
     void applyXXN(final int nd, final float[][][] x, final float[][][] y) {
       checkArrays(x,y);
-      final int m3 = y.length;
-      final int m2 = y[0].length;
-      final float[][][] tx = new float[m2][m3][];
-      final float[][][] ty = new float[m2][m3][];
-      for (int i3=0; i3<m3; ++i3) {
-        for (int i2=0; i2<m2; ++i2) {
-          tx[i2][i3] = x[i3][i2];
-          ty[i2][i3] = y[i3][i2];
-        }
-      }
-      Parallel.loop(m2,new Parallel.LoopInt() {
+      final Parallel.Unsafe<Work> uw = new Parallel.Unsafe<Work>();
+      final int n3 = y.length;
+      final int n2 = y[0].length;
+      final int n1 = y[0][0].length;
+      Parallel.loop(n2,new Parallel.LoopInt() {
         public void compute(int i2) {
-          applyXN(nd,tx[i2],ty[i2]);
+          Work w = work(uw);
+          float[][] x2 = w.xrefs(n3);
+          float[][] y2 = w.yrefs(n3);
+          for (int i3=0; i3<n3; ++i3) {
+            x2[i3] = x[i3][i2];
+            y2[i3] = y[i3][i2];
+          }
+          float[][] s = w.state(n1);
+          float[][] t = sameArrays(x2,y2)?w.block(n3,n1):null;
+          for (int j1=0; j1<n1; j1+=NBLOCK) {
+            int nb = min(NBLOCK,n1-j1);
+            if (t!=null) {
+              for (int i3=0; i3<n3; ++i3)
+                System.arraycopy(x2[i3],j1,t[i3],j1,nb);
+              applyXN(nd,j1,nb,n3,t,y2,s);
+            } else {
+              applyXN(nd,j1,nb,n3,x2,y2,s);
+            }
+          }
         }
       });
     }
-    /* Should be equivalent to the parallel version above.
-    void applyXXN(int nd, float[][][] x, float[][][] y) {
-      checkArrays(x,y);
-      int m3 = y.length;
-      int m2 = y[0].length;
-      float[][] x2 = new float[m3][];
-      float[][] y2 = new float[m3][];
-      for (int i2=0; i2<m2; ++i2) {
-        for (int i3=0; i3<m3; ++i3) {
-          x2[i3] = x[i3][i2];
-          y2[i3] = y[i3][i2];
-        }
-        applyXN(nd,x2,y2);
+
+    // Filtering in the 2nd and 3rd dimensions of 3-D arrays is performed 
+    // for blocks of NBLOCK contiguous samples at a time, so that all of 
+    // the samples in one block fit in cache, and the recursions for those
+    // samples are computed together. When filtering in place, only the
+    // input samples for the current block are copied.
+    private static final int NBLOCK = 128;
+
+    // Filtering in the 1st dimension of 3-D arrays is performed for NTRACE
+    // traces at a time. The traces are transposed into work arrays, so
+    // that the recursions for all traces can be computed together.
+    private static final int NTRACE = 16;
+
+    // Number of work arrays required for the filter state.
+    static final int NSTATE = 10;
+
+    // Work arrays, one set per thread, reused within one application.
+    // These arrays are constructed for each application, and are not
+    // kept by the filter, because they may be as large as a 2-D slice.
+    private static class Work {
+      float[][] state(int n1) {
+        if (_s==null || _s[0].length<n1)
+          _s = new float[NSTATE][max(n1,NTRACE)];
+        return _s;
+      }
+      float[][] block(int n2, int n1) {
+        if (_b==null)
+          _b = new float[n2][n1];
+        else if (_b.length<n2 || _b[0].length<n1)
+          _b = new float[max(n2,_b.length)][max(n1,_b[0].length)];
+        return _b;
+      }
+      float[][] xtraces(int n1) {
+        if (_tx==null || _tx.length<n1)
+          _tx = new float[n1][NTRACE];
+        return _tx;
+      }
+      float[][] ytraces(int n1) {
+        if (_ty==null || _ty.length<n1)
+          _ty = new float[n1][NTRACE];
+        return _ty;
       }
+      float[][] xrefs(int n2) {
+        if (_xr==null || _xr.length!=n2)
+          _xr = new float[n2][];
+        return _xr;
+      }
+      float[][] yrefs(int n2) {
+        if (_yr==null || _yr.length!=n2)
+          _yr = new float[n2][];
+        return _yr;
+      }
+      private float[][] _s,_b,_tx,_ty,_xr,_yr;
+    }
+    private static Work work(Parallel.Unsafe<Work> uw) {
+      Work w = uw.get();
+      if (w==null) {
+        w = new Work();
+        uw.set(w);
+      }
+      return w;
     }
-    */
   }
 
   ///////////////////////////////////////////////////////////////////////////
@@ -595,22 +805,38 @@ public class RecursiveGaussianFilter {
         x = copy(x);
       int m2 = y.length;
       int m1 = y[0].length;
+      applyXN(nd,0,m1,m2,x,y,new float[NSTATE][m1]);
+    }
+
+    void applyXN(
+      int nd, int j1, int m1, int m2, float[][] x, float[][] y, float[][] s)
+    {
+      int k1 = j1+m1;
       float n0 = _n0[nd],  n1 = _n1[nd],  n2 = _n2[nd],  n3 = _n3[nd];
       float d1 = _d1[nd],  d2 = _d2[nd],  d3 = _d3[nd],  d4 = _d4[nd];
-      float[] yim4 = new float[m1];
-      float[] yim3 = new float[m1];
-      float[] yim2 = new float[m1];
-      float[] yim1 = new float[m1];
-      float[] xim4 = new float[m1];
-      float[] xim3 = new float[m1];
-      float[] xim2 = new float[m1];
-      float[] xim1 = new float[m1];
-      float[] yi = new float[m1];
-      float[] xi = new float[m1];
+      float[] yim4 = s[0];
+      float[] yim3 = s[1];
+      float[] yim2 = s[2];
+      float[] yim1 = s[3];
+      float[] xim4 = s[4];
+      float[] xim3 = s[5];
+      float[] xim2 = s[6];
+      float[] xim1 = s[7];
+      float[] yi = s[8];
+      float[] xi = s[9];
+      for (int i1=j1; i1<k1; ++i1) {
+        yim4[i1] = 0.0f;
+        yim3[i1] = 0.0f;
+        yim2[i1] = 0.0f;
+        yim1[i1] = 0.0f;
+        xim3[i1] = 0.0f;
+        xim2[i1] = 0.0f;
+        xim1[i1] = 0.0f;
+      }
       for (int i2=0; i2<m2; ++i2) {
         float[] x2 = x[i2];
         float[] y2 = y[i2];
-        for (int i1=0; i1<m1; ++i1) {
+        for (int i1=j1; i1<k1; ++i1) {
           xi[i1] = x2[i1];
           yi[i1] = n0*xi[i1]+n1*xim1[i1]+n2*xim2[i1]+n3*xim3[i1]
                             -d1*yim1[i1]-d2*yim2[i1]-d3*yim3[i1]-d4*yim4[i1];
@@ -643,7 +869,7 @@ public class RecursiveGaussianFilter {
       float[] xip3 = xim3;
       float[] xip2 = xim2;
       float[] xip1 = xim1;
-      for (int i1=0; i1<m1; ++i1) {
+      for (int i1=j1; i1<k1; ++i1) {
         yip4[i1] = 0.0f;
         yip3[i1] = 0.0f;
         yip2[i1] = 0.0f;
@@ -656,7 +882,7 @@ public class RecursiveGaussianFilter {
       for (int i2=m2-1; i2>=0; --i2) {
         float[] x2 = x[i2];
         float[] y2 = y[i2];
-        for (int i1=0; i1<m1; ++i1) {
+        for (int i1=j1; i1<k1; ++i1) {
           xi[i1] = x2[i1];
           yi[i1] = n1*xip1[i1]+n2*xip2[i1]+n3*xip3[i1]+n4*xip4[i1] -
                    d1*yip1[i1]-d2*yip2[i1]-d3*yip3[i1]-d4*yip4[i1];
@@ -851,6 +1077,15 @@ public class RecursiveGaussianFilter {
       _g[nd][1][1].accumulate2Reverse(x,y);
     }
 
+    void applyXN(
+      int nd, int j1, int n1, int n2, float[][] x, float[][] y, float[][] s)
+    {
+      _g[nd][0][0].apply2(false,false,j1,n1,n2,x,y,s);
+      _g[nd][0][1].apply2(true,true,j1,n1,n2,x,y,s);
+      _g[nd][1][0].apply2(false,true,j1,n1,n2,x,y,s);
+      _g[nd][1][1].apply2(true,true,j1,n1,n2,x,y,s);
+    }
+
     // Poles (inverses) for 4th-order filters published by van Vliet, et al.
     private static Cdouble[][] POLES = {
       {new Cdouble( 1.12075, 1.27788),
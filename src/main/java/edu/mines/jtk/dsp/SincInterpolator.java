@@ -10,6 +10,7 @@ import java.util.HashMap;
 
 import static edu.mines.jtk.util.ArrayMath.*;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 
 /**
  * A sinc interpolator for bandlimited uniformly-sampled functions y(x). 
@@ -364,6 +365,107 @@ public class SincInterpolator {
     }
   }
 
+  /**
+   * Interpolates multiple real values y(x) for many sequences. All 
+   * sequences have the same sampling, and are interpolated at the same 
+   * values x. Indices of uniform samples and sinc approximations are 
+   * computed only once for each value x, and then used for all sequences,
+   * which are interpolated in parallel.
+   * @param nxu number of input samples in each sequence.
+   * @param dxu input sampling interval.
+   * @param fxu first input sampled x value.
+   * @param yu input array[ny][nxu] of sampled values y(x).
+   * @param nxi number of output samples in each sequence.
+   * @param xi input array of x values at which to interpolate.
+   * @param yi output array[ny][nxi] of interpolated values y(x).
+   */
+  public void interpolate(
+    int nxu, double dxu, double fxu, float[][] yu, 
+    int nxi, float[] xi, float[][] yi)
+  {
+    double[] x = new double[nxi];
+    for (int ixi=0; ixi<nxi; ++ixi)
+      x[ixi] = xi[ixi];
+    interpolate(nxu,dxu,fxu,yu,nxi,x,yi);
+  }
+
+  /**
+   * Interpolates multiple real values y(x) for many sequences. All 
+   * sequences have the same sampling, and are interpolated at the same 
+   * values x. Indices of uniform samples and sinc approximations are 
+   * computed only once for each value x, and then used for all sequences,
+   * which are interpolated in parallel.
+   * @param sxu sampling of input samples.
+   * @param yu input array[ny][nxu] of uniformly sampled values y(x).
+   * @param sxi sampling of output samples.
+   * @param yi output array[ny][nxi] of interpolated values y(x).
+   */
+  public void interpolate(
+    Sampling sxu, float[][] yu, 
+    Sampling sxi, float[][] yi) 
+  {
+    Check.argument(sxu.isUniform(),"input sampling is uniform");
+    int nxi = sxi.getCount();
+    double[] x = new double[nxi];
+    for (int ixi=0; ixi<nxi; ++ixi)
+      x[ixi] = sxi.getValue(ixi);
+    interpolate(sxu.getCount(),sxu.getDelta(),sxu.getFirst(),yu,nxi,x,yi);
+  }
+
+  /**
+   * Applies specified shifts to many sequences. For each sequence i2,
+   * computes yi[i2][i1] = y(i1+u[i2][i1]), where y(x) is interpolated from
+   * samples yu[i2] with unit sampling interval and first sample at x = 0.
+   * Such shifts are those estimated by {@link DynamicWarping}. Sequences 
+   * are interpolated in parallel.
+   * @param u input array[n2][n1] of shifts.
+   * @param yu input array[n2][n1] of uniformly sampled values y(x).
+   * @param yi output array[n2][n1] of shifted values y(x); 
+   *  cannot be the same as yu.
+   */
+  public void applyShifts(
+    final float[][] u, final float[][] yu, final float[][] yi) 
+  {
+    Check.argument(yu!=yi,"yu!=yi");
+    final int n1 = yu[0].length;
+    int n2 = yu.length;
+    final double xscale = 1.0;
+    final double xshift = _lsinc;
+    final int nxum = n1-_lsinc;
+    Parallel.loop(n2,new Parallel.LoopInt() {
+      public void compute(int i2) {
+        float[] u2 = u[i2];
+        float[] yu2 = yu[i2];
+        float[] yi2 = yi[i2];
+        for (int i1=0; i1<n1; ++i1)
+          yi2[i1] = interpolate(xscale,xshift,nxum,n1,yu2,i1+u2[i1]);
+      }
+    });
+  }
+
+  /**
+   * Applies specified shifts to many sequences. For each sequence (i2,i3),
+   * computes yi[i3][i2][i1] = y(i1+u[i3][i2][i1]), where y(x) is 
+   * interpolated from samples yu[i3][i2] with unit sampling interval and 
+   * first sample at x = 0. Such shifts are those estimated by 
+   * {@link DynamicWarping}. Sequences are interpolated in parallel.
+   * @param u input array[n3][n2][n1] of shifts.
+   * @param yu input array[n3][n2][n1] of uniformly sampled values y(x).
+   * @param yi output array[n3][n2][n1] of shifted values y(x); 
+   *  cannot be the same as yu.
+   */
+  public void applyShifts(
+    final float[][][] u, final float[][][] yu, final float[][][] yi) 
+  {
+    Check.argument(yu!=yi,"yu!=yi");
+    int n3 = yu.length;
+    Parallel.loop(n3,new Parallel.LoopInt() {
+      public void compute(int i3) {
+        applyShifts(u[i3],yu[i3],yi[i3]);
+      }
+    });
+  }
+
   /**
    * Interpolates one real value y(x1,x2).
    * @param sx1u sampling of input x in 1st dimension.
@@ -823,6 +925,53 @@ public class SincInterpolator {
     return yr;
   }
 
+  // Interpolates many sequences yu at the same values x. For each x, the
+  // index of the first uniform sample and the sinc approximation are 
+  // computed once. For values x near the ends of sequences, for which 
+  // extrapolation may be necessary, the sinc approximation is null, and
+  // each sequence is interpolated separately.
+  private void interpolate(
+    final int nxu, double dxu, double fxu, final float[][] yu, 
+    final int nxi, final double[] x, final float[][] yi)
+  {
+    final double xscale = 1.0/dxu;
+    final double xshift = _lsinc-fxu*xscale;
+    final int nxum = nxu-_lsinc;
+    final int lsinc = _lsinc;
+    final int[] kyu = new int[nxi];
+    final float[][] asinc = new float[nxi][];
+    for (int ixi=0; ixi<nxi; ++ixi) {
+      double xn = xshift+x[ixi]*xscale;
+      int ixn = (int)xn;
+      int kyui = _ishift+ixn;
+      if (kyui>=0 && kyui<=nxum) {
+        double frac = xn-ixn;
+        if (frac<0.0)
+          frac += 1.0;
+        kyu[ixi] = kyui;
+        asinc[ixi] = _asinc[(int)(frac*_nsincm1+0.5)];
+      }
+    }
+    int ny = yu.length;
+    Parallel.loop(ny,new Parallel.LoopInt() {
+      public void compute(int iy) {
+        float[] yuy = yu[iy];
+        float[] yiy = yi[iy];
+        for (int ixi=0; ixi<nxi; ++ixi) {
+          float[] asinci = asinc[ixi];
+          if (asinci!=null) {
+            float yr = 0.0f;
+            for (int isinc=0,jyu=kyu[ixi]; isinc<lsinc; ++isinc,++jyu)
+              yr += yuy[jyu]*asinci[isinc];
+            yiy[ixi] = yr;
+          } else {
+            yiy[ixi] = interpolate(xscale,xshift,nxum,nxu,yuy,x[ixi]);
+          }
+        }
+      }
+    });
+  }
+
   private void shift(
     int nxu, double dxu, double fxu, float[] yu,
     int nxi,             double fxi, float[] yi)
@@ -6,6 +6,7 @@ available at http://www.eclipse.org/legal/cpl-v10.html
 ****************************************************************************/
 package edu.mines.jtk.dsp;
 
+import edu.mines.jtk.util.Parallel;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -68,6 +69,10 @@ import static edu.mines.jtk.util.ArrayMath.*;
  * <p>
  * The 3D steerable pyramid array is the same except that it is arrays of 
  * arrays of 3D, rather than 2D arrays.
+ * <p>
+ * For large 3D images, a lazy pyramid computes basis images for each level
+ * only when needed, so that a filtered image can be obtained without
+ * storing basis images for all levels at once.
  *
  * @author John Mathewson, Colorado School of Mines
  * @version 2008.12.01
@@ -95,6 +100,19 @@ public class SteerablePyramid {
     this.ka = ka;
     this.kb = kb;
   }
+
+  /**
+   * Sets the use of parallel processing in making pyramids and estimating
+   * attributes. If parallel, then basis images for different directions
+   * are computed in parallel from the Fourier transform of each level,
+   * and attributes for different levels are estimated in parallel. Results
+   * are the same as those of serial processing, but more memory is used.
+   * The default is false.
+   * @param parallel true, for parallel processing; false, for serial.
+   */
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
   
   /**
    * Creates a steerable pyramid representation of an input 2D image.
@@ -160,38 +178,7 @@ public class SteerablePyramid {
    * 3D image.
    */
   public float[][][][][] makePyramid(float[][][] x) {
-    nx3 = x.length;
-    nx2 = x[0].length;
-    nx1 = x[0][0].length;
-    // Compute number of levels in pyramid from size of input image.  Also
-    // determine dimensions n1,n2,n3 for the finest-sampled pyramid level
-    // that will allow us to subsample each pyramid level without losing the
-    // last sample.  In our pyramid images we will carry this number of 
-    // samples and copy the original number of samples only for final output.
-    nlev = 1;
-    int nlev2 = 1;
-    int nlev3 = 1;
-    n1 = 9;
-    n2 = 9;
-    n3 = 9;
-    while (nx1>n1) {
-      n1 = (n1-1)*2+1;
-      nlev += 1;
-    }
-    while (nx2>n2) {
-      n2 = (n2-1)*2+1;
-      nlev2 += 1;
-    }
-    while (nx3>n3) {
-      n3 = (n3-1)*2+1;
-      nlev3 += 1;
-    }
-    if (nlev>nlev2) {
-      nlev = nlev2;
-    }
-    if (nlev>nlev3) {
-      nlev = nlev3;
-    }
+    initSizes(x);
     /**
      * Create output 5-dimensional array, consisting of:
      * Basis images: nlev*ndir 3D sub-arrays; for each pyramid level images
@@ -214,17 +201,137 @@ public class SteerablePyramid {
     int nl2 = (n2-1)/lfactor+1;
     int nl1 = (n1-1)/lfactor+1;
     spyr[nlev][0] = zerofloat(nl1,nl2,nl3);
-    float[][][] cf = ftForward(0,x);
-    applyRadial(ka,kb,cf);
     for (int lev=0; lev<nlev; ++lev) {
-      if (lev>0) {
-        cf = ftForward(lev,spyr[lev][0]);
-      }
+      float[][][] cf = levelSpectrum(lev,(lev==0)?x:spyr[lev][0]);
       makePyramidLevel(lev,cf,spyr);
     }
     return spyr;
   }
   
+  /**
+   * A 3D steerable pyramid with basis images computed on demand. When this
+   * pyramid is made, only the subsampled low-wavenumber images that are
+   * input to each level are computed; basis images for a level are computed
+   * when first got, and are kept until released. Basis images are the same
+   * as those in the corresponding level of a pyramid made by the method 
+   * {@link SteerablePyramid#makePyramid(float[][][])}, and may be modified
+   * (for example, with steering weights) before they are summed.
+   * <p>
+   * A lazy pyramid references, but does not copy, the input image. It 
+   * also depends on the sizes of the image for which it was made, so no
+   * other pyramid should be made by the same steerable pyramid while this 
+   * lazy pyramid is in use.
+   */
+  public class LazyPyramid {
+
+    /**
+     * Gets the number of levels in this pyramid, not counting the residual
+     * low-wavenumber image.
+     * @return the number of levels.
+     */
+    public int getLevelCount() {
+      return basis.length;
+    }
+
+    /**
+     * Gets the basis images for the specified level, computing them if
+     * necessary. The format of the returned array is the same as that
+     * for one level of a 3D steerable pyramid.
+     * @param lev the level number.
+     * @return array[NDIR][n3][n2][n1] of basis images; by reference.
+     */
+    public float[][][][] getLevel(int lev) {
+      if (basis[lev]==null) {
+        float[][][] cf = levelSpectrum(lev,(lev==0)?image:low[lev]);
+        float[][][] clo = splitSpectrum(cf);
+        int lfactor = (int)pow(2.0,(double)lev);
+        int nl3 = (n3-1)/lfactor+1;
+        int nl2 = (n2-1)/lfactor+1;
+        int nl1 = (n1-1)/lfactor+1;
+        float[][][][] b = new float[NDIR3][][][];
+        for (int dir=0; dir<NDIR3; ++dir)
+          b[dir] = zerofloat(nl1,nl2,nl3);
+        makeBasisImages(lev,cf,clo,b);
+        basis[lev] = b;
+      }
+      return basis[lev];
+    }
+
+    /**
+     * Releases the basis images for the specified level. If got again,
+     * they will be recomputed.
+     * @param lev the level number.
+     */
+    public void releaseLevel(int lev) {
+      basis[lev] = null;
+    }
+
+    /**
+     * Gets the residual low-wavenumber image.
+     * @return the residual low-wavenumber image; by reference.
+     */
+    public float[][][] getLowImage() {
+      return low[basis.length];
+    }
+
+    private float[][][] image; // input image
+    private float[][][][] low; // low-wavenumber images input to levels
+    private float[][][][][] basis; // basis images for levels, if computed
+
+    private LazyPyramid(float[][][] x) {
+      image = x;
+      low = new float[nlev+1][][][];
+      basis = new float[nlev][][][][];
+      for (int lev=0; lev<nlev; ++lev) {
+        float[][][] cf = levelSpectrum(lev,(lev==0)?x:low[lev]);
+        float[][][] clo = splitSpectrum(cf);
+        int lfactor = (int)pow(2.0,(double)lev);
+        int nl3 = (n3-1)/lfactor+1;
+        int nl2 = (n2-1)/lfactor+1;
+        int nl1 = (n1-1)/lfactor+1;
+        low[lev+1] = zerofloat((nl1-1)/2+1,(nl2-1)/2+1,(nl3-1)/2+1);
+        makeLowImage(lev,clo,zerofloat(nl1,nl2,nl3),low[lev+1]);
+      }
+    }
+  }
+
+  /**
+   * Makes a lazy steerable pyramid for an input 3D image. Peak memory 
+   * required to make and sum a lazy pyramid is little more than that for 
+   * the basis images of the first (largest) level.
+   * @param x input 3D image; by reference, not by copy.
+   * @return the lazy steerable pyramid.
+   */
+  public LazyPyramid makeLazyPyramid(float[][][] x) {
+    initSizes(x);
+    return new LazyPyramid(x);
+  }
+
+  /**
+   * Sums all basis images from a lazy 3D steerable pyramid to create a
+   * filtered output image. Levels are computed, if necessary, and released
+   * one at a time from the coarsest level to the finest. The residual 
+   * low-wavenumber image is not modified. Except for basis images that were
+   * modified after they were got from the lazy pyramid, the output image is
+   * the same as that summed from a pyramid made by the method
+   * {@link #makePyramid(float[][][])}.
+   * @param keeplow if true:keep low-wavenumber energy, if false: zero it.
+   * @param lpyr input lazy 3D steerable pyramid.
+   * @return array containing output filtered 3D image.
+   */
+  public float[][][] sumPyramid(boolean keeplow,LazyPyramid lpyr) {
+    float[][][] lo = lpyr.getLowImage();
+    float[][][] y = (keeplow)?lo:zerofloat(lo[0][0].length,lo[0].length,
+                                            lo.length);
+    for (int lev=nlev-1; lev>=0; --lev) {
+      float[][][][] b = lpyr.getLevel(lev);
+      sumPyramidLevel(b,y);
+      y = b[0];
+      lpyr.releaseLevel(lev);
+    }
+    return copy(nx1,nx2,nx3,y);
+  }
+
   /**
    * Sums all basis images from an input 2D steerable pyramid to create a
    * filtered output image.  Optionally, residual low-wavenumber image can 
@@ -276,71 +383,13 @@ public class SteerablePyramid {
    * @return array containing output filtered 3D image.
    */
   public float[][][] sumPyramid(boolean keeplow,float[][][][][] spyr) {
-    int lev;
     // Optionally zero the low-wavenumber image.
     if (!keeplow) {
       zero(spyr[nlev][0]);
     }
-    // Sum basis images to create filtered image.  Sinc interpolation is
-    // performed on subsampled images prior to summing adjacent levels.
-    int lfactor = (int)pow(2.0,(double)(nlev-1));
-    int nl3 = (n3-1)/lfactor+1;
-    int nl2 = (n2-1)/lfactor+1;
-    int nl1 = (n1-1)/lfactor+1;
-    for (int i=0; i<nlev; ++i) {
-      lev = nlev-i-1;
-      for (int dir=1; dir<NDIR3; ++dir) {
-        add(spyr[lev][0],spyr[lev][dir],spyr[lev][0]);
-      }
-      int m3 = (nl3-1)/2+1;
-      int m2 = (nl2-1)/2+1;
-      int m1 = (nl1-1)/2+1;
-      int j1,j2,j3;
-      float[] lo11 = zerofloat(m1);
-      float[] lo12 = zerofloat(m2);
-      float[] lo13 = zerofloat(m3);
-      SincInterpolator si = SincInterpolator.fromErrorAndFrequency(0.001,0.4);
-      si.setExtrapolation(SincInterpolator.Extrapolation.CONSTANT);
-      for (int i3=0; i3<nl3; i3=i3+2) {
-        j3 = i3/2;
-        for (int i2=0; i2<nl2; i2=i2+2) {
-          j2 = i2/2;
-          for (int i1=0; i1<nl1; i1=i1+2) {
-            j1 = i1/2;
-            lo11[j1] = spyr[lev+1][0][j3][j2][j1];
-            spyr[lev][1][i3][i2][i1] = lo11[j1];
-          }
-          for (int i1=1; i1<nl1; i1=i1+2) {
-            spyr[lev][1][i3][i2][i1] = si.interpolate(m1,2,0,lo11,i1);
-          }
-        }
-      }
-      for (int i3=0; i3<nl3; i3=i3+2) {
-        for (int i1=0; i1<nl1; ++i1) {
-          for (int i2=0; i2<nl2; i2=i2+2) {
-            j2 = i2/2;
-            lo12[j2] = spyr[lev][1][i3][i2][i1];
-          }
-          for (int i2=1; i2<nl2; i2=i2+2) {
-            spyr[lev][1][i3][i2][i1] = si.interpolate(m2,2,0,lo12,i2);
-          }
-        }
-      }
-      for (int i2=0; i2<nl2; ++i2) {
-        for (int i1=0; i1<nl1; ++i1) {
-          for (int i3=0; i3<nl3; i3=i3+2) {
-            j3 = i3/2;
-            lo13[j3] = spyr[lev][1][i3][i2][i1];
-          }
-          for (int i3=1; i3<nl3; i3=i3+2) {
-            spyr[lev][1][i3][i2][i1] = si.interpolate(m3,2,0,lo13,i3);
-          }
-        }
-      }
-      add(spyr[lev][0],spyr[lev][1],spyr[lev][0]);
-      nl3 = (nl3-1)*2+1;
-      nl2 = (nl2-1)*2+1;
-      nl1 = (nl1-1)*2+1;
+    // Sum basis images to create filtered image.
+    for (int lev=nlev-1; lev>=0; --lev) {
+      sumPyramidLevel(spyr[lev],spyr[lev+1][0]);
     }
     float[][][] y = zerofloat(nx1,nx2,nx3);
     copy(nx1,nx2,nx3,spyr[0][0],y);
@@ -382,15 +431,10 @@ public class SteerablePyramid {
    * sub-array contains orientation theta in radians, and the second
    * contains linearity attribute ranging from 0 to 1.
    */
-  public float[][][][] estimateAttributes(double sigma,float[][][][] spyr) {
-    double sigmaa = 2.0*sigma;
-    double sigmac = 0.5*sigma;
-    double a0,a1,a2;
-    double e0,e1;
-    double[][] feout;
-    int i1a,i2a,i1c,i2c;
+  public float[][][][] estimateAttributes(final double sigma,
+                                          final float[][][][] spyr) {
     // Allocate output 4-dimensional array.
-    float[][][][] attr = new float[nlev][2][1][1];
+    final float[][][][] attr = new float[nlev][2][1][1];
     for (int lev=0; lev<nlev; ++lev) {
       int lfactor = (int)pow(2.0,(double)lev);
       int nl2 = (n2-1)/lfactor+1;
@@ -400,52 +444,11 @@ public class SteerablePyramid {
       }
     }
     // Apply preprocessing to multiple levels and average adjacent scales.
-    // Write over level a preprocessed basis images after finishing with
-    // them to save memory.
-    for (int levb=0; levb<nlev; ++levb) {
-      int leva = levb-1;
-      int levc = levb+1; 
-      float[][][] pqjb = pqjShiftSmooth(sigma,levb,spyr);
-      int nl2 = pqjb[0].length;
-      int nl1 = pqjb[0][0].length;  
-      if (leva>=0) {
-        float[][][] pqja = pqjShiftSmooth(sigmaa,leva,spyr);
-        for (int i2b=0; i2b<nl2; ++i2b) {
-          for (int i1b=0; i1b<nl1; ++i1b) {
-            i1a = 2*i1b;
-            i2a = 2*i2b;
-            for (int j=0; j<NDIR2; ++j) {
-              pqjb[j][i2b][i1b] += pqja[j][i2a][i1a];
-            }
-          }
-        }
+    loop(nlev,new Parallel.LoopInt() {
+      public void compute(int levb) {
+        estimateAttributes(sigma,levb,spyr,attr);
       }
-      if (levc<nlev) {
-        float[][][] pqja = pqjShiftSmooth(sigmac,levc,spyr);
-        for (int i2b=0; i2b<nl2; ++i2b) {
-          for (int i1b=0; i1b<nl1; ++i1b) {
-            i1c = (int)(round((double)i1b)*0.5);
-            i2c = (int)(round((double)i2b)*0.5);
-            for (int j=0; j<NDIR2; ++j) {
-              pqjb[j][i2b][i1b] += pqja[j][i2c][i1c];
-            }
-          }
-        }
-      }
-      // Compute steering angle theta and linearity attribute.
-      for (int i2b=0; i2b<nl2; ++i2b) {
-        for (int i1b=0; i1b<nl1; ++i1b) {
-          a0 = (double)pqjb[0][i2b][i1b];
-          a1 = (double)pqjb[1][i2b][i1b];
-          a2 = (double)pqjb[2][i2b][i1b];
-          feout = findExtrema(a0,a1,a2);
-          attr[levb][0][i2b][i1b] = (float)(feout[0][0]);
-          e0 = eval0(a0,a1,a2,feout[0][0]);
-          e1 = eval0(a0,a1,a2,feout[1][0]);
-          attr[levb][1][i2b][i1b] = (float)((e0-e1)/e0);
-        } 
-      }
-    }
+    });
     return attr;
   }
   
@@ -490,25 +493,11 @@ public class SteerablePyramid {
    * sub-arrays contain direction cosines, and the fourth contains 
    * dimensionality attribute ranging from 0 to 1.
    */
-  public float[][][][][] estimateAttributes(boolean forlinear,double sigma,
-                                                      float[][][][][] spyr) {
-    double sigmaa = 2.0*sigma;
-    double sigmac = 0.5*sigma;
-    double[] f = zerodouble(NDIR3);
-    double[][] abcf = zerodouble(4,3);
-    int i1a,i2a,i3a,i1c,i2c,i3c;
-    // Parameters to select estimation for locally planar or linear features
-    int abcindx = 2;
-    int e0indx = 2;
-    int e1indx = 1;
+  public float[][][][][] estimateAttributes(final boolean forlinear,
+      final double sigma,final float[][][][][] spyr) {
     statelinear = forlinear;
-    if (forlinear) {
-      abcindx = 0;
-      e0indx = 1;
-      e1indx = 0;
-    }
     // Allocate output 5-dimensional array.
-    float[][][][][] attr = new float[nlev][4][1][1][1];
+    final float[][][][][] attr = new float[nlev][4][1][1][1];
     for (int lev=0; lev<nlev; ++lev) {
       int lfactor = (int)pow(2.0,(double)lev);
       int nl3 = (n3-1)/lfactor+1;
@@ -519,62 +508,11 @@ public class SteerablePyramid {
       }
     }
     // Apply preprocessing to multiple levels and average adjacent scales.
-    // Write over level a preprocessed basis images after finishing with
-    // them to save memory.
-    for (int levb=0; levb<nlev; ++levb) {
-      int leva = levb-1;
-      int levc = levb+1; 
-      float[][][][] pqjb = pqjShiftSmooth(sigma,levb,spyr);
-      int nl3 = pqjb[0].length;
-      int nl2 = pqjb[0][0].length;
-      int nl1 = pqjb[0][0][0].length;  
-      if (leva>=0) {
-        float[][][][] pqja = pqjShiftSmooth(sigmaa,leva,spyr);
-        for (int i3b=0; i3b<nl3; ++i3b) {
-          for (int i2b=0; i2b<nl2; ++i2b) {
-            for (int i1b=0; i1b<nl1; ++i1b) {
-              i3a = 2*i3b;
-              i2a = 2*i2b;
-              i1a = 2*i1b;
-              for (int j=0; j<NDIR3; ++j) {
-                pqjb[j][i3b][i2b][i1b] += pqja[j][i3a][i2a][i1a];
-              }
-            }
-          }
-        }
+    loop(nlev,new Parallel.LoopInt() {
+      public void compute(int levb) {
+        estimateAttributes(forlinear,sigma,levb,spyr,attr);
       }
-      if (levc<nlev) {
-        float[][][][] pqja = pqjShiftSmooth(sigmac,levc,spyr);
-        for (int i3b=0; i3b<nl3; ++i3b) {
-          for (int i2b=0; i2b<nl2; ++i2b) {
-            for (int i1b=0; i1b<nl1; ++i1b) {
-              i3c = (int)(round((double)i3b)*0.5);
-              i2c = (int)(round((double)i2b)*0.5);
-              i1c = (int)(round((double)i1b)*0.5);
-              for (int j=0; j<NDIR3; ++j) {
-                pqjb[j][i3b][i2b][i1b] += pqja[j][i3c][i2c][i1c];
-              }
-            }
-          }
-        }
-      }
-      // Compute steering direction cosines and dimensionality attribute.
-      for (int i3b=0; i3b<nl3; ++i3b) {
-        for (int i2b=0; i2b<nl2; ++i2b) {
-          for (int i1b=0; i1b<nl1; ++i1b) {
-            for (int j=0; j<NDIR3; ++j) {
-              f[j] = pqjb[j][i3b][i2b][i1b];
-            }
-            findCriticalPoints(f,abcf);
-            attr[levb][0][i3b][i2b][i1b] = (float)(abcf[abcindx][0]);
-            attr[levb][1][i3b][i2b][i1b] = (float)(abcf[abcindx][1]);
-            attr[levb][2][i3b][i2b][i1b] = (float)(abcf[abcindx][2]);
-            attr[levb][3][i3b][i2b][i1b] = 
-                (float)((abcf[e0indx][3]-abcf[e1indx][3])/abcf[2][3]);
-          } 
-        }
-      }
-    } 
+    });
     return attr;
   }
   
@@ -725,8 +663,113 @@ public class SteerablePyramid {
   private static final double SIN_PIO3 = sin(PI/3.0);
   private int nlev,nx1,nx2,nx3,n1,n2,n3;
   private boolean statelinear;
+  private boolean parallel;
   double ka,kb;
   
+  /**
+   * Computes the number of pyramid levels and padded sizes of the finest
+   * level for a 3D image.
+   * @param x input 3D image.
+   */
+  private void initSizes(float[][][] x) {
+    nx3 = x.length;
+    nx2 = x[0].length;
+    nx1 = x[0][0].length;
+    // Compute number of levels in pyramid from size of input image.  Also
+    // determine dimensions n1,n2,n3 for the finest-sampled pyramid level
+    // that will allow us to subsample each pyramid level without losing the
+    // last sample.  In our pyramid images we will carry this number of 
+    // samples and copy the original number of samples only for final output.
+    nlev = 1;
+    int nlev2 = 1;
+    int nlev3 = 1;
+    n1 = 9;
+    n2 = 9;
+    n3 = 9;
+    while (nx1>n1) {
+      n1 = (n1-1)*2+1;
+      nlev += 1;
+    }
+    while (nx2>n2) {
+      n2 = (n2-1)*2+1;
+      nlev2 += 1;
+    }
+    while (nx3>n3) {
+      n3 = (n3-1)*2+1;
+      nlev3 += 1;
+    }
+    if (nlev>nlev2) {
+      nlev = nlev2;
+    }
+    if (nlev>nlev3) {
+      nlev = nlev3;
+    }
+  }
+  
+  /**
+   * Sums the basis images for one level of a 3D steerable pyramid and the
+   * filtered image for the next coarser level. Sinc interpolation is 
+   * performed on the subsampled coarser image prior to summing. The sum is
+   * written into the first basis image, and the second basis image is 
+   * overwritten.
+   * @param b input/output basis images for one level.
+   * @param lo input filtered image for the next coarser level.
+   */
+  private void sumPyramidLevel(float[][][][] b,float[][][] lo) {
+    int nl3 = b[0].length;
+    int nl2 = b[0][0].length;
+    int nl1 = b[0][0][0].length;
+    for (int dir=1; dir<NDIR3; ++dir) {
+      add(b[0],b[dir],b[0]);
+    }
+    int m3 = (nl3-1)/2+1;
+    int m2 = (nl2-1)/2+1;
+    int m1 = (nl1-1)/2+1;
+    int j1,j2,j3;
+    float[] lo11 = zerofloat(m1);
+    float[] lo12 = zerofloat(m2);
+    float[] lo13 = zerofloat(m3);
+    SincInterpolator si = SincInterpolator.fromErrorAndFrequency(0.001,0.4);
+    si.setExtrapolation(SincInterpolator.Extrapolation.CONSTANT);
+    for (int i3=0; i3<nl3; i3=i3+2) {
+      j3 = i3/2;
+      for (int i2=0; i2<nl2; i2=i2+2) {
+        j2 = i2/2;
+        for (int i1=0; i1<nl1; i1=i1+2) {
+          j1 = i1/2;
+          lo11[j1] = lo[j3][j2][j1];
+          b[1][i3][i2][i1] = lo11[j1];
+        }
+        for (int i1=1; i1<nl1; i1=i1+2) {
+          b[1][i3][i2][i1] = si.interpolate(m1,2,0,lo11,i1);
+        }
+      }
+    }
+    for (int i3=0; i3<nl3; i3=i3+2) {
+      for (int i1=0; i1<nl1; ++i1) {
+        for (int i2=0; i2<nl2; i2=i2+2) {
+          j2 = i2/2;
+          lo12[j2] = b[1][i3][i2][i1];
+        }
+        for (int i2=1; i2<nl2; i2=i2+2) {
+          b[1][i3][i2][i1] = si.interpolate(m2,2,0,lo12,i2);
+        }
+      }
+    }
+    for (int i2=0; i2<nl2; ++i2) {
+      for (int i1=0; i1<nl1; ++i1) {
+        for (int i3=0; i3<nl3; i3=i3+2) {
+          j3 = i3/2;
+          lo13[j3] = b[1][i3][i2][i1];
+        }
+        for (int i3=1; i3<nl3; i3=i3+2) {
+          b[1][i3][i2][i1] = si.interpolate(m3,2,0,lo13,i3);
+        }
+      }
+    }
+    add(b[0],b[1],b[0]);
+  }
+  
   /**
    * Make a single 2D pyramid level consisting of three directionally-filtered
    * basis images and a subsampled lower-wavenumber image.  (The low-wavenumber
@@ -743,14 +786,11 @@ public class SteerablePyramid {
     float[][] clo1 = copy(cf);
     applyRadial(ka/2.0,kb/2.0,clo1);
     sub(cf,clo1,cf);
-    ftInverse(lev,0,clo1,spyr);
+    ftInverse(lev,clo1,spyr[lev][0]);
     int ml2 = (nl2-1)/2+1;
     int ml1 = (nl1-1)/2+1;
     copy(ml1,ml2,0,0,2,2,spyr[lev][0],0,0,1,1,spyr[lev+1][0]);
-    for (int dir=0; dir<NDIR2; ++dir) {
-      applySteerableFilter(dir,cf,clo1);
-      ftInverse(lev,dir,clo1,spyr); 
-    }
+    makeBasisImages(lev,cf,clo1,spyr[lev]);
   }
   
     /**
@@ -763,24 +803,120 @@ public class SteerablePyramid {
    * @param spyr input/output 3D steerable pyramid.
    */
   private void makePyramidLevel(int lev,float[][][] cf,float[][][][][] spyr) {
-    int lfactor = (int)pow(2.0,(double)lev);
-    int nl3 = (n3-1)/lfactor+1;
-    int nl2 = (n2-1)/lfactor+1;
-    int nl1 = (n1-1)/lfactor+1;
-    float[][][] clo1 = copy(cf);
-    applyRadial(ka/2.0,kb/2.0,clo1);
-    sub(cf,clo1,cf);
-    ftInverse(lev,0,clo1,spyr);
+    float[][][] clo1 = splitSpectrum(cf);
+    makeLowImage(lev,clo1,spyr[lev][0],spyr[lev+1][0]);
+    makeBasisImages(lev,cf,clo1,spyr[lev]);
+  }
+
+  /**
+   * Computes the Fourier transform of the input image for one level of a
+   * 3D pyramid. For the first level, the radial low-pass filter for the 
+   * highest wavenumbers is also applied.
+   * @param lev level number.
+   * @param x input image for the level.
+   * @return the input image in wavenumber domain (complex array).
+   */
+  private float[][][] levelSpectrum(int lev,float[][][] x) {
+    float[][][] cf = ftForward(lev,x);
+    if (lev==0) {
+      applyRadial(ka,kb,cf);
+    }
+    return cf;
+  }
+
+  /**
+   * Splits an image in wavenumber domain into low-wavenumber and 
+   * band-limited parts.
+   * @param cf input image; output band-limited part (complex arrays).
+   * @return the low-wavenumber part (complex array).
+   */
+  private float[][][] splitSpectrum(float[][][] cf) {
+    float[][][] clo = copy(cf);
+    applyRadial(ka/2.0,kb/2.0,clo);
+    sub(cf,clo,cf);
+    return clo;
+  }
+
+  /**
+   * Makes the subsampled low-wavenumber image that is input to the next
+   * 3D pyramid level.
+   * @param lev level number.
+   * @param clo input low-wavenumber part of this level; overwritten.
+   * @param y work array for the low-wavenumber image for this level.
+   * @param ylo output subsampled low-wavenumber image.
+   */
+  private void makeLowImage(int lev,float[][][] clo,float[][][] y,
+                            float[][][] ylo) {
+    ftInverse(lev,clo,y);
+    int nl3 = y.length;
+    int nl2 = y[0].length;
+    int nl1 = y[0][0].length;
     int ml3 = (nl3-1)/2+1;
     int ml2 = (nl2-1)/2+1;
     int ml1 = (nl1-1)/2+1;
-    copy(ml1,ml2,ml3,0,0,0,2,2,2,spyr[lev][0],
-        0,0,0,1,1,1,spyr[lev+1][0]);
-    for (int dir=0; dir<NDIR3; ++dir) {
-      applySteerableFilter(dir,cf,clo1);
-      ftInverse(lev,dir,clo1,spyr); 
+    copy(ml1,ml2,ml3,0,0,0,2,2,2,y,0,0,0,1,1,1,ylo);
+  }
+
+  /**
+   * Makes directionally-filtered basis images for one 2D pyramid level.
+   * All basis images are filtered from the same Fourier transform, and,
+   * if parallel, are computed in parallel.
+   * @param lev level number.
+   * @param cf input band-limited image in wavenumber domain.
+   * @param cw work array with same dimensions as cf; overwritten.
+   * @param b output basis images.
+   */
+  private void makeBasisImages(final int lev,final float[][] cf,
+                               final float[][] cw,final float[][][] b) {
+    final int nf1 = cw[0].length;
+    final int nf2 = cw.length;
+    loop(NDIR2,new Parallel.LoopInt() {
+      public void compute(int dir) {
+        float[][] cd = (dir==0 || !parallel)?cw:new float[nf2][nf1];
+        applySteerableFilter(dir,cf,cd);
+        ftInverse(lev,cd,b[dir]);
+      }
+    });
+  }
+
+  /**
+   * Makes directionally-filtered basis images for one 3D pyramid level.
+   * All basis images are filtered from the same Fourier transform, and,
+   * if parallel, are computed in parallel.
+   * @param lev level number.
+   * @param cf input band-limited image in wavenumber domain.
+   * @param cw work array with same dimensions as cf; overwritten.
+   * @param b output basis images.
+   */
+  private void makeBasisImages(final int lev,final float[][][] cf,
+                               final float[][][] cw,final float[][][][] b) {
+    final int nf1 = cw[0][0].length;
+    final int nf2 = cw[0].length;
+    final int nf3 = cw.length;
+    loop(NDIR3,new Parallel.LoopInt() {
+      public void compute(int dir) {
+        float[][][] cd = (dir==0 || !parallel)?cw:new float[nf3][nf2][nf1];
+        applySteerableFilter(dir,cf,cd);
+        ftInverse(lev,cd,b[dir]);
+      }
+    });
+  }
+
+  /**
+   * Computes a loop body for indices 0 to n-1, in parallel if so specified.
+   * @param n number of loop indices.
+   * @param body the loop body.
+   */
+  private void loop(int n,Parallel.LoopInt body) {
+    if (parallel) {
+      Parallel.loop(n,body);
+    } else {
+      for (int i=0; i<n; ++i) {
+        body.compute(i);
+      }
     }
   }
+
   
   /**
    * Apply radial low-pass filter in wavenumber domain.  Filter response is
@@ -829,43 +965,47 @@ public class SteerablePyramid {
    * @param k2 wavenumber at start of taper (Amp(k2)=0.0).
    * @param cf input/output 3D image in wavenumber domain (complex array).
    */
-  private void applyRadial(double k1,double k2,float[][][] cf) {
+  private void applyRadial(double k1,double k2,final float[][][] cf) {
     int nf3 = cf.length;
-    int nf2 = cf[0].length;
-    int nf1 = cf[0][0].length/2;
-    int ir,ii;
-    double m1 = (double)(nf1-1);
-    double m2 = (double)(nf2-1)/2.0;
-    double m3 = (double)(nf3-1)/2.0;
-    double w1,w2,w3;
-    double mf1 = 1.0/m1;
-    double mf2 = 1.0/m2;
-    double mf3 = 1.0/m3;
-    double wd,a;
-    double denom = 1.0/(k2-k1);
-    float b;
-    for (int i3=0; i3<nf3; ++i3) {
-      for (int i2=0; i2<nf2; ++i2) {
-        for (int i1=0; i1<nf1; ++i1) {
-          w1 = ((double)i1)*mf1;
-          w2 = ((double)i2-m2)*mf2;
-          w3 = ((double)i3-m3)*mf3;
-          wd = Math.sqrt(w1*w1+w2*w2+w3*w3);
-          ir = 2*i1;
-          ii = ir + 1;
-          if (wd >= k2) {
-            cf[i3][i2][ir] = 0.0f;
-            cf[i3][i2][ii] = 0.0f;
-          }
-          else if (wd>k1&&wd<k2) {
-            a = (wd-k1)*denom*PI;
-            b = (float)(0.5*(1.0+cos(a)));
-            cf[i3][i2][ir] *= b;
-            cf[i3][i2][ii] *= b;
-          }
-        }      
+    final int nf2 = cf[0].length;
+    final int nf1 = cf[0][0].length/2;
+    final double m1 = (double)(nf1-1);
+    final double m2 = (double)(nf2-1)/2.0;
+    final double m3 = (double)(nf3-1)/2.0;
+    final double mf1 = 1.0/m1;
+    final double mf2 = 1.0/m2;
+    final double mf3 = 1.0/m3;
+    final double denom = 1.0/(k2-k1);
+    final double k1f = k1;
+    final double k2f = k2;
+    loop(nf3,new Parallel.LoopInt() {
+      public void compute(int i3) {
+        int ir,ii;
+        double w1,w2,w3;
+        double wd,a;
+        float b;
+        for (int i2=0; i2<nf2; ++i2) {
+          for (int i1=0; i1<nf1; ++i1) {
+            w1 = ((double)i1)*mf1;
+            w2 = ((double)i2-m2)*mf2;
+            w3 = ((double)i3-m3)*mf3;
+            wd = Math.sqrt(w1*w1+w2*w2+w3*w3);
+            ir = 2*i1;
+            ii = ir + 1;
+            if (wd >= k2f) {
+              cf[i3][i2][ir] = 0.0f;
+              cf[i3][i2][ii] = 0.0f;
+            }
+            else if (wd>k1f&&wd<k2f) {
+              a = (wd-k1f)*denom*PI;
+              b = (float)(0.5*(1.0+cos(a)));
+              cf[i3][i2][ir] *= b;
+              cf[i3][i2][ii] *= b;
+            }
+          }      
+        }
       }
-    }
+    });
   }
   
   /**
@@ -961,6 +1101,145 @@ public class SteerablePyramid {
     }
   }
   
+  /**
+   * Estimates local orientation and linearity attributes for one level of
+   * a 2D steerable pyramid.
+   * @param sigma half-width of 2D Gaussian smoothing filter.
+   * @param levb level number.
+   * @param spyr input 2D steerable pyramid.
+   * @param attr output attributes for all levels.
+   */
+  private void estimateAttributes(double sigma,int levb,
+                                  float[][][][] spyr,float[][][][] attr) {
+    double sigmaa = 2.0*sigma;
+    double sigmac = 0.5*sigma;
+    double a0,a1,a2;
+    double e0,e1;
+    double[][] feout;
+    int i1a,i2a,i1c,i2c;
+    int leva = levb-1;
+    int levc = levb+1; 
+    float[][][] pqjb = pqjShiftSmooth(sigma,levb,spyr);
+    int nl2 = pqjb[0].length;
+    int nl1 = pqjb[0][0].length;  
+    if (leva>=0) {
+      float[][][] pqja = pqjShiftSmooth(sigmaa,leva,spyr);
+      for (int i2b=0; i2b<nl2; ++i2b) {
+        for (int i1b=0; i1b<nl1; ++i1b) {
+          i1a = 2*i1b;
+          i2a = 2*i2b;
+          for (int j=0; j<NDIR2; ++j) {
+            pqjb[j][i2b][i1b] += pqja[j][i2a][i1a];
+          }
+        }
+      }
+    }
+    if (levc<nlev) {
+      float[][][] pqja = pqjShiftSmooth(sigmac,levc,spyr);
+      for (int i2b=0; i2b<nl2; ++i2b) {
+        for (int i1b=0; i1b<nl1; ++i1b) {
+          i1c = (int)(round((double)i1b)*0.5);
+          i2c = (int)(round((double)i2b)*0.5);
+          for (int j=0; j<NDIR2; ++j) {
+            pqjb[j][i2b][i1b] += pqja[j][i2c][i1c];
+          }
+        }
+      }
+    }
+    // Compute steering angle theta and linearity attribute.
+    for (int i2b=0; i2b<nl2; ++i2b) {
+      for (int i1b=0; i1b<nl1; ++i1b) {
+        a0 = (double)pqjb[0][i2b][i1b];
+        a1 = (double)pqjb[1][i2b][i1b];
+        a2 = (double)pqjb[2][i2b][i1b];
+        feout = findExtrema(a0,a1,a2);
+        attr[levb][0][i2b][i1b] = (float)(feout[0][0]);
+        e0 = eval0(a0,a1,a2,feout[0][0]);
+        e1 = eval0(a0,a1,a2,feout[1][0]);
+        attr[levb][1][i2b][i1b] = (float)((e0-e1)/e0);
+      } 
+    }
+  }
+  
+  /**
+   * Estimates local orientation and dimensionality attributes for one level
+   * of a 3D steerable pyramid.
+   * @param forlinear true: estimate for linear features, false: for planar.
+   * @param sigma half-width of 3D Gaussian smoothing filter.
+   * @param levb level number.
+   * @param spyr input 3D steerable pyramid.
+   * @param attr output attributes for all levels.
+   */
+  private void estimateAttributes(boolean forlinear,double sigma,int levb,
+                                  float[][][][][] spyr,float[][][][][] attr) {
+    double sigmaa = 2.0*sigma;
+    double sigmac = 0.5*sigma;
+    double[] f = zerodouble(NDIR3);
+    double[][] abcf = zerodouble(4,3);
+    int i1a,i2a,i3a,i1c,i2c,i3c;
+    // Parameters to select estimation for locally planar or linear features
+    int abcindx = 2;
+    int e0indx = 2;
+    int e1indx = 1;
+    if (forlinear) {
+      abcindx = 0;
+      e0indx = 1;
+      e1indx = 0;
+    }
+    int leva = levb-1;
+    int levc = levb+1; 
+    float[][][][] pqjb = pqjShiftSmooth(sigma,levb,spyr);
+    int nl3 = pqjb[0].length;
+    int nl2 = pqjb[0][0].length;
+    int nl1 = pqjb[0][0][0].length;  
+    if (leva>=0) {
+      float[][][][] pqja = pqjShiftSmooth(sigmaa,leva,spyr);
+      for (int i3b=0; i3b<nl3; ++i3b) {
+        for (int i2b=0; i2b<nl2; ++i2b) {
+          for (int i1b=0; i1b<nl1; ++i1b) {
+            i3a = 2*i3b;
+            i2a = 2*i2b;
+            i1a = 2*i1b;
+            for (int j=0; j<NDIR3; ++j) {
+              pqjb[j][i3b][i2b][i1b] += pqja[j][i3a][i2a][i1a];
+            }
+          }
+        }
+      }
+    }
+    if (levc<nlev) {
+      float[][][][] pqja = pqjShiftSmooth(sigmac,levc,spyr);
+      for (int i3b=0; i3b<nl3; ++i3b) {
+        for (int i2b=0; i2b<nl2; ++i2b) {
+          for (int i1b=0; i1b<nl1; ++i1b) {
+            i3c = (int)(round((double)i3b)*0.5);
+            i2c = (int)(round((double)i2b)*0.5);
+            i1c = (int)(round((double)i1b)*0.5);
+            for (int j=0; j<NDIR3; ++j) {
+              pqjb[j][i3b][i2b][i1b] += pqja[j][i3c][i2c][i1c];
+            }
+          }
+        }
+      }
+    }
+    // Compute steering direction cosines and dimensionality attribute.
+    for (int i3b=0; i3b<nl3; ++i3b) {
+      for (int i2b=0; i2b<nl2; ++i2b) {
+        for (int i1b=0; i1b<nl1; ++i1b) {
+          for (int j=0; j<NDIR3; ++j) {
+            f[j] = pqjb[j][i3b][i2b][i1b];
+          }
+          findCriticalPoints(f,abcf);
+          attr[levb][0][i3b][i2b][i1b] = (float)(abcf[abcindx][0]);
+          attr[levb][1][i3b][i2b][i1b] = (float)(abcf[abcindx][1]);
+          attr[levb][2][i3b][i2b][i1b] = (float)(abcf[abcindx][2]);
+          attr[levb][3][i3b][i2b][i1b] = 
+              (float)((abcf[e0indx][3]-abcf[e1indx][3])/abcf[2][3]);
+        } 
+      }
+    }
+  }
+  
   /**
    * Applies preprocessing and smoothing to 2D steerable pyramid basis images
    * for input to orientation and linearity estimation.  Three input basis
@@ -1455,15 +1734,13 @@ public class SteerablePyramid {
   
   /**
    * Applies inverse 2D Fourier transform to an input wavenumber-domain image.
-   * The output space-domain image is written to the appropriate part of the
-   * steerable pyramid array.
+   * The output space-domain image is written to an image for one level of
+   * the steerable pyramid.
    * @param lev level number.
-   * @param dir basis filter orientation index for the input image.
    * @param cf input image in wavenumber domain (complex array).
-   * @param spyr input/output 2D steerable pyramid.
+   * @param y output 2D image for the level.
    */
-  private void ftInverse(int lev,int dir,
-                         float[][] cf,float spyr[][][][]) {
+  private void ftInverse(int lev,float[][] cf,float[][] y) {
     FftReal fft1;
     FftComplex fft2;
     int nf2 = cf.length;
@@ -1480,20 +1757,18 @@ public class SteerablePyramid {
     fft2.scale(nf1c,nf2,cf);
     fft1.complexToReal1(-1,nf2,cf,cf);
     fft1.scale(nf1,nf2,cf);
-    copy(nl1,nl2,mpad,mpad,1,1,cf,0,0,1,1,spyr[lev][dir]);
+    copy(nl1,nl2,mpad,mpad,1,1,cf,0,0,1,1,y);
   }
   
   /**
    * Applies inverse 3D Fourier transform to an input wavenumber-domain image.
-   * The output space-domain image is written to the appropriate part of the
-   * steerable pyramid array.
+   * The output space-domain image is written to an image for one level of
+   * the steerable pyramid.
    * @param lev level number.
-   * @param dir basis filter orientation index for the input image.
    * @param cf input image in wavenumber domain (complex array).
-   * @param spyr input/output 3D steerable pyramid.
+   * @param y output 3D image for the level.
    */
-  private void ftInverse(int lev,int dir,
-                         float[][][] cf,float spyr[][][][][]) {
+  private void ftInverse(int lev,float[][][] cf,float[][][] y) {
     FftReal fft1;
     FftComplex fft2;
     FftComplex fft3;
@@ -1518,7 +1793,7 @@ public class SteerablePyramid {
     fft1.complexToReal1(-1,nf2,nf3,cf,cf);
     fft1.scale(nf1,nf2,nf3,cf);
     copy(nl1,nl2,nl3,mpad,mpad,mpad,1,1,1,cf,
-        0,0,0,1,1,1,spyr[lev][dir]);
+        0,0,0,1,1,1,y);
   }
   
   /**
@@ -0,0 +1,215 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * A wavefront schedule for parallel causal recursions. Units (j1,j2) in
+ * an n1-by-n2 grid are computed recursively, where each unit depends on
+ * units (j1-lag1[j],j2-lag2[j]) computed previously. Lags (0,0) are
+ * ignored. For all other lags, lag2[j] must be non-negative, and lag1[j]
+ * must be positive if lag2[j] is zero. Units may be samples of a 2-D
+ * array, or lines of samples in a 3-D array.
+ * <p>
+ * The grid is skewed, so that unit (j1,j2) lies in column u = j1+s*j2,
+ * for the smallest non-negative skew s for which all lags are positive in
+ * the skewed coordinates. Columns and rows are then grouped in tiles that
+ * are at least as wide and as tall as the lags. With that grouping, each
+ * tile (b,r) depends only on tiles (b-1,r), (b,r-1) and (b-1,r-1), so that
+ * all tiles on a front b+r = constant may be computed in parallel.
+ * Fronts are computed in sequence, forward for causal recursions, and
+ * in reverse for anti-causal (transpose) recursions.
+ * <p>
+ * Within a tile, units must be computed by rows j2, and within each row
+ * by columns j1, in the order (forward or reverse) of the recursion.
+ * Because the order in which each unit is computed does not change the
+ * terms in its recursion, results are the same as for serial recursions.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+class Wavefront {
+
+  /**
+   * A tile computed in a wavefront.
+   */
+  interface Tile {
+
+    /**
+     * Computes all units in the specified tile.
+     * @param b the tile index in the 1st (skewed) dimension.
+     * @param r the tile index in the 2nd dimension.
+     */
+    public void compute(int b, int r);
+  }
+
+  /**
+   * Constructs a wavefront schedule.
+   * @param n1 number of units in 1st dimension.
+   * @param n2 number of units in 2nd dimension.
+   * @param lag1 array of lags in 1st dimension.
+   * @param lag2 array of lags in 2nd dimension.
+   * @param nb maximum number of tiles in 1st (skewed) dimension.
+   * @param nr maximum number of tiles in 2nd dimension.
+   */
+  Wavefront(int n1, int n2, int[] lag1, int[] lag2, int nb, int nr) {
+    Check.argument(nb>0,"nb>0");
+    Check.argument(nr>0,"nr>0");
+    int s = 0;
+    for (int j=0; j<lag1.length; ++j) {
+      Check.argument(lag2[j]>=0,"lag2["+j+"]>=0");
+      if (lag2[j]==0)
+        Check.argument(lag1[j]>=0,"if lag2==0, lag1["+j+"]>=0");
+      else if (lag1[j]<0)
+        s = max(s,(-lag1[j]+lag2[j]-1)/lag2[j]);
+    }
+    int du = 1, dr = 1;
+    for (int j=0; j<lag1.length; ++j) {
+      du = max(du,lag1[j]+s*lag2[j]);
+      dr = max(dr,lag2[j]);
+    }
+    int nu = n1+s*max(0,n2-1);
+    _n1 = n1;
+    _n2 = n2;
+    _s = s;
+    _bu = max(du,(nu+nb-1)/nb);
+    _br = max(dr,(n2+nr-1)/nr);
+    _nb = max(1,(nu+_bu-1)/_bu);
+    _nr = max(1,(n2+_br-1)/_br);
+  }
+
+  /**
+   * Returns a number of tiles for the specified number of units. This
+   * number is four times the number of threads in the current parallel
+   * context, but is reduced so that tiles have at least nmin units.
+   * @param n the number of units.
+   * @param nmin the minimum number of units per tile.
+   * @return the number of tiles.
+   */
+  static int tileCount(int n, int nmin) {
+    int nthread = Parallel.getContext().getThreadCount();
+    return max(1,min(4*nthread,n/nmin));
+  }
+
+  /**
+   * Gets the skew s, such that unit (j1,j2) lies in column j1+s*j2.
+   * @return the skew.
+   */
+  int getSkew() {
+    return _s;
+  }
+
+  /**
+   * Gets the number of columns in each tile.
+   * @return the number of columns.
+   */
+  int getTileWidth() {
+    return _bu;
+  }
+
+  /**
+   * Gets the number of rows in each tile.
+   * @return the number of rows.
+   */
+  int getTileHeight() {
+    return _br;
+  }
+
+  /**
+   * Gets the number of tiles in the 1st (skewed) dimension.
+   * @return the number of tiles.
+   */
+  int getTileCount1() {
+    return _nb;
+  }
+
+  /**
+   * Gets the number of tiles in the 2nd dimension.
+   * @return the number of tiles.
+   */
+  int getTileCount2() {
+    return _nr;
+  }
+
+  /**
+   * Gets the lowest row index j2 in the specified tile.
+   * @param r the tile index in the 2nd dimension.
+   * @return the lowest row index.
+   */
+  int j2lo(int r) {
+    return r*_br;
+  }
+
+  /**
+   * Gets one plus the highest row index j2 in the specified tile.
+   * @param r the tile index in the 2nd dimension.
+   * @return one plus the highest row index.
+   */
+  int j2hi(int r) {
+    return min(_n2,(r+1)*_br);
+  }
+
+  /**
+   * Gets the lowest index j1 in the specified row of a tile.
+   * @param b the tile index in the 1st (skewed) dimension.
+   * @param j2 the row index.
+   * @return the lowest index j1.
+   */
+  int j1lo(int b, int j2) {
+    return max(0,b*_bu-_s*j2);
+  }
+
+  /**
+   * Gets one plus the highest index j1 in the specified row of a tile.
+   * The row is empty if this index is not greater than the lowest index.
+   * @param b the tile index in the 1st (skewed) dimension.
+   * @param j2 the row index.
+   * @return one plus the highest index j1.
+   */
+  int j1hi(int b, int j2) {
+    return min(_n1,(b+1)*_bu-_s*j2);
+  }
+
+  /**
+   * Computes all tiles in forward order, for causal recursions.
+   * @param tile the tile computation.
+   */
+  void forward(Tile tile) {
+    for (int t=0; t<_nb+_nr-1; ++t)
+      front(t,tile);
+  }
+
+  /**
+   * Computes all tiles in reverse order, for anti-causal recursions.
+   * @param tile the tile computation.
+   */
+  void reverse(Tile tile) {
+    for (int t=_nb+_nr-2; t>=0; --t)
+      front(t,tile);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private int _n1,_n2; // numbers of units
+  private int _s; // skew
+  private int _bu,_br; // tile width and height
+  private int _nb,_nr; // numbers of tiles
+
+  private void front(final int t, final Tile tile) {
+    int blo = max(0,t-_nr+1);
+    int bhi = min(_nb-1,t);
+    Parallel.loop(blo,bhi+1,new Parallel.LoopInt() {
+      public void compute(int b) {
+        tile.compute(b,t-b);
+      }
+    });
+  }
+}
@@ -9,6 +9,7 @@ package edu.mines.jtk.interp;
 import edu.mines.jtk.dsp.Sampling;
 import edu.mines.jtk.mesh.TriMesh;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -39,23 +40,25 @@ public class NearestGridder2 implements Gridder2 {
    * @param g array of nearest known sample values.
    */
   public void computeDistancesAndValues(
-    Sampling s1, Sampling s2, float[][] d, float[][] g) 
+    final Sampling s1, final Sampling s2, final float[][] d, final float[][] g)
   {
-    int n1 = s1.getCount();
+    final int n1 = s1.getCount();
     int n2 = s2.getCount();
-    for (int i2=0; i2<n2; ++i2) {
-      float x2 = (float)s2.getValue(i2);
-      for (int i1=0; i1<n1; ++i1) {
-        float x1 = (float)s1.getValue(i1);
-        TriMesh.Node node = _mesh.findNodeNearest(x1,x2);
-        float d1 = x1-node.x();
-        float d2 = x2-node.y();
-        if (g!=null)
-          g[i2][i1] = _f[node.index];
-        if (d!=null) 
-          d[i2][i1] = sqrt(d1*d1+d2*d2);
+    Parallel.loop(n2,new Parallel.LoopInt() {
+      public void compute(int i2) {
+        float x2 = (float)s2.getValue(i2);
+        for (int i1=0; i1<n1; ++i1) {
+          float x1 = (float)s1.getValue(i1);
+          TriMesh.Node node = _mesh.findNodesNearest(x1,x2,1)[0];
+          float d1 = x1-node.x();
+          float d2 = x2-node.y();
+          if (g!=null)
+            g[i2][i1] = _f[node.index];
+          if (d!=null)
+            d[i2][i1] = sqrt(d1*d1+d2*d2);
+        }
       }
-    }
+    });
   }
 
   ///////////////////////////////////////////////////////////////////////////
@@ -65,12 +68,13 @@ public class NearestGridder2 implements Gridder2 {
     _f = copy(f);
     _mesh = new TriMesh();
     int n = f.length;
+    TriMesh.Node[] nodes = new TriMesh.Node[n];
     for (int i=0; i<n; ++i) {
-      TriMesh.Node node = new TriMesh.Node(x1[i],x2[i]);
-      node.index = i;
-      boolean added = _mesh.addNode(node);
-      Check.argument(added,"samples have unique coordinates (x1,x2)");
+      nodes[i] = new TriMesh.Node(x1[i],x2[i]);
+      nodes[i].index = i;
     }
+    boolean added = _mesh.addNodes(nodes);
+    Check.argument(added,"samples have unique coordinates (x1,x2)");
   }
 
   public float[][] grid(Sampling s1, Sampling s2) {
@@ -11,6 +11,7 @@ import java.util.logging.Logger;
 import edu.mines.jtk.dsp.Sampling;
 import edu.mines.jtk.mesh.TetMesh;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -43,31 +44,34 @@ public class NearestGridder3 implements Gridder3 {
    * @param g array of nearest known sample values.
    */
   public void computeDistancesAndValues(
-    Sampling s1, Sampling s2, Sampling s3, float[][][] d, float[][][] g) 
+    final Sampling s1, final Sampling s2, final Sampling s3,
+    final float[][][] d, final float[][][] g)
   {
-    int n1 = s1.getCount();
-    int n2 = s2.getCount();
+    final int n1 = s1.getCount();
+    final int n2 = s2.getCount();
     int n3 = s3.getCount();
-    for (int i3=0; i3<n3; ++i3) {
-      log.fine("computeDistancesAndValues: i3="+i3);
-      float x3 = (float)s3.getValue(i3);
-      for (int i2=0; i2<n2; ++i2) {
-        log.finer("computeDistancesAndValues: i2="+i2);
-        float x2 = (float)s2.getValue(i2);
-        for (int i1=0; i1<n1; ++i1) {
-          float x1 = (float)s1.getValue(i1);
-          TetMesh.Node node = _mesh.findNodeNearest(x1,x2,x3);
-          if (g!=null)
-            g[i3][i2][i1] = _f[node.index];
-          if (d!=null) {
-            float d1 = x1-node.x();
-            float d2 = x2-node.y();
-            float d3 = x3-node.z();
-            d[i3][i2][i1] = sqrt(d1*d1+d2*d2+d3*d3);
+    Parallel.loop(n3,new Parallel.LoopInt() {
+      public void compute(int i3) {
+        log.fine("computeDistancesAndValues: i3="+i3);
+        float x3 = (float)s3.getValue(i3);
+        for (int i2=0; i2<n2; ++i2) {
+          log.finer("computeDistancesAndValues: i2="+i2);
+          float x2 = (float)s2.getValue(i2);
+          for (int i1=0; i1<n1; ++i1) {
+            float x1 = (float)s1.getValue(i1);
+            TetMesh.Node node = _mesh.findNodesNearest(x1,x2,x3,1)[0];
+            if (g!=null)
+              g[i3][i2][i1] = _f[node.index];
+            if (d!=null) {
+              float d1 = x1-node.x();
+              float d2 = x2-node.y();
+              float d3 = x3-node.z();
+              d[i3][i2][i1] = sqrt(d1*d1+d2*d2+d3*d3);
+            }
           }
         }
       }
-    }
+    });
   }
 
   ///////////////////////////////////////////////////////////////////////////
@@ -77,12 +81,13 @@ public class NearestGridder3 implements Gridder3 {
     _f = copy(f);
     _mesh = new TetMesh();
     int n = f.length;
+    TetMesh.Node[] nodes = new TetMesh.Node[n];
     for (int i=0; i<n; ++i) {
-      TetMesh.Node node = new TetMesh.Node(x1[i],x2[i],x3[i]);
-      node.index = i;
-      boolean added = _mesh.addNode(node);
-      Check.argument(added,"samples have unique coordinates (x1,x2,x3)");
+      nodes[i] = new TetMesh.Node(x1[i],x2[i],x3[i]);
+      nodes[i].index = i;
     }
+    boolean added = _mesh.addNodes(nodes);
+    Check.argument(added,"samples have unique coordinates (x1,x2,x3)");
   }
 
   public float[][][] grid(Sampling s1, Sampling s2, Sampling s3) {
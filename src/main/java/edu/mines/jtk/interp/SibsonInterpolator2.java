@@ -516,10 +516,8 @@ public class SibsonInterpolator2 {
       if (x2i==_x2min) x2i -= Math.ulp(x2i); 
       if (x2i==_x2max) x2i += Math.ulp(x2i);
 
-      // Add a new node to the mesh.
+      // Make a new node for the mesh.
       TriMesh.Node node = new TriMesh.Node(x1i,x2i);
-      boolean added = _mesh.addNode(node);
-      Check.argument(added,"each sample has unique coordinates");
       NodeData data = new NodeData();
       node.data = data;
       node.index = i;
@@ -527,6 +525,11 @@ public class SibsonInterpolator2 {
         data.f = f[i];
       _nodes[i] = node;
     }
+
+    // Add all nodes at once, which is faster than adding them one at a
+    // time. A node is not added if another already exists there.
+    boolean added = _mesh.addNodes(_nodes);
+    Check.argument(added,"each sample has unique coordinates");
   }
 
   // Returns true if gradients are being used in interpolation.
@@ -15,6 +15,7 @@ import edu.mines.jtk.la.DMatrixQrd;
 import edu.mines.jtk.mesh.Geometry;
 import edu.mines.jtk.mesh.TetMesh;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
 
 /**
  * Sibson interpolation of scattered samples of 3D functions f(x1,x2,x3).
@@ -184,15 +185,8 @@ public class SibsonInterpolator3 {
     Method method, float[] f, float[] x1, float[] x2, float[] x3) 
   {
     makeMesh(f,x1,x2,x3);
-    _nodeList = new TetMesh.NodeList();
-    _tetList = new TetMesh.TetList();
-    if (method==Method.WATSON_SAMBRIDGE) {
-      _va = new WatsonSambridge();
-    } else if (method==Method.BRAUN_SAMBRIDGE) {
-      _va = new BraunSambridge();
-    } else if (method==Method.HALE_LIANG) {
-      _va = new HaleLiang();
-    }
+    _method = method;
+    _nn = new NaturalNabors(method);
   }
 
   /**
@@ -265,6 +259,18 @@ public class SibsonInterpolator3 {
     _fnull = fnull;
   }
 
+  /**
+   * Sets the use of parallel processing when interpolating values sampled
+   * on a grid. If parallel, then values for different x3 coordinates are
+   * interpolated in different threads, each with its own lists of natural
+   * neighbors. Results are the same as those of serial interpolation.
+   * The default is false.
+   * @param parallel true, for parallel interpolation; false, for serial.
+   */
+  public void setParallel(boolean parallel) {
+    _parallel = parallel;
+  }
+
   /**
    * Sets a bounding box for this interpolator.
    * Sibson interpolation is undefined for points (x1,x2,x3) outside the 
@@ -352,16 +358,8 @@ public class SibsonInterpolator3 {
    * @return the interpolated value.
    */
   public float interpolate(float x1, float x2, float x3) {
-    if (!inBounds(x1,x2,x3))
-      return _fnull;
-    double vsum = computeVolumes(x1,x2,x3);
-    if (vsum<=0.0)
-      return _fnull;
-    if (usingGradients()) {
-      return interpolate1(vsum,x1,x2,x3);
-    } else {
-      return interpolate0(vsum);
-    }
+    _nn.tet = null; // the mesh may have changed since the last point
+    return interpolate(_nn,x1,x2,x3);
   }
 
   /**
@@ -371,23 +369,25 @@ public class SibsonInterpolator3 {
    * @param s3 the sampling of n3 x3 coordinates.
    * @return array[n3][n2][n1] of interpolated values.
    */
-  public float[][][] interpolate(Sampling s1, Sampling s2, Sampling s3) {
+  public float[][][] interpolate(
+    final Sampling s1, final Sampling s2, final Sampling s3)
+  {
     log.fine("interpolate: begin");
     int n1 = s1.getCount();
     int n2 = s2.getCount();
-    int n3 = s2.getCount();
-    float[][][] f = new float[n3][n2][n1];
-    for (int i3=0; i3<n3; ++i3) {
-      log.fine("interpolate: i3="+i3);
-      float x3 = (float)s3.getValue(i3);
-      for (int i2=0; i2<n2; ++i2) {
-        log.finer("interpolate: i2="+i2);
-        float x2 = (float)s2.getValue(i2);
-        for (int i1=0; i1<n1; ++i1) {
-          float x1 = (float)s1.getValue(i1);
-          f[i3][i2][i1] = interpolate(x1,x2,x3);
+    int n3 = s3.getCount();
+    final float[][][] f = new float[n3][n2][n1];
+    if (_parallel) {
+      computeTetCenters();
+      Parallel.loop(n3,new Parallel.LoopInt() {
+        public void compute(int i3) {
+          NaturalNabors nn = new NaturalNabors(_method);
+          interpolate(nn,s1,s2,(float)s3.getValue(i3),f[i3]);
         }
-      }
+      });
+    } else {
+      for (int i3=0; i3<n3; ++i3)
+        interpolate(_nn,s1,s2,(float)s3.getValue(i3),f[i3]);
     }
     log.fine("interpolate: end");
     return f;
@@ -415,13 +415,13 @@ public class SibsonInterpolator3 {
     if (wsum==0.0f)
       return null;
     float wscl = 1.0f/wsum;
-    int nnode = _nodeList.nnode();
-    TetMesh.Node[] nodes = _nodeList.nodes();
+    int nnode = _nn.nodeList.nnode();
+    TetMesh.Node[] nodes = _nn.nodeList.nodes();
     IndexWeight[] iw = new IndexWeight[nnode];
     for (int inode=0; inode<nnode; ++inode) {
       TetMesh.Node node = nodes[inode];
       int i = node.index;
-      float w = (float)volume(node)*wscl;
+      float w = (float)_nn.volume(inode)*wscl;
       iw[inode] = new IndexWeight(i,w);
     }
     return iw;
@@ -487,7 +487,6 @@ public class SibsonInterpolator3 {
   // Data associated with all nodes in the tet mesh.
   private static class NodeData {
     float f,gx,gy,gz; // function values and gradient
-    double volume; // volume for Sibson weight
   }
   private static NodeData data(TetMesh.Node node) {
     return (NodeData)node.data;
@@ -504,18 +503,15 @@ public class SibsonInterpolator3 {
   private static float gz(TetMesh.Node node) {
     return data(node).gz;
   }
-  private static double volume(TetMesh.Node node) {
-    return data(node).volume;
-  }
   private static boolean ghost(TetMesh.Node node) {
     return node.index<0;
   }
 
   private TetMesh _mesh; // the mesh
   private TetMesh.Node[] _nodes; // array of real (not ghost) nodes
-  private TetMesh.NodeList _nodeList; // list of natural neighbor nodes
-  private TetMesh.TetList _tetList; // list of natural neighbor tets
-  private VolumeAccumulator _va; // accumulates Sibson's volumes
+  private Method _method; // method for computing Sibson's volumes
+  private NaturalNabors _nn; // natural neighbors for serial interpolation
+  private boolean _parallel; // true, for parallel grid interpolation
   private boolean _haveGradients; // true if mesh nodes have gradients
   private double _gradientPower; // power of gradients
   private float _fnull; // returned when interpolation point out of bounds
@@ -561,10 +557,8 @@ public class SibsonInterpolator3 {
       if (x3i==_x3min) x3i -= Math.ulp(x3i); 
       if (x3i==_x3max) x3i += Math.ulp(x3i);
 
-      // Add a new node to the mesh, unless one already exists there.
+      // Make a new node for the mesh.
       TetMesh.Node node = new TetMesh.Node(x1i,x2i,x3i);
-      boolean added = _mesh.addNode(node);
-      Check.argument(added,"each sample has unique coordinates");
       NodeData data = new NodeData();
       node.data = data;
       node.index = i;
@@ -572,6 +566,11 @@ public class SibsonInterpolator3 {
         data.f = f[i];
       _nodes[i] = node;
     }
+
+    // Add all nodes at once, which is faster than adding them one at a
+    // time. A node is not added if another already exists there.
+    boolean added = _mesh.addNodes(_nodes);
+    Check.argument(added,"each sample has unique coordinates");
   }
 
   // Returns true if gradients are being used in interpolation.
@@ -683,12 +682,72 @@ public class SibsonInterpolator3 {
       _mesh.removeNode(gnode);
   }
 
-  // Computes Sibson volumes for the specified point (x,y,z).
-  // Returns true, if successful; false, otherwise.
+  // Returns a value interpolated at the specified point, using the
+  // specified lists of natural neighbors.
+  private float interpolate(
+    NaturalNabors nn, float x1, float x2, float x3)
+  {
+    if (!inBounds(x1,x2,x3))
+      return _fnull;
+    double vsum = computeVolumes(nn,x1,x2,x3);
+    if (vsum<=0.0)
+      return _fnull;
+    if (usingGradients()) {
+      return interpolate1(nn,vsum,x1,x2,x3);
+    } else {
+      return interpolate0(nn,vsum);
+    }
+  }
+
+  // Interpolates values f[n2][n1] sampled on a grid for one x3. The search
+  // for each point begins in the tet located for the previous point, so
+  // that point location is fast.
+  private void interpolate(
+    NaturalNabors nn, Sampling s1, Sampling s2, float x3, float[][] f)
+  {
+    log.fine("interpolate: x3="+x3);
+    int n1 = s1.getCount();
+    int n2 = s2.getCount();
+    nn.tet = null;
+    for (int i2=0; i2<n2; ++i2) {
+      log.finer("interpolate: i2="+i2);
+      float x2 = (float)s2.getValue(i2);
+      for (int i1=0; i1<n1; ++i1) {
+        float x1 = (float)s1.getValue(i1);
+        f[i2][i1] = interpolate(nn,x1,x2,x3);
+      }
+    }
+  }
+
+  // Computes circumcenters for all tets in the mesh. Tets compute and
+  // cache their circumcenters lazily, so this method must be called before
+  // natural neighbors are computed concurrently, which then only read the
+  // cached circumcenters.
+  private void computeTetCenters() {
+    double[] c = new double[3];
+    TetMesh.TetIterator ti = _mesh.getTets();
+    while (ti.hasNext())
+      ti.next().centerSphere(c);
+  }
+
+  // Computes Sibson volumes for the specified point (x,y,z), using the
+  // natural neighbors for serial interpolation. Point location begins anew,
+  // because the mesh may have changed since the last point was located.
+  // Returns the sum of volumes, if successful; zero, otherwise.
   private double computeVolumes(float x, float y, float z) {
-    if (!getNaturalNabors(x,y,z))
+    _nn.tet = null;
+    return computeVolumes(_nn,x,y,z);
+  }
+
+  // Computes Sibson volumes for the specified point (x,y,z), using the
+  // specified lists of natural neighbors.
+  // Returns the sum of volumes, if successful; zero, otherwise.
+  private double computeVolumes(
+    NaturalNabors nn, float x, float y, float z)
+  {
+    if (!getNaturalNabors(nn,x,y,z))
       return 0.0;
-    return _va.accumulateVolumes(x,y,z,_mesh,_nodeList,_tetList);
+    return nn.va.accumulateVolumes(x,y,z,_mesh,nn);
   }
 
   // Returns true if not using bounding box or if point is inside the box.
@@ -700,47 +759,39 @@ public class SibsonInterpolator3 {
   }
 
   // Gets lists of natural neighbor nodes and tets of point (x,y,z).
-  // Before building the lists, node and tet marks are cleared. Then,
-  // as nodes and tets are added to the lists, they are marked, and 
-  // node volumes are initialized to zero.
+  // Point location begins in the tet most recently located for the
+  // specified natural neighbors, if any. Nodes and tets are not marked
+  // in the mesh, which is not modified here. Instead, nodes and tets are
+  // simply added to the lists, and node volumes are initialized to zero.
   // Returns true, if the lists are not empty; false, otherwise.
-  private boolean getNaturalNabors(float x, float y, float z) {
-    _mesh.clearNodeMarks();
-    _mesh.clearTetMarks();
-    _nodeList.clear();
-    _tetList.clear();
-    TetMesh.PointLocation pl = _mesh.locatePoint(x,y,z);
+  private boolean getNaturalNabors(
+    NaturalNabors nn, float x, float y, float z)
+  {
+    nn.clear();
+    TetMesh.PointLocation pl = _mesh.locatePoint(nn.tet,x,y,z);
+    nn.tet = pl.tet();
     if (pl.isOutside())
       return false;
-    addTet(x,y,z,pl.tet());
+    addTet(nn,x,y,z,pl.tet());
     return true;
   }
-  private void addTet(double xp, double yp, double zp, TetMesh.Tet tet) {
-    _mesh.mark(tet);
-    _tetList.add(tet);
-    addNode(tet.nodeA());
-    addNode(tet.nodeB());
-    addNode(tet.nodeC());
-    addNode(tet.nodeD());
+  private static void addTet(
+    NaturalNabors nn, double xp, double yp, double zp, TetMesh.Tet tet)
+  {
+    nn.addTet(tet);
     TetMesh.Tet ta = tet.tetA();
     TetMesh.Tet tb = tet.tetB();
     TetMesh.Tet tc = tet.tetC();
     TetMesh.Tet td = tet.tetD();
-    if (needTet(xp,yp,zp,ta)) addTet(xp,yp,zp,ta);
-    if (needTet(xp,yp,zp,tb)) addTet(xp,yp,zp,tb);
-    if (needTet(xp,yp,zp,tc)) addTet(xp,yp,zp,tc);
-    if (needTet(xp,yp,zp,td)) addTet(xp,yp,zp,td);
-  }
-  private void addNode(TetMesh.Node node) {
-    if (_mesh.isMarked(node))
-      return;
-    _mesh.mark(node);
-    _nodeList.add(node);
-    NodeData data = data(node);
-    data.volume = 0.0;
+    if (needTet(nn,xp,yp,zp,ta)) addTet(nn,xp,yp,zp,ta);
+    if (needTet(nn,xp,yp,zp,tb)) addTet(nn,xp,yp,zp,tb);
+    if (needTet(nn,xp,yp,zp,tc)) addTet(nn,xp,yp,zp,tc);
+    if (needTet(nn,xp,yp,zp,td)) addTet(nn,xp,yp,zp,td);
   }
-  private boolean needTet(double xp, double yp, double zp, TetMesh.Tet tet) {
-    if (tet==null || _mesh.isMarked(tet))
+  private static boolean needTet(
+    NaturalNabors nn, double xp, double yp, double zp, TetMesh.Tet tet)
+  {
+    if (tet==null || nn.hasTet(tet))
       return false;
     TetMesh.Node na = tet.nodeA();
     TetMesh.Node nb = tet.nodeB();
@@ -754,23 +805,25 @@ public class SibsonInterpolator3 {
   }
 
   // C0 interpolation; does not use gradients.
-  private float interpolate0(double vsum) {
+  private static float interpolate0(NaturalNabors nn, double vsum) {
     double vfsum = 0.0;
-    int nnode = _nodeList.nnode();
-    TetMesh.Node[] nodes = _nodeList.nodes();
+    int nnode = nn.nodeList.nnode();
+    TetMesh.Node[] nodes = nn.nodeList.nodes();
     for (int inode=0; inode<nnode; ++inode) {
       TetMesh.Node node = nodes[inode];
       float f = f(node);
-      double v = volume(node);
+      double v = nn.volume(inode);
       vfsum += v*f;
     }
     return (float)(vfsum/vsum);
   }
 
   // C1 interpolation; uses gradients.
-  private float interpolate1(double vsum, double x, double y, double z) {
-    int nnode = _nodeList.nnode();
-    TetMesh.Node[] nodes = _nodeList.nodes();
+  private float interpolate1(
+    NaturalNabors nn, double vsum, double x, double y, double z)
+  {
+    int nnode = nn.nodeList.nnode();
+    TetMesh.Node[] nodes = nn.nodeList.nodes();
     double fs = 0.0;
     double es = 0.0;
     double wds = 0.0;
@@ -782,7 +835,7 @@ public class SibsonInterpolator3 {
       double gx = gx(n);
       double gy = gy(n);
       double gz = gz(n);
-      double v = volume(n);
+      double v = nn.volume(inode);
       double w = v/vsum;
       double xn = n.xp();
       double yn = n.yp();
@@ -835,8 +888,8 @@ public class SibsonInterpolator3 {
     double vsum = computeVolumes((float)xn,(float)yn,(float)zn);
     _mesh.addNode(n);
     if (vsum>0.0) {
-      int nm = _nodeList.nnode();
-      TetMesh.Node[] ms = _nodeList.nodes();
+      int nm = _nn.nodeList.nnode();
+      TetMesh.Node[] ms = _nn.nodeList.nodes();
       double hxx = 0.0, hxy = 0.0, hxz = 0.0,
                         hyy = 0.0, hyz = 0.0,
                                    hzz = 0.0;
@@ -846,7 +899,7 @@ public class SibsonInterpolator3 {
         TetMesh.Node m = ms[im];
         if (!ghost(m)) {
           double fm = f(m);
-          double wm = volume(m);
+          double wm = _nn.volume(im);
           double xm = m.xp();
           double ym = m.yp();
           double zm = m.zp();
@@ -889,28 +942,151 @@ public class SibsonInterpolator3 {
     }
   }
 
+  ///////////////////////////////////////////////////////////////////////////
+  ///////////////////////////////////////////////////////////////////////////
+  // Lists of natural neighbor nodes and tets for one point, with volumes
+  // accumulated for those nodes. Nodes and tets are marked only by their
+  // presence in these lists, not by marks in the mesh, and volumes are
+  // stored here, not in node data. Therefore, natural neighbors of
+  // different points may be computed concurrently, each with its own
+  // instance of this class, provided that the mesh is not modified while
+  // doing so. The lists are short, so linear searches for nodes are
+  // fast. Tets are more numerous, and are also stored in a small hash
+  // table of tets, so that they can be found quickly.
+  private static class NaturalNabors {
+    TetMesh.NodeList nodeList = new TetMesh.NodeList(); // nodes
+    TetMesh.TetList tetList = new TetMesh.TetList(); // tets
+    TetMesh.Tet tet; // tet most recently located; null, if none
+    VolumeAccumulator va; // accumulates Sibson's volumes
+    NaturalNabors(Method method) {
+      if (method==Method.WATSON_SAMBRIDGE) {
+        va = new WatsonSambridge();
+      } else if (method==Method.BRAUN_SAMBRIDGE) {
+        va = new BraunSambridge();
+      } else if (method==Method.HALE_LIANG) {
+        va = new HaleLiang();
+      }
+    }
+    void clear() {
+      int ntet = tetList.ntet();
+      for (int itet=0; itet<ntet; ++itet)
+        _table[_slots[itet]] = null;
+      nodeList.clear();
+      tetList.clear();
+    }
+
+    // Adds a tet and any of its nodes not already in the lists.
+    void addTet(TetMesh.Tet tet) {
+      int ntet = tetList.ntet();
+      if (ntet==_slots.length) {
+        int[] t = new int[2*ntet];
+        System.arraycopy(_slots,0,t,0,ntet);
+        _slots = t;
+        t = new int[8*ntet];
+        System.arraycopy(_tetNodes,0,t,0,4*ntet);
+        _tetNodes = t;
+      }
+      if (4*ntet>=_table.length)
+        growTable();
+      tetList.add(tet);
+      _slots[ntet] = insert(tet);
+      _tetNodes[4*ntet  ] = addNode(tet.nodeA());
+      _tetNodes[4*ntet+1] = addNode(tet.nodeB());
+      _tetNodes[4*ntet+2] = addNode(tet.nodeC());
+      _tetNodes[4*ntet+3] = addNode(tet.nodeD());
+    }
+    boolean hasTet(TetMesh.Tet tet) {
+      int mask = _table.length-1;
+      for (int i=hash(tet)&mask; _table[i]!=null; i=(i+1)&mask) {
+        if (_table[i]==tet)
+          return true;
+      }
+      return false;
+    }
+
+    // Returns the index in the node list of node A, B, C or D (for
+    // j = 0, 1, 2 or 3) of the tet with specified index in the tet list.
+    int nodeIndex(int itet, int j) {
+      return _tetNodes[4*itet+j];
+    }
+    double volume(int inode) {
+      return _volumes[inode];
+    }
+    boolean ghost(int inode) {
+      return _ghosts[inode];
+    }
+    void accumulate(int inode, double volume) {
+      _volumes[inode] += volume;
+    }
+
+    private int[] _tetNodes = new int[256]; // node indices for tets
+    private int[] _slots = new int[64]; // table slots for tets
+    private TetMesh.Tet[] _table = new TetMesh.Tet[256]; // table of tets
+    private double[] _volumes = new double[64]; // volumes for nodes
+    private boolean[] _ghosts = new boolean[64]; // true, for ghost nodes
+    private static int hash(TetMesh.Tet tet) {
+      int h = System.identityHashCode(tet);
+      return h^(h>>>16);
+    }
+    private int insert(TetMesh.Tet tet) {
+      int mask = _table.length-1;
+      int i = hash(tet)&mask;
+      while (_table[i]!=null)
+        i = (i+1)&mask;
+      _table[i] = tet;
+      return i;
+    }
+    private void growTable() {
+      int ntet = tetList.ntet();
+      TetMesh.Tet[] tets = tetList.tets();
+      _table = new TetMesh.Tet[2*_table.length];
+      for (int itet=0; itet<ntet; ++itet)
+        _slots[itet] = insert(tets[itet]);
+    }
+    private int addNode(TetMesh.Node node) {
+      int nnode = nodeList.nnode();
+      TetMesh.Node[] nodes = nodeList.nodes();
+      for (int inode=0; inode<nnode; ++inode)
+        if (nodes[inode]==node)
+          return inode;
+      if (nnode==_volumes.length) {
+        double[] t = new double[2*nnode];
+        System.arraycopy(_volumes,0,t,0,nnode);
+        _volumes = t;
+        boolean[] g = new boolean[2*nnode];
+        System.arraycopy(_ghosts,0,g,0,nnode);
+        _ghosts = g;
+      }
+      _volumes[nnode] = 0.0;
+      _ghosts[nnode] = SibsonInterpolator3.ghost(node);
+      nodeList.add(node);
+      return nnode;
+    }
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   ///////////////////////////////////////////////////////////////////////////
   // Given a point (xp,yp,zp) at which to interpolate, an implementation of 
   // natural neighbor interpolation must accumulate volumes for all natural 
-  // neighbor nodes in the the specified node list. This abstract base
-  // class maintains the total volume accumulated for all nodes.
+  // neighbor nodes in the the specified node list. Nodes are specified
+  // by their indices in that list. This abstract base class maintains the
+  // total volume accumulated for all nodes.
   private static abstract class VolumeAccumulator {
     public abstract double accumulateVolumes(
-      double xp, double yp, double zp,
-      TetMesh mesh, TetMesh.NodeList nodeList, TetMesh.TetList tetList);
-    protected void clear() {
+      double xp, double yp, double zp, TetMesh mesh, NaturalNabors nn);
+    protected void clear(NaturalNabors nn) {
+      _nn = nn;
       _sum = 0.0;
     }
     protected double sum() {
       return _sum;
     }
-    protected void accumulate(TetMesh.Node node, double volume) {
-      if (ghost(node)) return; // ignore ghost nodes!
-      NodeData data = data(node);
-      data.volume += volume;
+    protected void accumulate(int inode, double volume) {
+      if (_nn.ghost(inode)) return; // ignore ghost nodes!
+      _nn.accumulate(inode,volume);
       _sum += volume;
     }
+    private NaturalNabors _nn;
     private double _sum;
   }
   
@@ -919,12 +1095,11 @@ public class SibsonInterpolator3 {
   private static class WatsonSambridge extends VolumeAccumulator {
 
     public double accumulateVolumes(
-      double xp, double yp, double zp,
-      TetMesh mesh, TetMesh.NodeList nodeList, TetMesh.TetList tetList)
+      double xp, double yp, double zp, TetMesh mesh, NaturalNabors nn)
     {
-      clear();
-      int ntet = tetList.ntet();
-      TetMesh.Tet[] tets = tetList.tets();
+      clear(nn);
+      int ntet = nn.tetList.ntet();
+      TetMesh.Tet[] tets = nn.tetList.tets();
       for (int itet=0; itet<ntet; ++itet) {
         TetMesh.Tet tet = tets[itet];
         TetMesh.Node na = tet.nodeA();
@@ -944,10 +1119,10 @@ public class SibsonInterpolator3 {
         double vb = volume(_ca,_cd,_cc,_ct);
         double vc = volume(_ca,_cb,_cd,_ct);
         double vd = volume(_ca,_cc,_cb,_ct);
-        accumulate(na,va);
-        accumulate(nb,vb);
-        accumulate(nc,vc);
-        accumulate(nd,vd);
+        accumulate(nn.nodeIndex(itet,0),va);
+        accumulate(nn.nodeIndex(itet,1),vb);
+        accumulate(nn.nodeIndex(itet,2),vc);
+        accumulate(nn.nodeIndex(itet,3),vd);
       }
       return sum();
     }
@@ -970,14 +1145,14 @@ public class SibsonInterpolator3 {
   private static class BraunSambridge extends VolumeAccumulator {
 
     public double accumulateVolumes(
-      double x1i, double x2i, double x3i,
-      TetMesh mesh, TetMesh.NodeList nodeList, TetMesh.TetList tetList)
+      double x1i, double x2i, double x3i, TetMesh mesh, NaturalNabors nn)
     {
-      clear();
+      clear(nn);
+      int nnode = nn.nodeList.nnode();
+      TetMesh.Node[] nodes = nn.nodeList.nodes();
+      markEdges(nn);
 
       // For all natural neighbors, ...
-      int nnode = nodeList.nnode();
-      TetMesh.Node[] nodes = nodeList.nodes();
       for (int j=0; j<nnode; ++j) {
         TetMesh.Node jnode = nodes[j];
         double x1j = jnode.xp();
@@ -1005,7 +1180,7 @@ public class SibsonInterpolator3 {
           TetMesh.Node knode = nodes[k];
 
           // Skip pair if they are not node neighbors in the mesh.
-          if (mesh.findTet(jnode,knode)==null)
+          if (!_edge[j*nnode+k])
             continue;
 
           // Add half-space of points closer to pj than pk. 
@@ -1024,11 +1199,37 @@ public class SibsonInterpolator3 {
 
         // Volume of polyhedron for this natural neighbor.
         double vj = _lv.getVolume();
-        accumulate(jnode,vj);
+        accumulate(j,vj);
       }
       return sum();
     }
     private LasserreVolume _lv = new LasserreVolume(3);
+    private boolean[] _edge = new boolean[64*64]; // true, if edge jk
+
+    // Marks pairs of natural neighbors j and k that share an edge in any
+    // natural-neighbor tet. Other pairs of natural neighbors may share an
+    // edge in the mesh, but the half-space for such a pair does not bound
+    // the volume for either, because no tet that contains that edge has
+    // a circumsphere that contains the point. Unlike TetMesh.findTet,
+    // this test uses only the lists for this point and does not modify
+    // the mesh, so that interpolation may be performed in parallel.
+    private void markEdges(NaturalNabors nn) {
+      int nnode = nn.nodeList.nnode();
+      int ntet = nn.tetList.ntet();
+      if (_edge.length<nnode*nnode) {
+        _edge = new boolean[nnode*nnode];
+      } else {
+        for (int i=0; i<nnode*nnode; ++i)
+          _edge[i] = false;
+      }
+      for (int itet=0; itet<ntet; ++itet) {
+        for (int a=0; a<4; ++a) {
+          int ja = nn.nodeIndex(itet,a);
+          for (int b=0; b<4; ++b)
+            _edge[ja*nnode+nn.nodeIndex(itet,b)] = true;
+        }
+      }
+    }
   }
 
   ///////////////////////////////////////////////////////////////////////////
@@ -1044,11 +1245,10 @@ public class SibsonInterpolator3 {
   private static class HaleLiang extends VolumeAccumulator {
 
     public double accumulateVolumes(
-      double xp, double yp, double zp,
-      TetMesh mesh, TetMesh.NodeList nodeList, TetMesh.TetList tetList)
+      double xp, double yp, double zp, TetMesh mesh, NaturalNabors nn)
     {
-      clear();
-      processTets(xp,yp,zp,mesh,tetList);
+      clear(nn);
+      processTets(xp,yp,zp,nn);
       boolean ok = processFaces(xp,yp,zp);
       return (ok)?sum():0.0;
     }
@@ -1058,12 +1258,11 @@ public class SibsonInterpolator3 {
 
     // Processes all natural-neighbor tets.
     private void processTets(
-      double xp, double yp, double zp, 
-      TetMesh mesh, TetMesh.TetList tetList) 
+      double xp, double yp, double zp, NaturalNabors nn)
     {
       _faceList.clear();
-      int ntet = tetList.ntet();
-      TetMesh.Tet[] tets = tetList.tets();
+      int ntet = nn.tetList.ntet();
+      TetMesh.Tet[] tets = nn.tetList.tets();
       for (int itet=0; itet<ntet; ++itet) {
         TetMesh.Tet tet = tets[itet];
         TetMesh.Tet ta = tet.tetA();
@@ -1074,22 +1273,27 @@ public class SibsonInterpolator3 {
         TetMesh.Node nb = tet.nodeB();
         TetMesh.Node nc = tet.nodeC();
         TetMesh.Node nd = tet.nodeD();
+        int ia = nn.nodeIndex(itet,0);
+        int ib = nn.nodeIndex(itet,1);
+        int ic = nn.nodeIndex(itet,2);
+        int id = nn.nodeIndex(itet,3);
         tet.centerSphere(_xyz);
         double xt = _xyz[0]-xp, yt = _xyz[1]-yp, zt = _xyz[2]-zp;
-        processTetNabor(xp,yp,zp,xt,yt,zt,mesh,ta,nb,nc,nd);
-        processTetNabor(xp,yp,zp,xt,yt,zt,mesh,tb,nc,na,nd);
-        processTetNabor(xp,yp,zp,xt,yt,zt,mesh,tc,nd,na,nb);
-        processTetNabor(xp,yp,zp,xt,yt,zt,mesh,td,na,nc,nb);
+        processTetNabor(xp,yp,zp,xt,yt,zt,nn,ta,nb,nc,nd,ib,ic,id);
+        processTetNabor(xp,yp,zp,xt,yt,zt,nn,tb,nc,na,nd,ic,ia,id);
+        processTetNabor(xp,yp,zp,xt,yt,zt,nn,tc,nd,na,nb,id,ia,ib);
+        processTetNabor(xp,yp,zp,xt,yt,zt,nn,td,na,nc,nb,ia,ic,ib);
       }
     }
     private void processTetNabor(
       double xp, double yp, double zp, 
       double xt, double yt, double zt, 
-      TetMesh mesh, TetMesh.Tet ta,
-      TetMesh.Node nb, TetMesh.Node nc, TetMesh.Node nd)
+      NaturalNabors nn, TetMesh.Tet ta,
+      TetMesh.Node nb, TetMesh.Node nc, TetMesh.Node nd,
+      int ib, int ic, int id)
     {
       boolean saveFace = true;
-      if (ta!=null && mesh.isMarked(ta)) {
+      if (ta!=null && nn.hasTet(ta)) {
         ta.centerSphere(_xyz);
         double xa = _xyz[0]-xp, ya = _xyz[1]-yp, za = _xyz[2]-zp;
         double xb = nb.xp()-xp, yb = nb.yp()-yp, zb = nb.zp()-zp;
@@ -1099,13 +1303,13 @@ public class SibsonInterpolator3 {
         double xdc = xd+xc, ydc = yd+yc, zdc = zd+zc;
         double xcb = xc+xb, ycb = yc+yb, zcb = zc+zb;
         double xyz = yt*za-ya*zt, yzx = zt*xa-za*xt, zxy = xt*ya-xa*yt;
-        accumulate(nb,xbd*xyz+ybd*yzx+zbd*zxy);
-        accumulate(nd,xdc*xyz+ydc*yzx+zdc*zxy);
-        accumulate(nc,xcb*xyz+ycb*yzx+zcb*zxy);
+        accumulate(ib,xbd*xyz+ybd*yzx+zbd*zxy);
+        accumulate(id,xdc*xyz+ydc*yzx+zdc*zxy);
+        accumulate(ic,xcb*xyz+ycb*yzx+zcb*zxy);
         saveFace = false;
       }
       if (saveFace)
-        addFace(xp,yp,zp,xt,yt,zt,nb,nc,nd);
+        addFace(xp,yp,zp,xt,yt,zt,nb,nc,nd,ib,ic,id);
     }
 
     // A face has three nodes and both fake and real circumcenters.
@@ -1113,6 +1317,7 @@ public class SibsonInterpolator3 {
     // will also have exactly three neighbor faces.
     private static class Face {
       TetMesh.Node na,nb,nc; // three nodes of this face
+      int ia,ib,ic; // indices of those nodes in the node list
       double xf,yf,zf; // circumcenter of fake tet pabc
       double xr,yr,zr; // circumcenter of real tet dabc
       Face fa,fb,fc; // three neighbors of this face
@@ -1122,14 +1327,15 @@ public class SibsonInterpolator3 {
     private void addFace(
       double xp, double yp, double zp,
       double xr, double yr, double zr, 
-      TetMesh.Node na, TetMesh.Node nb, TetMesh.Node nc)
+      TetMesh.Node na, TetMesh.Node nb, TetMesh.Node nc,
+      int ia, int ib, int ic)
     {
       double xa = na.xp(), ya = na.yp(), za = na.zp();
       double xb = nb.xp(), yb = nb.yp(), zb = nb.zp();
       double xc = nc.xp(), yc = nc.yp(), zc = nc.zp();
       Geometry.centerSphere(xp,yp,zp,xa,ya,za,xb,yb,zb,xc,yc,zc,_xyz);
       double xf = _xyz[0]-xp, yf = _xyz[1]-yp, zf = _xyz[2]-zp;
-      _faceList.add(na,nb,nc,xf,yf,zf,xr,yr,zr);
+      _faceList.add(na,nb,nc,ia,ib,ic,xf,yf,zf,xr,yr,zr);
     }
 
     // Determines whether all faces in the face set have exactly three
@@ -1162,6 +1368,7 @@ public class SibsonInterpolator3 {
 
       // Coordinates of three face nodes, shifted for local origin.
       TetMesh.Node na = face.na, nb = face.nb, nc = face.nc;
+      int ia = face.ia, ib = face.ib, ic = face.ic;
       double xa = na.xp()-xp, ya = na.yp()-yp, za = na.zp()-zp;
       double xb = nb.xp()-xp, yb = nb.yp()-yp, zb = nb.zp()-zp;
       double xc = nc.xp()-xp, yc = nc.yp()-yp, zc = nc.zp()-zp;
@@ -1178,23 +1385,23 @@ public class SibsonInterpolator3 {
       double vab = xab*xyz+yab*yzx+zab*zxy;
       double vbc = xbc*xyz+ybc*yzx+zbc*zxy;
       double vca = xca*xyz+yca*yzx+zca*zxy;
-      accumulate(na,vab); accumulate(nb,-vab); // here we
-      accumulate(nb,vbc); accumulate(nc,-vbc); // must go
-      accumulate(nc,vca); accumulate(na,-vca); // both ways!
+      accumulate(ia,vab); accumulate(ib,-vab); // here we
+      accumulate(ib,vbc); accumulate(ic,-vbc); // must go
+      accumulate(ic,vca); accumulate(ia,-vca); // both ways!
 
      // Accumulate volumes for Voronoi edges between face neighbors.
       Face fa = face.fa; x2 = fa.xf; y2 = fa.yf; z2 = fa.zf;
       xyz = y1*z2-y2*z1; yzx = z1*x2-z2*x1; zxy = x1*y2-x2*y1;
-      accumulate(nb,xb *xyz+yb *yzx+zb *zxy);
-      accumulate(nc,xbc*xyz+ybc*yzx+zbc*zxy);
+      accumulate(ib,xb *xyz+yb *yzx+zb *zxy);
+      accumulate(ic,xbc*xyz+ybc*yzx+zbc*zxy);
       Face fb = face.fb; x2 = fb.xf; y2 = fb.yf; z2 = fb.zf;
       xyz = y1*z2-y2*z1; yzx = z1*x2-z2*x1; zxy = x1*y2-x2*y1;
-      accumulate(nc,xc *xyz+yc *yzx+zc *zxy);
-      accumulate(na,xca*xyz+yca*yzx+zca*zxy);
+      accumulate(ic,xc *xyz+yc *yzx+zc *zxy);
+      accumulate(ia,xca*xyz+yca*yzx+zca*zxy);
       Face fc = face.fc; x2 = fc.xf; y2 = fc.yf; z2 = fc.zf;
       xyz = y1*z2-y2*z1; yzx = z1*x2-z2*x1; zxy = x1*y2-x2*y1;
-      accumulate(na,xa *xyz+ya *yzx+za *zxy);
-      accumulate(nb,xab*xyz+yab*yzx+zab*zxy);
+      accumulate(ia,xa *xyz+ya *yzx+za *zxy);
+      accumulate(ib,xab*xyz+yab*yzx+zab*zxy);
     }
 
     // A list of faces that represent the boundary of the Voronoi
@@ -1217,6 +1424,7 @@ public class SibsonInterpolator3 {
       }
       void add(
         TetMesh.Node na, TetMesh.Node nb, TetMesh.Node nc,
+        int ia, int ib, int ic,
         double xf, double yf, double zf,
         double xr, double yr, double zr)
       {
@@ -1257,6 +1465,7 @@ public class SibsonInterpolator3 {
           }
         }
         face.na = na; face.nb = nb; face.nc = nc;
+        face.ia = ia; face.ib = ib; face.ic = ic;
         face.xf = xf; face.yf = yf; face.zf = zf;
         face.xr = xr; face.yr = yr; face.zr = zr;
         face.fa = fa; face.fb = fb; face.fc = fc;
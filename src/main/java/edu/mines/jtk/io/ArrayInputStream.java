@@ -11,6 +11,12 @@ import java.nio.ByteOrder;
 
 /**
  * An input stream that implements {@link ArrayInput}.
+ * <p>
+ * An array input stream may optionally read ahead. In this mode, a
+ * background thread reads the next blocks of bytes into a ring of
+ * buffers, while previously read values are being processed. Read-ahead
+ * is most useful when reading and processing alternate, as when reading
+ * and processing one trace at a time.
  * @author Dave Hale, Colorado School of Mines
  * @version 2006.08.05
  */
@@ -62,7 +68,9 @@ public class ArrayInputStream
    */
   public ArrayInputStream(InputStream is, ByteOrder bo) {
     super(is);
-    _dis = new DataInputStream(new BufferedInputStream(is));
+    _dis = (is instanceof ReadAheadInputStream) ?
+      new DataInputStream(is) :
+      new DataInputStream(new BufferedInputStream(is));
     _ai = new ArrayInputAdapter(_dis,bo);
     _bo = bo;
   }
@@ -92,6 +100,36 @@ public class ArrayInputStream
     this(new FileInputStream(file),bo);
   }
 
+  /**
+   * Constructs an array input stream that reads ahead from the specified
+   * stream. While values are being read from this stream, a background
+   * thread reads up to the specified number of blocks of bytes ahead.
+   * @param is the input stream.
+   * @param bo the byte order.
+   * @param nblock the number of blocks to read ahead; at least two.
+   * @param lblock the number of bytes in each block.
+   */
+  public ArrayInputStream(
+    InputStream is, ByteOrder bo, int nblock, int lblock) 
+  {
+    this(new ReadAheadInputStream(is,nblock,lblock),bo);
+  }
+
+  /**
+   * Constructs an array input stream that reads ahead from the specified
+   * file. While values are being read from this stream, a background
+   * thread reads up to the specified number of blocks of bytes ahead.
+   * @param file the file.
+   * @param bo the byte order.
+   * @param nblock the number of blocks to read ahead; at least two.
+   * @param lblock the number of bytes in each block.
+   */
+  public ArrayInputStream(File file, ByteOrder bo, int nblock, int lblock) 
+    throws FileNotFoundException 
+  {
+    this(new FileInputStream(file),bo,nblock,lblock);
+  }
+
   /**
    * Closes this array input stream.
    */
@@ -108,6 +146,41 @@ public class ArrayInputStream
     return _bo;
   }
 
+  /**
+   * Gets the number of blocks that were read ahead before they were needed.
+   * For a stream that does not read ahead, this number is zero.
+   * @return the number of hits.
+   */
+  public long getReadAheadHits() {
+    return (in instanceof ReadAheadInputStream) ?
+      ((ReadAheadInputStream)in).getHits() :
+      0;
+  }
+
+  /**
+   * Gets the number of blocks for which reading ahead was not complete
+   * when they were needed. For a stream that does not read ahead, this
+   * number is zero.
+   * @return the number of misses.
+   */
+  public long getReadAheadMisses() {
+    return (in instanceof ReadAheadInputStream) ?
+      ((ReadAheadInputStream)in).getMisses() :
+      0;
+  }
+
+  /**
+   * Gets the fraction of blocks that were read ahead before they were
+   * needed. For a stream that does not read ahead, or before any blocks 
+   * have been needed, this fraction is zero.
+   * @return the hit rate, a fraction in [0,1].
+   */
+  public double getReadAheadHitRate() {
+    long hits = getReadAheadHits();
+    long total = hits+getReadAheadMisses();
+    return (total>0)?(double)hits/(double)total:0.0;
+  }
+
   public void readFully(byte[] b) throws IOException {
     _ai.readFully(b);
   }
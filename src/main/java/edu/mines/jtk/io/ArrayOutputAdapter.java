@@ -148,7 +148,7 @@ public class ArrayOutputAdapter implements ArrayOutput {
     }
   }
   public void writeChar(int v) throws IOException {
-    _do.writeShort(v);
+    writeShort(v);
   }
   public void writeInt(int v) throws IOException {
     if (_bo==ByteOrder.BIG_ENDIAN) {
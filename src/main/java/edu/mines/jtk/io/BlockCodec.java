@@ -0,0 +1,367 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import edu.mines.jtk.util.Parallel;
+
+/**
+ * Encodes and decodes blocks of bytes for compressed array streams.
+ * <p>
+ * Lossless encoding shuffles bytes, so that the first bytes of all 4-byte
+ * values are followed by the second bytes of all values, and so on, before
+ * compressing those bytes with the deflate algorithm. For arrays of floats
+ * or ints, shuffling groups together bytes that tend to be similar, such
+ * as sign and exponent bytes, and thereby improves compression. Each plane
+ * of shuffled bytes is compressed separately, and planes of nearly random
+ * bytes are simply stored.
+ * <p>
+ * Lossy encoding interprets blocks as floats and quantizes them, so that
+ * each decoded float differs from the corresponding encoded float by no
+ * more than a specified maximum error (plus any rounding error for floats).
+ * Quantized values are integers, which are delta coded, shuffled and
+ * compressed. Blocks that cannot be quantized, because they contain
+ * infinite or NaN values or have a range too large for the maximum error,
+ * are encoded losslessly.
+ * <p>
+ * The file format for compressed arrays is: a header, the sequence of
+ * encoded blocks, and an index. The header contains a magic number, a
+ * version number, a byte order, the number of bytes per decoded block,
+ * and the maximum error (zero, for lossless encoding). The index contains
+ * the byte offsets of all encoded blocks, followed by the offset of the
+ * index itself, the number of decoded bytes, the number of blocks, and
+ * the magic number. Header and index are always BIG_ENDIAN.
+ * <p>
+ * The methods for encoding and decoding blocks are thread-safe.
+ * @author agent
+ * @version 2026.10.18
+ */
+class BlockCodec {
+
+  static final int MAGIC = 0x4a544b5a; // "JTKZ"
+  static final int VERSION = 1;
+  static final int HEADER = 20; // bytes in header
+  static final int FOOTER = 16; // bytes after block offsets in index
+
+  /**
+   * Constructs a codec.
+   * @param bo the byte order of decoded values.
+   * @param maxError the maximum error; zero, for lossless encoding.
+   */
+  BlockCodec(ByteOrder bo, float maxError) {
+    _bo = bo;
+    _maxError = maxError;
+  }
+
+  /**
+   * Reads a codec from the header of a compressed array file.
+   * @param di the input, positioned at the beginning of the header.
+   * @return the codec, with the block size specified in the header.
+   */
+  static BlockCodec readHeader(DataInput di) throws IOException {
+    if (di.readInt()!=MAGIC)
+      throw new IOException("not a compressed array file");
+    int version = di.readInt();
+    if (version!=VERSION)
+      throw new IOException("unsupported compressed array version "+version);
+    ByteOrder bo = (di.readInt()==0) ?
+      ByteOrder.BIG_ENDIAN :
+      ByteOrder.LITTLE_ENDIAN;
+    int blockSize = di.readInt();
+    float maxError = di.readFloat();
+    BlockCodec codec = new BlockCodec(bo,maxError);
+    codec._blockSize = blockSize;
+    return codec;
+  }
+
+  /**
+   * Writes the header of a compressed array file.
+   * @param dout the output.
+   * @param blockSize the number of bytes per decoded block.
+   */
+  void writeHeader(DataOutput dout, int blockSize) throws IOException {
+    dout.writeInt(MAGIC);
+    dout.writeInt(VERSION);
+    dout.writeInt((_bo==ByteOrder.BIG_ENDIAN)?0:1);
+    dout.writeInt(blockSize);
+    dout.writeFloat(_maxError);
+  }
+
+  ByteOrder getByteOrder() {
+    return _bo;
+  }
+
+  float getMaxError() {
+    return _maxError;
+  }
+
+  /**
+   * Returns the block size read from a header, if any; zero, otherwise.
+   */
+  int getBlockSize() {
+    return _blockSize;
+  }
+
+  /**
+   * Releases resources used by this codec. This method should be 
+   * called only after all blocks have been encoded or decoded.
+   */
+  void end() {
+    for (Work w:_work.getAll()) {
+      w.deflater.end();
+      w.inflater.end();
+    }
+    _work = new Parallel.Unsafe<Work>();
+  }
+
+  /**
+   * Encodes the specified block.
+   * @param b array of bytes to encode.
+   * @param n the number of bytes to encode.
+   * @return array of encoded bytes, with no unused elements.
+   */
+  byte[] encode(byte[] b, int n) {
+    byte[] c = null;
+    if (_maxError>0.0f)
+      c = encodeLossy(b,n);
+    if (c==null)
+      c = encodeLossless(b,n);
+    return c;
+  }
+
+  /**
+   * Decodes the specified encoded block.
+   * @param c array of encoded bytes.
+   * @param k index of first encoded byte.
+   * @param m number of encoded bytes.
+   * @param b array of decoded bytes.
+   * @param n the number of decoded bytes.
+   */
+  void decode(byte[] c, int k, int m, byte[] b, int n) throws IOException {
+    int type = c[k];
+    if (type==SHUFFLED) {
+      byte[] s = new byte[n];
+      decodePlanes(4,c,k+1,k+m,s,n);
+      unshuffle(s,n,b);
+    } else if (type==QUANTIZED) {
+      double xmin = ByteBuffer.wrap(c,k+1,8).getDouble();
+      byte[] s = new byte[n];
+      decodePlanes(1,c,k+9,k+m,s,n);
+      unshuffle(s,n,b);
+      ByteBuffer bb = ByteBuffer.wrap(b,0,n);
+      double step = 2.0*_maxError;
+      FloatBuffer fb = bb.duplicate().order(_bo).asFloatBuffer();
+      int q = 0;
+      for (int i=0,nf=n/4; i<nf; ++i) {
+        int z = bb.getInt(4*i);
+        q += (z>>>1)^-(z&1);
+        fb.put(i,(float)(xmin+q*step));
+      }
+    } else {
+      throw new IOException("invalid block type "+type);
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static final byte SHUFFLED = 1;
+  private static final byte QUANTIZED = 2;
+  private static final byte STORED = 0; // plane is stored
+  private static final byte DEFLATED = 1; // plane is deflated
+
+  // Quantized values must not exceed this maximum.
+  private static final double QMAX = (double)(1<<30);
+
+  // Planes with more bits of entropy per byte are stored, not deflated.
+  private static final double ENTROPY_MAX = 7.5;
+
+  private ByteOrder _bo;
+  private float _maxError;
+  private int _blockSize;
+
+  private byte[] encodeLossless(byte[] b, int n) {
+    byte[] s = new byte[n];
+    shuffle(b,n,s);
+    return encodePlanes(SHUFFLED,null,4,s,n);
+  }
+
+  // Returns null if the block cannot be quantized.
+  private byte[] encodeLossy(byte[] b, int n) {
+    if (n%4!=0)
+      return null;
+    int nf = n/4;
+    FloatBuffer fb = ByteBuffer.wrap(b,0,n).order(_bo).asFloatBuffer();
+    double xmin = Double.MAX_VALUE;
+    double xmax = -Double.MAX_VALUE;
+    for (int i=0; i<nf; ++i) {
+      float x = fb.get(i);
+      if (Float.isNaN(x) || Float.isInfinite(x))
+        return null;
+      if (x<xmin) xmin = x;
+      if (x>xmax) xmax = x;
+    }
+    double step = 2.0*_maxError;
+    if (nf==0 || (xmax-xmin)/step>=QMAX)
+      return null;
+
+    // Delta-coded quantized values, each zig-zag encoded so that small
+    // negative differences become small positive integers.
+    ByteBuffer qb = ByteBuffer.allocate(n);
+    int qlast = 0;
+    for (int i=0; i<nf; ++i) {
+      int q = (int)Math.round((fb.get(i)-xmin)/step);
+      int d = q-qlast;
+      qb.putInt(4*i,(d<<1)^(d>>31));
+      qlast = q;
+    }
+    byte[] s = new byte[n];
+    shuffle(qb.array(),n,s);
+    byte[] h = ByteBuffer.allocate(8).putDouble(xmin).array();
+    return encodePlanes(QUANTIZED,h,1,s,n);
+  }
+
+  // Shuffles bytes of 4-byte values; trailing bytes are not shuffled.
+  private static void shuffle(byte[] b, int n, byte[] s) {
+    int nv = n/4;
+    for (int j=0,k=0; j<4; ++j)
+      for (int i=0; i<nv; ++i,++k)
+        s[k] = b[4*i+j];
+    for (int k=4*nv; k<n; ++k)
+      s[k] = b[k];
+  }
+  private static void unshuffle(byte[] s, int n, byte[] b) {
+    int nv = n/4;
+    for (int j=0,k=0; j<4; ++j)
+      for (int i=0; i<nv; ++i,++k)
+        b[4*i+j] = s[k];
+    for (int k=4*nv; k<n; ++k)
+      b[k] = s[k];
+  }
+
+  // Returns the type byte, header bytes h (if not null), and np planes 
+  // of shuffled bytes s, followed by any trailing bytes. Each plane
+  // begins with a byte that indicates whether the plane is stored or 
+  // deflated, and an int number of bytes that follow. Planes are 
+  // deflated only if doing so reduces the number of bytes. Planes with 
+  // high entropy, such as low-order bytes of floats, are stored without 
+  // attempting to deflate them. Quantized values are encoded as a single
+  // plane, because for small planes the overhead of deflating each plane
+  // separately is significant.
+  private byte[] encodePlanes(
+    byte type, byte[] h, int np, byte[] s, int n) 
+  {
+    int nh = 1+((h!=null)?h.length:0);
+    int nv = n/np;
+    ByteBuffer cb = ByteBuffer.allocate(nh+np*(5+nv)+n-np*nv);
+    cb.put(type);
+    if (h!=null)
+      cb.put(h);
+    Deflater deflater = work().deflater;
+    for (int j=0; j<np; ++j) {
+      int k = j*nv;
+      int p = cb.position();
+      int m = -1;
+      if (entropy(s,k,nv)<=ENTROPY_MAX) {
+        deflater.reset();
+        deflater.setInput(s,k,nv);
+        deflater.finish();
+        byte[] c = cb.array();
+        m = 0;
+        while (!deflater.finished() && m<nv)
+          m += deflater.deflate(c,p+5+m,nv-m);
+        if (!deflater.finished())
+          m = -1;
+      }
+      if (m>=0) {
+        cb.put(DEFLATED).putInt(m);
+        cb.position(p+5+m);
+      } else {
+        cb.put(STORED).putInt(nv).put(s,k,nv);
+      }
+    }
+    cb.put(s,np*nv,n-np*nv);
+    byte[] c = new byte[cb.position()];
+    System.arraycopy(cb.array(),0,c,0,c.length);
+    return c;
+  }
+
+  // Decodes np planes in bytes c[k:l-1] to get n shuffled bytes.
+  private void decodePlanes(
+    int np, byte[] c, int k, int l, byte[] s, int n)
+    throws IOException
+  {
+    ByteBuffer cb = ByteBuffer.wrap(c,k,l-k);
+    int nv = n/np;
+    for (int j=0; j<np; ++j) {
+      byte mode = cb.get();
+      int m = cb.getInt();
+      if (mode==STORED) {
+        cb.get(s,j*nv,nv);
+      } else {
+        inflate(c,cb.position(),m,s,j*nv,nv);
+        cb.position(cb.position()+m);
+      }
+    }
+    cb.get(s,np*nv,n-np*nv);
+  }
+
+  // Returns the entropy, in bits per byte, of the bytes s[k:k+n-1].
+  private static double entropy(byte[] s, int k, int n) {
+    int[] h = new int[256];
+    for (int i=k; i<k+n; ++i)
+      ++h[s[i]&0xff];
+    double e = 0.0;
+    for (int i=0; i<256; ++i) {
+      if (h[i]>0) {
+        double p = (double)h[i]/n;
+        e -= p*Math.log(p);
+      }
+    }
+    return e/Math.log(2.0);
+  }
+
+  // Per-thread deflater and inflater, which are costly to construct.
+  private static class Work {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    Inflater inflater = new Inflater();
+  }
+  private Parallel.Unsafe<Work> _work = new Parallel.Unsafe<Work>();
+  private Work work() {
+    Work w = _work.get();
+    if (w==null) _work.set(w=new Work());
+    return w;
+  }
+
+  private void inflate(byte[] c, int k, int m, byte[] s, int j, int n)
+    throws IOException
+  {
+    Inflater inflater = work().inflater;
+    inflater.reset();
+    inflater.setInput(c,k,m);
+    try {
+      int l = 0;
+      while (l<n && !inflater.finished()) {
+        int i = inflater.inflate(s,j+l,n-l);
+        if (i==0 && (inflater.needsInput() || inflater.needsDictionary()))
+          break;
+        l += i;
+      }
+      if (l!=n)
+        throw new IOException("corrupt compressed block");
+    } catch (DataFormatException e) {
+      throw new IOException("corrupt compressed block",e);
+    }
+  }
+}
@@ -0,0 +1,556 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.io;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Float3;
+
+/**
+ * A 3-D array of floats stored in a file as bricks. Logically, the array
+ * is float a[n3][n2][n1]. In the file, that array is divided into bricks
+ * of b1*b2*b3 elements, and the elements of each brick are stored
+ * contiguously, with brick index 1 varying fastest.
+ * <p>
+ * For a file that contains an array stored as a sequence of n3 slices of
+ * n2*n1 elements, reading a slice with constant index i3 is fast, but
+ * reading slices with constant indices i1 or i2 requires many small reads
+ * scattered throughout the file. For a brick file, reading a slice along
+ * any axis requires reading about the same number of contiguous bricks.
+ * <p>
+ * Bricks read from the file are kept in a cache of bounded size. When the
+ * cache is full, the least-recently-used brick is discarded to make room
+ * for another. Bricks that have been modified are written to the file
+ * when discarded, and when the brick file is flushed or closed. All
+ * methods that get or set elements are synchronized, so that a brick
+ * file may be shared by multiple threads.
+ * <p>
+ * A brick file begins with a header of eight ints: a magic number,
+ * a version number, the array dimensions n1, n2 and n3, and the brick
+ * dimensions b1, b2 and b3. Bricks follow the header, and bricks at the
+ * ends of the array are padded with zeros, so that all bricks have the
+ * same size. The byte order of the file is determined by the magic
+ * number.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class BrickFile implements Float3, Closeable {
+
+  /**
+   * Creates a new brick file with specified array and brick dimensions.
+   * All elements of the array in the new file are zero.
+   * @param file the file.
+   * @param n1 number of elements in 1st dimension of the array.
+   * @param n2 number of elements in 2nd dimension of the array.
+   * @param n3 number of elements in 3rd dimension of the array.
+   * @param b1 number of elements in 1st dimension of each brick.
+   * @param b2 number of elements in 2nd dimension of each brick.
+   * @param b3 number of elements in 3rd dimension of each brick.
+   * @param order the byte order of the new file.
+   * @return the new brick file, open for reading and writing.
+   */
+  public static BrickFile create(
+    File file,
+    int n1, int n2, int n3,
+    int b1, int b2, int b3,
+    ByteOrder order)
+    throws IOException
+  {
+    Check.argument(n1>0 && n2>0 && n3>0,"array dimensions are positive");
+    Check.argument(b1>0 && b2>0 && b3>0,"brick dimensions are positive");
+    ArrayFile af = new ArrayFile(file,"rw",order,order);
+    try {
+      af.setLength(0);
+      af.writeInts(new int[]{MAGIC,VERSION,n1,n2,n3,b1,b2,b3});
+      int nb1 = 1+(n1-1)/b1;
+      int nb2 = 1+(n2-1)/b2;
+      int nb3 = 1+(n3-1)/b3;
+      af.setLength(HEADER+4L*b1*b2*b3*nb1*nb2*nb3);
+    } finally {
+      af.close();
+    }
+    return new BrickFile(file,"rw");
+  }
+
+  /**
+   * Converts a file containing an array float[n3][n2][n1] of elements to
+   * a brick file. The file to be converted contains only the elements of
+   * the array, with no header, and with index i1 varying fastest.
+   * @param flat the file to be converted.
+   * @param order the byte order of the file to be converted.
+   * @param n1 number of elements in 1st dimension of the array.
+   * @param n2 number of elements in 2nd dimension of the array.
+   * @param n3 number of elements in 3rd dimension of the array.
+   * @param brick the brick file to be created.
+   * @param b1 number of elements in 1st dimension of each brick.
+   * @param b2 number of elements in 2nd dimension of each brick.
+   * @param b3 number of elements in 3rd dimension of each brick.
+   */
+  public static void convert(
+    File flat, ByteOrder order,
+    int n1, int n2, int n3,
+    File brick,
+    int b1, int b2, int b3)
+    throws IOException
+  {
+    ArrayFile af = new ArrayFile(flat,"r",order,order);
+    BrickFile bf = null;
+    try {
+      bf = create(brick,n1,n2,n3,b1,b2,b3,order);
+      float[][][] s = new float[b3][b2][n1];
+      for (int j3=0; j3<n3; j3+=b3) {
+        int m3 = Math.min(b3,n3-j3);
+        for (int j2=0; j2<n2; j2+=b2) {
+          int m2 = Math.min(b2,n2-j2);
+          for (int i3=0; i3<m3; ++i3) {
+            af.seek(4L*n1*(j2+(long)n2*(j3+i3)));
+            for (int i2=0; i2<m2; ++i2)
+              af.readFloats(s[i3][i2]);
+          }
+          bf.set123(n1,m2,m3,0,j2,j3,s);
+        }
+      }
+    } finally {
+      af.close();
+      if (bf!=null)
+        bf.close();
+    }
+  }
+
+  /**
+   * Opens an existing brick file with a default cache size of 256 MB.
+   * @param file the file.
+   * @param mode the access mode; "r" or "rw".
+   */
+  public BrickFile(File file, String mode) throws IOException {
+    this(file,mode,CACHE_BYTES);
+  }
+
+  /**
+   * Opens an existing brick file with specified cache size. The cache
+   * always holds at least one brick, regardless of the specified size.
+   * @param file the file.
+   * @param mode the access mode; "r" or "rw".
+   * @param cacheBytes the maximum number of bytes in cached bricks.
+   */
+  public BrickFile(File file, String mode, long cacheBytes)
+    throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(file,mode);
+    int magic = raf.readInt();
+    ByteOrder order;
+    if (magic==MAGIC) {
+      order = ByteOrder.BIG_ENDIAN;
+    } else if (Integer.reverseBytes(magic)==MAGIC) {
+      order = ByteOrder.LITTLE_ENDIAN;
+    } else {
+      raf.close();
+      throw new IOException("file "+file+" is not a brick file");
+    }
+    _af = new ArrayFile(raf,order,order);
+    _writable = !mode.equals("r");
+    int version = _af.readInt();
+    if (version!=VERSION) {
+      _af.close();
+      throw new IOException("unsupported brick file version "+version);
+    }
+    _n1 = _af.readInt(); _n2 = _af.readInt(); _n3 = _af.readInt();
+    _b1 = _af.readInt(); _b2 = _af.readInt(); _b3 = _af.readInt();
+    _nb1 = 1+(_n1-1)/_b1;
+    _nb2 = 1+(_n2-1)/_b2;
+    _bsize = _b1*_b2*_b3;
+    _maxBricks = (int)Math.max(1,Math.min(Integer.MAX_VALUE,
+      cacheBytes/(4L*_bsize)));
+    _cache = new LinkedHashMap<Integer,Brick>(16,0.75f,true);
+  }
+
+  /**
+   * Gets the byte order of this file.
+   * @return the byte order.
+   */
+  public ByteOrder getByteOrder() {
+    return _af.getByteOrderRead();
+  }
+
+  /**
+   * Gets the number of elements in 1st dimension of each brick.
+   * @return the number of elements in 1st dimension.
+   */
+  public int getB1() {
+    return _b1;
+  }
+
+  /**
+   * Gets the number of elements in 2nd dimension of each brick.
+   * @return the number of elements in 2nd dimension.
+   */
+  public int getB2() {
+    return _b2;
+  }
+
+  /**
+   * Gets the number of elements in 3rd dimension of each brick.
+   * @return the number of elements in 3rd dimension.
+   */
+  public int getB3() {
+    return _b3;
+  }
+
+  /**
+   * Gets a slice of elements with constant index i1.
+   * @param i1 the index in 1st dimension.
+   * @return array[n3][n2] of elements.
+   */
+  public float[][] getSlice1(int i1) {
+    float[][] s = new float[_n3][_n2];
+    get23(_n2,_n3,i1,0,0,s);
+    return s;
+  }
+
+  /**
+   * Gets a slice of elements with constant index i2.
+   * @param i2 the index in 2nd dimension.
+   * @return array[n3][n1] of elements.
+   */
+  public float[][] getSlice2(int i2) {
+    float[][] s = new float[_n3][_n1];
+    get13(_n1,_n3,0,i2,0,s);
+    return s;
+  }
+
+  /**
+   * Gets a slice of elements with constant index i3.
+   * @param i3 the index in 3rd dimension.
+   * @return array[n2][n1] of elements.
+   */
+  public float[][] getSlice3(int i3) {
+    float[][] s = new float[_n2][_n1];
+    get12(_n1,_n2,0,0,i3,s);
+    return s;
+  }
+
+  /**
+   * Gets a subcube of elements.
+   * @param m1 number of elements in 1st dimension of subcube.
+   * @param m2 number of elements in 2nd dimension of subcube.
+   * @param m3 number of elements in 3rd dimension of subcube.
+   * @param j1 index of first element in 1st dimension of subcube.
+   * @param j2 index of first element in 2nd dimension of subcube.
+   * @param j3 index of first element in 3rd dimension of subcube.
+   * @return array[m3][m2][m1] of elements.
+   */
+  public float[][][] getSubcube(
+    int m1, int m2, int m3,
+    int j1, int j2, int j3)
+  {
+    float[][][] s = new float[m3][m2][m1];
+    get123(m1,m2,m3,j1,j2,j3,s);
+    return s;
+  }
+
+  /**
+   * Writes any modified bricks in the cache to this file.
+   */
+  public synchronized void flush() throws IOException {
+    for (Map.Entry<Integer,Brick> e:_cache.entrySet())
+      writeBrick(e.getKey(),e.getValue());
+  }
+
+  /**
+   * Flushes and closes this file, releasing any associated resources.
+   */
+  public synchronized void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      _cache.clear();
+      _af.close();
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // interface Float3
+
+  public int getN1() {
+    return _n1;
+  }
+
+  public int getN2() {
+    return _n2;
+  }
+
+  public int getN3() {
+    return _n3;
+  }
+
+  public void get1(int m1, int j1, int j2, int j3, float[] s) {
+    copy(false,m1,1,1,j1,j2,j3,rows1(s));
+  }
+
+  public void get2(int m2, int j1, int j2, int j3, float[] s) {
+    copy(false,1,m2,1,j1,j2,j3,rows2(s));
+  }
+
+  public void get3(int m3, int j1, int j2, int j3, float[] s) {
+    copy(false,1,1,m3,j1,j2,j3,rows3(s));
+  }
+
+  public void get12(int m1, int m2, int j1, int j2, int j3, float[][] s) {
+    copy(false,m1,m2,1,j1,j2,j3,rows12(s));
+  }
+
+  public void get13(int m1, int m3, int j1, int j2, int j3, float[][] s) {
+    copy(false,m1,1,m3,j1,j2,j3,rows13(s));
+  }
+
+  public void get23(int m2, int m3, int j1, int j2, int j3, float[][] s) {
+    copy(false,1,m2,m3,j1,j2,j3,rows23(s));
+  }
+
+  public void get123(
+    int m1, int m2, int m3,
+    int j1, int j2, int j3,
+    float[][][] s)
+  {
+    copy(false,m1,m2,m3,j1,j2,j3,rows123(s));
+  }
+
+  public void get123(
+    int m1, int m2, int m3,
+    int j1, int j2, int j3,
+    float[] s)
+  {
+    copy(false,m1,m2,m3,j1,j2,j3,rows123(m1,m2,s));
+  }
+
+  public void set1(int m1, int j1, int j2, int j3, float[] s) {
+    copy(true,m1,1,1,j1,j2,j3,rows1(s));
+  }
+
+  public void set2(int m2, int j1, int j2, int j3, float[] s) {
+    copy(true,1,m2,1,j1,j2,j3,rows2(s));
+  }
+
+  public void set3(int m3, int j1, int j2, int j3, float[] s) {
+    copy(true,1,1,m3,j1,j2,j3,rows3(s));
+  }
+
+  public void set12(int m1, int m2, int j1, int j2, int j3, float[][] s) {
+    copy(true,m1,m2,1,j1,j2,j3,rows12(s));
+  }
+
+  public void set13(int m1, int m3, int j1, int j2, int j3, float[][] s) {
+    copy(true,m1,1,m3,j1,j2,j3,rows13(s));
+  }
+
+  public void set23(int m2, int m3, int j1, int j2, int j3, float[][] s) {
+    copy(true,1,m2,m3,j1,j2,j3,rows23(s));
+  }
+
+  public void set123(
+    int m1, int m2, int m3,
+    int j1, int j2, int j3,
+    float[][][] s)
+  {
+    copy(true,m1,m2,m3,j1,j2,j3,rows123(s));
+  }
+
+  public void set123(
+    int m1, int m2, int m3,
+    int j1, int j2, int j3,
+    float[] s)
+  {
+    copy(true,m1,m2,m3,j1,j2,j3,rows123(m1,m2,s));
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static final int MAGIC = 0x4a544b42; // "JTKB"
+  private static final int VERSION = 1;
+  private static final int HEADER = 32; // bytes in header
+  private static final long CACHE_BYTES = 256L*1024L*1024L;
+
+  private ArrayFile _af; // file of bricks
+  private boolean _writable; // true, if file may be written
+  private int _n1,_n2,_n3; // array dimensions
+  private int _b1,_b2,_b3; // brick dimensions
+  private int _nb1,_nb2; // numbers of bricks in 1st and 2nd dimensions
+  private int _bsize; // number of elements in each brick
+  private int _maxBricks; // maximum number of bricks in cache
+  private LinkedHashMap<Integer,Brick> _cache; // bricks, in access order
+
+  // A brick of elements, stored contiguously with index 1 fastest.
+  private static class Brick {
+    float[] a;
+    boolean dirty;
+    Brick(float[] a) {
+      this.a = a;
+    }
+  }
+
+  // Arrays of elements in a subarray, in which element (i1,i2,i3) is
+  // element offset(i2,i3)+i1 of the array row(i2,i3). Indices i1, i2
+  // and i3 are relative to the first element of the subarray.
+  private static abstract class Rows {
+    abstract float[] row(int i2, int i3);
+    abstract int offset(int i2, int i3);
+  }
+  private static Rows rows1(final float[] s) {
+    return new Rows() {
+      float[] row(int i2, int i3) { return s; }
+      int offset(int i2, int i3) { return 0; }
+    };
+  }
+  private static Rows rows2(final float[] s) {
+    return new Rows() {
+      float[] row(int i2, int i3) { return s; }
+      int offset(int i2, int i3) { return i2; }
+    };
+  }
+  private static Rows rows3(final float[] s) {
+    return new Rows() {
+      float[] row(int i2, int i3) { return s; }
+      int offset(int i2, int i3) { return i3; }
+    };
+  }
+  private static Rows rows12(final float[][] s) {
+    return new Rows() {
+      float[] row(int i2, int i3) { return s[i2]; }
+      int offset(int i2, int i3) { return 0; }
+    };
+  }
+  private static Rows rows13(final float[][] s) {
+    return new Rows() {
+      float[] row(int i2, int i3) { return s[i3]; }
+      int offset(int i2, int i3) { return 0; }
+    };
+  }
+  private static Rows rows23(final float[][] s) {
+    return new Rows() {
+      float[] row(int i2, int i3) { return s[i3]; }
+      int offset(int i2, int i3) { return i2; }
+    };
+  }
+  private static Rows rows123(final float[][][] s) {
+    return new Rows() {
+      float[] row(int i2, int i3) { return s[i3][i2]; }
+      int offset(int i2, int i3) { return 0; }
+    };
+  }
+  private static Rows rows123(final int m1, final int m2, final float[] s) {
+    return new Rows() {
+      float[] row(int i2, int i3) { return s; }
+      int offset(int i2, int i3) { return m1*(i2+m2*i3); }
+    };
+  }
+
+  // Copies elements between the specified subarray and bricks. If set is
+  // true, copies elements to bricks; otherwise, copies from bricks.
+  private synchronized void copy(
+    boolean set,
+    int m1, int m2, int m3,
+    int j1, int j2, int j3,
+    Rows rows)
+  {
+    Check.argument(0<=j1 && 0<=m1 && j1+m1<=_n1,"j1 and m1 valid");
+    Check.argument(0<=j2 && 0<=m2 && j2+m2<=_n2,"j2 and m2 valid");
+    Check.argument(0<=j3 && 0<=m3 && j3+m3<=_n3,"j3 and m3 valid");
+    Check.state(!set || _writable,"file is writable");
+    if (m1==0 || m2==0 || m3==0)
+      return;
+    int b1 = _b1, b2 = _b2, b3 = _b3;
+    try {
+      for (int k3=j3/b3; k3<=(j3+m3-1)/b3; ++k3) {
+        int l3 = Math.max(j3,k3*b3), u3 = Math.min(j3+m3,(k3+1)*b3);
+        for (int k2=j2/b2; k2<=(j2+m2-1)/b2; ++k2) {
+          int l2 = Math.max(j2,k2*b2), u2 = Math.min(j2+m2,(k2+1)*b2);
+          for (int k1=j1/b1; k1<=(j1+m1-1)/b1; ++k1) {
+            int l1 = Math.max(j1,k1*b1), u1 = Math.min(j1+m1,(k1+1)*b1);
+            int c1 = u1-l1;
+
+            // If setting all elements of the brick that lie within the
+            // array, then the brick need not be read from the file.
+            boolean all = set &&
+              l1==k1*b1 && u1==Math.min(_n1,(k1+1)*b1) &&
+              l2==k2*b2 && u2==Math.min(_n2,(k2+1)*b2) &&
+              l3==k3*b3 && u3==Math.min(_n3,(k3+1)*b3);
+            Brick b = brick(k1,k2,k3,!all);
+            float[] a = b.a;
+            for (int i3=l3; i3<u3; ++i3) {
+              for (int i2=l2; i2<u2; ++i2) {
+                int ia = l1-k1*b1+b1*(i2-k2*b2+b2*(i3-k3*b3));
+                float[] r = rows.row(i2-j2,i3-j3);
+                int ir = rows.offset(i2-j2,i3-j3)+l1-j1;
+                if (set) {
+                  System.arraycopy(r,ir,a,ia,c1);
+                } else {
+                  System.arraycopy(a,ia,r,ir,c1);
+                }
+              }
+            }
+            if (set)
+              b.dirty = true;
+          }
+        }
+      }
+    } catch (IOException ioe) {
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  // Returns the brick with specified indices, reading that brick into
+  // the cache if necessary. If read is false, a brick not already in
+  // the cache is not read from the file, and its elements are zero.
+  private Brick brick(int k1, int k2, int k3, boolean read)
+    throws IOException
+  {
+    Integer k = k1+_nb1*(k2+_nb2*k3);
+    Brick b = _cache.get(k);
+    if (b==null) {
+      float[] a = null;
+      if (_cache.size()>=_maxBricks) {
+        Iterator<Map.Entry<Integer,Brick>> i = _cache.entrySet().iterator();
+        Map.Entry<Integer,Brick> e = i.next();
+        writeBrick(e.getKey(),e.getValue());
+        a = e.getValue().a;
+        i.remove();
+      }
+      if (a==null)
+        a = new float[_bsize];
+      if (read) {
+        _af.seek(offset(k));
+        _af.readFloats(a);
+      } else {
+        Arrays.fill(a,0.0f);
+      }
+      b = new Brick(a);
+      _cache.put(k,b);
+    }
+    return b;
+  }
+
+  // Writes the specified brick to the file, if it has been modified.
+  private void writeBrick(int k, Brick b) throws IOException {
+    if (b.dirty) {
+      _af.seek(offset(k));
+      _af.writeFloats(b.a);
+      b.dirty = false;
+    }
+  }
+
+  // Returns the byte offset in the file of the brick with index k.
+  private long offset(int k) {
+    return HEADER+4L*_bsize*k;
+  }
+}
@@ -0,0 +1,532 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.io;
+
+import java.io.*;
+import java.nio.ByteOrder;
+
+import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
+
+/**
+ * An input stream that implements {@link ArrayInput} for values written
+ * by a {@link CompressedArrayOutputStream}. The byte order and type of
+ * compression are those specified when the values were written.
+ * <p>
+ * Like an {@link ArrayFile}, this stream has a file pointer that may be
+ * set to any byte offset in the decompressed values. Only the blocks
+ * that contain the values read are decompressed. For example, if the
+ * block size is the number of bytes per trace, then reading one trace
+ * decompresses only one block. When blocks are read sequentially, the
+ * next several blocks are decompressed in parallel.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class CompressedArrayInputStream 
+  extends FilterInputStream 
+  implements ArrayInput 
+{
+
+  /**
+   * Constructs an input stream for the specified file name.
+   * @param name the file name.
+   */
+  public CompressedArrayInputStream(String name) throws IOException {
+    this(new File(name));
+  }
+
+  /**
+   * Constructs an input stream for the specified file.
+   * @param file the file.
+   */
+  public CompressedArrayInputStream(File file) throws IOException {
+    this(new BlockInputStream(new RandomAccessFile(file,"r")));
+  }
+
+  /**
+   * Gets the byte order for this stream.
+   * @return the byte order.
+   */
+  public ByteOrder getByteOrder() {
+    return _bis.codec.getByteOrder();
+  }
+
+  /**
+   * Gets the maximum error in decompressed floats.
+   * @return the maximum error; zero, for lossless compression.
+   */
+  public float getMaxError() {
+    return _bis.codec.getMaxError();
+  }
+
+  /**
+   * Gets the number of bytes per block, before compression.
+   * @return the number of bytes per block.
+   */
+  public int getBlockSize() {
+    return _bis.blockSize;
+  }
+
+  /**
+   * Gets the file pointer, the offset in decompressed bytes from the
+   * beginning of the values. The next read begins at this offset.
+   * @return the file pointer.
+   */
+  public long getFilePointer() {
+    return _bis.position;
+  }
+
+  /**
+   * Sets the file pointer, the offset in decompressed bytes from the
+   * beginning of the values. The next read begins at this offset.
+   * @param off the file pointer.
+   */
+  public void seek(long off) {
+    Check.argument(0<=off && off<=_bis.length,"0<=off<=length");
+    _bis.position = off;
+  }
+
+  /**
+   * Returns the number of bytes of values, after decompression.
+   * @return the number of bytes.
+   */
+  public long length() {
+    return _bis.length;
+  }
+
+  public void readFully(byte[] b) throws IOException {
+    _ai.readFully(b);
+  }
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    _ai.readFully(b,off,len);
+  }
+  public int skipBytes(int n) throws IOException {
+    return _ai.skipBytes(n);
+  }
+  public final boolean readBoolean() throws IOException {
+    return _ai.readBoolean();
+  }
+  public final byte readByte() throws IOException {
+    return _ai.readByte();
+  }
+  public final int readUnsignedByte() throws IOException {
+    return _ai.readUnsignedByte();
+  }
+  public final short readShort() throws IOException {
+    return _ai.readShort();
+  }
+  public final int readUnsignedShort() throws IOException {
+    return _ai.readUnsignedShort();
+  }
+  public final char readChar() throws IOException {
+    return _ai.readChar();
+  }
+  public final int readInt() throws IOException {
+    return _ai.readInt();
+  }
+  public final long readLong() throws IOException {
+    return _ai.readLong();
+  }
+  public final float readFloat() throws IOException {
+    return _ai.readFloat();
+  }
+  public final double readDouble() throws IOException {
+    return _ai.readDouble();
+  }
+  public final String readLine() throws IOException {
+    return _ai.readLine();
+  }
+  public final String readUTF() throws IOException {
+    return _ai.readUTF();
+  }
+
+  /**
+   * Reads byte elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readBytes(byte[] v, int k, int n) throws IOException {
+    _ai.readBytes(v,k,n);
+  }
+
+  /**
+   * Reads byte elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readBytes(byte[] v) throws IOException {
+    _ai.readBytes(v);
+  }
+
+  /**
+   * Reads byte elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readBytes(byte[][] v) throws IOException {
+    _ai.readBytes(v);
+  }
+
+  /**
+   * Reads byte elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readBytes(byte[][][] v) throws IOException {
+    _ai.readBytes(v);
+  }
+
+  /**
+   * Reads char elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readChars(char[] v, int k, int n) throws IOException {
+    _ai.readChars(v,k,n);
+  }
+
+  /**
+   * Reads char elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readChars(char[] v) throws IOException {
+    _ai.readChars(v);
+  }
+
+  /**
+   * Reads char elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readChars(char[][] v) throws IOException {
+    _ai.readChars(v);
+  }
+
+  /**
+   * Reads char elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readChars(char[][][] v) throws IOException {
+    _ai.readChars(v);
+  }
+
+  /**
+   * Reads short elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readShorts(short[] v, int k, int n) throws IOException {
+    _ai.readShorts(v,k,n);
+  }
+
+  /**
+   * Reads short elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readShorts(short[] v) throws IOException {
+    _ai.readShorts(v);
+  }
+
+  /**
+   * Reads short elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readShorts(short[][] v) throws IOException {
+    _ai.readShorts(v);
+  }
+
+  /**
+   * Reads short elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readShorts(short[][][] v) throws IOException {
+    _ai.readShorts(v);
+  }
+
+  /**
+   * Reads int elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readInts(int[] v, int k, int n) throws IOException {
+    _ai.readInts(v,k,n);
+  }
+
+  /**
+   * Reads int elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readInts(int[] v) throws IOException {
+    _ai.readInts(v);
+  }
+
+  /**
+   * Reads int elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readInts(int[][] v) throws IOException {
+    _ai.readInts(v);
+  }
+
+  /**
+   * Reads int elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readInts(int[][][] v) throws IOException {
+    _ai.readInts(v);
+  }
+
+  /**
+   * Reads long elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readLongs(long[] v, int k, int n) throws IOException {
+    _ai.readLongs(v,k,n);
+  }
+
+  /**
+   * Reads long elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readLongs(long[] v) throws IOException {
+    _ai.readLongs(v);
+  }
+
+  /**
+   * Reads long elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readLongs(long[][] v) throws IOException {
+    _ai.readLongs(v);
+  }
+
+  /**
+   * Reads long elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readLongs(long[][][] v) throws IOException {
+    _ai.readLongs(v);
+  }
+
+  /**
+   * Reads float elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readFloats(float[] v, int k, int n) throws IOException {
+    _ai.readFloats(v,k,n);
+  }
+
+  /**
+   * Reads float elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readFloats(float[] v) throws IOException {
+    _ai.readFloats(v);
+  }
+
+  /**
+   * Reads float elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readFloats(float[][] v) throws IOException {
+    _ai.readFloats(v);
+  }
+
+  /**
+   * Reads float elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readFloats(float[][][] v) throws IOException {
+    _ai.readFloats(v);
+  }
+
+  /**
+   * Reads double elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readDoubles(double[] v, int k, int n) throws IOException {
+    _ai.readDoubles(v,k,n);
+  }
+
+  /**
+   * Reads double elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readDoubles(double[] v) throws IOException {
+    _ai.readDoubles(v);
+  }
+
+  /**
+   * Reads double elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readDoubles(double[][] v) throws IOException {
+    _ai.readDoubles(v);
+  }
+
+  /**
+   * Reads double elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readDoubles(double[][][] v) throws IOException {
+    _ai.readDoubles(v);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private BlockInputStream _bis;
+  private ArrayInput _ai;
+
+  private CompressedArrayInputStream(BlockInputStream bis) {
+    super(bis);
+    _bis = bis;
+    _ai = new ArrayInputAdapter(
+      new DataInputStream(bis),bis.codec.getByteOrder());
+  }
+
+  // Reads and decompresses blocks. If a block is read immediately after 
+  // the block preceding it, then the next several blocks are also read
+  // and decompressed in parallel.
+  private static class BlockInputStream extends InputStream {
+    BlockCodec codec; // decompresses blocks
+    int blockSize; // number of bytes per block, after decompression
+    long length; // number of bytes, after decompression
+    long position; // offset of next byte to read, after decompression
+
+    BlockInputStream(RandomAccessFile raf) throws IOException {
+      try {
+        codec = BlockCodec.readHeader(raf);
+        blockSize = codec.getBlockSize();
+        raf.seek(raf.length()-BlockCodec.FOOTER);
+        length = raf.readLong();
+        int nblock = raf.readInt();
+        if (raf.readInt()!=BlockCodec.MAGIC)
+          throw new IOException("compressed array file has no index");
+        _offsets = new long[nblock+1];
+        raf.seek(raf.length()-BlockCodec.FOOTER-8L*(nblock+1));
+        for (int iblock=0; iblock<=nblock; ++iblock)
+          _offsets[iblock] = raf.readLong();
+      } catch (IOException e) {
+        raf.close();
+        throw e;
+      }
+      _raf = raf;
+      _nbatch = 2*Runtime.getRuntime().availableProcessors();
+      _blocks = new byte[_nbatch][];
+    }
+    public int read() throws IOException {
+      if (position>=length)
+        return -1;
+      byte[] b = block((int)(position/blockSize));
+      return b[(int)(position++%blockSize)]&0xff;
+    }
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len==0)
+        return 0;
+      if (position>=length)
+        return -1;
+      int n = 0;
+      while (n<len && position<length) {
+        int iblock = (int)(position/blockSize);
+        int ibyte = (int)(position-(long)iblock*blockSize);
+        int nbyte = (int)Math.min(blockSize,length-(long)iblock*blockSize);
+        int m = Math.min(len-n,nbyte-ibyte);
+        System.arraycopy(block(iblock),ibyte,b,off+n,m);
+        position += m;
+        n += m;
+      }
+      return n;
+    }
+    public long skip(long n) {
+      long m = Math.max(0,Math.min(n,length-position));
+      position += m;
+      return m;
+    }
+    public int available() {
+      return (int)Math.min(Integer.MAX_VALUE,length-position);
+    }
+    public void close() throws IOException {
+      _raf.close();
+      codec.end();
+    }
+
+    private RandomAccessFile _raf; // the compressed file
+    private long[] _offsets; // offsets of compressed blocks, and index
+    private int _nbatch; // maximum number of blocks decompressed at once
+    private byte[][] _blocks; // decompressed blocks in current batch
+    private int _jblock; // index of first block in current batch
+    private int _mblock; // number of blocks in current batch
+
+    // Returns the decompressed block with specified index.
+    private byte[] block(int iblock) throws IOException {
+      if (iblock<_jblock || _jblock+_mblock<=iblock) {
+        boolean sequential = iblock==_jblock+_mblock;
+        int nblock = _offsets.length-1;
+        _mblock = sequential?Math.min(_nbatch,nblock-iblock):1;
+        _jblock = iblock;
+        decode();
+      }
+      return _blocks[iblock-_jblock];
+    }
+
+    // Reads and decompresses all blocks in the current batch.
+    private void decode() throws IOException {
+      final long offset = _offsets[_jblock];
+      final byte[] c = new byte[(int)(_offsets[_jblock+_mblock]-offset)];
+      _raf.seek(offset);
+      _raf.readFully(c);
+      final IOException[] ioe = new IOException[1];
+      Parallel.loop(_mblock,new Parallel.LoopInt() {
+        public void compute(int i) {
+          int iblock = _jblock+i;
+          int k = (int)(_offsets[iblock]-offset);
+          int m = (int)(_offsets[iblock+1]-_offsets[iblock]);
+          int n = (int)Math.min(blockSize,length-(long)iblock*blockSize);
+          if (_blocks[i]==null)
+            _blocks[i] = new byte[blockSize];
+          try {
+            codec.decode(c,k,m,_blocks[i],n);
+          } catch (IOException e) {
+            ioe[0] = e;
+          }
+        }
+      });
+      if (ioe[0]!=null) {
+        _mblock = 0;
+        throw ioe[0];
+      }
+    }
+  }
+}
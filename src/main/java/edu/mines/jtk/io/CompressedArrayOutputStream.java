@@ -0,0 +1,563 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.io;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.Parallel;
+
+/**
+ * An output stream that implements {@link ArrayOutput} and compresses
+ * the values written. Values are written to a sequence of blocks with a
+ * specified number of bytes, and each block is compressed independently.
+ * Blocks are compressed in parallel.
+ * <p>
+ * Compression may be lossless or lossy. Lossless compression is suitable
+ * for values of any type, and is most effective for floats and ints. 
+ * Lossy compression is suitable only for floats, and the stream must
+ * contain nothing but floats. With lossy compression, each float read
+ * by {@link CompressedArrayInputStream} differs from the float written 
+ * by no more than a specified maximum error, plus any error in rounding 
+ * the decoded value to a float.
+ * <p>
+ * Because each block is compressed independently, and because an index
+ * of blocks is written when this stream is closed, compressed values may
+ * be read without decompressing all blocks that precede them. For this
+ * random access, a convenient choice for the block size is the number of
+ * bytes in one or more traces.
+ * <p>
+ * Compressed blocks are written only when they are full, when this stream
+ * is flushed, or when it is closed. Flushing an incomplete block would 
+ * cause subsequent blocks to begin at an unexpected offset, so flushing 
+ * writes only blocks that are full.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class CompressedArrayOutputStream 
+  extends FilterOutputStream 
+  implements ArrayOutput 
+{
+
+  /**
+   * Constructs an output stream with lossless compression.
+   * @param os the output stream.
+   * @param bo the byte order.
+   * @param blockSize the number of bytes per block.
+   */
+  public CompressedArrayOutputStream(
+    OutputStream os, ByteOrder bo, int blockSize)
+    throws IOException
+  {
+    this(os,bo,blockSize,0.0f);
+  }
+
+  /**
+   * Constructs an output stream with lossy compression of floats.
+   * If the specified maximum error is zero, compression is lossless.
+   * @param os the output stream.
+   * @param bo the byte order.
+   * @param blockSize the number of bytes per block; a multiple of 4.
+   * @param maxError the maximum error in decompressed floats.
+   */
+  public CompressedArrayOutputStream(
+    OutputStream os, ByteOrder bo, int blockSize, float maxError)
+    throws IOException
+  {
+    this(new BlockOutputStream(os,bo,blockSize,maxError),bo);
+  }
+
+  /**
+   * Constructs an output stream with lossless compression.
+   * @param file the file.
+   * @param bo the byte order.
+   * @param blockSize the number of bytes per block.
+   */
+  public CompressedArrayOutputStream(File file, ByteOrder bo, int blockSize) 
+    throws IOException
+  {
+    this(new FileOutputStream(file),bo,blockSize);
+  }
+
+  /**
+   * Constructs an output stream with lossy compression of floats.
+   * If the specified maximum error is zero, compression is lossless.
+   * @param file the file.
+   * @param bo the byte order.
+   * @param blockSize the number of bytes per block; a multiple of 4.
+   * @param maxError the maximum error in decompressed floats.
+   */
+  public CompressedArrayOutputStream(
+    File file, ByteOrder bo, int blockSize, float maxError)
+    throws IOException
+  {
+    this(new FileOutputStream(file),bo,blockSize,maxError);
+  }
+
+  /**
+   * Flushes this stream, writing any blocks that are full.
+   */
+  public void flush() throws IOException {
+    _dos.flush();
+    super.flush();
+  }
+
+  /**
+   * Closes this stream, writing all blocks and the index of blocks.
+   */
+  public void close() throws IOException {
+    flush();
+    super.close();
+  }
+
+  /**
+   * Gets the byte order for this stream.
+   * @return the byte order.
+   */
+  public ByteOrder getByteOrder() {
+    return _bo;
+  }
+
+  /**
+   * Gets the number of bytes written, before compression.
+   * @return the number of bytes.
+   */
+  public long getCount() {
+    return ((BlockOutputStream)out).count();
+  }
+
+  /**
+   * Gets the number of compressed bytes written to the underlying stream.
+   * This number includes only blocks that have been compressed and the
+   * header, and is complete only after this stream has been closed.
+   * @return the number of bytes.
+   */
+  public long getCompressedCount() {
+    return ((BlockOutputStream)out).compressedCount();
+  }
+
+  public void write(int b) throws IOException {
+    _ao.write(b);
+  }
+  public void write(byte[] b) throws IOException {
+    _ao.write(b);
+  }
+  public void write(byte[] b, int off, int len) throws IOException {
+    _ao.write(b,off,len);
+  }
+  public void writeBoolean(boolean v) throws IOException {
+    _ao.writeBoolean(v);
+  }
+  public void writeByte(int v) throws IOException {
+    _ao.writeByte(v);
+  }
+  public void writeShort(int v) throws IOException {
+    _ao.writeShort(v);
+  }
+  public void writeChar(int v) throws IOException {
+    _ao.writeChar(v);
+  }
+  public void writeInt(int v) throws IOException {
+    _ao.writeInt(v);
+  }
+  public void writeLong(long v) throws IOException {
+    _ao.writeLong(v);
+  }
+  public void writeFloat(float v) throws IOException {
+    _ao.writeFloat(v);
+  }
+  public void writeDouble(double v) throws IOException {
+    _ao.writeDouble(v);
+  }
+  public void writeBytes(String s) throws IOException {
+    _ao.writeBytes(s);
+  }
+  public void writeChars(String s) throws IOException {
+    _ao.writeChars(s);
+  }
+  public void writeUTF(String s) throws IOException {
+    _ao.writeUTF(s);
+  }
+
+  /**
+   * Writes byte elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeBytes(byte[] v, int k, int n) throws IOException {
+    _ao.writeBytes(v,k,n);
+  }
+
+  /**
+   * Writes byte elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeBytes(byte[] v) throws IOException {
+    _ao.writeBytes(v);
+  }
+
+  /**
+   * Writes byte elements from a specified array.
+   * @param v the array.
+   */
+  public void writeBytes(byte[][] v) throws IOException {
+    _ao.writeBytes(v);
+  }
+
+  /**
+   * Writes byte elements from a specified array.
+   * @param v the array.
+   */
+  public void writeBytes(byte[][][] v) throws IOException {
+    _ao.writeBytes(v);
+  }
+
+  /**
+   * Writes char elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeChars(char[] v, int k, int n) throws IOException {
+    _ao.writeChars(v,k,n);
+  }
+
+  /**
+   * Writes char elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeChars(char[] v) throws IOException {
+    _ao.writeChars(v);
+  }
+
+  /**
+   * Writes char elements from a specified array.
+   * @param v the array.
+   */
+  public void writeChars(char[][] v) throws IOException {
+    _ao.writeChars(v);
+  }
+
+  /**
+   * Writes char elements from a specified array.
+   * @param v the array.
+   */
+  public void writeChars(char[][][] v) throws IOException {
+    _ao.writeChars(v);
+  }
+
+  /**
+   * Writes short elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeShorts(short[] v, int k, int n) throws IOException {
+    _ao.writeShorts(v,k,n);
+  }
+
+  /**
+   * Writes shorts elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeShorts(short[] v) throws IOException {
+    _ao.writeShorts(v);
+  }
+
+  /**
+   * Writes short elements from a specified array.
+   * @param v the array.
+   */
+  public void writeShorts(short[][] v) throws IOException {
+    _ao.writeShorts(v);
+  }
+
+  /**
+   * Writes short elements from a specified array.
+   * @param v the array.
+   */
+  public void writeShorts(short[][][] v) throws IOException {
+    _ao.writeShorts(v);
+  }
+
+  /**
+   * Writes int elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeInts(int[] v, int k, int n) throws IOException {
+    _ao.writeInts(v,k,n);
+  }
+
+  /**
+   * Writes int elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeInts(int[] v) throws IOException {
+    _ao.writeInts(v);
+  }
+
+  /**
+   * Writes int elements from a specified array.
+   * @param v the array.
+   */
+  public void writeInts(int[][] v) throws IOException {
+    _ao.writeInts(v);
+  }
+
+  /**
+   * Writes int elements from a specified array.
+   * @param v the array.
+   */
+  public void writeInts(int[][][] v) throws IOException {
+    _ao.writeInts(v);
+  }
+
+  /**
+   * Writes long elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeLongs(long[] v, int k, int n) throws IOException {
+    _ao.writeLongs(v,k,n);
+  }
+
+  /**
+   * Writes long elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeLongs(long[] v) throws IOException {
+    _ao.writeLongs(v);
+  }
+
+  /**
+   * Writes long elements from a specified array.
+   * @param v the array.
+   */
+  public void writeLongs(long[][] v) throws IOException {
+    _ao.writeLongs(v);
+  }
+
+  /**
+   * Writes long elements from a specified array.
+   * @param v the array.
+   */
+  public void writeLongs(long[][][] v) throws IOException {
+    _ao.writeLongs(v);
+  }
+
+  /**
+   * Writes float elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeFloats(float[] v, int k, int n) throws IOException {
+    _ao.writeFloats(v,k,n);
+  }
+
+  /**
+   * Writes float elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeFloats(float[] v) throws IOException {
+    _ao.writeFloats(v);
+  }
+
+  /**
+   * Writes float elements from a specified array.
+   * @param v the array.
+   */
+  public void writeFloats(float[][] v) throws IOException {
+    _ao.writeFloats(v);
+  }
+
+  /**
+   * Writes float elements from a specified array.
+   * @param v the array.
+   */
+  public void writeFloats(float[][][] v) throws IOException {
+    _ao.writeFloats(v);
+  }
+
+  /**
+   * Writes double elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeDoubles(double[] v, int k, int n) throws IOException {
+    _ao.writeDoubles(v,k,n);
+  }
+
+  /**
+   * Writes double elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeDoubles(double[] v) throws IOException {
+    _ao.writeDoubles(v);
+  }
+
+  /**
+   * Writes double elements from a specified array.
+   * @param v the array.
+   */
+  public void writeDoubles(double[][] v) throws IOException {
+    _ao.writeDoubles(v);
+  }
+
+  /**
+   * Writes double elements from a specified array.
+   * @param v the array.
+   */
+  public void writeDoubles(double[][][] v) throws IOException {
+    _ao.writeDoubles(v);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private DataOutputStream _dos;
+  private ArrayOutput _ao;
+  private ByteOrder _bo;
+
+  private CompressedArrayOutputStream(BlockOutputStream bos, ByteOrder bo) {
+    super(bos);
+    _dos = new DataOutputStream(bos);
+    _ao = new ArrayOutputAdapter(_dos,bo);
+    _bo = bo;
+  }
+
+  // Collects bytes into blocks, compresses them, and writes them with
+  // an index to the underlying stream. Blocks are compressed in parallel
+  // in batches.
+  private static class BlockOutputStream extends OutputStream {
+    BlockOutputStream(
+      OutputStream os, ByteOrder bo, int blockSize, float maxError)
+      throws IOException
+    {
+      Check.argument(blockSize>0,"blockSize>0");
+      Check.argument(maxError==0.0f || blockSize%4==0,
+        "blockSize is a multiple of 4 for lossy compression");
+      Check.argument(maxError>=0.0f,"maxError>=0");
+      _os = new DataOutputStream(new BufferedOutputStream(os));
+      _codec = new BlockCodec(bo,maxError);
+      _codec.writeHeader(_os,blockSize);
+      _offset = BlockCodec.HEADER;
+      _nbatch = 2*Runtime.getRuntime().availableProcessors();
+      _blocks = new byte[_nbatch][blockSize];
+      _blockSize = blockSize;
+    }
+    public void write(int b) throws IOException {
+      if (_nbyte==_blockSize)
+        nextBlock();
+      _blocks[_iblock][_nbyte++] = (byte)b;
+      ++_count;
+    }
+    public void write(byte[] b, int off, int len) throws IOException {
+      while (len>0) {
+        if (_nbyte==_blockSize)
+          nextBlock();
+        int m = Math.min(len,_blockSize-_nbyte);
+        System.arraycopy(b,off,_blocks[_iblock],_nbyte,m);
+        _nbyte += m;
+        _count += m;
+        off += m;
+        len -= m;
+      }
+    }
+    public void flush() throws IOException {
+      if (_os!=null) {
+        writeBlocks(_iblock+((_nbyte==_blockSize)?1:0));
+        _os.flush();
+      }
+    }
+    public void close() throws IOException {
+      if (_os!=null) {
+        writeBlocks(_iblock+((_nbyte>0)?1:0));
+        _offsets.add(_offset);
+        for (long offset:_offsets)
+          _os.writeLong(offset);
+        _os.writeLong(_count);
+        _os.writeInt(_offsets.size()-1);
+        _os.writeInt(BlockCodec.MAGIC);
+        _os.close();
+        _codec.end();
+        _os = null;
+      }
+    }
+    long count() {
+      return _count;
+    }
+    long compressedCount() {
+      return _offset;
+    }
+
+    private DataOutputStream _os; // for the compressed stream
+    private BlockCodec _codec; // compresses blocks
+    private int _blockSize; // number of bytes per block
+    private int _nbatch; // number of blocks compressed in parallel
+    private byte[][] _blocks; // batch of blocks
+    private int _iblock; // index of current block in batch
+    private int _nbyte; // number of bytes in current block
+    private long _count; // number of bytes written
+    private long _offset; // offset of next compressed block
+    private ArrayList<Long> _offsets = new ArrayList<Long>();
+
+    // Called when the current block is full.
+    private void nextBlock() throws IOException {
+      if (_iblock==_nbatch-1) {
+        writeBlocks(_nbatch);
+      } else {
+        ++_iblock;
+        _nbyte = 0;
+      }
+    }
+
+    // Compresses and writes the first n blocks in the batch. All blocks 
+    // before the current block are full. If the current block is written,
+    // then the batch becomes empty. Otherwise, the current block is moved
+    // to the beginning of the batch.
+    private void writeBlocks(int n) throws IOException {
+      if (n==0)
+        return;
+      final int ib = _iblock;
+      final int nbyte = _nbyte;
+      final byte[][] c = new byte[n][];
+      Parallel.loop(n,new Parallel.LoopInt() {
+        public void compute(int i) {
+          c[i] = _codec.encode(_blocks[i],(i<ib)?_blockSize:nbyte);
+        }
+      });
+      for (int i=0; i<n; ++i) {
+        _offsets.add(_offset);
+        _os.write(c[i]);
+        _offset += c[i].length;
+      }
+      if (n>_iblock) {
+        _nbyte = 0;
+      } else {
+        byte[] b = _blocks[0];
+        _blocks[0] = _blocks[_iblock];
+        _blocks[_iblock] = b;
+      }
+      _iblock = 0;
+    }
+  }
+}
@@ -0,0 +1,1869 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.io;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.mines.jtk.util.Check;
+
+/**
+ * A memory-mapped array file, for arrays too large to be held in memory.
+ * Like an {@link ArrayFile}, a mapped array file reads and writes arrays
+ * of primitive values with either BIG_ENDIAN or LITTLE_ENDIAN byte orders.
+ * Unlike an array file, it maps the file into memory, so that reads and
+ * writes copy values directly between arrays and pages of the file cached
+ * by the operating system, without intermediate buffers or system calls.
+ * <p>
+ * Because a single mapped buffer cannot exceed 2 GB, the file is mapped
+ * in chunks, which are mapped only when first accessed. Each chunk begins
+ * at a multiple of the chunk size, and overlaps the next chunk, so that
+ * any range of bytes not longer than the chunk size lies entirely within
+ * one chunk. Bulk reads and writes may span any number of chunks. Files
+ * may therefore be much larger than 2 GB.
+ * <p>
+ * Methods such as {@link #getFloatBuffer(long,int)} return views of the
+ * mapped file. Elements of these views are not copied; they are read
+ * from and written to the file when accessed. Views use the byte order
+ * for reading and do not share positions or limits with each other, so
+ * they may be used concurrently by different threads.
+ * <p>
+ * Like an array file, a mapped array file has a file pointer, and methods
+ * without an explicit byte offset read or write beginning at that pointer,
+ * which they then advance. Methods with an explicit byte offset do not use
+ * or change the file pointer, and those that only read may be called
+ * concurrently by different threads.
+ * <p>
+ * Writing beyond the end of a file increases the file length. To avoid
+ * mapping the file again for every such write, space in the file is
+ * allocated in increasingly large steps, up to the chunk size, so that
+ * until this file is closed, the length of the file on disk may exceed
+ * its length {@link #length()}. The file is trimmed to that length when
+ * closed. For a file that will be written sequentially, it is still more
+ * efficient to first set the file length with {@link #setLength(long)}.
+ * <p>
+ * Java provides no way to explicitly unmap a file. Memory mapped by this
+ * file is released when the mapped buffers are garbage collected, which
+ * may be some time after this file has been closed.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class MappedArrayFile
+  implements ArrayInput, ArrayOutput, Closeable
+{
+
+  /**
+   * Constructs a mapped array file with specified name and access mode.
+   * @param name the file name.
+   * @param mode the access mode; "r" or "rw".
+   */
+  public MappedArrayFile(String name, String mode) throws IOException {
+    this(name,mode,ByteOrder.BIG_ENDIAN,ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * Constructs a mapped array file with specified file and access mode.
+   * @param file the file.
+   * @param mode the access mode; "r" or "rw".
+   */
+  public MappedArrayFile(File file, String mode) throws IOException {
+    this(file,mode,ByteOrder.BIG_ENDIAN,ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * Constructs a mapped array file with specified name, access mode,
+   * and byte orders.
+   * @param name the file name.
+   * @param mode the access mode; "r" or "rw".
+   * @param bor the byte order for reading.
+   * @param bow the byte order for writing.
+   */
+  public MappedArrayFile(
+    String name, String mode, ByteOrder bor, ByteOrder bow)
+    throws IOException
+  {
+    this(name!=null?new File(name):null,mode,bor,bow);
+  }
+
+  /**
+   * Constructs a mapped array file with specified file, access mode,
+   * and byte orders.
+   * @param file the file.
+   * @param mode the access mode; "r" or "rw".
+   * @param bor the byte order for reading.
+   * @param bow the byte order for writing.
+   */
+  public MappedArrayFile(
+    File file, String mode, ByteOrder bor, ByteOrder bow)
+    throws IOException
+  {
+    this(file,mode,bor,bow,CHUNK_SIZE);
+  }
+
+  /**
+   * Gets the byte order for reading data.
+   * @return the byte order.
+   */
+  public ByteOrder getByteOrderRead() {
+    return _bor;
+  }
+
+  /**
+   * Gets the byte order for writing data.
+   * @return the byte order.
+   */
+  public ByteOrder getByteOrderWrite() {
+    return _bow;
+  }
+
+  /**
+   * Gets the file pointer (byte offset) for this file. The next read or
+   * write without an explicit byte offset begins at this offset.
+   * @return the file pointer.
+   */
+  public long getFilePointer() {
+    return _fp;
+  }
+
+  /**
+   * Sets the file pointer (byte offset) for this file.
+   * The offset may be set beyond the end of the file.
+   * @param off the file pointer, the offset in bytes from the
+   *  beginning of the file.
+   */
+  public void seek(long off) {
+    Check.argument(off>=0,"off>=0");
+    _fp = off;
+  }
+
+  /**
+   * Returns the length of this file.
+   * @return the file length, in bytes.
+   */
+  public long length() {
+    return _length;
+  }
+
+  /**
+   * Sets the length of this file. If the current file length is less than
+   * the specified new length, then this file will be extended. The content of
+   * the extended portion is undefined.
+   * <p>
+   * Unlike an array file, a mapped array file cannot be truncated, because
+   * chunks already mapped and views returned by this file cannot be unmapped,
+   * and accessing any part of them beyond the end of the file would fail.
+   * @param newLength the new length; must not be less than the current
+   *  file length.
+   */
+  public void setLength(long newLength) throws IOException {
+    checkWritable();
+    Check.argument(newLength>=_length,"newLength is not less than length");
+    if (_capacity<newLength) {
+      _raf.setLength(newLength);
+      _capacity = newLength;
+    }
+    _length = newLength;
+  }
+
+  /**
+   * Forces any changes made to this file to be written to the storage
+   * device that contains it.
+   */
+  public void force() {
+    if (_mode==FileChannel.MapMode.READ_WRITE) {
+      for (MappedByteBuffer mbb:_chunks) {
+        if (mbb!=null)
+          mbb.force();
+      }
+    }
+  }
+
+  /**
+   * Closes this file, releasing any associated system resources.
+   * Any changes made to this file are written before it is closed, and
+   * any space allocated beyond the end of the file is released.
+   */
+  public void close() throws IOException {
+    force();
+    _chunks.clear();
+    if (_capacity>_length)
+      _raf.setLength(_length);
+    _fc.close();
+    _raf.close();
+    _raf = null;
+    _fc = null;
+  }
+
+  /**
+   * Gets a view of bytes in this file. The view has byte order for
+   * reading, and its position and limit are independent of any other.
+   * @param off the offset in bytes of the first byte.
+   * @param n the number of bytes in the view; must not exceed the chunk
+   *  size, which by default is 512 MB.
+   * @return the view.
+   */
+  public ByteBuffer getByteBuffer(long off, int n) throws IOException {
+    Check.argument(n<=_chunkSize,"n does not exceed chunk size");
+    return buffer(off,n,_bor);
+  }
+
+  /**
+   * Gets a view of int elements in this file.
+   * @param off the offset in bytes of the first element.
+   * @param n the number of elements in the view.
+   * @return the view.
+   */
+  public IntBuffer getIntBuffer(long off, int n) throws IOException {
+    Check.argument(n<=_chunkSize/4,"n does not exceed chunk size");
+    return buffer(off,4*n,_bor).asIntBuffer();
+  }
+
+  /**
+   * Gets a view of float elements in this file.
+   * @param off the offset in bytes of the first element.
+   * @param n the number of elements in the view.
+   * @return the view.
+   */
+  public FloatBuffer getFloatBuffer(long off, int n) throws IOException {
+    Check.argument(n<=_chunkSize/4,"n does not exceed chunk size");
+    return buffer(off,4*n,_bor).asFloatBuffer();
+  }
+
+  /**
+   * Gets a view of double elements in this file.
+   * @param off the offset in bytes of the first element.
+   * @param n the number of elements in the view.
+   * @return the view.
+   */
+  public DoubleBuffer getDoubleBuffer(long off, int n) throws IOException {
+    Check.argument(n<=_chunkSize/8,"n does not exceed chunk size");
+    return buffer(off,8*n,_bor).asDoubleBuffer();
+  }
+
+  public void readFully(byte[] b) throws IOException {
+    readBytes(b);
+  }
+
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    readBytes(b,off,len);
+  }
+
+  public int skipBytes(int n) throws IOException {
+    int m = (int)Math.max(0L,Math.min((long)n,_length-_fp));
+    _fp += m;
+    return m;
+  }
+
+  public void write(int b) throws IOException {
+    writeByte(b);
+  }
+
+  public void write(byte[] b) throws IOException {
+    writeBytes(b);
+  }
+
+  public void write(byte[] b, int off, int len) throws IOException {
+    writeBytes(b,off,len);
+  }
+
+  public final boolean readBoolean() throws IOException {
+    return readByte()!=0;
+  }
+
+  public final byte readByte() throws IOException {
+    byte v = buffer(_fp,1,_bor).get();
+    _fp += 1;
+    return v;
+  }
+
+  public final int readUnsignedByte() throws IOException {
+    return readByte()&0xff;
+  }
+
+  public final short readShort() throws IOException {
+    short v = buffer(_fp,2,_bor).getShort();
+    _fp += 2;
+    return v;
+  }
+
+  public final int readUnsignedShort() throws IOException {
+    return readShort()&0xffff;
+  }
+
+  public final char readChar() throws IOException {
+    char v = buffer(_fp,2,_bor).getChar();
+    _fp += 2;
+    return v;
+  }
+
+  public final int readInt() throws IOException {
+    int v = buffer(_fp,4,_bor).getInt();
+    _fp += 4;
+    return v;
+  }
+
+  public final long readLong() throws IOException {
+    long v = buffer(_fp,8,_bor).getLong();
+    _fp += 8;
+    return v;
+  }
+
+  public final float readFloat() throws IOException {
+    float v = buffer(_fp,4,_bor).getFloat();
+    _fp += 4;
+    return v;
+  }
+
+  public final double readDouble() throws IOException {
+    double v = buffer(_fp,8,_bor).getDouble();
+    _fp += 8;
+    return v;
+  }
+
+  public final String readLine() throws IOException {
+    if (_fp>=_length)
+      return null;
+    StringBuilder sb = new StringBuilder();
+    while (_fp<_length) {
+      int c = readUnsignedByte();
+      if (c=='\n')
+        break;
+      if (c=='\r') {
+        if (_fp<_length && buffer(_fp,1,_bor).get()=='\n')
+          _fp += 1;
+        break;
+      }
+      sb.append((char)c);
+    }
+    return sb.toString();
+  }
+
+  public final String readUTF() throws IOException {
+    // As for DataInput, the length is big-endian for either byte order.
+    byte[] b = new byte[2];
+    readBytes(b);
+    b = Arrays.copyOf(b,2+(((b[0]&0xff)<<8)|(b[1]&0xff)));
+    readBytes(b,2,b.length-2);
+    return new DataInputStream(new ByteArrayInputStream(b)).readUTF();
+  }
+
+  public void writeBoolean(boolean v) throws IOException {
+    writeByte(v?1:0);
+  }
+
+  public void writeByte(int v) throws IOException {
+    extend(_fp+1);
+    buffer(_fp,1,_bow).put((byte)v);
+    _fp += 1;
+  }
+
+  public void writeShort(int v) throws IOException {
+    extend(_fp+2);
+    buffer(_fp,2,_bow).putShort((short)v);
+    _fp += 2;
+  }
+
+  public void writeChar(int v) throws IOException {
+    extend(_fp+2);
+    buffer(_fp,2,_bow).putChar((char)v);
+    _fp += 2;
+  }
+
+  public void writeInt(int v) throws IOException {
+    extend(_fp+4);
+    buffer(_fp,4,_bow).putInt(v);
+    _fp += 4;
+  }
+
+  public void writeLong(long v) throws IOException {
+    extend(_fp+8);
+    buffer(_fp,8,_bow).putLong(v);
+    _fp += 8;
+  }
+
+  public void writeFloat(float v) throws IOException {
+    extend(_fp+4);
+    buffer(_fp,4,_bow).putFloat(v);
+    _fp += 4;
+  }
+
+  public void writeDouble(double v) throws IOException {
+    extend(_fp+8);
+    buffer(_fp,8,_bow).putDouble(v);
+    _fp += 8;
+  }
+
+  public void writeBytes(String s) throws IOException {
+    int n = s.length();
+    byte[] b = new byte[n];
+    for (int i=0; i<n; ++i)
+      b[i] = (byte)s.charAt(i);
+    writeBytes(b);
+  }
+
+  public void writeChars(String s) throws IOException {
+    writeChars(s.toCharArray());
+  }
+
+  public void writeUTF(String s) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    new DataOutputStream(bos).writeUTF(s);
+    writeBytes(bos.toByteArray());
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // reads and writes with explicit byte offsets
+
+  /**
+   * Reads byte elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readBytes(long off, byte[] v, int k, int n) throws IOException {
+    int m = _chunkSize;
+    for (int j=0; j<n; j+=m,off+=m) {
+      int l = Math.min(m,n-j);
+      buffer(off,l,_bor).get(v,k+j,l);
+    }
+  }
+
+  /**
+   * Reads byte elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readBytes(long off, byte[] v) throws IOException {
+    readBytes(off,v,0,v.length);
+  }
+
+  /**
+   * Reads byte elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readBytes(long off, byte[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readBytes(off,v[i]);
+      off += v[i].length;
+    }
+  }
+
+  /**
+   * Reads byte elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readBytes(long off, byte[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readBytes(off,v[i]);
+      off += size(v[i]);
+    }
+  }
+
+  /**
+   * Reads char elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readChars(long off, char[] v, int k, int n) throws IOException {
+    int m = _chunkSize/2;
+    for (int j=0; j<n; j+=m,off+=2L*m) {
+      int l = Math.min(m,n-j);
+      buffer(off,2*l,_bor).asCharBuffer().get(v,k+j,l);
+    }
+  }
+
+  /**
+   * Reads char elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readChars(long off, char[] v) throws IOException {
+    readChars(off,v,0,v.length);
+  }
+
+  /**
+   * Reads char elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readChars(long off, char[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readChars(off,v[i]);
+      off += 2L*v[i].length;
+    }
+  }
+
+  /**
+   * Reads char elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readChars(long off, char[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readChars(off,v[i]);
+      off += 2L*size(v[i]);
+    }
+  }
+
+  /**
+   * Reads short elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readShorts(long off, short[] v, int k, int n)
+    throws IOException
+  {
+    int m = _chunkSize/2;
+    for (int j=0; j<n; j+=m,off+=2L*m) {
+      int l = Math.min(m,n-j);
+      buffer(off,2*l,_bor).asShortBuffer().get(v,k+j,l);
+    }
+  }
+
+  /**
+   * Reads short elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readShorts(long off, short[] v) throws IOException {
+    readShorts(off,v,0,v.length);
+  }
+
+  /**
+   * Reads short elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readShorts(long off, short[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readShorts(off,v[i]);
+      off += 2L*v[i].length;
+    }
+  }
+
+  /**
+   * Reads short elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readShorts(long off, short[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readShorts(off,v[i]);
+      off += 2L*size(v[i]);
+    }
+  }
+
+  /**
+   * Reads int elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readInts(long off, int[] v, int k, int n) throws IOException {
+    int m = _chunkSize/4;
+    for (int j=0; j<n; j+=m,off+=4L*m) {
+      int l = Math.min(m,n-j);
+      buffer(off,4*l,_bor).asIntBuffer().get(v,k+j,l);
+    }
+  }
+
+  /**
+   * Reads int elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readInts(long off, int[] v) throws IOException {
+    readInts(off,v,0,v.length);
+  }
+
+  /**
+   * Reads int elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readInts(long off, int[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readInts(off,v[i]);
+      off += 4L*v[i].length;
+    }
+  }
+
+  /**
+   * Reads int elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readInts(long off, int[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readInts(off,v[i]);
+      off += 4L*size(v[i]);
+    }
+  }
+
+  /**
+   * Reads long elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readLongs(long off, long[] v, int k, int n) throws IOException {
+    int m = _chunkSize/8;
+    for (int j=0; j<n; j+=m,off+=8L*m) {
+      int l = Math.min(m,n-j);
+      buffer(off,8*l,_bor).asLongBuffer().get(v,k+j,l);
+    }
+  }
+
+  /**
+   * Reads long elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readLongs(long off, long[] v) throws IOException {
+    readLongs(off,v,0,v.length);
+  }
+
+  /**
+   * Reads long elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readLongs(long off, long[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readLongs(off,v[i]);
+      off += 8L*v[i].length;
+    }
+  }
+
+  /**
+   * Reads long elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readLongs(long off, long[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readLongs(off,v[i]);
+      off += 8L*size(v[i]);
+    }
+  }
+
+  /**
+   * Reads float elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readFloats(long off, float[] v, int k, int n)
+    throws IOException
+  {
+    int m = _chunkSize/4;
+    for (int j=0; j<n; j+=m,off+=4L*m) {
+      int l = Math.min(m,n-j);
+      buffer(off,4*l,_bor).asFloatBuffer().get(v,k+j,l);
+    }
+  }
+
+  /**
+   * Reads float elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readFloats(long off, float[] v) throws IOException {
+    readFloats(off,v,0,v.length);
+  }
+
+  /**
+   * Reads float elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readFloats(long off, float[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readFloats(off,v[i]);
+      off += 4L*v[i].length;
+    }
+  }
+
+  /**
+   * Reads float elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readFloats(long off, float[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readFloats(off,v[i]);
+      off += 4L*size(v[i]);
+    }
+  }
+
+  /**
+   * Reads double elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readDoubles(long off, double[] v, int k, int n)
+    throws IOException
+  {
+    int m = _chunkSize/8;
+    for (int j=0; j<n; j+=m,off+=8L*m) {
+      int l = Math.min(m,n-j);
+      buffer(off,8*l,_bor).asDoubleBuffer().get(v,k+j,l);
+    }
+  }
+
+  /**
+   * Reads double elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readDoubles(long off, double[] v) throws IOException {
+    readDoubles(off,v,0,v.length);
+  }
+
+  /**
+   * Reads double elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readDoubles(long off, double[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readDoubles(off,v[i]);
+      off += 8L*v[i].length;
+    }
+  }
+
+  /**
+   * Reads double elements beginning at a specified byte offset.
+   * The array length equals the number of elements to read.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void readDoubles(long off, double[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      readDoubles(off,v[i]);
+      off += 8L*size(v[i]);
+    }
+  }
+
+  /**
+   * Writes byte elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeBytes(long off, byte[] v, int k, int n)
+    throws IOException
+  {
+    extend(off+n);
+    int m = _chunkSize;
+    for (int j=0; j<n; j+=m,off+=m) {
+      int l = Math.min(m,n-j);
+      buffer(off,l,_bow).put(v,k+j,l);
+    }
+  }
+
+  /**
+   * Writes byte elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeBytes(long off, byte[] v) throws IOException {
+    writeBytes(off,v,0,v.length);
+  }
+
+  /**
+   * Writes byte elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeBytes(long off, byte[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeBytes(off,v[i]);
+      off += v[i].length;
+    }
+  }
+
+  /**
+   * Writes byte elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeBytes(long off, byte[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeBytes(off,v[i]);
+      off += size(v[i]);
+    }
+  }
+
+  /**
+   * Writes char elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeChars(long off, char[] v, int k, int n)
+    throws IOException
+  {
+    extend(off+2L*n);
+    int m = _chunkSize/2;
+    for (int j=0; j<n; j+=m,off+=2L*m) {
+      int l = Math.min(m,n-j);
+      buffer(off,2*l,_bow).asCharBuffer().put(v,k+j,l);
+    }
+  }
+
+  /**
+   * Writes char elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeChars(long off, char[] v) throws IOException {
+    writeChars(off,v,0,v.length);
+  }
+
+  /**
+   * Writes char elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeChars(long off, char[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeChars(off,v[i]);
+      off += 2L*v[i].length;
+    }
+  }
+
+  /**
+   * Writes char elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeChars(long off, char[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeChars(off,v[i]);
+      off += 2L*size(v[i]);
+    }
+  }
+
+  /**
+   * Writes short elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeShorts(long off, short[] v, int k, int n)
+    throws IOException
+  {
+    extend(off+2L*n);
+    int m = _chunkSize/2;
+    for (int j=0; j<n; j+=m,off+=2L*m) {
+      int l = Math.min(m,n-j);
+      buffer(off,2*l,_bow).asShortBuffer().put(v,k+j,l);
+    }
+  }
+
+  /**
+   * Writes short elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeShorts(long off, short[] v) throws IOException {
+    writeShorts(off,v,0,v.length);
+  }
+
+  /**
+   * Writes short elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeShorts(long off, short[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeShorts(off,v[i]);
+      off += 2L*v[i].length;
+    }
+  }
+
+  /**
+   * Writes short elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeShorts(long off, short[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeShorts(off,v[i]);
+      off += 2L*size(v[i]);
+    }
+  }
+
+  /**
+   * Writes int elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeInts(long off, int[] v, int k, int n) throws IOException {
+    extend(off+4L*n);
+    int m = _chunkSize/4;
+    for (int j=0; j<n; j+=m,off+=4L*m) {
+      int l = Math.min(m,n-j);
+      buffer(off,4*l,_bow).asIntBuffer().put(v,k+j,l);
+    }
+  }
+
+  /**
+   * Writes int elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeInts(long off, int[] v) throws IOException {
+    writeInts(off,v,0,v.length);
+  }
+
+  /**
+   * Writes int elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeInts(long off, int[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeInts(off,v[i]);
+      off += 4L*v[i].length;
+    }
+  }
+
+  /**
+   * Writes int elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeInts(long off, int[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeInts(off,v[i]);
+      off += 4L*size(v[i]);
+    }
+  }
+
+  /**
+   * Writes long elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeLongs(long off, long[] v, int k, int n)
+    throws IOException
+  {
+    extend(off+8L*n);
+    int m = _chunkSize/8;
+    for (int j=0; j<n; j+=m,off+=8L*m) {
+      int l = Math.min(m,n-j);
+      buffer(off,8*l,_bow).asLongBuffer().put(v,k+j,l);
+    }
+  }
+
+  /**
+   * Writes long elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeLongs(long off, long[] v) throws IOException {
+    writeLongs(off,v,0,v.length);
+  }
+
+  /**
+   * Writes long elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeLongs(long off, long[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeLongs(off,v[i]);
+      off += 8L*v[i].length;
+    }
+  }
+
+  /**
+   * Writes long elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeLongs(long off, long[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeLongs(off,v[i]);
+      off += 8L*size(v[i]);
+    }
+  }
+
+  /**
+   * Writes float elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeFloats(long off, float[] v, int k, int n)
+    throws IOException
+  {
+    extend(off+4L*n);
+    int m = _chunkSize/4;
+    for (int j=0; j<n; j+=m,off+=4L*m) {
+      int l = Math.min(m,n-j);
+      buffer(off,4*l,_bow).asFloatBuffer().put(v,k+j,l);
+    }
+  }
+
+  /**
+   * Writes float elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeFloats(long off, float[] v) throws IOException {
+    writeFloats(off,v,0,v.length);
+  }
+
+  /**
+   * Writes float elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeFloats(long off, float[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeFloats(off,v[i]);
+      off += 4L*v[i].length;
+    }
+  }
+
+  /**
+   * Writes float elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeFloats(long off, float[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeFloats(off,v[i]);
+      off += 4L*size(v[i]);
+    }
+  }
+
+  /**
+   * Writes double elements beginning at a specified byte offset.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeDoubles(long off, double[] v, int k, int n)
+    throws IOException
+  {
+    extend(off+8L*n);
+    int m = _chunkSize/8;
+    for (int j=0; j<n; j+=m,off+=8L*m) {
+      int l = Math.min(m,n-j);
+      buffer(off,8*l,_bow).asDoubleBuffer().put(v,k+j,l);
+    }
+  }
+
+  /**
+   * Writes double elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeDoubles(long off, double[] v) throws IOException {
+    writeDoubles(off,v,0,v.length);
+  }
+
+  /**
+   * Writes double elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeDoubles(long off, double[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeDoubles(off,v[i]);
+      off += 8L*v[i].length;
+    }
+  }
+
+  /**
+   * Writes double elements beginning at a specified byte offset.
+   * The array length equals the number of elements to write.
+   * @param off the offset in bytes of the first element.
+   * @param v the array.
+   */
+  public void writeDoubles(long off, double[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i) {
+      writeDoubles(off,v[i]);
+      off += 8L*size(v[i]);
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // reads and writes beginning at the file pointer
+
+  /**
+   * Reads byte elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readBytes(byte[] v, int k, int n) throws IOException {
+    readBytes(_fp,v,k,n);
+    _fp += n;
+  }
+
+  /**
+   * Reads byte elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readBytes(byte[] v) throws IOException {
+    readBytes(v,0,v.length);
+  }
+
+  /**
+   * Reads byte elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readBytes(byte[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readBytes(v[i]);
+  }
+
+  /**
+   * Reads byte elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readBytes(byte[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readBytes(v[i]);
+  }
+
+  /**
+   * Reads char elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readChars(char[] v, int k, int n) throws IOException {
+    readChars(_fp,v,k,n);
+    _fp += 2L*n;
+  }
+
+  /**
+   * Reads char elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readChars(char[] v) throws IOException {
+    readChars(v,0,v.length);
+  }
+
+  /**
+   * Reads char elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readChars(char[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readChars(v[i]);
+  }
+
+  /**
+   * Reads char elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readChars(char[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readChars(v[i]);
+  }
+
+  /**
+   * Reads short elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readShorts(short[] v, int k, int n) throws IOException {
+    readShorts(_fp,v,k,n);
+    _fp += 2L*n;
+  }
+
+  /**
+   * Reads short elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readShorts(short[] v) throws IOException {
+    readShorts(v,0,v.length);
+  }
+
+  /**
+   * Reads short elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readShorts(short[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readShorts(v[i]);
+  }
+
+  /**
+   * Reads short elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readShorts(short[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readShorts(v[i]);
+  }
+
+  /**
+   * Reads int elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readInts(int[] v, int k, int n) throws IOException {
+    readInts(_fp,v,k,n);
+    _fp += 4L*n;
+  }
+
+  /**
+   * Reads int elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readInts(int[] v) throws IOException {
+    readInts(v,0,v.length);
+  }
+
+  /**
+   * Reads int elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readInts(int[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readInts(v[i]);
+  }
+
+  /**
+   * Reads int elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readInts(int[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readInts(v[i]);
+  }
+
+  /**
+   * Reads long elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readLongs(long[] v, int k, int n) throws IOException {
+    readLongs(_fp,v,k,n);
+    _fp += 8L*n;
+  }
+
+  /**
+   * Reads long elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readLongs(long[] v) throws IOException {
+    readLongs(v,0,v.length);
+  }
+
+  /**
+   * Reads long elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readLongs(long[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readLongs(v[i]);
+  }
+
+  /**
+   * Reads long elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readLongs(long[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readLongs(v[i]);
+  }
+
+  /**
+   * Reads float elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readFloats(float[] v, int k, int n) throws IOException {
+    readFloats(_fp,v,k,n);
+    _fp += 4L*n;
+  }
+
+  /**
+   * Reads float elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readFloats(float[] v) throws IOException {
+    readFloats(v,0,v.length);
+  }
+
+  /**
+   * Reads float elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readFloats(float[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readFloats(v[i]);
+  }
+
+  /**
+   * Reads float elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readFloats(float[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readFloats(v[i]);
+  }
+
+  /**
+   * Reads double elements into a specified array.
+   * @param v the array.
+   * @param k the index of the first element to read.
+   * @param n the number of elements to read.
+   */
+  public void readDoubles(double[] v, int k, int n) throws IOException {
+    readDoubles(_fp,v,k,n);
+    _fp += 8L*n;
+  }
+
+  /**
+   * Reads double elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readDoubles(double[] v) throws IOException {
+    readDoubles(v,0,v.length);
+  }
+
+  /**
+   * Reads double elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readDoubles(double[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readDoubles(v[i]);
+  }
+
+  /**
+   * Reads double elements into a specified array.
+   * The array length equals the number of elements to read.
+   * @param v the array.
+   */
+  public void readDoubles(double[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      readDoubles(v[i]);
+  }
+
+  /**
+   * Writes byte elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeBytes(byte[] v, int k, int n) throws IOException {
+    writeBytes(_fp,v,k,n);
+    _fp += n;
+  }
+
+  /**
+   * Writes byte elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeBytes(byte[] v) throws IOException {
+    writeBytes(v,0,v.length);
+  }
+
+  /**
+   * Writes byte elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeBytes(byte[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeBytes(v[i]);
+  }
+
+  /**
+   * Writes byte elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeBytes(byte[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeBytes(v[i]);
+  }
+
+  /**
+   * Writes char elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeChars(char[] v, int k, int n) throws IOException {
+    writeChars(_fp,v,k,n);
+    _fp += 2L*n;
+  }
+
+  /**
+   * Writes char elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeChars(char[] v) throws IOException {
+    writeChars(v,0,v.length);
+  }
+
+  /**
+   * Writes char elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeChars(char[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeChars(v[i]);
+  }
+
+  /**
+   * Writes char elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeChars(char[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeChars(v[i]);
+  }
+
+  /**
+   * Writes short elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeShorts(short[] v, int k, int n) throws IOException {
+    writeShorts(_fp,v,k,n);
+    _fp += 2L*n;
+  }
+
+  /**
+   * Writes short elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeShorts(short[] v) throws IOException {
+    writeShorts(v,0,v.length);
+  }
+
+  /**
+   * Writes short elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeShorts(short[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeShorts(v[i]);
+  }
+
+  /**
+   * Writes short elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeShorts(short[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeShorts(v[i]);
+  }
+
+  /**
+   * Writes int elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeInts(int[] v, int k, int n) throws IOException {
+    writeInts(_fp,v,k,n);
+    _fp += 4L*n;
+  }
+
+  /**
+   * Writes int elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeInts(int[] v) throws IOException {
+    writeInts(v,0,v.length);
+  }
+
+  /**
+   * Writes int elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeInts(int[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeInts(v[i]);
+  }
+
+  /**
+   * Writes int elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeInts(int[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeInts(v[i]);
+  }
+
+  /**
+   * Writes long elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeLongs(long[] v, int k, int n) throws IOException {
+    writeLongs(_fp,v,k,n);
+    _fp += 8L*n;
+  }
+
+  /**
+   * Writes long elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeLongs(long[] v) throws IOException {
+    writeLongs(v,0,v.length);
+  }
+
+  /**
+   * Writes long elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeLongs(long[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeLongs(v[i]);
+  }
+
+  /**
+   * Writes long elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeLongs(long[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeLongs(v[i]);
+  }
+
+  /**
+   * Writes float elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeFloats(float[] v, int k, int n) throws IOException {
+    writeFloats(_fp,v,k,n);
+    _fp += 4L*n;
+  }
+
+  /**
+   * Writes float elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeFloats(float[] v) throws IOException {
+    writeFloats(v,0,v.length);
+  }
+
+  /**
+   * Writes float elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeFloats(float[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeFloats(v[i]);
+  }
+
+  /**
+   * Writes float elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeFloats(float[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeFloats(v[i]);
+  }
+
+  /**
+   * Writes double elements from a specified array.
+   * @param v the array.
+   * @param k the index of the first element to write.
+   * @param n the number of elements to write.
+   */
+  public void writeDoubles(double[] v, int k, int n) throws IOException {
+    writeDoubles(_fp,v,k,n);
+    _fp += 8L*n;
+  }
+
+  /**
+   * Writes double elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeDoubles(double[] v) throws IOException {
+    writeDoubles(v,0,v.length);
+  }
+
+  /**
+   * Writes double elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeDoubles(double[][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeDoubles(v[i]);
+  }
+
+  /**
+   * Writes double elements from a specified array.
+   * The array length equals the number of elements to write.
+   * @param v the array.
+   */
+  public void writeDoubles(double[][][] v) throws IOException {
+    for (int i=0; i<v.length; ++i)
+      writeDoubles(v[i]);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // package
+
+  // Default chunk size. Mapped chunks overlap, so each is twice this size,
+  // which must not exceed the maximum size of a mapped buffer.
+  static final int CHUNK_SIZE = 1<<29;
+
+  /**
+   * Constructs a mapped array file with a specified chunk size.
+   * Small chunk sizes are useful only for testing.
+   */
+  MappedArrayFile(
+    File file, String mode, ByteOrder bor, ByteOrder bow, int chunkSize)
+    throws IOException
+  {
+    Check.argument(mode.equals("r") || mode.equals("rw"),"mode is r or rw");
+    Check.argument(chunkSize%8==0,"chunk size is a multiple of 8");
+    Check.argument(chunkSize<=CHUNK_SIZE,"chunk size is not too large");
+    _raf = new RandomAccessFile(file,mode);
+    _fc = _raf.getChannel();
+    _mode = mode.equals("r") ?
+      FileChannel.MapMode.READ_ONLY :
+      FileChannel.MapMode.READ_WRITE;
+    _bor = bor;
+    _bow = bow;
+    _chunkSize = chunkSize;
+    _length = _raf.length();
+    _capacity = _length;
+    _chunks = new ArrayList<MappedByteBuffer>();
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private RandomAccessFile _raf;
+  private FileChannel _fc;
+  private FileChannel.MapMode _mode;
+  private ByteOrder _bor,_bow; // byte orders for reading and writing
+  private int _chunkSize; // chunk j begins at byte offset j*_chunkSize
+  private long _length; // file length, in bytes
+  private long _capacity; // length of file on disk, not less than _length
+  private long _fp; // file pointer, in bytes
+  private ArrayList<MappedByteBuffer> _chunks; // mapped chunks, or nulls
+
+  private void checkWritable() {
+    if (_mode!=FileChannel.MapMode.READ_WRITE)
+      throw new NonWritableChannelException();
+  }
+
+  // Ensures that the file length is not less than the specified length.
+  // If necessary, the file on disk is extended beyond that length, by at
+  // least its current length or the chunk size, whichever is smaller, so
+  // that each chunk is mapped again only a few times as the file grows.
+  private void extend(long length) throws IOException {
+    checkWritable();
+    if (_length<length) {
+      if (_capacity<length) {
+        long step = Math.max(MIN_STEP,Math.min(_capacity,_chunkSize));
+        long capacity = Math.max(length,_capacity+step);
+        _raf.setLength(capacity);
+        _capacity = capacity;
+      }
+      _length = length;
+    }
+  }
+  private static final long MIN_STEP = 4096; // min bytes added to file
+
+  // Returns a buffer for n bytes beginning at the specified offset.
+  // The number of bytes n must not exceed the chunk size.
+  private ByteBuffer buffer(long off, int n, ByteOrder order)
+    throws IOException
+  {
+    if (off<0 || off+n>_length)
+      throw new EOFException();
+    int j = (int)(off/_chunkSize);
+    int p = (int)(off-(long)j*_chunkSize);
+    ByteBuffer bb = chunk(j,p+n).duplicate();
+    bb.position(p);
+    bb.limit(p+n);
+    return bb.slice().order(order);
+  }
+
+  // Returns the mapped chunk with index j, mapping or remapping that
+  // chunk if necessary so that it contains at least n bytes.
+  private synchronized MappedByteBuffer chunk(int j, int n)
+    throws IOException
+  {
+    while (_chunks.size()<=j)
+      _chunks.add(null);
+    MappedByteBuffer mbb = _chunks.get(j);
+    if (mbb==null || mbb.capacity()<n) {
+      long start = (long)j*_chunkSize;
+      long size = Math.min(2L*_chunkSize,_capacity-start);
+      mbb = _fc.map(_mode,start,size);
+      _chunks.set(j,mbb);
+    }
+    return mbb;
+  }
+
+  private static long size(byte[][] v) {
+    long n = 0;
+    for (int i=0; i<v.length; ++i)
+      n += v[i].length;
+    return n;
+  }
+  private static long size(char[][] v) {
+    long n = 0;
+    for (int i=0; i<v.length; ++i)
+      n += v[i].length;
+    return n;
+  }
+  private static long size(short[][] v) {
+    long n = 0;
+    for (int i=0; i<v.length; ++i)
+      n += v[i].length;
+    return n;
+  }
+  private static long size(int[][] v) {
+    long n = 0;
+    for (int i=0; i<v.length; ++i)
+      n += v[i].length;
+    return n;
+  }
+  private static long size(long[][] v) {
+    long n = 0;
+    for (int i=0; i<v.length; ++i)
+      n += v[i].length;
+    return n;
+  }
+  private static long size(float[][] v) {
+    long n = 0;
+    for (int i=0; i<v.length; ++i)
+      n += v[i].length;
+    return n;
+  }
+  private static long size(double[][] v) {
+    long n = 0;
+    for (int i=0; i<v.length; ++i)
+      n += v[i].length;
+    return n;
+  }
+}
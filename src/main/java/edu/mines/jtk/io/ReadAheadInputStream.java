@@ -0,0 +1,177 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import edu.mines.jtk.util.Check;
+
+/**
+ * An input stream that reads ahead in a background thread. Bytes are read
+ * from an underlying stream into a ring of direct byte buffers, so that
+ * the next blocks of bytes may be read while the bytes already read are
+ * processed. Counts of hits and misses indicate how often a block was
+ * ready when it was needed.
+ * <p>
+ * The underlying stream is read only by the background thread, which runs
+ * until the end of that stream, until an exception is thrown when reading
+ * it, or until this stream is closed. Any such exception is rethrown when
+ * the bytes that could not be read are needed.
+ * @author agent
+ * @version 2026.10.18
+ */
+class ReadAheadInputStream extends InputStream {
+
+  /**
+   * Constructs a read-ahead stream for the specified stream.
+   * @param is the underlying input stream.
+   * @param nbuffer the number of buffers in the ring.
+   * @param lbuffer the number of bytes in each buffer.
+   */
+  ReadAheadInputStream(InputStream is, int nbuffer, int lbuffer) {
+    Check.argument(nbuffer>=2,"nbuffer>=2");
+    Check.argument(lbuffer>0,"lbuffer>0");
+    _is = is;
+    _rbc = Channels.newChannel(is);
+    _empty = new ArrayBlockingQueue<ByteBuffer>(nbuffer);
+    _full = new ArrayBlockingQueue<ByteBuffer>(nbuffer+1);
+    for (int ibuffer=0; ibuffer<nbuffer; ++ibuffer)
+      _empty.add(ByteBuffer.allocateDirect(lbuffer));
+    _thread = new Thread(new Runnable() {
+      public void run() {
+        readAhead();
+      }
+    },"ReadAheadInputStream");
+    _thread.setDaemon(true);
+    _thread.start();
+  }
+
+  /**
+   * Gets the number of buffers that were full when needed.
+   * @return the number of hits.
+   */
+  long getHits() {
+    return _hits;
+  }
+
+  /**
+   * Gets the number of buffers for which reading had to wait.
+   * @return the number of misses.
+   */
+  long getMisses() {
+    return _misses;
+  }
+
+  public int read() throws IOException {
+    if (!ready())
+      return -1;
+    return _bb.get()&0xff;
+  }
+
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len==0)
+      return 0;
+    int n = 0;
+    while (n<len && ready()) {
+      int m = Math.min(len-n,_bb.remaining());
+      _bb.get(b,off+n,m);
+      n += m;
+    }
+    return (n==0)?-1:n;
+  }
+
+  public int available() throws IOException {
+    return (_bb!=null)?_bb.remaining():0;
+  }
+
+  public void close() throws IOException {
+    if (_thread!=null) {
+      _closed = true;
+      _thread.interrupt();
+      try {
+        _thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      _thread = null;
+      _bb = null;
+      _is.close();
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  // Marks the end of the underlying stream in the queue of full buffers.
+  private static final ByteBuffer EOF = ByteBuffer.allocate(0);
+
+  private InputStream _is; // the underlying stream
+  private ReadableByteChannel _rbc; // channel for the underlying stream
+  private BlockingQueue<ByteBuffer> _empty; // buffers ready to be filled
+  private BlockingQueue<ByteBuffer> _full; // buffers ready to be read
+  private Thread _thread; // reads ahead while this stream is open
+  private volatile boolean _closed; // true, if this stream is closed
+  private volatile IOException _ioe; // thrown by the background thread
+  private ByteBuffer _bb; // the buffer being read, if any
+  private long _hits,_misses; // counts of buffers full or not when needed
+
+  // Ensures that the current buffer has bytes remaining. Returns false
+  // if no bytes remain before the end of the underlying stream.
+  private boolean ready() throws IOException {
+    if (_thread==null)
+      throw new IOException("stream closed");
+    while (_bb==null || !_bb.hasRemaining()) {
+      if (_bb==EOF) {
+        if (_ioe!=null)
+          throw _ioe;
+        return false;
+      }
+      if (_bb!=null) {
+        _bb.clear();
+        _empty.add(_bb);
+      }
+      _bb = _full.poll();
+      if (_bb!=null) {
+        ++_hits;
+      } else {
+        ++_misses;
+        try {
+          _bb = _full.take();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+      }
+    }
+    return true;
+  }
+
+  // Fills empty buffers until the end of the underlying stream.
+  private void readAhead() {
+    try {
+      for (boolean eof=false; !eof && !_closed;) {
+        ByteBuffer bb = _empty.take();
+        while (bb.hasRemaining() && !eof)
+          eof = _rbc.read(bb)<0;
+        bb.flip();
+        if (bb.hasRemaining())
+          _full.put(bb);
+      }
+    } catch (InterruptedException e) {
+      // closed
+    } catch (IOException e) {
+      if (!_closed)
+        _ioe = e;
+    } finally {
+      _full.offer(EOF);
+    }
+  }
+}
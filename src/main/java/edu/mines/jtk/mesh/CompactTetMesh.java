@@ -0,0 +1,474 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.mesh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import edu.mines.jtk.io.MappedArrayFile;
+import edu.mines.jtk.util.Check;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * A compact and immutable tetrahedral mesh, frozen from a tet mesh.
+ * <p>
+ * Nodes and tets are represented by integer indices in arrays, not by
+ * objects. Each node has float coordinates (x,y,z) and the index of one
+ * tet that references it. Each tet has the indices of its four nodes
+ * A, B, C, and D, and the indices of its four tet nabors opposite those
+ * nodes, as described for {@link TetMesh}. Any missing nabor or tet has
+ * index -1.
+ * <p>
+ * A compact tet mesh requires 32 bytes per tet and 20 bytes per node,
+ * much less than a tet mesh. A tet mesh usually has about 6.5 times as
+ * many tets as nodes, so that is about 230 bytes per node. Nodes and tets
+ * also lie in contiguous arrays, not scattered throughout the heap.
+ * <p>
+ * Each node also retains the {@link TetMesh.Node#index} that its node
+ * had when the compact mesh was constructed. Data objects are not kept.
+ * <p>
+ * Because it cannot change, a compact tet mesh supports only queries,
+ * such as point location, natural neighbor tets, and nearest nodes. Like
+ * a tet mesh, it uses perturbed node coordinates in geometric predicates,
+ * so that its results are consistent with those of the mesh from which
+ * it was constructed. Queries do not modify the compact mesh, and so may
+ * be performed concurrently by multiple threads.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class CompactTetMesh {
+
+  /**
+   * Constructs a compact copy of the specified tet mesh.
+   * @param mesh the tet mesh.
+   */
+  public CompactTetMesh(TetMesh mesh) {
+    synchronized (mesh) {
+      int nnode = mesh.countNodes();
+      int ntet = mesh.countTets();
+      Check.argument(ntet<=Integer.MAX_VALUE/4,"number of tets is valid");
+      allocate(nnode,ntet);
+      mesh.getArrays(_x,_y,_z,_index,_nodeTet,_tetNodes,_tetNabors);
+    }
+    sampleNodes();
+  }
+
+  /**
+   * Reads a compact mesh from a binary file with specified name. The file
+   * must have been written by {@link TetMesh#write(String)}. Arrays are
+   * copied directly from the memory-mapped file into the arrays of this
+   * mesh, without constructing any node or tet objects. Node property
+   * maps in the file are ignored.
+   * @param fileName the file name.
+   * @return the compact mesh.
+   * @exception IOException if the file is not a valid tet mesh file,
+   *  or if an error occurs while reading the file.
+   */
+  public static CompactTetMesh read(String fileName) throws IOException {
+    CompactTetMesh mesh = new CompactTetMesh();
+    MappedArrayFile maf = MeshFile.open(fileName,MeshFile.TET_MAGIC);
+    try {
+      ByteBuffer h = MeshFile.header(maf,false,MeshFile.TET_MAGIC);
+      h.getLong(); // mesh version
+      int nnode = h.getInt();
+      int ntet = h.getInt();
+      if (nnode<0 || ntet<0 || ntet>Integer.MAX_VALUE/4)
+        throw new IOException("invalid numbers of nodes or tets");
+      MeshFile.checkLength(maf,MeshFile.HEADER_SIZE+20L*nnode+32L*ntet);
+      mesh.allocate(nnode,ntet);
+      maf.readFloats(mesh._x);
+      maf.readFloats(mesh._y);
+      maf.readFloats(mesh._z);
+      maf.readInts(mesh._index,0,nnode);
+      maf.readInts(mesh._nodeTet,0,nnode);
+      maf.readInts(mesh._tetNodes,0,4*ntet);
+      maf.readInts(mesh._tetNabors,0,4*ntet);
+    } finally {
+      maf.close();
+    }
+    for (int tet:mesh._nodeTet)
+      if (tet!=-1) MeshFile.checkIndex(tet,mesh._ntet);
+    for (int node:mesh._tetNodes)
+      MeshFile.checkIndex(node,mesh._nnode);
+    for (int tet:mesh._tetNabors)
+      if (tet!=-1) MeshFile.checkIndex(tet,mesh._ntet);
+    mesh.sampleNodes();
+    return mesh;
+  }
+
+  /**
+   * Returns the number of nodes in this mesh.
+   * @return the number of nodes.
+   */
+  public int countNodes() {
+    return _nnode;
+  }
+
+  /**
+   * Returns the number of tets in this mesh.
+   * @return the number of tets.
+   */
+  public int countTets() {
+    return _ntet;
+  }
+
+  /**
+   * Returns the x coordinate of the specified node.
+   * @param node the node index.
+   * @return the x coordinate.
+   */
+  public float getNodeX(int node) {
+    return _x[node];
+  }
+
+  /**
+   * Returns the y coordinate of the specified node.
+   * @param node the node index.
+   * @return the y coordinate.
+   */
+  public float getNodeY(int node) {
+    return _y[node];
+  }
+
+  /**
+   * Returns the z coordinate of the specified node.
+   * @param node the node index.
+   * @return the z coordinate.
+   */
+  public float getNodeZ(int node) {
+    return _z[node];
+  }
+
+  /**
+   * Returns the index of the tet mesh node for the specified node.
+   * @param node the node index.
+   * @return the value of {@link TetMesh.Node#index}.
+   */
+  public int getNodeIndex(int node) {
+    return _index[node];
+  }
+
+  /**
+   * Returns a tet that references the specified node.
+   * @param node the node index.
+   * @return the tet index; -1, if no tet references the node.
+   */
+  public int getNodeTet(int node) {
+    return _nodeTet[node];
+  }
+
+  /**
+   * Returns the specified node of the specified tet.
+   * @param tet the tet index.
+   * @param k the node, 0, 1, 2, or 3 for node A, B, C, or D.
+   * @return the node index.
+   */
+  public int getTetNode(int tet, int k) {
+    return _tetNodes[4*tet+k];
+  }
+
+  /**
+   * Returns the tet nabor opposite the specified node of the specified tet.
+   * @param tet the tet index.
+   * @param k the node, 0, 1, 2, or 3 for node A, B, C, or D.
+   * @return the index of the tet nabor; -1, if none.
+   */
+  public int getTetNabor(int tet, int k) {
+    return _tetNabors[4*tet+k];
+  }
+
+  /**
+   * Finds the node nearest to the point with specified coordinates.
+   * @param x the x coordinate.
+   * @param y the y coordinate.
+   * @param z the z coordinate.
+   * @return the nearest node index; -1, if the mesh has no nodes.
+   */
+  public int findNodeNearest(float x, float y, float z) {
+    if (_nnode==0)
+      return -1;
+
+    // If no tets, simply check all of the nodes.
+    if (_ntet==0) {
+      int nmin = 0;
+      double dmin = distanceSquared(nmin,x,y,z);
+      for (int inode=1; inode<_nnode; ++inode) {
+        double d = distanceSquared(inode,x,y,z);
+        if (d<dmin) {
+          dmin = d;
+          nmin = inode;
+        }
+      }
+      return nmin;
+    }
+
+    // Otherwise, begin with the nearest node of the tet located for the
+    // point, and then walk along edges of the mesh to nearer node nabors.
+    int tet = locatePoint(x,y,z);
+    if (tet<0) tet = -tet-1;
+    int nmin = _tetNodes[4*tet];
+    double dmin = distanceSquared(nmin,x,y,z);
+    for (int k=1; k<4; ++k) {
+      int nk = _tetNodes[4*tet+k];
+      double d = distanceSquared(nk,x,y,z);
+      if (d<dmin) {
+        dmin = d;
+        nmin = nk;
+      }
+    }
+    for (int node=-1; node!=nmin;) {
+      node = nmin;
+      for (int itet:getTetNabors(node)) {
+        for (int k=0,i=4*itet; k<4; ++k,++i) {
+          int nk = _tetNodes[i];
+          if (nk!=node) {
+            double d = distanceSquared(nk,x,y,z);
+            if (d<dmin) {
+              dmin = d;
+              nmin = nk;
+            }
+          }
+        }
+      }
+    }
+    return nmin;
+  }
+
+  /**
+   * Locates the point with specified coordinates. The search begins in
+   * a tet near one of a sample of nodes.
+   * @param x the x coordinate.
+   * @param y the y coordinate.
+   * @param z the z coordinate.
+   * @return the located tet, as for {@link #locatePoint(int,float,float,
+   *  float)}.
+   */
+  public int locatePoint(float x, float y, float z) {
+    return locatePoint(-1,x,y,z);
+  }
+
+  /**
+   * Locates the point with specified coordinates, beginning the search in
+   * the specified tet. If the point is inside the mesh or on its boundary,
+   * returns the index of a tet that contains the point. Otherwise, returns
+   * (-(tet)-1), where tet is the index of a tet on the convex hull of the
+   * mesh that is visible from the point. Either tet is a good place to
+   * begin the search for a nearby point.
+   * @param tet the tet index in which to begin the search; if negative,
+   *  the search begins in a tet near one of a sample of nodes.
+   * @param x the x coordinate.
+   * @param y the y coordinate.
+   * @param z the z coordinate.
+   * @return the located tet, if the point is inside the mesh; (-(tet)-1),
+   *  if outside. Returns -1, if the mesh has no tets.
+   */
+  public int locatePoint(int tet, float x, float y, float z) {
+    if (_ntet==0)
+      return -1;
+    if (tet<0)
+      tet = _nodeTet[nearestSampledNode(x,y,z)];
+
+    // Walk through tets toward the point. The nodes of each tet and the
+    // signs of left-of-plane tests are as in the tet mesh walk.
+    double xp = x, yp = y, zp = z;
+    for (;;) {
+      int i = 4*tet;
+      int n0 = _tetNodes[i  ];
+      int n1 = _tetNodes[i+1];
+      int n2 = _tetNodes[i+2];
+      int n3 = _tetNodes[i+3];
+      double x0 = xp(n0), y0 = yp(n0), z0 = zp(n0);
+      double x1 = xp(n1), y1 = yp(n1), z1 = zp(n1);
+      double x2 = xp(n2), y2 = yp(n2), z2 = zp(n2);
+      double x3 = xp(n3), y3 = yp(n3), z3 = zp(n3);
+      int k = -1;
+      if (Geometry.leftOfPlane(x1,y1,z1,x2,y2,z2,x3,y3,z3,xp,yp,zp)>0.0) {
+        k = 0;
+      } else if (
+        Geometry.leftOfPlane(x3,y3,z3,x2,y2,z2,x0,y0,z0,xp,yp,zp)>0.0) {
+        k = 1;
+      } else if (
+        Geometry.leftOfPlane(x3,y3,z3,x0,y0,z0,x1,y1,z1,xp,yp,zp)>0.0) {
+        k = 2;
+      } else if (
+        Geometry.leftOfPlane(x0,y0,z0,x2,y2,z2,x1,y1,z1,xp,yp,zp)>0.0) {
+        k = 3;
+      }
+      if (k<0)
+        return tet;
+      int tetNabor = _tetNabors[i+k];
+      if (tetNabor<0)
+        return -tet-1;
+      tet = tetNabor;
+    }
+  }
+
+  /**
+   * Gets the natural neighbor tets of the point with specified coordinates.
+   * These are the tets with circumspheres that contain the point. If the
+   * point lies outside the mesh, it has no natural neighbor tets.
+   * @param x the x coordinate.
+   * @param y the y coordinate.
+   * @param z the z coordinate.
+   * @return array of tet indices; empty, if the point is outside the mesh.
+   */
+  public int[] getNaturalNaborTets(float x, float y, float z) {
+    return getNaturalNaborTets(-1,x,y,z);
+  }
+
+  /**
+   * Gets the natural neighbor tets of the point with specified coordinates,
+   * beginning the search for the point in the specified tet.
+   * @param tet the tet index in which to begin the search; if negative,
+   *  the search begins in a tet near one of a sample of nodes.
+   * @param x the x coordinate.
+   * @param y the y coordinate.
+   * @param z the z coordinate.
+   * @return array of tet indices; empty, if the point is outside the mesh.
+   *  The first tet in the array contains the point.
+   */
+  public int[] getNaturalNaborTets(int tet, float x, float y, float z) {
+    tet = locatePoint(tet,x,y,z);
+    if (tet<0)
+      return new int[0];
+
+    // Beginning with the tet that contains the point, add nabor tets
+    // with circumspheres that contain the point. The list of tets is
+    // small, so a linear search for tets already in the list is fast.
+    double xp = x, yp = y, zp = z;
+    int[] tets = new int[32];
+    int ntets = 0;
+    tets[ntets++] = tet;
+    for (int itet=0; itet<ntets; ++itet) {
+      for (int k=0,i=4*tets[itet]; k<4; ++k,++i) {
+        int tk = _tetNabors[i];
+        if (tk>=0 && !contains(tets,ntets,tk) && inSphere(tk,xp,yp,zp)) {
+          if (ntets==tets.length)
+            tets = grow(tets);
+          tets[ntets++] = tk;
+        }
+      }
+    }
+    return copy(ntets,tets);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private int _nnode; // number of nodes
+  private int _ntet; // number of tets
+  private float[] _x,_y,_z; // node coordinates
+  private int[] _index; // node indices from tet mesh nodes
+  private int[] _nodeTet; // for each node, one tet that references it
+  private int[] _tetNodes; // for each tet, nodes A, B, C, and D
+  private int[] _tetNabors; // for each tet, nabors opposite A, B, C, and D
+  private int[] _sampledNodes; // sampled nodes for fast searches
+
+  private CompactTetMesh() {
+  }
+
+  private void allocate(int nnode, int ntet) {
+    _nnode = nnode;
+    _ntet = ntet;
+    _x = new float[nnode];
+    _y = new float[nnode];
+    _z = new float[nnode];
+    _index = new int[nnode];
+    _nodeTet = new int[nnode];
+    _tetNodes = new int[4*ntet];
+    _tetNabors = new int[4*ntet];
+  }
+
+  // Perturbed node coordinates, as in the tet mesh.
+  private double xp(int node) {
+    return TetMesh.Node.perturbX(_x[node],_y[node],_z[node]);
+  }
+  private double yp(int node) {
+    return TetMesh.Node.perturbY(_x[node],_y[node],_z[node]);
+  }
+  private double zp(int node) {
+    return TetMesh.Node.perturbZ(_x[node],_y[node],_z[node]);
+  }
+
+  private double distanceSquared(int node, double x, double y, double z) {
+    double dx = xp(node)-x;
+    double dy = yp(node)-y;
+    double dz = zp(node)-z;
+    return dx*dx+dy*dy+dz*dz;
+  }
+
+  private boolean inSphere(int tet, double x, double y, double z) {
+    int i = 4*tet;
+    int na = _tetNodes[i  ];
+    int nb = _tetNodes[i+1];
+    int nc = _tetNodes[i+2];
+    int nd = _tetNodes[i+3];
+    return Geometry.inSphere(
+      xp(na),yp(na),zp(na),
+      xp(nb),yp(nb),zp(nb),
+      xp(nc),yp(nc),zp(nc),
+      xp(nd),yp(nd),zp(nd),
+      x,y,z)>0.0;
+  }
+
+  private static int[] grow(int[] a) {
+    int[] t = new int[2*a.length];
+    System.arraycopy(a,0,t,0,a.length);
+    return t;
+  }
+
+  private static boolean contains(int[] a, int n, int v) {
+    for (int i=0; i<n; ++i)
+      if (a[i]==v) return true;
+    return false;
+  }
+
+  // Returns the tets that reference the specified node. Tets are found by
+  // crossing faces that reference the node, beginning with the node tet.
+  private int[] getTetNabors(int node) {
+    int[] tets = new int[32];
+    int ntets = 0;
+    tets[ntets++] = _nodeTet[node];
+    for (int itet=0; itet<ntets; ++itet) {
+      int i = 4*tets[itet];
+      for (int k=0; k<4; ++k) {
+        int tk = _tetNabors[i+k];
+        if (_tetNodes[i+k]!=node && tk>=0 && !contains(tets,ntets,tk)) {
+          if (ntets==tets.length)
+            tets = grow(tets);
+          tets[ntets++] = tk;
+        }
+      }
+    }
+    return copy(ntets,tets);
+  }
+
+  /**
+   * Samples nodes to facilitate fast searches. As in a tet mesh, the
+   * number of samples is proportional to N^(1/4), where N equals the
+   * number of nodes. Here, samples are evenly spaced in node order.
+   */
+  private void sampleNodes() {
+    int nsamp = min(_nnode,1+2*(int)pow(_nnode,0.25));
+    _sampledNodes = new int[nsamp];
+    for (int isamp=0; isamp<nsamp; ++isamp)
+      _sampledNodes[isamp] = (int)((long)isamp*_nnode/nsamp);
+  }
+
+  private int nearestSampledNode(double x, double y, double z) {
+    int nmin = _sampledNodes[0];
+    double dmin = distanceSquared(nmin,x,y,z);
+    for (int node:_sampledNodes) {
+      double d = distanceSquared(node,x,y,z);
+      if (d<dmin) {
+        dmin = d;
+        nmin = node;
+      }
+    }
+    return nmin;
+  }
+}
@@ -0,0 +1,311 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.mesh;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+import edu.mines.jtk.io.MappedArrayFile;
+
+/**
+ * Utilities for binary files of tri and tet meshes. These files contain
+ * flat arrays of node coordinates and of element (tri or tet) nodes and
+ * nabors, and are written and read with memory-mapped array files.
+ * <p>
+ * A file begins with a header of {@link #HEADER_SIZE} bytes, which
+ * contains a magic number, a format version, the mesh version, numbers
+ * of nodes, elements, and node property maps, and the outer box. Then
+ * follow arrays with one element per node: float coordinates x, y (and
+ * z), node indices, and indices of elements that reference the nodes.
+ * Then follow arrays with three (or four) elements per element: indices
+ * of element nodes and of element nabors, with -1 for null nabors.
+ * <p>
+ * Last are node property maps. Each map has a name, a type, an array of
+ * bits that indicate which nodes have non-null values, and an array with
+ * one value per node. Property values may be Integer, Float, or Double.
+ * <p>
+ * Files are written in native byte order, which is indicated by the
+ * magic number, so that they may be read on any platform.
+ * @author agent
+ * @version 2026.10.18
+ */
+class MeshFile {
+
+  /**
+   * Magic number for tri mesh files, the characters "TRIM".
+   */
+  static final int TRI_MAGIC = 0x5452494d;
+
+  /**
+   * Magic number for tet mesh files, the characters "TETM".
+   */
+  static final int TET_MAGIC = 0x5445544d;
+
+  /**
+   * Format version.
+   */
+  static final int FORMAT = 1;
+
+  /**
+   * Size of the header, in bytes. Arrays begin at this offset.
+   */
+  static final int HEADER_SIZE = 128;
+
+  /**
+   * Number of nodes or elements read at a time.
+   */
+  static final int BLOCK_SIZE = 65536;
+
+  /**
+   * Creates a new file with specified name and length. The file pointer
+   * is positioned at the end of the header.
+   * @param name the file name.
+   * @param length the file length, in bytes.
+   * @return the file, open for writing in native byte order.
+   */
+  static MappedArrayFile create(String name, long length)
+    throws IOException
+  {
+    ByteOrder order = ByteOrder.nativeOrder();
+    MappedArrayFile maf = new MappedArrayFile(name,"rw",order,order);
+    maf.setLength(length);
+    maf.seek(HEADER_SIZE);
+    return maf;
+  }
+
+  /**
+   * Opens an existing file with specified name for reading. Checks the
+   * magic number and format version, and determines the byte order.
+   * The file pointer is positioned at the end of the header.
+   * @param name the file name.
+   * @param magic the magic number.
+   * @return the file, open for reading.
+   */
+  static MappedArrayFile open(String name, int magic) throws IOException {
+    MappedArrayFile maf = new MappedArrayFile(name,"r");
+    if (maf.length()<HEADER_SIZE) {
+      maf.close();
+      throw new IOException(name+" is not a mesh file");
+    }
+    int m = maf.getIntBuffer(0,1).get(0);
+    if (m!=magic) {
+      maf.close();
+      if (Integer.reverseBytes(m)!=magic)
+        throw new IOException(name+" is not a mesh file");
+      ByteOrder order = ByteOrder.LITTLE_ENDIAN;
+      maf = new MappedArrayFile(name,"r",order,order);
+    }
+    int format = maf.getIntBuffer(4,1).get(0);
+    if (format!=FORMAT) {
+      maf.close();
+      throw new IOException(name+" has unknown format "+format);
+    }
+    maf.seek(HEADER_SIZE);
+    return maf;
+  }
+
+  /**
+   * Returns a view of the header, positioned after the magic number and
+   * format version. Subsequent fields are read or written in order.
+   * @param maf the file.
+   * @param write true, to put the magic number and format version.
+   * @param magic the magic number, which is put if writing.
+   * @return the view.
+   */
+  static ByteBuffer header(MappedArrayFile maf, boolean write, int magic)
+    throws IOException
+  {
+    ByteBuffer bb = maf.getByteBuffer(0,HEADER_SIZE);
+    if (write) {
+      bb.putInt(magic);
+      bb.putInt(FORMAT);
+    } else {
+      bb.position(8);
+    }
+    return bb;
+  }
+
+  /**
+   * Returns the number of bytes required to write node property maps.
+   * @param names array of map names.
+   * @param values array[nmap][nnode] of property values.
+   * @return the number of bytes.
+   */
+  static long sizeOfMaps(String[] names, Object[][] values)
+    throws IOException
+  {
+    long size = 0;
+    for (int imap=0; imap<names.length; ++imap) {
+      int nnode = values[imap].length;
+      int type = typeOf(names[imap],values[imap]);
+      size += 8+4*((names[imap].getBytes(UTF8).length+3)/4);
+      size += 4L*nwords(nnode);
+      size += ((type==DOUBLE)?8L:4L)*nnode;
+    }
+    return size;
+  }
+
+  /**
+   * Writes node property maps, beginning at the file pointer.
+   * @param maf the file.
+   * @param names array of map names.
+   * @param values array[nmap][nnode] of property values.
+   */
+  static void writeMaps(
+    MappedArrayFile maf, String[] names, Object[][] values)
+    throws IOException
+  {
+    for (int imap=0; imap<names.length; ++imap) {
+      Object[] v = values[imap];
+      int nnode = v.length;
+      int type = typeOf(names[imap],v);
+      byte[] b = names[imap].getBytes(UTF8);
+      int nb = 4*((b.length+3)/4);
+      maf.writeInts(new int[]{b.length},0,1);
+      maf.getByteBuffer(maf.getFilePointer(),nb).put(b);
+      maf.seek(maf.getFilePointer()+nb);
+      maf.writeInts(new int[]{type},0,1);
+      int[] bits = new int[nwords(nnode)];
+      for (int inode=0; inode<nnode; ++inode) {
+        if (v[inode]!=null)
+          bits[inode>>5] |= 1<<(inode&31);
+      }
+      maf.writeInts(bits,0,bits.length);
+      if (type==DOUBLE) {
+        double[] d = new double[nnode];
+        for (int inode=0; inode<nnode; ++inode)
+          d[inode] = (v[inode]!=null)?(Double)v[inode]:0.0;
+        maf.writeDoubles(d);
+      } else if (type==FLOAT) {
+        float[] f = new float[nnode];
+        for (int inode=0; inode<nnode; ++inode)
+          f[inode] = (v[inode]!=null)?(Float)v[inode]:0.0f;
+        maf.writeFloats(f);
+      } else {
+        int[] i = new int[nnode];
+        for (int inode=0; inode<nnode; ++inode)
+          i[inode] = (v[inode]!=null)?(Integer)v[inode]:0;
+        maf.writeInts(i,0,nnode);
+      }
+    }
+  }
+
+  /**
+   * Reads node property maps, beginning at the file pointer.
+   * @param maf the file.
+   * @param nnode the number of nodes.
+   * @param names array of map names to be read.
+   * @param values array[nmap][nnode] of property values to be read.
+   */
+  static void readMaps(
+    MappedArrayFile maf, int nnode, String[] names, Object[][] values)
+    throws IOException
+  {
+    int[] t = new int[1];
+    for (int imap=0; imap<names.length; ++imap) {
+      maf.readInts(t,0,1);
+      long nleft = maf.length()-maf.getFilePointer();
+      if (t[0]<0 || t[0]>nleft)
+        throw new IOException("invalid length "+t[0]+" of property name");
+      byte[] b = new byte[t[0]];
+      long nb = 4L*((b.length+3L)/4L);
+      long pos = maf.getFilePointer();
+      maf.readBytes(pos,b);
+      maf.seek(pos+nb);
+      names[imap] = new String(b,UTF8);
+      maf.readInts(t,0,1);
+      int type = t[0];
+      int[] bits = new int[nwords(nnode)];
+      maf.readInts(bits,0,bits.length);
+      Object[] v = values[imap] = new Object[nnode];
+      if (type==DOUBLE) {
+        double[] d = new double[nnode];
+        maf.readDoubles(d);
+        for (int inode=0; inode<nnode; ++inode)
+          if (isSet(bits,inode)) v[inode] = d[inode];
+      } else if (type==FLOAT) {
+        float[] f = new float[nnode];
+        maf.readFloats(f);
+        for (int inode=0; inode<nnode; ++inode)
+          if (isSet(bits,inode)) v[inode] = f[inode];
+      } else if (type==INT) {
+        int[] i = new int[nnode];
+        maf.readInts(i,0,nnode);
+        for (int inode=0; inode<nnode; ++inode)
+          if (isSet(bits,inode)) v[inode] = i[inode];
+      } else {
+        throw new IOException(
+          "unknown type "+type+" of property "+names[imap]);
+      }
+    }
+  }
+
+  /**
+   * Throws an exception if the specified file is shorter than the
+   * specified length, which is the least required for its header counts.
+   * @param maf the file.
+   * @param length the least length, in bytes.
+   */
+  static void checkLength(MappedArrayFile maf, long length)
+    throws IOException
+  {
+    if (maf.length()<length)
+      throw new IOException("mesh file is too short for its counts");
+  }
+
+  /**
+   * Throws an exception if the specified index is not in [0,n).
+   * @param index the index.
+   * @param n the number of nodes or elements.
+   */
+  static void checkIndex(int index, int n) throws IOException {
+    if (index<0 || n<=index)
+      throw new IOException("invalid index "+index+" in mesh file");
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  // Types of node property values.
+  private static final int INT = 1;
+  private static final int FLOAT = 2;
+  private static final int DOUBLE = 3;
+
+  private static int nwords(int nbits) {
+    return (nbits+31)/32;
+  }
+
+  private static boolean isSet(int[] bits, int i) {
+    return (bits[i>>5]&(1<<(i&31)))!=0;
+  }
+
+  // Returns the type of all non-null values; INT, if all are null.
+  private static int typeOf(String name, Object[] v) throws IOException {
+    int type = 0;
+    for (Object o:v) {
+      int t = 0;
+      if (o==null) {
+        continue;
+      } else if (o instanceof Integer) {
+        t = INT;
+      } else if (o instanceof Float) {
+        t = FLOAT;
+      } else if (o instanceof Double) {
+        t = DOUBLE;
+      }
+      if (t==0 || type!=0 && t!=type)
+        throw new IOException(
+          "values of property "+name+" are not all Integer, Float, or Double");
+      type = t;
+    }
+    return (type!=0)?type:INT;
+  }
+}
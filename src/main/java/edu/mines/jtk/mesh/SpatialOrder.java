@@ -0,0 +1,172 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.mesh;
+
+import java.util.Random;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Orders points for insertion into Delaunay meshes. Points inserted in
+ * random order yield meshes with expected optimal complexity, but each
+ * point must be located by a long walk through the mesh. Points sorted
+ * along a space-filling curve can be located by short walks from the
+ * previous point, but some orders yield poor intermediate meshes.
+ * <p>
+ * A biased randomized insertion order (BRIO) combines the advantages of
+ * both (Amenta et al., 2003). Points are randomly shuffled, and then
+ * divided into rounds of increasing size, with the last round containing
+ * half of the points, the previous round a quarter, and so on. Within
+ * each round, points are sorted along a Hilbert curve (Liu and Snoeyink,
+ * 2005). The direction of that curve alternates from one round to the
+ * next, so that each round begins near where the previous round ended.
+ * <p>
+ * References:
+ * <ul><li>
+ * Amenta, N., S. Choi, and G. Rote, 2003, Incremental constructions con
+ * BRIO: Proceedings of the 19th Symposium on Computational Geometry,
+ * 211--219.
+ * </li><li>
+ * Liu, Y., and J. Snoeyink, 2005, A comparison of five implementations
+ * of 3D Delaunay tessellation: Combinatorial and Computational Geometry,
+ * 52, 439--458.
+ * </li><li>
+ * Skilling, J., 2004, Programming the Hilbert curve: AIP Conference
+ * Proceedings, 707, 381--387.
+ * </li></ul>
+ * @author agent
+ * @version 2026.10.18
+ */
+class SpatialOrder {
+
+  /**
+   * Returns a biased randomized insertion order for 2-D points.
+   * @param x array of x coordinates.
+   * @param y array of y coordinates.
+   * @return array of indices of points, in the order of insertion.
+   */
+  static int[] brio(double[] x, double[] y) {
+    return brio(new double[][]{x,y});
+  }
+
+  /**
+   * Returns a biased randomized insertion order for 3-D points.
+   * @param x array of x coordinates.
+   * @param y array of y coordinates.
+   * @param z array of z coordinates.
+   * @return array of indices of points, in the order of insertion.
+   */
+  static int[] brio(double[] x, double[] y, double[] z) {
+    return brio(new double[][]{x,y,z});
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  // Number of points in the first round, which is not sorted.
+  private static final int NFIRST = 64;
+
+  // Seed for random shuffling, so that insertion orders are repeatable.
+  private static final long SEED = 314159L;
+
+  private static int[] brio(double[][] x) {
+    int n = x[0].length;
+    int[] k = rampint(0,1,n);
+    Random r = new Random(SEED);
+    for (int i=n-1; i>0; --i) {
+      int j = r.nextInt(i+1);
+      int t = k[i]; k[i] = k[j]; k[j] = t;
+    }
+    long[] h = hilbertKeys(x);
+    boolean forward = true;
+    for (int i=n; i>NFIRST; i/=2) {
+      int j = i/2;
+      sort(h,k,j,i,forward);
+      forward = !forward;
+    }
+    return k;
+  }
+
+  // Sorts indices k[j:i-1] by their Hilbert keys h[k].
+  private static void sort(
+    long[] h, int[] k, int j, int i, boolean forward)
+  {
+    int m = i-j;
+    long[] hk = new long[m];
+    int[] ik = rampint(0,1,m);
+    for (int l=0; l<m; ++l)
+      hk[l] = h[k[j+l]];
+    quickIndexSort(hk,ik);
+    int[] kk = copy(m,j,k);
+    for (int l=0; l<m; ++l)
+      k[j+l] = kk[ik[forward?l:m-1-l]];
+  }
+
+  // Returns keys for points along a Hilbert curve. Coordinates are scaled
+  // by the same factor in all dimensions and quantized to nbit bits, so
+  // that keys for 2-D and 3-D points fit in 60 and 63 bits, respectively.
+  private static long[] hilbertKeys(double[][] x) {
+    int nd = x.length;
+    int n = x[0].length;
+    int nbit = min(30,63/nd);
+    double[] xmin = new double[nd];
+    double xdif = 0.0;
+    for (int id=0; id<nd; ++id) {
+      xmin[id] = min(x[id]);
+      xdif = max(xdif,max(x[id])-xmin[id]);
+    }
+    double scale = (xdif>0.0)?((1<<nbit)-1)/xdif:0.0;
+    long[] h = new long[n];
+    int[] q = new int[nd];
+    for (int i=0; i<n; ++i) {
+      for (int id=0; id<nd; ++id)
+        q[id] = (int)((x[id][i]-xmin[id])*scale);
+      h[i] = hilbertKey(nbit,q);
+    }
+    return h;
+  }
+
+  // Returns the Hilbert key for quantized coordinates q, using Skilling's
+  // (2004) transformation of coordinates, which are modified here.
+  private static long hilbertKey(int nbit, int[] q) {
+    int nd = q.length;
+    int m = 1<<(nbit-1);
+
+    // Inverse undo excess work.
+    for (int b=m; b>1; b>>=1) {
+      int p = b-1;
+      for (int id=0; id<nd; ++id) {
+        if ((q[id]&b)!=0) {
+          q[0] ^= p;
+        } else {
+          int t = (q[0]^q[id])&p;
+          q[0] ^= t;
+          q[id] ^= t;
+        }
+      }
+    }
+
+    // Gray encode.
+    for (int id=1; id<nd; ++id)
+      q[id] ^= q[id-1];
+    int t = 0;
+    for (int b=m; b>1; b>>=1) {
+      if ((q[nd-1]&b)!=0)
+        t ^= b-1;
+    }
+    for (int id=0; id<nd; ++id)
+      q[id] ^= t;
+
+    // Interleave bits, most significant first.
+    long h = 0L;
+    for (int ib=nbit-1; ib>=0; --ib) {
+      for (int id=0; id<nd; ++id)
+        h = (h<<1)|((q[id]>>ib)&1);
+    }
+    return h;
+  }
+}
@@ -7,10 +7,13 @@ available at http://www.eclipse.org/legal/cpl-v10.html
 package edu.mines.jtk.mesh;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import javax.swing.event.EventListenerList;
 
+import edu.mines.jtk.io.MappedArrayFile;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.KdTree;
 import static edu.mines.jtk.util.MathPlus.*;
 
 /**
@@ -187,25 +190,35 @@ public class TetMesh implements Serializable {
      */
     private static double perturb(float x, float p) {
       final int m = 2147483647;
-      int i = Float.floatToIntBits(p);
-      int j = 0;
-      for (int k=0; k<32; ++k,i>>=1,j<<=1) {
-        j |= i&1;
-      }
+      int j = Integer.reverse(Float.floatToIntBits(p))<<1;
       double xp = (x!=0.0f)?x:0.1*FLT_MIN;
       xp *= 1.0+((double)j/(double)m)*0.1*FLT_EPSILON;
       assert (float)xp==x;
       return xp;
     }
 
+    /**
+     * Returns perturbed coordinates for a node with specified coordinates.
+     * Used by compact tet meshes, which store only float coordinates.
+     */
+    static double perturbX(float x, float y, float z) {
+      return perturb(x,0.450599f*y+0.374507f*z);
+    }
+    static double perturbY(float x, float y, float z) {
+      return perturb(y,0.298721f*x+0.983298f*z);
+    }
+    static double perturbZ(float x, float y, float z) {
+      return perturb(z,0.653901f*x+0.598723f*y);
+    }
+
     /**
      * Sets the position of a node that is not in the mesh.
      */
     private void setPosition(float x, float y, float z) {
       assert _tet==null;
-      _x = perturb(x,0.450599f*y+0.374507f*z);
-      _y = perturb(y,0.298721f*x+0.983298f*z);
-      _z = perturb(z,0.653901f*x+0.598723f*y);
+      _x = perturbX(x,y,z);
+      _y = perturbY(x,y,z);
+      _z = perturbZ(x,y,z);
     }
   }
 
@@ -2000,9 +2013,113 @@ public class TetMesh implements Serializable {
    * @return true, if the node was added; false, otherwise.
    */
   public synchronized boolean addNode(Node node) {
+    return addNode(node,null);
+  }
+
+  /**
+   * Adds the specified nodes to the mesh, except for any nodes with the
+   * same (x,y,z) coordinates as nodes already in the mesh. The resulting
+   * mesh is the same as that obtained by adding the nodes one at a time,
+   * except where five or more nodes lie on a sphere, so that the Delaunay
+   * tetrahedralization is not unique. For large numbers of nodes, this
+   * method is much faster than adding nodes one at a time.
+   * <p>
+   * Nodes are added in a biased randomized insertion order, in rounds of
+   * increasing size, with the nodes in each round sorted along a Hilbert
+   * curve. The search for the location of each node then begins in a tet
+   * created for the previous node, and is short. If this mesh has no tets,
+   * then the first nodes added are the first in that order that are not
+   * co-planar, so that a first tet can be created.
+   * @param nodes array of nodes to add.
+   * @return true, if all nodes were added; false, otherwise.
+   */
+  public synchronized boolean addNodes(Node[] nodes) {
+    int nnode = nodes.length;
+    double[] x = new double[nnode];
+    double[] y = new double[nnode];
+    double[] z = new double[nnode];
+    for (int inode=0; inode<nnode; ++inode) {
+      x[inode] = nodes[inode]._x;
+      y[inode] = nodes[inode]._y;
+      z[inode] = nodes[inode]._z;
+    }
+    int[] k = SpatialOrder.brio(x,y,z);
+    moveFirstTetNodes(nodes,k);
+    int nadded = 0;
+    for (int inode=0; inode<nnode; ++inode) {
+      if (addNode(nodes[k[inode]],_troot))
+        ++nadded;
+    }
+    return nadded==nnode;
+  }
+
+  /**
+   * If this mesh has no tets, moves to the front of the order k the first
+   * nodes in that order that, with any nodes already in the mesh, can form
+   * the first tet. Otherwise, the first tet would be formed by the first
+   * four nodes added, which are co-planar if any two have the same
+   * coordinates.
+   */
+  private void moveFirstTetNodes(Node[] nodes, int[] k) {
+    if (_troot!=null || _nnode>=4)
+      return;
+    Node[] m = new Node[4];
+    int nm = 0;
+    for (int i=0; i<_nnode; ++i)
+      m[nm++] = (i==0)?_nroot:m[i-1]._next;
+    int[] front = new int[4];
+    int nf = 0;
+    for (int j=0; j<k.length && nm<4; ++j) {
+      Node n = nodes[k[j]];
+      boolean ok;
+      if (nm==0) {
+        ok = true;
+      } else if (nm==1) {
+        ok = n._x!=m[0]._x || n._y!=m[0]._y || n._z!=m[0]._z;
+      } else if (nm==2) {
+
+        // Nodes are co-linear only if co-linear in all three projections.
+        Node a = m[0], b = m[1];
+        ok = Geometry.leftOfLine(a._x,a._y,b._x,b._y,n._x,n._y)!=0.0 ||
+             Geometry.leftOfLine(a._y,a._z,b._y,b._z,n._y,n._z)!=0.0 ||
+             Geometry.leftOfLine(a._z,a._x,b._z,b._x,n._z,n._x)!=0.0;
+      } else {
+        ok = Geometry.leftOfPlane(
+          m[0]._x,m[0]._y,m[0]._z,
+          m[1]._x,m[1]._y,m[1]._z,
+          m[2]._x,m[2]._y,m[2]._z,
+          n._x,n._y,n._z)!=0.0;
+      }
+      if (ok) {
+        m[nm++] = n;
+        front[nf++] = j;
+      }
+    }
+    if (nf>0) {
+      int nk = k.length;
+      int[] t = new int[nk];
+      for (int i=0; i<nf; ++i)
+        t[i] = k[front[i]];
+      for (int j=0,i=nf,f=0; j<nk; ++j) {
+        if (f<nf && j==front[f]) {
+          ++f;
+        } else {
+          t[i++] = k[j];
+        }
+      }
+      System.arraycopy(t,0,k,0,nk);
+    }
+  }
+
+  /**
+   * Adds a node to the mesh, beginning the search for its location in the
+   * specified tet. If that tet is null, the search begins in a tet near
+   * one of the sampled nodes.
+   */
+  private boolean addNode(Node node, Tet tet) {
 
     // Where is the point?
-    PointLocation pl = locatePoint(node._x,node._y,node._z);
+    PointLocation pl = locatePoint(tet,node._x,node._y,node._z,true);
 
     // Cannot have two nodes with the same coordinates.
     if (pl.isOnNode())
@@ -2240,6 +2357,45 @@ public class TetMesh implements Serializable {
     return findNodeNearest((double)x,(double)y,(double)z);
   }
 
+  /**
+   * Finds the k nodes nearest to the point with specified coordinates.
+   * <p>
+   * Unlike the method {@link #findNodeNearest(float,float,float)},
+   * this method is not synchronized, and may be called by multiple threads
+   * at the same time. It uses a k-d tree of nodes that is constructed when
+   * first needed, and again after any change to the mesh version. It is
+   * therefore most efficient for many queries of a mesh that is not being
+   * modified, and should not be called while the mesh is being modified.
+   * @param x the x coordinate.
+   * @param y the y coordinate.
+   * @param z the z coordinate.
+   * @param k the number of nodes to find.
+   * @return array of nearest nodes, sorted by increasing distance; the
+   *  length of this array is the smaller of k and the number of nodes.
+   */
+  public Node[] findNodesNearest(float x, float y, float z, int k) {
+    NodeTree nt = getNodeTree();
+    int[] i = nt.tree.findNearest(k,new double[]{x,y,z});
+    return nt.nodes(i);
+  }
+
+  /**
+   * Finds all nodes within a sphere with specified center and radius.
+   * Like the method {@link #findNodesNearest(float,float,float,int)},
+   * this method is not synchronized, and should not be called while the
+   * mesh is being modified.
+   * @param x the x coordinate of the center.
+   * @param y the y coordinate of the center.
+   * @param z the z coordinate of the center.
+   * @param r the radius.
+   * @return array of nodes found, in no particular order.
+   */
+  public Node[] findNodesInSphere(float x, float y, float z, float r) {
+    NodeTree nt = getNodeTree();
+    int[] i = nt.tree.findInSphere(new double[]{x,y,z},r);
+    return nt.nodes(i);
+  }
+
   /**
    * Finds an edge of a tet in the mesh that references the specified nodes.
    * The nodes may be specified in any order.
@@ -2354,6 +2510,27 @@ public class TetMesh implements Serializable {
     return locatePoint((double)x,(double)y,(double)z);
   }
 
+  /**
+   * Locates a point with specified coordinates, beginning the search in
+   * the specified tet. Unlike other methods that locate points, this
+   * method does not modify this mesh, not even the tet in which searches
+   * begin. It may therefore be called concurrently by multiple threads,
+   * provided that no thread modifies this mesh during those calls.
+   * <p>
+   * The search is fastest when the specified tet is near the point, as
+   * is the tet returned by {@link PointLocation#tet()} for a nearby point.
+   * That tet is valid only while this mesh is not modified.
+   * @param tet the tet in which to begin; if null, a tet near one of a
+   *  subset of nodes in this mesh is chosen.
+   * @param x the x coordinate.
+   * @param y the y coordinate.
+   * @param z the z coordinate.
+   * @return the {@link PointLocation}.
+   */
+  public PointLocation locatePoint(Tet tet, float x, float y, float z) {
+    return locatePoint(tet,(double)x,(double)y,(double)z,false);
+  }
+
   /**
    * Gets an iterator for all nodes in the mesh.
    * @return the iterator.
@@ -3462,6 +3639,149 @@ public class TetMesh implements Serializable {
     Check.state(ntet==_ntet,"ntet==_ntet");
   }
 
+  /**
+   * Writes this mesh to a binary file with specified name. The file
+   * contains flat arrays of node coordinates and indices, tet nodes and
+   * nabors, and node property values, and is written by memory mapping.
+   * It may be read by {@link #read(String)} much faster than a mesh can
+   * be deserialized, and also by {@link CompactTetMesh#read(String)}.
+   * <p>
+   * Node indices are written, but node and tet data objects and tet
+   * indices are not. Values in node property maps must be Integer,
+   * Float, or Double; all non-null values in each map must have the
+   * same type.
+   * @param fileName the file name.
+   * @exception IOException if a property map has values of other types,
+   *  or if an error occurs while writing the file.
+   */
+  public synchronized void write(String fileName) throws IOException {
+    int nnode = _nnode;
+    int ntet = _ntet;
+    String[] names = getNodePropertyMapNames();
+    int nmap = names.length;
+    Object[][] values = new Object[nmap][nnode];
+    for (int imap=0; imap<nmap; ++imap) {
+      NodePropertyMap map = getNodePropertyMap(names[imap]);
+      NodeIterator ni = getNodes();
+      for (int inode=0; inode<nnode; ++inode)
+        values[imap][inode] = map.get(ni.next());
+    }
+    float[] x = new float[nnode];
+    float[] y = new float[nnode];
+    float[] z = new float[nnode];
+    int[] index = new int[nnode];
+    int[] nodeTet = new int[nnode];
+    int[] tetNodes = new int[4*ntet];
+    int[] tetNabors = new int[4*ntet];
+    getArrays(x,y,z,index,nodeTet,tetNodes,tetNabors);
+    long length = MeshFile.HEADER_SIZE+20L*nnode+32L*ntet+
+                  MeshFile.sizeOfMaps(names,values);
+    MappedArrayFile maf = MeshFile.create(fileName,length);
+    try {
+      ByteBuffer h = MeshFile.header(maf,true,MeshFile.TET_MAGIC);
+      h.putLong(_version);
+      h.putInt(nnode);
+      h.putInt(ntet);
+      h.putInt(nmap);
+      h.putInt(_outerEnabled?1:0);
+      h.putDouble(_xminOuter);
+      h.putDouble(_yminOuter);
+      h.putDouble(_zminOuter);
+      h.putDouble(_xmaxOuter);
+      h.putDouble(_ymaxOuter);
+      h.putDouble(_zmaxOuter);
+      maf.writeFloats(x);
+      maf.writeFloats(y);
+      maf.writeFloats(z);
+      maf.writeInts(index,0,nnode);
+      maf.writeInts(nodeTet,0,nnode);
+      maf.writeInts(tetNodes,0,4*ntet);
+      maf.writeInts(tetNabors,0,4*ntet);
+      MeshFile.writeMaps(maf,names,values);
+    } finally {
+      maf.close();
+    }
+  }
+
+  /**
+   * Reads a mesh from a binary file with specified name. The file must
+   * have been written by {@link #write(String)}. Arrays in the file are
+   * memory mapped and read in blocks, so that little memory is required
+   * beyond that for the nodes and tets of the mesh.
+   * @param fileName the file name.
+   * @return the mesh.
+   * @exception IOException if the file is not a valid tet mesh file,
+   *  or if an error occurs while reading the file.
+   */
+  public static TetMesh read(String fileName) throws IOException {
+    TetMesh mesh = new TetMesh();
+    MappedArrayFile maf = MeshFile.open(fileName,MeshFile.TET_MAGIC);
+    try {
+      mesh.read(maf);
+    } finally {
+      maf.close();
+    }
+    return mesh;
+  }
+
+  /**
+   * Gets arrays of node coordinates and indices, and arrays of tet nodes
+   * and nabors. Nodes and tets are numbered in the order in which they
+   * are visited here. The index of a tet that references a node, and
+   * the indices of tet nabors, are -1 where none exists. Arrays of tet
+   * nodes and nabors contain four elements per tet, in the order A, B,
+   * C, and D. Used to construct compact tet meshes.
+   * <p>
+   * Node and tet marks are used to number nodes and tets, and are then
+   * cleared, so that no nodes or tets are marked when this method returns.
+   */
+  synchronized void getArrays(
+    float[] x, float[] y, float[] z, int[] index, int[] nodeTet,
+    int[] tetNodes, int[] tetNabors)
+  {
+    Node[] nodes = new Node[_nnode];
+    NodeIterator ni = getNodes();
+    for (int inode=0; inode<_nnode; ++inode) {
+      Node node = nodes[inode] = ni.next();
+      node._mark = inode;
+      x[inode] = node.x();
+      y[inode] = node.y();
+      z[inode] = node.z();
+      index[inode] = node.index;
+    }
+    Tet[] tets = new Tet[_ntet];
+    TetIterator ti = getTetsInternal();
+    for (int itet=0; itet<_ntet; ++itet)
+      tets[itet] = ti.next();
+    for (int itet=0; itet<_ntet; ++itet)
+      tets[itet]._mark = itet;
+    for (int inode=0; inode<_nnode; ++inode) {
+      Tet tet = nodes[inode]._tet;
+      nodeTet[inode] = (tet!=null)?tet._mark:-1;
+    }
+    for (int itet=0,i=0; itet<_ntet; ++itet,i+=4) {
+      Tet tet = tets[itet];
+      tetNodes[i  ] = tet._n0._mark;
+      tetNodes[i+1] = tet._n1._mark;
+      tetNodes[i+2] = tet._n2._mark;
+      tetNodes[i+3] = tet._n3._mark;
+      tetNabors[i  ] = (tet._t0!=null)?tet._t0._mark:-1;
+      tetNabors[i+1] = (tet._t1!=null)?tet._t1._mark:-1;
+      tetNabors[i+2] = (tet._t2!=null)?tet._t2._mark:-1;
+      tetNabors[i+3] = (tet._t3!=null)?tet._t3._mark:-1;
+    }
+    for (int inode=0; inode<_nnode; ++inode)
+      nodes[inode]._mark = 0;
+    _nodeMarkRed = 0;
+    _nodeMarkBlue = 0;
+    clearNodeMarks();
+    for (int itet=0; itet<_ntet; ++itet)
+      tets[itet]._mark = 0;
+    _tetMarkRed = 0;
+    _tetMarkBlue = 0;
+    clearTetMarks();
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // protected
 
@@ -3512,6 +3832,7 @@ public class TetMesh implements Serializable {
   private Node _nroot = null; // a node in the mesh
   private Tet _troot = null; // a tet in the mesh
   private HashSet<Node> _sampledNodes; // for point location
+  private volatile NodeTree _nodeTree; // for nearest node queries
   private int _tetMarkRed; // current value of red tet mark
   private int _tetMarkBlue; // current value of blue tet mark
   private int _nodeMarkRed; // current value of red node mark
@@ -3536,6 +3857,48 @@ public class TetMesh implements Serializable {
   private int _lnodeValues; // length of internal node prop arrays
   private Map<String,NodePropertyMap> _nodePropertyMaps; // node property maps
 
+  // A k-d tree of nodes, for one version of the mesh.
+  private static class NodeTree {
+    long version;
+    Node[] nodes;
+    KdTree tree;
+    Node[] nodes(int[] i) {
+      Node[] n = new Node[i.length];
+      for (int j=0; j<i.length; ++j)
+        n[j] = nodes[i[j]];
+      return n;
+    }
+  }
+
+  /**
+   * Returns a k-d tree of nodes for the current version of this mesh.
+   * Synchronizes only if the tree must be (re)constructed.
+   */
+  private NodeTree getNodeTree() {
+    NodeTree nt = _nodeTree;
+    if (nt==null || nt.version!=_version) {
+      synchronized (this) {
+        nt = _nodeTree;
+        if (nt==null || nt.version!=_version) {
+          nt = new NodeTree();
+          nt.version = _version;
+          nt.nodes = new Node[_nnode];
+          double[][] x = new double[3][_nnode];
+          NodeIterator ni = getNodes();
+          for (int inode=0; inode<_nnode; ++inode) {
+            Node node = nt.nodes[inode] = ni.next();
+            x[0][inode] = node._x;
+            x[1][inode] = node._y;
+            x[2][inode] = node._z;
+          }
+          nt.tree = new KdTree(x);
+          _nodeTree = nt;
+        }
+      }
+    }
+    return nt;
+  }
+
   /**
    * Internal node property map uses the array of values in each node.
    */
@@ -4665,6 +5028,18 @@ public class TetMesh implements Serializable {
    * Locates a point.
    */
   private PointLocation locatePoint(double x, double y, double z) {
+    return locatePoint(null,x,y,z,true);
+  }
+
+  /**
+   * Searches tets beginning with the specified tet, to locate the point
+   * (x,y,z). If the specified tet is null, begins with a tet that contains
+   * the nearest of the sampled nodes. If root is true, future searches
+   * begin with the tet in which this search ends.
+   */
+  private PointLocation locatePoint(
+    Tet tet, double x, double y, double z, boolean root)
+  {
 
     // If no tets yet, search the node list for an exact match.
     // Here, we use unperturbed node coordinates.
@@ -4680,135 +5055,138 @@ public class TetMesh implements Serializable {
       return new PointLocation(null,false);
     }
 
-    // Otherwise, find a good tet in which to begin the recursive search.
-    Node nmin = _nroot;
-    double dmin = distanceSquared(nmin,x,y,z);
-    for (Node n:_sampledNodes) {
-      double d = distanceSquared(n,x,y,z);
-      if (d<dmin) {
-        dmin = d;
-        nmin = n;
+    // Otherwise, if necessary, find a good tet in which to begin the search.
+    if (tet==null) {
+      Node nmin = _nroot;
+      double dmin = distanceSquared(nmin,x,y,z);
+      for (Node n:_sampledNodes) {
+        double d = distanceSquared(n,x,y,z);
+        if (d<dmin) {
+          dmin = d;
+          nmin = n;
+        }
       }
+      tet = nmin._tet;
     }
-    Tet tet = nmin._tet;
-    return locatePoint(tet,x,y,z);
-  }
 
-  /**
-   * Recursively searches tets beginning with the specified tet,
-   * to locate the point (x,y,z).
-   */
-  private PointLocation locatePoint(Tet tet, double x, double y, double z) {
+    // Walk through tets toward the point.
+    for (;;) {
 
-    // Begin future searches in the specified tet.
-    _troot = tet;
+      // Perhaps begin future searches in this tet.
+      if (root)
+        _troot = tet;
 
-    // Node coordinates.
-    Node n0 = tet._n0;
-    Node n1 = tet._n1;
-    Node n2 = tet._n2;
-    Node n3 = tet._n3;
-    double x0 = n0._x;
-    double y0 = n0._y;
-    double z0 = n0._z;
-    double x1 = n1._x;
-    double y1 = n1._y;
-    double z1 = n1._z;
-    double x2 = n2._x;
-    double y2 = n2._y;
-    double z2 = n2._z;
-    double x3 = n3._x;
-    double y3 = n3._y;
-    double z3 = n3._z;
-
-    // If exactly on a node, the search is complete.
-    // We assume that this scenario is rare, but that the cost of testing
-    // for it is small compared to the left-of-plane tests below.
-    if (x==x0 && y==y0 && z==z0) {
-      return new PointLocation(n0);
-    } else if (x==x1 && y==y1 && z==z1) {
-      return new PointLocation(n1);
-    } else if (x==x2 && y==y2 && z==z2) {
-      return new PointLocation(n2);
-    } else if (x==x3 && y==y3 && z==z3) {
-      return new PointLocation(n3);
-    }
-
-    // Locate the search point with respect to the four faces of the tet.
-    // If any left-of-plane test is positive, then recursively search in
-    // the corresponding nabor tet, unless that nabor tet is null, in which
-    // case the search point lies outside the mesh and the specified tet is
-    // on the convex hull and is visible from the search point.
-    // TODO: experiment to determine whether it is more efficient to
-    // go through the face with the most positive left-of-plane test.
-    double d0 = Geometry.leftOfPlane(x1,y1,z1,x2,y2,z2,x3,y3,z3,x,y,z);
-    if (d0>0.0) {
-      Tet tetNabor = tet.tetNabor(n0);
-      if (tetNabor!=null) {
-        return locatePoint(tetNabor,x,y,z);
-      } else {
-        return new PointLocation(tet,false);
+      // Node coordinates.
+      Node n0 = tet._n0;
+      Node n1 = tet._n1;
+      Node n2 = tet._n2;
+      Node n3 = tet._n3;
+      double x0 = n0._x;
+      double y0 = n0._y;
+      double z0 = n0._z;
+      double x1 = n1._x;
+      double y1 = n1._y;
+      double z1 = n1._z;
+      double x2 = n2._x;
+      double y2 = n2._y;
+      double z2 = n2._z;
+      double x3 = n3._x;
+      double y3 = n3._y;
+      double z3 = n3._z;
+
+      // If exactly on a node, the search is complete.
+      // We assume that this scenario is rare, but that the cost of testing
+      // for it is small compared to the left-of-plane tests below.
+      if (x==x0 && y==y0 && z==z0) {
+        return new PointLocation(n0);
+      } else if (x==x1 && y==y1 && z==z1) {
+        return new PointLocation(n1);
+      } else if (x==x2 && y==y2 && z==z2) {
+        return new PointLocation(n2);
+      } else if (x==x3 && y==y3 && z==z3) {
+        return new PointLocation(n3);
+      }
+
+      // Locate the search point with respect to the four faces of the tet.
+      // If any left-of-plane test is positive, then continue the search in
+      // the corresponding nabor tet, unless that nabor tet is null, in which
+      // case the search point lies outside the mesh and this tet is
+      // on the convex hull and is visible from the search point.
+      // TODO: experiment to determine whether it is more efficient to
+      // go through the face with the most positive left-of-plane test.
+      double d0 = Geometry.leftOfPlane(x1,y1,z1,x2,y2,z2,x3,y3,z3,x,y,z);
+      if (d0>0.0) {
+        Tet tetNabor = tet.tetNabor(n0);
+        if (tetNabor!=null) {
+          tet = tetNabor;
+          continue;
+        } else {
+          return new PointLocation(tet,false);
+        }
       }
-    }
-    double d1 = Geometry.leftOfPlane(x3,y3,z3,x2,y2,z2,x0,y0,z0,x,y,z);
-    if (d1>0.0) {
-      Tet tetNabor = tet.tetNabor(n1);
-      if (tetNabor!=null) {
-        return locatePoint(tetNabor,x,y,z);
-      } else {
-        return new PointLocation(tet,false);
+      double d1 = Geometry.leftOfPlane(x3,y3,z3,x2,y2,z2,x0,y0,z0,x,y,z);
+      if (d1>0.0) {
+        Tet tetNabor = tet.tetNabor(n1);
+        if (tetNabor!=null) {
+          tet = tetNabor;
+          continue;
+        } else {
+          return new PointLocation(tet,false);
+        }
       }
-    }
-    double d2 = Geometry.leftOfPlane(x3,y3,z3,x0,y0,z0,x1,y1,z1,x,y,z);
-    if (d2>0.0) {
-      Tet tetNabor = tet.tetNabor(n2);
-      if (tetNabor!=null) {
-        return locatePoint(tetNabor,x,y,z);
-      } else {
-        return new PointLocation(tet,false);
+      double d2 = Geometry.leftOfPlane(x3,y3,z3,x0,y0,z0,x1,y1,z1,x,y,z);
+      if (d2>0.0) {
+        Tet tetNabor = tet.tetNabor(n2);
+        if (tetNabor!=null) {
+          tet = tetNabor;
+          continue;
+        } else {
+          return new PointLocation(tet,false);
+        }
+      }
+      double d3 = Geometry.leftOfPlane(x0,y0,z0,x2,y2,z2,x1,y1,z1,x,y,z);
+      if (d3>0.0) {
+        Tet tetNabor = tet.tetNabor(n3);
+        if (tetNabor!=null) {
+          tet = tetNabor;
+          continue;
+        } else {
+          return new PointLocation(tet,false);
+        }
       }
+
+      // If strictly inside the tet, the search is complete.
+      if (d0<0.0 && d1<0.0 && d2<0.0 && d3<0.0) {
+        return new PointLocation(tet);
+      }
+
+      // Must be on an edge or face of this tet.
+      if (d0==0.0 && d1==0.0) {
+        return new PointLocation(new Edge(tet,n2,n3));
+      } else if (d0==0.0 && d2==0.0) {
+        return new PointLocation(new Edge(tet,n3,n1));
+      } else if (d0==0.0 && d3==0.0) {
+        return new PointLocation(new Edge(tet,n1,n2));
+      } else if (d1==0.0 && d2==0.0) {
+        return new PointLocation(new Edge(tet,n0,n3));
+      } else if (d1==0.0 && d3==0.0) {
+        return new PointLocation(new Edge(tet,n2,n0));
+      } else if (d2==0.0 && d3==0.0) {
+        return new PointLocation(new Edge(tet,n0,n1));
+      } else if (d0==0.0) {
+        return new PointLocation(new Face(tet,n0));
+      } else if (d1==0.0) {
+        return new PointLocation(new Face(tet,n1));
+      } else if (d2==0.0) {
+        return new PointLocation(new Face(tet,n2));
+      } else if (d3==0.0) {
+        return new PointLocation(new Face(tet,n3));
+      }
+
+      // Where are we?!
+      assert false:"successfully located the point";
+      return null;
     }
-    double d3 = Geometry.leftOfPlane(x0,y0,z0,x2,y2,z2,x1,y1,z1,x,y,z);
-    if (d3>0.0) {
-      Tet tetNabor = tet.tetNabor(n3);
-      if (tetNabor!=null) {
-        return locatePoint(tetNabor,x,y,z);
-      } else {
-        return new PointLocation(tet,false);
-      }
-    }
-
-    // If strictly inside the tet, the search is complete.
-    if (d0<0.0 && d1<0.0 && d2<0.0 && d3<0.0) {
-      return new PointLocation(tet);
-    }
-
-    // Must be on an edge or face of the specified tet.
-    if (d0==0.0 && d1==0.0) {
-      return new PointLocation(new Edge(tet,n2,n3));
-    } else if (d0==0.0 && d2==0.0) {
-      return new PointLocation(new Edge(tet,n3,n1));
-    } else if (d0==0.0 && d3==0.0) {
-      return new PointLocation(new Edge(tet,n1,n2));
-    } else if (d1==0.0 && d2==0.0) {
-      return new PointLocation(new Edge(tet,n0,n3));
-    } else if (d1==0.0 && d3==0.0) {
-      return new PointLocation(new Edge(tet,n2,n0));
-    } else if (d2==0.0 && d3==0.0) {
-      return new PointLocation(new Edge(tet,n0,n1));
-    } else if (d0==0.0) {
-      return new PointLocation(new Face(tet,n0));
-    } else if (d1==0.0) {
-      return new PointLocation(new Face(tet,n1));
-    } else if (d2==0.0) {
-      return new PointLocation(new Face(tet,n2));
-    } else if (d3==0.0) {
-      return new PointLocation(new Face(tet,n3));
-    }
-
-    // Where are we?!
-    assert false:"successfully located the point";
-    return null;
   }
 
   /**
@@ -6350,6 +6728,130 @@ public class TetMesh implements Serializable {
     }
   }
 
+  /**
+   * Reads this mesh, which must be empty, from a binary mesh file.
+   * Nodes are linked in the order read, and tets are constructed with
+   * the nodes they reference before their nabors are linked.
+   */
+  private synchronized void read(MappedArrayFile maf) throws IOException {
+    ByteBuffer h = MeshFile.header(maf,false,MeshFile.TET_MAGIC);
+    long version = h.getLong();
+    int nnode = h.getInt();
+    int ntet = h.getInt();
+    int nmap = h.getInt();
+    boolean outerEnabled = h.getInt()!=0;
+    if (nnode<0 || ntet<0 || ntet>Integer.MAX_VALUE/4 || nmap<0)
+      throw new IOException("invalid numbers of nodes, tets, or maps");
+    long length = MeshFile.HEADER_SIZE+20L*nnode+32L*ntet+8L*nmap;
+    MeshFile.checkLength(maf,length);
+    int nblock = MeshFile.BLOCK_SIZE;
+    long off = MeshFile.HEADER_SIZE;
+
+    // Nodes.
+    Node[] nodes = new Node[nnode];
+    float[] x = new float[nblock];
+    float[] y = new float[nblock];
+    float[] z = new float[nblock];
+    int[] index = new int[nblock];
+    for (int j=0; j<nnode; j+=nblock) {
+      int m = min(nblock,nnode-j);
+      maf.readFloats(off+4L*j,x,0,m);
+      maf.readFloats(off+4L*(j+nnode),y,0,m);
+      maf.readFloats(off+4L*(j+2L*nnode),z,0,m);
+      maf.readInts(off+4L*(j+3L*nnode),index,0,m);
+      for (int i=0; i<m; ++i) {
+        Node node = nodes[j+i] = new Node(x[i],y[i],z[i]);
+        node.index = index[i];
+      }
+    }
+    for (int inode=0; inode<nnode; ++inode) {
+      Node node = nodes[inode];
+      node._prev = nodes[(inode>0)?inode-1:nnode-1];
+      node._next = nodes[(inode<nnode-1)?inode+1:0];
+    }
+    off += 20L*nnode; // tet constructors set the tets of nodes
+
+    // Tets.
+    Tet[] tets = new Tet[ntet];
+    int[] t = new int[4*nblock];
+    for (int j=0; j<ntet; j+=nblock) {
+      int m = min(nblock,ntet-j);
+      maf.readInts(off+16L*j,t,0,4*m);
+      for (int i=0; i<4*m; ++i)
+        MeshFile.checkIndex(t[i],nnode);
+      for (int i=0,k=0; i<m; ++i,k+=4)
+        tets[j+i] = new Tet(nodes[t[k]],nodes[t[k+1]],
+                            nodes[t[k+2]],nodes[t[k+3]]);
+    }
+    off += 16L*ntet;
+    for (int j=0; j<ntet; j+=nblock) {
+      int m = min(nblock,ntet-j);
+      maf.readInts(off+16L*j,t,0,4*m);
+      for (int i=0; i<4*m; ++i)
+        if (t[i]!=-1) MeshFile.checkIndex(t[i],ntet);
+      for (int i=0,k=0; i<m; ++i,k+=4) {
+        Tet tet = tets[j+i];
+        tet._t0 = (t[k  ]>=0)?tets[t[k  ]]:null;
+        tet._t1 = (t[k+1]>=0)?tets[t[k+1]]:null;
+        tet._t2 = (t[k+2]>=0)?tets[t[k+2]]:null;
+        tet._t3 = (t[k+3]>=0)?tets[t[k+3]]:null;
+      }
+    }
+    for (Tet tet:tets) {
+      if (!isNabor(tet,tet._t0) || !isNabor(tet,tet._t1) ||
+          !isNabor(tet,tet._t2) || !isNabor(tet,tet._t3))
+        throw new IOException("invalid tet nabors in mesh file");
+    }
+    off += 16L*ntet;
+
+    // Mesh.
+    _version = version;
+    _nnode = nnode;
+    _ntet = ntet;
+    _nroot = (nnode>0)?nodes[0]:null;
+    _troot = (ntet>0)?tets[0]:null;
+    _outerEnabled = outerEnabled;
+    _xminOuter = h.getDouble();
+    _yminOuter = h.getDouble();
+    _zminOuter = h.getDouble();
+    _xmaxOuter = h.getDouble();
+    _ymaxOuter = h.getDouble();
+    _zmaxOuter = h.getDouble();
+
+    // Property maps.
+    String[] names = new String[nmap];
+    Object[][] values = new Object[nmap][];
+    maf.seek(off);
+    MeshFile.readMaps(maf,nnode,names,values);
+    for (int imap=0; imap<nmap; ++imap) {
+      NodePropertyMap map = getNodePropertyMap(names[imap]);
+      for (int inode=0; inode<nnode; ++inode) {
+        if (values[imap][inode]!=null)
+          map.put(nodes[inode],values[imap][inode]);
+      }
+    }
+
+    // Sample nodes.
+    sampleNodes(nodes);
+
+    // Ensure mesh is valid.
+    try {
+      validate();
+    } catch (IllegalStateException ise) {
+      throw new IOException(ise.getMessage());
+    }
+  }
+
+  /**
+   * Determines whether the specified nabor is null or is another tet
+   * that references the specified tet as a nabor.
+   */
+  private static boolean isNabor(Tet tet, Tet nabor) {
+    return nabor==null ||
+           nabor!=tet && (nabor._t0==tet || nabor._t1==tet ||
+                          nabor._t2==tet || nabor._t3==tet);
+  }
+
   @SuppressWarnings("unchecked")
   private void readObject(ObjectInputStream in)
     throws IOException, ClassNotFoundException 
@@ -6537,4 +7039,17 @@ public class TetMesh implements Serializable {
       _sampledNodes.add(node);
     }
   }
+
+  /**
+   * Randomly samples nodes from the specified array of all nodes. The
+   * number of samples is as above, but need not exceed the number of
+   * nodes, and nodes are chosen without walking the list of nodes.
+   */
+  private void sampleNodes(Node[] nodes) {
+    Random random = new Random();
+    _sampledNodes.clear();
+    int nsamp = min(_nnode,2*(int)pow(_nnode,0.25));
+    while (_sampledNodes.size()<nsamp)
+      _sampledNodes.add(nodes[random.nextInt(_nnode)]);
+  }
 }
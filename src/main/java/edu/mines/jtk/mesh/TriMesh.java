@@ -7,10 +7,13 @@ available at http://www.eclipse.org/legal/cpl-v10.html
 package edu.mines.jtk.mesh;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import javax.swing.event.EventListenerList;
 
+import edu.mines.jtk.io.MappedArrayFile;
 import edu.mines.jtk.util.Check;
+import edu.mines.jtk.util.KdTree;
 import static edu.mines.jtk.util.MathPlus.*;
 
 /**
@@ -1411,9 +1414,102 @@ public class TriMesh implements Serializable {
    * @return true, if the node was added; false, otherwise.
    */
   public synchronized boolean addNode(Node node) {
+    return addNode(node,null);
+  }
+
+  /**
+   * Adds the specified nodes to the mesh, except for any nodes with the
+   * same (x,y) coordinates as nodes already in the mesh. The resulting
+   * mesh is the same as that obtained by adding the nodes one at a time,
+   * except where four or more nodes lie on a circle, so that the Delaunay
+   * triangulation is not unique. For large numbers of nodes, this method
+   * is much faster than adding nodes one at a time.
+   * <p>
+   * Nodes are added in a biased randomized insertion order, in rounds of
+   * increasing size, with the nodes in each round sorted along a Hilbert
+   * curve. The search for the location of each node then begins in a tri
+   * created for the previous node, and is short. If this mesh has no tris,
+   * then the first nodes added are the first in that order that are not
+   * co-linear, so that a first tri can be created.
+   * @param nodes array of nodes to add.
+   * @return true, if all nodes were added; false, otherwise.
+   */
+  public synchronized boolean addNodes(Node[] nodes) {
+    int nnode = nodes.length;
+    double[] x = new double[nnode];
+    double[] y = new double[nnode];
+    for (int inode=0; inode<nnode; ++inode) {
+      x[inode] = nodes[inode]._x;
+      y[inode] = nodes[inode]._y;
+    }
+    int[] k = SpatialOrder.brio(x,y);
+    moveFirstTriNodes(nodes,k);
+    int nadded = 0;
+    for (int inode=0; inode<nnode; ++inode) {
+      if (addNode(nodes[k[inode]],_troot))
+        ++nadded;
+    }
+    return nadded==nnode;
+  }
+
+  /**
+   * If this mesh has no tris, moves to the front of the order k the first
+   * nodes in that order that, with any nodes already in the mesh, can form
+   * the first tri. Otherwise, the first tri would be formed by the first
+   * three nodes added, which are co-linear if any two have the same
+   * coordinates.
+   */
+  private void moveFirstTriNodes(Node[] nodes, int[] k) {
+    if (_troot!=null || _nnode>=3)
+      return;
+    Node[] m = new Node[3];
+    int nm = 0;
+    for (int i=0; i<_nnode; ++i)
+      m[nm++] = (i==0)?_nroot:m[i-1]._next;
+    int[] front = new int[3];
+    int nf = 0;
+    for (int j=0; j<k.length && nm<3; ++j) {
+      Node n = nodes[k[j]];
+      boolean ok;
+      if (nm==0) {
+        ok = true;
+      } else if (nm==1) {
+        ok = n._x!=m[0]._x || n._y!=m[0]._y;
+      } else {
+        ok = Geometry.leftOfLine(
+          m[0]._x,m[0]._y,m[1]._x,m[1]._y,n._x,n._y)!=0.0;
+      }
+      if (ok) {
+        m[nm++] = n;
+        front[nf++] = j;
+      }
+    }
+    if (nf>0) {
+      int nk = k.length;
+      int[] t = new int[nk];
+      for (int i=0; i<nf; ++i)
+        t[i] = k[front[i]];
+      for (int j=0,i=nf,f=0; j<nk; ++j) {
+        if (f<nf && j==front[f]) {
+          ++f;
+        } else {
+          t[i++] = k[j];
+        }
+      }
+      System.arraycopy(t,0,k,0,nk);
+    }
+  }
+
+  /**
+   * Adds a node to the mesh, beginning the search for its location in the
+   * specified tri. If that tri is null, the search begins in a tri near
+   * one of the sampled nodes.
+   */
+  private boolean addNode(Node node, Tri tri) {
 
     // Where is the point?
-    PointLocation pl = locatePoint(node._x,node._y);
+    PointLocation pl = (tri!=null)?locatePoint(tri,node._x,node._y)
+                                  :locatePoint(node._x,node._y);
 
     // Cannot have two nodes with the same coordinates.
     if (pl.isOnNode())
@@ -1646,6 +1742,43 @@ public class TriMesh implements Serializable {
     return findNodeNearest((double)x,(double)y);
   }
 
+  /**
+   * Finds the k nodes nearest to the point with specified coordinates.
+   * <p>
+   * Unlike the method {@link #findNodeNearest(float,float)},
+   * this method is not synchronized, and may be called by multiple threads
+   * at the same time. It uses a k-d tree of nodes that is constructed when
+   * first needed, and again after any change to the mesh version. It is
+   * therefore most efficient for many queries of a mesh that is not being
+   * modified, and should not be called while the mesh is being modified.
+   * @param x the x coordinate.
+   * @param y the y coordinate.
+   * @param k the number of nodes to find.
+   * @return array of nearest nodes, sorted by increasing distance; the
+   *  length of this array is the smaller of k and the number of nodes.
+   */
+  public Node[] findNodesNearest(float x, float y, int k) {
+    NodeTree nt = getNodeTree();
+    int[] i = nt.tree.findNearest(k,new double[]{x,y});
+    return nt.nodes(i);
+  }
+
+  /**
+   * Finds all nodes within a circle with specified center and radius.
+   * Like the method {@link #findNodesNearest(float,float,int)}, this method
+   * is not synchronized, and should not be called while the mesh is
+   * being modified.
+   * @param x the x coordinate of the center.
+   * @param y the y coordinate of the center.
+   * @param r the radius.
+   * @return array of nodes found, in no particular order.
+   */
+  public Node[] findNodesInCircle(float x, float y, float r) {
+    NodeTree nt = getNodeTree();
+    int[] i = nt.tree.findInSphere(new double[]{x,y},r);
+    return nt.nodes(i);
+  }
+
   /**
    * Finds an edge of a tri in the mesh that references the specified nodes.
    * The nodes may be specified in any order. However, if not null,
@@ -2329,6 +2462,87 @@ public class TriMesh implements Serializable {
     assert ntri==_ntri;
   }
 
+  /**
+   * Writes this mesh to a binary file with specified name. The file
+   * contains flat arrays of node coordinates and indices, tri nodes and
+   * nabors, and node property values, and is written by memory mapping.
+   * It may be read by {@link #read(String)} much faster than a mesh can
+   * be deserialized.
+   * <p>
+   * Node indices are written, but node and tri data objects and tri
+   * indices are not. Values in node property maps must be Integer,
+   * Float, or Double; all non-null values in each map must have the
+   * same type.
+   * @param fileName the file name.
+   * @exception IOException if a property map has values of other types,
+   *  or if an error occurs while writing the file.
+   */
+  public synchronized void write(String fileName) throws IOException {
+    int nnode = _nnode;
+    int ntri = _ntri;
+    String[] names = getNodePropertyMapNames();
+    int nmap = names.length;
+    Object[][] values = new Object[nmap][nnode];
+    for (int imap=0; imap<nmap; ++imap) {
+      NodePropertyMap map = getNodePropertyMap(names[imap]);
+      NodeIterator ni = getNodes();
+      for (int inode=0; inode<nnode; ++inode)
+        values[imap][inode] = map.get(ni.next());
+    }
+    float[] x = new float[nnode];
+    float[] y = new float[nnode];
+    int[] index = new int[nnode];
+    int[] nodeTri = new int[nnode];
+    int[] triNodes = new int[3*ntri];
+    int[] triNabors = new int[3*ntri];
+    getArrays(x,y,index,nodeTri,triNodes,triNabors);
+    long length = MeshFile.HEADER_SIZE+16L*nnode+24L*ntri+
+                  MeshFile.sizeOfMaps(names,values);
+    MappedArrayFile maf = MeshFile.create(fileName,length);
+    try {
+      ByteBuffer h = MeshFile.header(maf,true,MeshFile.TRI_MAGIC);
+      h.putLong(_version);
+      h.putInt(nnode);
+      h.putInt(ntri);
+      h.putInt(nmap);
+      h.putInt(_outerEnabled?1:0);
+      h.putDouble(_xminOuter);
+      h.putDouble(_yminOuter);
+      h.putDouble(_xmaxOuter);
+      h.putDouble(_ymaxOuter);
+      maf.writeFloats(x);
+      maf.writeFloats(y);
+      maf.writeInts(index,0,nnode);
+      maf.writeInts(nodeTri,0,nnode);
+      maf.writeInts(triNodes,0,3*ntri);
+      maf.writeInts(triNabors,0,3*ntri);
+      MeshFile.writeMaps(maf,names,values);
+    } finally {
+      maf.close();
+    }
+  }
+
+  /**
+   * Reads a mesh from a binary file with specified name. The file must
+   * have been written by {@link #write(String)}. Arrays in the file are
+   * memory mapped and read in blocks, so that little memory is required
+   * beyond that for the nodes and tris of the mesh.
+   * @param fileName the file name.
+   * @return the mesh.
+   * @exception IOException if the file is not a valid tri mesh file,
+   *  or if an error occurs while reading the file.
+   */
+  public static TriMesh read(String fileName) throws IOException {
+    TriMesh mesh = new TriMesh();
+    MappedArrayFile maf = MeshFile.open(fileName,MeshFile.TRI_MAGIC);
+    try {
+      mesh.read(maf);
+    } finally {
+      maf.close();
+    }
+    return mesh;
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // protected
 
@@ -2377,6 +2591,7 @@ public class TriMesh implements Serializable {
   private Node _nroot; // a node in the mesh
   private Tri _troot; // a tri in the mesh
   private HashSet<Node> _sampledNodes; // for point location
+  private volatile NodeTree _nodeTree; // for nearest node queries
   private int _triMarkRed; // current value of red tri mark
   private int _triMarkBlue; // current value of blue tri mark
   private int _nodeMarkRed; // current value of red node mark
@@ -2399,6 +2614,47 @@ public class TriMesh implements Serializable {
   private int _lnodeValues; // length of internal node property arrays
   private Map<String,NodePropertyMap> _nodePropertyMaps; // node property maps
 
+  // A k-d tree of nodes, for one version of the mesh.
+  private static class NodeTree {
+    long version;
+    Node[] nodes;
+    KdTree tree;
+    Node[] nodes(int[] i) {
+      Node[] n = new Node[i.length];
+      for (int j=0; j<i.length; ++j)
+        n[j] = nodes[i[j]];
+      return n;
+    }
+  }
+
+  /**
+   * Returns a k-d tree of nodes for the current version of this mesh.
+   * Synchronizes only if the tree must be (re)constructed.
+   */
+  private NodeTree getNodeTree() {
+    NodeTree nt = _nodeTree;
+    if (nt==null || nt.version!=_version) {
+      synchronized (this) {
+        nt = _nodeTree;
+        if (nt==null || nt.version!=_version) {
+          nt = new NodeTree();
+          nt.version = _version;
+          nt.nodes = new Node[_nnode];
+          double[][] x = new double[2][_nnode];
+          NodeIterator ni = getNodes();
+          for (int inode=0; inode<_nnode; ++inode) {
+            Node node = nt.nodes[inode] = ni.next();
+            x[0][inode] = node._x;
+            x[1][inode] = node._y;
+          }
+          nt.tree = new KdTree(x);
+          _nodeTree = nt;
+        }
+      }
+    }
+    return nt;
+  }
+
   /**
    * Internal node property map uses the array of values in each node.
    */
@@ -4102,6 +4358,179 @@ public class TriMesh implements Serializable {
     }
   }
 
+  /**
+   * Gets arrays of node coordinates and indices, and arrays of tri nodes
+   * and nabors. Nodes and tris are numbered in the order in which they
+   * are visited here. The index of a tri that references a node, and
+   * the indices of tri nabors, are -1 where none exists. Arrays of tri
+   * nodes and nabors contain three elements per tri, in the order A, B,
+   * and C.
+   * <p>
+   * Node and tri marks are used to number nodes and tris, and are then
+   * cleared, so that no nodes or tris are marked when this method returns.
+   */
+  private synchronized void getArrays(
+    float[] x, float[] y, int[] index, int[] nodeTri,
+    int[] triNodes, int[] triNabors)
+  {
+    Node[] nodes = new Node[_nnode];
+    NodeIterator ni = getNodes();
+    for (int inode=0; inode<_nnode; ++inode) {
+      Node node = nodes[inode] = ni.next();
+      node._mark = inode;
+      x[inode] = node.x();
+      y[inode] = node.y();
+      index[inode] = node.index;
+    }
+    Tri[] tris = new Tri[_ntri];
+    TriIterator ti = getTris();
+    for (int itri=0; itri<_ntri; ++itri)
+      tris[itri] = ti.next();
+    for (int itri=0; itri<_ntri; ++itri)
+      tris[itri]._mark = itri;
+    for (int inode=0; inode<_nnode; ++inode) {
+      Tri tri = nodes[inode]._tri;
+      nodeTri[inode] = (tri!=null)?tri._mark:-1;
+    }
+    for (int itri=0,i=0; itri<_ntri; ++itri,i+=3) {
+      Tri tri = tris[itri];
+      triNodes[i  ] = tri._n0._mark;
+      triNodes[i+1] = tri._n1._mark;
+      triNodes[i+2] = tri._n2._mark;
+      triNabors[i  ] = (tri._t0!=null)?tri._t0._mark:-1;
+      triNabors[i+1] = (tri._t1!=null)?tri._t1._mark:-1;
+      triNabors[i+2] = (tri._t2!=null)?tri._t2._mark:-1;
+    }
+    for (int inode=0; inode<_nnode; ++inode)
+      nodes[inode]._mark = 0;
+    _nodeMarkRed = 0;
+    _nodeMarkBlue = 0;
+    clearNodeMarks();
+    for (int itri=0; itri<_ntri; ++itri)
+      tris[itri]._mark = 0;
+    _triMarkRed = 0;
+    _triMarkBlue = 0;
+    clearTriMarks();
+  }
+
+  /**
+   * Reads this mesh, which must be empty, from a binary mesh file.
+   * Nodes are linked in the order read, and tris are constructed with
+   * the nodes they reference before their nabors are linked.
+   */
+  private synchronized void read(MappedArrayFile maf) throws IOException {
+    ByteBuffer h = MeshFile.header(maf,false,MeshFile.TRI_MAGIC);
+    long version = h.getLong();
+    int nnode = h.getInt();
+    int ntri = h.getInt();
+    int nmap = h.getInt();
+    boolean outerEnabled = h.getInt()!=0;
+    if (nnode<0 || ntri<0 || ntri>Integer.MAX_VALUE/3 || nmap<0)
+      throw new IOException("invalid numbers of nodes, tris, or maps");
+    long length = MeshFile.HEADER_SIZE+16L*nnode+24L*ntri+8L*nmap;
+    MeshFile.checkLength(maf,length);
+    int nblock = MeshFile.BLOCK_SIZE;
+    long off = MeshFile.HEADER_SIZE;
+
+    // Nodes.
+    Node[] nodes = new Node[nnode];
+    float[] x = new float[nblock];
+    float[] y = new float[nblock];
+    int[] index = new int[nblock];
+    for (int j=0; j<nnode; j+=nblock) {
+      int m = min(nblock,nnode-j);
+      maf.readFloats(off+4L*j,x,0,m);
+      maf.readFloats(off+4L*(j+nnode),y,0,m);
+      maf.readInts(off+4L*(j+2L*nnode),index,0,m);
+      for (int i=0; i<m; ++i) {
+        Node node = nodes[j+i] = new Node(x[i],y[i]);
+        node.index = index[i];
+      }
+    }
+    for (int inode=0; inode<nnode; ++inode) {
+      Node node = nodes[inode];
+      node._prev = nodes[(inode>0)?inode-1:nnode-1];
+      node._next = nodes[(inode<nnode-1)?inode+1:0];
+    }
+    off += 16L*nnode; // tri constructors set the tris of nodes
+
+    // Tris.
+    Tri[] tris = new Tri[ntri];
+    int[] t = new int[3*nblock];
+    for (int j=0; j<ntri; j+=nblock) {
+      int m = min(nblock,ntri-j);
+      maf.readInts(off+12L*j,t,0,3*m);
+      for (int i=0; i<3*m; ++i)
+        MeshFile.checkIndex(t[i],nnode);
+      for (int i=0,k=0; i<m; ++i,k+=3)
+        tris[j+i] = new Tri(nodes[t[k]],nodes[t[k+1]],nodes[t[k+2]]);
+    }
+    off += 12L*ntri;
+    for (int j=0; j<ntri; j+=nblock) {
+      int m = min(nblock,ntri-j);
+      maf.readInts(off+12L*j,t,0,3*m);
+      for (int i=0; i<3*m; ++i)
+        if (t[i]!=-1) MeshFile.checkIndex(t[i],ntri);
+      for (int i=0,k=0; i<m; ++i,k+=3) {
+        Tri tri = tris[j+i];
+        tri._t0 = (t[k  ]>=0)?tris[t[k  ]]:null;
+        tri._t1 = (t[k+1]>=0)?tris[t[k+1]]:null;
+        tri._t2 = (t[k+2]>=0)?tris[t[k+2]]:null;
+      }
+    }
+    for (Tri tri:tris) {
+      if (!isNabor(tri,tri._t0) || !isNabor(tri,tri._t1) ||
+          !isNabor(tri,tri._t2))
+        throw new IOException("invalid tri nabors in mesh file");
+    }
+    off += 12L*ntri;
+
+    // Mesh.
+    _version = version;
+    _nnode = nnode;
+    _ntri = ntri;
+    _nroot = (nnode>0)?nodes[0]:null;
+    _troot = (ntri>0)?tris[0]:null;
+    _outerEnabled = outerEnabled;
+    _xminOuter = h.getDouble();
+    _yminOuter = h.getDouble();
+    _xmaxOuter = h.getDouble();
+    _ymaxOuter = h.getDouble();
+
+    // Property maps.
+    String[] names = new String[nmap];
+    Object[][] values = new Object[nmap][];
+    maf.seek(off);
+    MeshFile.readMaps(maf,nnode,names,values);
+    for (int imap=0; imap<nmap; ++imap) {
+      NodePropertyMap map = getNodePropertyMap(names[imap]);
+      for (int inode=0; inode<nnode; ++inode) {
+        if (values[imap][inode]!=null)
+          map.put(nodes[inode],values[imap][inode]);
+      }
+    }
+
+    // Sample nodes.
+    sampleNodes(nodes);
+
+    // Ensure mesh is valid.
+    try {
+      validate();
+    } catch (IllegalStateException ise) {
+      throw new IOException(ise.getMessage());
+    }
+  }
+
+  /**
+   * Determines whether the specified nabor is null or is another tri
+   * that references the specified tri as a nabor.
+   */
+  private static boolean isNabor(Tri tri, Tri nabor) {
+    return nabor==null ||
+           nabor!=tri && (nabor._t0==tri || nabor._t1==tri ||
+                          nabor._t2==tri);
+  }
+
   @SuppressWarnings("unchecked")
   private void readObject(ObjectInputStream in)
     throws IOException, ClassNotFoundException 
@@ -4279,4 +4708,17 @@ public class TriMesh implements Serializable {
       _sampledNodes.add(node);
     }
   }
+
+  /**
+   * Randomly samples nodes from the specified array of all nodes. The
+   * number of samples is as above, but need not exceed the number of
+   * nodes, and nodes are chosen without walking the list of nodes.
+   */
+  private void sampleNodes(Node[] nodes) {
+    Random random = new Random();
+    _sampledNodes.clear();
+    int nsamp = min(_nnode,(int)(pow(_nnode,0.33)/0.45));
+    while (_sampledNodes.size()<nsamp)
+      _sampledNodes.add(nodes[random.nextInt(_nnode)]);
+  }
 }
@@ -28,6 +28,12 @@ import static edu.mines.jtk.util.ArrayMath.*;
  * updated when percentiles are changed. If not using percentiles, because 
  * clipMin and clipMax are specified explicitly, then these arrays are 
  * ignored.
+ * <p>
+ * For an abstract 3-D array {@link Float3}, which may be too large to
+ * copy into memory, clips for percentiles other than 0 and 100 are
+ * computed exactly only if the array has no more than 2^24 values.
+ * For larger arrays, those clips are estimated with a
+ * {@link QuantileSketch}.
  *
  * @author Dave Hale, Colorado School of Mines
  * @version 2007.01.10
@@ -244,6 +250,18 @@ public class Clips {
     return _percMax;
   }
 
+  ///////////////////////////////////////////////////////////////////////////
+  // package
+
+  /**
+   * Sets the maximum number of values in an abstract 3-D array for which
+   * percentiles are computed exactly. Useful only for testing.
+   */
+  void setExactMax(long exactMax) {
+    _exactMax = exactMax;
+    _clipsDirty = true;
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // private
 
@@ -254,6 +272,11 @@ public class Clips {
   private float _percMax = 100.0f; // may be used to compute _clipMax
   private boolean _usePercentiles = true; // true, if using percentiles
   private Object _f; // array used to compute clips from percentiles
+  private long _exactMax = EXACT_MAX; // max size of Float3 copied
+
+  // Percentiles for an abstract 3-D array with more values than this
+  // are estimated; the array is not copied.
+  private static final long EXACT_MAX = 1<<24;
 
   private void updateClips() {
     if (_clipsDirty && _usePercentiles) {
@@ -305,8 +328,13 @@ public class Clips {
           int n1 = f3.getN1();
           int n2 = f3.getN2();
           int n3 = f3.getN3();
-          a = new float[n1*n2*n3];
-          f3.get123(n1,n2,n3,0,0,0,a);
+          if ((long)n1*n2*n3<=_exactMax) {
+            a = new float[n1*n2*n3];
+            f3.get123(n1,n2,n3,0,0,0,a);
+          } else {
+            updateClips(f3);
+            clipsComputed = true;
+          }
         }
         if (a!=null) {
           int n = a.length;
@@ -335,6 +363,25 @@ public class Clips {
       }
     }
   }
+
+  // Percentiles for a large abstract 3-D array, which may be too large to
+  // copy into memory, are estimated with a sketch updated one slice at a
+  // time.
+  private void updateClips(Float3 f3) {
+    int n1 = f3.getN1();
+    int n2 = f3.getN2();
+    int n3 = f3.getN3();
+    float[][] a = new float[n2][n1];
+    QuantileSketch qs = new QuantileSketch();
+    for (int i3=0; i3<n3; ++i3) {
+      f3.get12(n1,n2,0,0,i3,a);
+      qs.update(a);
+    }
+    float[] c = qs.quantiles(new double[]{_percMin*0.01,_percMax*0.01});
+    _clipMin = c[0];
+    _clipMax = c[1];
+  }
+
   private void makeClipsValid() {
     if (_clipMin>=_clipMax) {
       double clipAvg = 0.5*(_clipMin+_clipMax);
@@ -0,0 +1,325 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.util;
+
+/**
+ * A static k-d tree of points, with methods for fast nearest-point queries.
+ * A k-d tree is constructed from arrays of point coordinates in N
+ * dimensions, and points are identified by their indices in those arrays.
+ * <p>
+ * A k-d tree is a binary tree. Each internal node of the tree splits its
+ * points into two halves with a plane perpendicular to the coordinate axis
+ * along which those points are most widely spread. Queries descend first
+ * into the half that contains the query point, and then visit the other
+ * half only if it might contain points nearer than those already found.
+ * <p>
+ * Unlike an {@link RTree}, a k-d tree cannot be modified after it has been
+ * constructed. For that reason, its methods require no synchronization,
+ * and queries may be performed by multiple threads at the same time.
+ * <p>
+ * References:
+ * <ul><li>
+ * Bentley, J.L., 1975, Multidimensional binary search trees used for
+ * associative searching: Communications of the ACM, v. 18, n. 9,
+ * p. 509-517.
+ * </li><li>
+ * Friedman, J.H., Bentley, J.L., and Finkel, R.A., 1977, An algorithm
+ * for finding best matches in logarithmic expected time: ACM Transactions
+ * on Mathematical Software, v. 3, n. 3, p. 209-226.
+ * </li></ul>
+ * @author agent
+ * @version 2026.10.18
+ */
+public class KdTree {
+
+  /**
+   * Constructs a k-d tree for points with specified coordinates.
+   * The specified arrays are copied; not referenced.
+   * @param x array[ndim][n] of point coordinates.
+   */
+  public KdTree(double[][] x) {
+    Check.argument(x.length>0,"number of dimensions is positive");
+    _ndim = x.length;
+    _n = x[0].length;
+    _x = new double[_ndim][];
+    for (int idim=0; idim<_ndim; ++idim) {
+      Check.argument(x[idim].length==_n,"arrays have equal lengths");
+      _x[idim] = x[idim].clone();
+    }
+    _i = new int[_n];
+    for (int i=0; i<_n; ++i)
+      _i[i] = i;
+    _d = new byte[_n];
+    build(0,_n);
+  }
+
+  /**
+   * Returns the number of dimensions for points in this tree.
+   * @return the number of dimensions.
+   */
+  public int getDimensions() {
+    return _ndim;
+  }
+
+  /**
+   * Returns the number of points in this tree.
+   * @return the number of points.
+   */
+  public int size() {
+    return _n;
+  }
+
+  /**
+   * Finds the point nearest to the specified point.
+   * @param point array of point coordinates.
+   * @return index of the nearest point; -1, if this tree is empty.
+   */
+  public int findNearest(double[] point) {
+    int[] i = findNearest(1,point);
+    return (i.length>0)?i[0]:-1;
+  }
+
+  /**
+   * Finds the k points nearest to the specified point.
+   * @param k the number of points to find.
+   * @param point array of point coordinates.
+   * @return array of indices of the nearest points, sorted by increasing
+   *  distance; the length of this array is the smaller of k and the
+   *  number of points in this tree.
+   */
+  public int[] findNearest(int k, double[] point) {
+    Check.argument(point.length==_ndim,"point has correct dimensions");
+    Check.argument(k>=0,"k is non-negative");
+    Nearest nearest = new Nearest(Math.min(k,_n));
+    if (nearest.k>0)
+      findNearest(0,_n,point,nearest);
+    return nearest.indices();
+  }
+
+  /**
+   * Finds all points within the specified sphere.
+   * @param center array of coordinates of the center of the sphere.
+   * @param radius the radius of the sphere.
+   * @return array of indices of points found, in no particular order.
+   */
+  public int[] findInSphere(double[] center, double radius) {
+    Check.argument(center.length==_ndim,"center has correct dimensions");
+    Found found = new Found();
+    findInSphere(0,_n,center,radius*radius,found);
+    return found.indices();
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  // Ranges with no more than this number of points are not split.
+  private static final int LEAF_SIZE = 8;
+
+  private int _ndim; // number of dimensions
+  private int _n; // number of points
+  private double[][] _x; // point coordinates, in tree order
+  private int[] _i; // indices of points, in tree order
+  private byte[] _d; // dimensions of splitting planes, for ranges split
+
+  // The points in the range [lo,hi) are split at the median index
+  // m = (lo+hi)/2. Points with indices in [lo,m) have coordinates
+  // x[d] not greater than that for point m, and points with indices
+  // in [m+1,hi) have coordinates x[d] not less than that for point m.
+  private void build(int lo, int hi) {
+    if (hi-lo<=LEAF_SIZE)
+      return;
+    int d = widestDimension(lo,hi);
+    int m = (lo+hi)>>>1;
+    select(d,lo,hi-1,m);
+    _d[m] = (byte)d;
+    build(lo,m);
+    build(m+1,hi);
+  }
+
+  // Returns the dimension in which points in [lo,hi) are most spread.
+  private int widestDimension(int lo, int hi) {
+    int dwide = 0;
+    double wwide = -1.0;
+    for (int idim=0; idim<_ndim; ++idim) {
+      double[] x = _x[idim];
+      double xmin = x[lo];
+      double xmax = x[lo];
+      for (int i=lo+1; i<hi; ++i) {
+        if (x[i]<xmin) xmin = x[i];
+        if (x[i]>xmax) xmax = x[i];
+      }
+      if (xmax-xmin>wwide) {
+        dwide = idim;
+        wwide = xmax-xmin;
+      }
+    }
+    return dwide;
+  }
+
+  // Partially sorts points in [l,r] so that the point with index k has
+  // the coordinate x[d] that it would have if all points were sorted.
+  private void select(int d, int l, int r, int k) {
+    double[] x = _x[d];
+    while (l<r) {
+      int m = (l+r)>>>1;
+      if (x[m]<x[l]) swap(l,m);
+      if (x[r]<x[l]) swap(l,r);
+      if (x[r]<x[m]) swap(m,r);
+      double p = x[m];
+      int i = l;
+      int j = r;
+      while (i<=j) {
+        while (x[i]<p) ++i;
+        while (p<x[j]) --j;
+        if (i<=j) {
+          swap(i,j);
+          ++i;
+          --j;
+        }
+      }
+      if (k<=j) {
+        r = j;
+      } else if (k>=i) {
+        l = i;
+      } else {
+        break;
+      }
+    }
+  }
+
+  private void swap(int i, int j) {
+    for (int idim=0; idim<_ndim; ++idim) {
+      double[] x = _x[idim];
+      double xi = x[i]; x[i] = x[j]; x[j] = xi;
+    }
+    int ii = _i[i]; _i[i] = _i[j]; _i[j] = ii;
+  }
+
+  private double distanceSquared(int i, double[] p) {
+    double ds = 0.0;
+    for (int idim=0; idim<_ndim; ++idim) {
+      double d = p[idim]-_x[idim][i];
+      ds += d*d;
+    }
+    return ds;
+  }
+
+  private void findNearest(int lo, int hi, double[] p, Nearest nearest) {
+    if (hi-lo<=LEAF_SIZE) {
+      for (int i=lo; i<hi; ++i)
+        nearest.offer(i,distanceSquared(i,p));
+    } else {
+      int m = (lo+hi)>>>1;
+      double dx = p[_d[m]]-_x[_d[m]][m];
+      nearest.offer(m,distanceSquared(m,p));
+      if (dx<0.0) {
+        findNearest(lo,m,p,nearest);
+        if (dx*dx<nearest.dmax())
+          findNearest(m+1,hi,p,nearest);
+      } else {
+        findNearest(m+1,hi,p,nearest);
+        if (dx*dx<nearest.dmax())
+          findNearest(lo,m,p,nearest);
+      }
+    }
+  }
+
+  private void findInSphere(
+    int lo, int hi, double[] c, double rs, Found found)
+  {
+    if (hi-lo<=LEAF_SIZE) {
+      for (int i=lo; i<hi; ++i) {
+        if (distanceSquared(i,c)<=rs)
+          found.add(_i[i]);
+      }
+    } else {
+      int m = (lo+hi)>>>1;
+      double dx = c[_d[m]]-_x[_d[m]][m];
+      if (distanceSquared(m,c)<=rs)
+        found.add(_i[m]);
+      if (dx<=0.0 || dx*dx<=rs)
+        findInSphere(lo,m,c,rs,found);
+      if (dx>=0.0 || dx*dx<=rs)
+        findInSphere(m+1,hi,c,rs,found);
+    }
+  }
+
+  // The k points nearest to a query point, in a max-heap keyed by
+  // distance squared, so that the farthest of those points is first.
+  private class Nearest {
+    int k; // number of points to find
+    int n; // number of points found
+    int[] i; // tree indices of points found
+    double[] ds; // distances squared to points found
+    Nearest(int k) {
+      this.k = k;
+      this.i = new int[k];
+      this.ds = new double[k];
+    }
+    double dmax() {
+      return (n<k)?Double.MAX_VALUE:ds[0];
+    }
+    void offer(int ti, double d) {
+      if (n<k) {
+        int j = n++;
+        while (j>0) {
+          int p = (j-1)/2;
+          if (ds[p]>=d)
+            break;
+          i[j] = i[p];
+          ds[j] = ds[p];
+          j = p;
+        }
+        i[j] = ti;
+        ds[j] = d;
+      } else if (d<ds[0]) {
+        siftDown(ti,d,n);
+      }
+    }
+    void siftDown(int ti, double d, int m) {
+      int j = 0;
+      for (int c=1; c<m; c=2*j+1) {
+        if (c+1<m && ds[c+1]>ds[c])
+          ++c;
+        if (ds[c]<=d)
+          break;
+        i[j] = i[c];
+        ds[j] = ds[c];
+        j = c;
+      }
+      i[j] = ti;
+      ds[j] = d;
+    }
+    int[] indices() {
+      int[] indices = new int[n];
+      for (int m=n-1; m>=0; --m) {
+        indices[m] = _i[i[0]];
+        siftDown(i[m],ds[m],m);
+      }
+      return indices;
+    }
+  }
+
+  // Indices of points found in a sphere.
+  private static class Found {
+    int n;
+    int[] i = new int[16];
+    void add(int j) {
+      if (n==i.length) {
+        int[] t = new int[2*n];
+        System.arraycopy(i,0,t,0,n);
+        i = t;
+      }
+      i[n++] = j;
+    }
+    int[] indices() {
+      int[] t = new int[n];
+      System.arraycopy(i,0,t,0,n);
+      return t;
+    }
+  }
+}
@@ -10,6 +10,7 @@ package edu.mines.jtk.util;
 
 import java.util.Collection;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Utilities for parallel computing in loops over independent tasks.
@@ -138,6 +139,15 @@ import java.util.concurrent.*;
  * naturally tend to be split for outer loops, but not inner loops, 
  * thereby reducing overhead, time spent splitting and queueing tasks.
  * <p>
+ * Static methods loop and reduce use the current execution context,
+ * which by default uses the shared pool of threads. An execution context 
+ * ({@link Parallel.Context}) may instead use its own pool with a specified 
+ * number of threads, may have a minimum chunk size, and may be cancelled.
+ * Loops may be performed in a context by calling its methods directly, or
+ * by calling the static methods of this class within the scope of that
+ * context. Each context also counts the tasks it performs, and so can help
+ * in choosing the number of threads and chunk sizes.
+ * <p>
  * Reference: A Java Fork/Join Framework, by Doug Lea, describes the
  * framework used to implement this class. This framework will be part 
  * of JDK 7.
@@ -290,19 +300,7 @@ public class Parallel {
   public static void loop(
     int begin, int end, int step, int chunk, LoopInt body) 
   {
-    checkArgs(begin,end,step,chunk);
-    if (_serial || end<=begin+chunk*step) {
-      for (int i=begin; i<end; i+=step) {
-        body.compute(i);
-      }
-    } else {
-      LoopIntAction task = new LoopIntAction(begin,end,step,chunk,body);
-      if (LoopIntAction.inForkJoinPool()) {
-        task.invoke();
-      } else {
-        _pool.invoke(task);
-      }
-    }
+    getContext().loop(begin,end,step,chunk,body,true);
   }
 
   /**
@@ -352,22 +350,18 @@ public class Parallel {
   public static <V> V reduce(
     int begin, int end, int step, int chunk, ReduceInt<V> body) 
   {
-    checkArgs(begin,end,step,chunk);
-    if (_serial || end<=begin+chunk*step) {
-      V v = body.compute(begin);
-      for (int i=begin+step; i<end; i+=step) {
-        V vi = body.compute(i);
-        v = body.combine(v,vi);
-      }
-      return v;
-    } else {
-      ReduceIntTask<V> task = new ReduceIntTask<V>(begin,end,step,chunk,body);
-      if (ReduceIntTask.inForkJoinPool()) {
-        return task.invoke();
-      } else {
-        return _pool.invoke(task);
-      }
-    }
+    return getContext().reduce(begin,end,step,chunk,body,true);
+  }
+
+  /**
+   * Gets the execution context for the current thread. This context is 
+   * the one within whose scope the current thread is computing, if any; 
+   * otherwise, it is the default context, which uses the shared pool.
+   * @return the current context.
+   */
+  public static Context getContext() {
+    Context context = _context.get();
+    return (context!=null)?context:_default;
   }
 
   /**
@@ -384,6 +378,399 @@ public class Parallel {
     _serial = !parallel;
   }
 
+  /**
+   * An execution context for parallel loops. A context determines the 
+   * pool of threads used to perform tasks, a minimum chunk size, and 
+   * whether tasks should be cancelled.
+   * <p>
+   * A context constructed without a number of threads uses the pool of
+   * threads shared by all users of this class. A context constructed 
+   * with a number of threads has its own pool, so that it cannot use 
+   * more than that number of threads, and does not compete with other 
+   * contexts for threads in a shared pool. The threads in such a pool
+   * are released when the context is shut down.
+   * <p>
+   * A minimum chunk size (the grain) may be specified for all loops in
+   * a context. The chunk size used for any loop is the larger of the 
+   * grain and the chunk size specified for that loop.
+   * <p>
+   * A context may be cancelled, typically by a thread other than those 
+   * performing loops in that context. Thereafter, loops in the context 
+   * compute for no more indices and throw a 
+   * {@link java.util.concurrent.CancellationException}. A context that 
+   * has been cancelled remains cancelled.
+   * <p>
+   * Loops are performed in a context by calling its methods loop and 
+   * reduce, or by calling the corresponding static methods of the class 
+   * {@link Parallel} while the context is running a {@link Runnable}.
+   * Within loops performed in a context, nested loops performed by static
+   * methods are also performed in that context. For example,
+   * <pre><code>
+   * final Parallel.Context context = new Parallel.Context(4);
+   * context.run(new Runnable() {
+   *   public void run() {
+   *     sqrParallel(a,b); // uses no more than four threads
+   *   }
+   * });
+   * context.shutdown();
+   * </code></pre>
+   * If counting is enabled, a context counts the tasks it performs, the
+   * number of those tasks that were stolen (performed by a thread other
+   * than the one that created them), and the total time spent computing
+   * in tasks. Computing time for nested loops is included in the computing
+   * time for their enclosing loops, so the total time may exceed elapsed
+   * time multiplied by the number of threads. Counting is disabled by
+   * default, because counters shared by all threads add overhead to every
+   * task; it cannot be enabled for the default context.
+   * <p>
+   * Cancellation is checked at the beginning and end of each task, not
+   * for every loop index.
+   */
+  public static class Context {
+
+    /**
+     * Constructs a context that uses the shared pool of threads.
+     */
+    public Context() {
+      this(_pool);
+    }
+
+    /**
+     * Constructs a context with its own pool of threads.
+     * @param nthread the number of threads; must be positive.
+     */
+    public Context(int nthread) {
+      this(newPool(nthread));
+      _owner = true;
+    }
+
+    /**
+     * Gets the number of threads used by this context.
+     * @return the number of threads.
+     */
+    public int getThreadCount() {
+      return _fjp.getParallelism();
+    }
+
+    /**
+     * Sets the minimum chunk size for loops in this context.
+     * The default minimum chunk size is one.
+     * @param grain the minimum chunk size; must be positive.
+     */
+    public void setGrain(int grain) {
+      Check.argument(grain>0,"grain>0");
+      _grain = grain;
+    }
+
+    /**
+     * Gets the minimum chunk size for loops in this context.
+     * @return the minimum chunk size.
+     */
+    public int getGrain() {
+      return _grain;
+    }
+
+    /**
+     * Cancels all loops in this context, including those not yet begun.
+     */
+    public void cancel() {
+      _cancelled = true;
+    }
+
+    /**
+     * Determines whether this context has been cancelled.
+     * @return true, if cancelled; false, otherwise.
+     */
+    public boolean isCancelled() {
+      return _cancelled;
+    }
+
+    /**
+     * Enables or disables counting of tasks, steals, and busy time.
+     * Counting cannot be enabled for the default context.
+     * @param counting true, to enable counting; false, to disable.
+     */
+    public void setCounting(boolean counting) {
+      Check.state(this!=_default || !counting,
+        "counting is not enabled for the default context");
+      _counting = counting;
+    }
+
+    /**
+     * Determines whether counting of tasks, steals, and busy time is
+     * enabled for this context.
+     * @return true, if counting; false, otherwise.
+     */
+    public boolean isCounting() {
+      return _counting;
+    }
+
+    /**
+     * Gets the number of tasks performed in this context. Each task
+     * computes serially for a range of loop indices.
+     * @return the number of tasks.
+     */
+    public long getTaskCount() {
+      return _tasks.get();
+    }
+
+    /**
+     * Gets the number of tasks performed in this context by threads
+     * other than the threads that created them.
+     * @return the number of tasks stolen.
+     */
+    public long getStealCount() {
+      return _steals.get();
+    }
+
+    /**
+     * Gets the total time spent computing in tasks in this context.
+     * @return the total time, in seconds.
+     */
+    public double getBusyTime() {
+      return 1.0e-9*_busy.get();
+    }
+
+    /**
+     * Resets the counts of tasks and steals and the busy time to zero.
+     */
+    public void resetCounters() {
+      _tasks.set(0);
+      _steals.set(0);
+      _busy.set(0);
+    }
+
+    /**
+     * Runs the specified runnable in the scope of this context. Within
+     * that scope, the static methods loop and reduce of the class 
+     * {@link Parallel} perform loops in this context.
+     * @param r the runnable.
+     */
+    public void run(Runnable r) {
+      Context context = _context.get();
+      _context.set((this!=_default)?this:null);
+      try {
+        r.run();
+      } finally {
+        _context.set(context);
+      }
+    }
+
+    /**
+     * Shuts down this context, releasing any threads in its own pool.
+     * Loops must not be performed in a context that has been shut down.
+     * For a context that uses the shared pool, this method does nothing.
+     */
+    public void shutdown() {
+      if (_owner)
+        _fjp.shutdown();
+    }
+
+    /**
+     * Performs a loop <code>for (int i=0; i&lt;end; ++i)</code>.
+     * @param end the end index (not included) for the loop.
+     * @param body the loop body.
+     */
+    public void loop(int end, LoopInt body) {
+      loop(0,end,1,1,body);
+    }
+
+    /**
+     * Performs a loop <code>for (int i=begin; i&lt;end; ++i)</code>.
+     * @param begin the begin index for the loop; must be less than end.
+     * @param end the end index (not included) for the loop.
+     * @param body the loop body.
+     */
+    public void loop(int begin, int end, LoopInt body) {
+      loop(begin,end,1,1,body);
+    }
+
+    /**
+     * Performs a loop <code>for (int i=begin; i&lt;end; i+=step)</code>.
+     * @param begin the begin index for the loop; must be less than end.
+     * @param end the end index (not included) for the loop.
+     * @param step the index increment; must be positive.
+     * @param body the loop body.
+     */
+    public void loop(int begin, int end, int step, LoopInt body) {
+      loop(begin,end,step,1,body);
+    }
+
+    /**
+     * Performs a loop <code>for (int i=begin; i&lt;end; i+=step)</code>.
+     * @param begin the begin index for the loop; must be less than end.
+     * @param end the end index (not included) for the loop.
+     * @param step the index increment; must be positive.
+     * @param chunk the chunk size; must be positive.
+     * @param body the loop body.
+     */
+    public void loop(
+      int begin, int end, int step, int chunk, LoopInt body) 
+    {
+      loop(begin,end,step,chunk,body,getContext()==this);
+    }
+
+    /**
+     * Performs a reduce <code>for (int i=0; i&lt;end; ++i)</code>.
+     * @param end the end index (not included) for the loop.
+     * @param body the loop body.
+     * @return the computed value.
+     */
+    public <V> V reduce(int end, ReduceInt<V> body) {
+      return reduce(0,end,1,1,body);
+    }
+
+    /**
+     * Performs a reduce <code>for (int i=begin; i&lt;end; ++i)</code>.
+     * @param begin the begin index for the loop; must be less than end.
+     * @param end the end index (not included) for the loop.
+     * @param body the loop body.
+     * @return the computed value.
+     */
+    public <V> V reduce(int begin, int end, ReduceInt<V> body) {
+      return reduce(begin,end,1,1,body);
+    }
+
+    /**
+     * Performs a reduce <code>for (int i=begin; i&lt;end; i+=step)</code>.
+     * @param begin the begin index for the loop; must be less than end.
+     * @param end the end index (not included) for the loop.
+     * @param step the index increment; must be positive.
+     * @param body the loop body.
+     * @return the computed value.
+     */
+    public <V> V reduce(int begin, int end, int step, ReduceInt<V> body) {
+      return reduce(begin,end,step,1,body);
+    }
+
+    /**
+     * Performs a reduce <code>for (int i=begin; i&lt;end; i+=step)</code>.
+     * @param begin the begin index for the loop; must be less than end.
+     * @param end the end index (not included) for the loop.
+     * @param step the index increment; must be positive.
+     * @param chunk the chunk size; must be positive.
+     * @param body the loop body.
+     * @return the computed value.
+     */
+    public <V> V reduce(
+      int begin, int end, int step, int chunk, ReduceInt<V> body) 
+    {
+      return reduce(begin,end,step,chunk,body,getContext()==this);
+    }
+
+    private ForkJoinPool _fjp; // pool of threads for this context
+    private boolean _owner; // true, if this context owns its pool
+    private volatile int _grain = 1; // minimum chunk size
+    private volatile boolean _cancelled; // true, if cancelled
+    private volatile boolean _counting; // true, if counting tasks
+    private AtomicLong _tasks = new AtomicLong(); // number of tasks
+    private AtomicLong _steals = new AtomicLong(); // number of steals
+    private AtomicLong _busy = new AtomicLong(); // busy time, nanoseconds
+
+    private Context(ForkJoinPool fjp) {
+      _fjp = fjp;
+    }
+
+    // Performs a loop. If the loop is not split into tasks, and if this
+    // context is the current context, then the loop is performed without
+    // constructing a task.
+    private void loop(
+      int begin, int end, int step, int chunk, LoopInt body, boolean current)
+    {
+      checkArgs(begin,end,step,chunk);
+      chunk = Math.max(chunk,_grain);
+      if (_serial || end<=begin+chunk*step) {
+        if (current && !_counting) {
+          checkCancelled();
+          for (int i=begin; i<end; i+=step)
+            body.compute(i);
+          checkCancelled();
+        } else {
+          new LoopIntAction(this,begin,end,step,chunk,body).computeSerial();
+        }
+      } else {
+        LoopIntAction task =
+          new LoopIntAction(this,begin,end,step,chunk,body);
+        if (ForkJoinTask.getPool()==_fjp) {
+          task.invoke();
+        } else {
+          _fjp.invoke(task);
+        }
+      }
+    }
+
+    // Performs a reduce, like the loop method above.
+    private <V> V reduce(
+      int begin, int end, int step, int chunk, ReduceInt<V> body,
+      boolean current)
+    {
+      checkArgs(begin,end,step,chunk);
+      chunk = Math.max(chunk,_grain);
+      if (_serial || end<=begin+chunk*step) {
+        if (current && !_counting) {
+          checkCancelled();
+          V v = body.compute(begin);
+          for (int i=begin+step; i<end; i+=step) {
+            V vi = body.compute(i);
+            v = body.combine(v,vi);
+          }
+          checkCancelled();
+          return v;
+        } else {
+          return new ReduceIntTask<V>(
+            this,begin,end,step,chunk,body).computeSerial();
+        }
+      } else {
+        ReduceIntTask<V> task =
+          new ReduceIntTask<V>(this,begin,end,step,chunk,body);
+        if (ForkJoinTask.getPool()==_fjp) {
+          return task.invoke();
+        } else {
+          return _fjp.invoke(task);
+        }
+      }
+    }
+
+    private void checkCancelled() {
+      if (_cancelled)
+        throw new CancellationException();
+    }
+
+    private static ForkJoinPool newPool(int nthread) {
+      Check.argument(nthread>0,"nthread>0");
+      return new ForkJoinPool(nthread);
+    }
+
+    // Called at the beginning of each task. Throws an exception if 
+    // this context has been cancelled, and otherwise makes this the 
+    // context for the current thread. Returns the previous context.
+    // The default context is represented by null, so that tasks in that
+    // context usually need not set the context for the current thread.
+    private Context begin(Thread forker) {
+      checkCancelled();
+      if (_counting) {
+        _tasks.incrementAndGet();
+        if (forker!=null && forker!=Thread.currentThread())
+          _steals.incrementAndGet();
+      }
+      Context context = _context.get();
+      Context current = (this!=_default)?this:null;
+      if (context!=current)
+        _context.set(current);
+      return context;
+    }
+
+    // Called at the end of each task, with the context returned by begin
+    // and the time when that task began, if counting.
+    private void end(Context context, long start) {
+      if (_counting)
+        _busy.addAndGet(System.nanoTime()-start);
+      Context current = (this!=_default)?this:null;
+      if (context!=current)
+        _context.set(context);
+    }
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // private
 
@@ -407,6 +794,12 @@ public class Parallel {
   // Serial flag; true for no parallel processing.
   private static boolean _serial = false;
 
+  // The default context, which uses the shared pool.
+  private static Context _default = new Context(_pool);
+
+  // The context for loops performed in the current thread, if not default.
+  private static ThreadLocal<Context> _context = new ThreadLocal<Context>();
+
   /**
    * Checks loop arguments.
    */
@@ -428,8 +821,11 @@ public class Parallel {
    * Fork-join task for parallel loop.
    */
   private static class LoopIntAction extends RecursiveAction {
-    LoopIntAction(int begin, int end, int step, int chunk, LoopInt body) {
+    LoopIntAction(
+      Context context, int begin, int end, int step, int chunk, LoopInt body)
+    {
       assert begin<end:"begin < end";
+      _context = context;
       _begin = begin;
       _end = end;
       _step = step;
@@ -438,23 +834,37 @@ public class Parallel {
     }
     protected void compute() {
       if (_end<=_begin+_chunk*_step || getSurplusQueuedTaskCount()>NSQT) {
-        for (int i=_begin; i<_end; i+=_step) {
-          _body.compute(i);
-        }
+        computeSerial();
       } else {
         int middle = middle(_begin,_end,_step);
         LoopIntAction l =
-          new LoopIntAction(_begin,middle,_step,_chunk,_body);
+          new LoopIntAction(_context,_begin,middle,_step,_chunk,_body);
         LoopIntAction r = (middle<_end) ?
-          new LoopIntAction(middle,_end,_step,_chunk,_body) :
+          new LoopIntAction(_context,middle,_end,_step,_chunk,_body) :
           null;
-        if (r!=null) 
+        if (r!=null) {
+          if (_context._counting)
+            r._forker = Thread.currentThread();
           r.fork();
+        }
         l.compute();
         if (r!=null) 
           r.join();
       }
     }
+    void computeSerial() {
+      long start = (_context._counting)?System.nanoTime():0L;
+      Context context = _context.begin(_forker);
+      try {
+        for (int i=_begin; i<_end; i+=_step)
+          _body.compute(i);
+      } finally {
+        _context.end(context,start);
+      }
+      _context.checkCancelled();
+    }
+    private Context _context;
+    private Thread _forker;
     private int _begin,_end,_step,_chunk;
     private LoopInt _body;
   }
@@ -463,8 +873,12 @@ public class Parallel {
    * Fork-join task for parallel reduce.
    */
   private static class ReduceIntTask<V> extends RecursiveTask<V> {
-    ReduceIntTask(int begin, int end, int step, int chunk, ReduceInt<V> body) {
+    ReduceIntTask(
+      Context context, 
+      int begin, int end, int step, int chunk, ReduceInt<V> body) 
+    {
       assert begin<end:"begin < end";
+      _context = context;
       _begin = begin;
       _end = end;
       _step = step;
@@ -473,27 +887,43 @@ public class Parallel {
     }
     protected V compute() {
       if (_end<=_begin+_chunk*_step || getSurplusQueuedTaskCount()>NSQT) {
-        V v = _body.compute(_begin);
-        for (int i=_begin+_step; i<_end; i+=_step) {
-          V vi = _body.compute(i);
-          v = _body.combine(v,vi);
-        }
-        return v;
+        return computeSerial();
       } else {
         int middle = middle(_begin,_end,_step);
         ReduceIntTask<V> l = 
-          new ReduceIntTask<V>(_begin,middle,_step,_chunk,_body);
+          new ReduceIntTask<V>(_context,_begin,middle,_step,_chunk,_body);
         ReduceIntTask<V> r = (middle<_end) ?
-          new ReduceIntTask<V>(middle,  _end,_step,_chunk,_body) :
+          new ReduceIntTask<V>(_context,middle,  _end,_step,_chunk,_body) :
           null;
-        if (r!=null) 
+        if (r!=null) {
+          if (_context._counting)
+            r._forker = Thread.currentThread();
           r.fork();
+        }
         V v = l.compute();
         if (r!=null)
           v = _body.combine(v,r.join());
         return v;
       }
     }
+    V computeSerial() {
+      long start = (_context._counting)?System.nanoTime():0L;
+      Context context = _context.begin(_forker);
+      V v;
+      try {
+        v = _body.compute(_begin);
+        for (int i=_begin+_step; i<_end; i+=_step) {
+          V vi = _body.compute(i);
+          v = _body.combine(v,vi);
+        }
+      } finally {
+        _context.end(context,start);
+      }
+      _context.checkCancelled();
+      return v;
+    }
+    private Context _context;
+    private Thread _forker;
     private int _begin,_end,_step,_chunk;
     private ReduceInt<V> _body;
   }
@@ -0,0 +1,385 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * A mergeable sketch of the distribution of many values. Like a
+ * {@link edu.mines.jtk.util.Quantiler}, a sketch processes values
+ * sequentially in one pass; but a sketch answers queries for any number
+ * of quantiles, and sketches of different parts of a dataset may be merged
+ * to obtain a sketch of the whole. Values may therefore be processed in
+ * blocks, as they are read from a file, and in parallel.
+ * <p>
+ * For example, partial sketches may be computed in parallel for slices
+ * of a 3-D array and then merged with
+ * <pre><code>
+ * QuantileSketch qs = Parallel.reduce(n3,new Parallel.ReduceInt&lt;QuantileSketch&gt;() {
+ *   public QuantileSketch compute(int i3) {
+ *     QuantileSketch qs = new QuantileSketch();
+ *     qs.update(f[i3]);
+ *     return qs;
+ *   }
+ *   public QuantileSketch combine(QuantileSketch qs1, QuantileSketch qs2) {
+ *     return qs1.merge(qs2);
+ *   }
+ * });
+ * float[] c = qs.quantiles(new double[]{0.01,0.5,0.99});
+ * </code></pre>
+ * Likewise, values read in blocks with
+ * {@link edu.mines.jtk.io.ArrayInputStream#readFloats(float[],int,int)}
+ * may be passed to the method {@link #update(float[],int,int)}.
+ * <p>
+ * The sketch stores values in a hierarchy of compactors (Karnin, Z., Lang,
+ * K., and Liberty, E., 2016, Optimal quantile approximation in streams:
+ * IEEE FOCS). Each value in a compactor at level h represents 2^h of the
+ * values processed. When the sketch becomes full, the values in its lowest
+ * full compactor are sorted, and either the odd or even values are promoted
+ * to the next level. The memory required grows only logarithmically with
+ * the number of values, and the error in the rank of a quantile is
+ * proportional to the number of values divided by the size k of the
+ * sketch. For the default size, this error is typically less than 0.5%.
+ * <p>
+ * The numbers of values, their minimum and maximum, and their mean and
+ * rms are computed exactly. Values that are NaN are ignored.
+ * <p>
+ * Compactions use a pseudo-random number generator with a fixed seed, so
+ * that quantiles computed for the same sequence of updates and merges are
+ * always the same.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class QuantileSketch {
+
+  /**
+   * Constructs a sketch with a default size.
+   */
+  public QuantileSketch() {
+    this(DEFAULT_K);
+  }
+
+  /**
+   * Constructs a sketch with specified size. The memory required and the
+   * accuracy of quantiles are both proportional to this size.
+   * @param k the size; must not be less than 8.
+   */
+  public QuantileSketch(int k) {
+    Check.argument(k>=8,"k>=8");
+    _k = k;
+    _nlevel = 1;
+    _item = new float[1][];
+    _size = new int[1];
+    _item[0] = new float[_k];
+    _mmax = capacity(0);
+    _random = new Random(SEED);
+  }
+
+  /**
+   * Updates this sketch with the specified value.
+   * @param f the value.
+   */
+  public void update(float f) {
+    if (f!=f) // NaN
+      return;
+    if (_n==0) {
+      _fmin = _fmax = f;
+    } else {
+      if (f<_fmin) _fmin = f;
+      if (f>_fmax) _fmax = f;
+    }
+    ++_n;
+    _sum += f;
+    _sumsq += (double)f*f;
+    append(0,f);
+    if (_m>=_mmax)
+      compress();
+  }
+
+  /**
+   * Updates this sketch with specified values in an array.
+   * @param f array of values.
+   * @param j index of first value to use.
+   * @param n number of values to use.
+   */
+  public void update(float[] f, int j, int n) {
+    for (int i=j; i<j+n; ++i)
+      update(f[i]);
+  }
+
+  /**
+   * Updates this sketch with the specified array of values.
+   * @param f array of values.
+   */
+  public void update(float[] f) {
+    update(f,0,f.length);
+  }
+
+  /**
+   * Updates this sketch with the specified array of values.
+   * @param f array of values.
+   */
+  public void update(float[][] f) {
+    for (float[] fi:f)
+      update(fi);
+  }
+
+  /**
+   * Updates this sketch with the specified array of values.
+   * @param f array of values.
+   */
+  public void update(float[][][] f) {
+    for (float[][] fi:f)
+      update(fi);
+  }
+
+  /**
+   * Merges the specified sketch into this sketch. After merging, this
+   * sketch represents the values processed by both sketches. The specified
+   * sketch is not changed, unless it is this sketch, in which case this
+   * sketch afterwards represents every value processed twice.
+   * @param qs the sketch to merge.
+   * @return this sketch, for convenience when reducing partial sketches.
+   */
+  public QuantileSketch merge(QuantileSketch qs) {
+    if (qs._n==0)
+      return this;
+
+    // Values appended to this sketch must not be read again, as they
+    // would be if merging this sketch with itself.
+    int nlevel = qs._nlevel;
+    int[] size = qs._size;
+    float[][] items = qs._item;
+    if (qs==this) {
+      size = copy(nlevel,size);
+      items = new float[nlevel][];
+      for (int h=0; h<nlevel; ++h)
+        items[h] = copy(size[h],_item[h]);
+    }
+    if (_n==0) {
+      _fmin = qs._fmin;
+      _fmax = qs._fmax;
+    } else {
+      _fmin = min(_fmin,qs._fmin);
+      _fmax = max(_fmax,qs._fmax);
+    }
+    _n += qs._n;
+    _sum += qs._sum;
+    _sumsq += qs._sumsq;
+    while (_nlevel<nlevel)
+      addLevel();
+    for (int h=0; h<nlevel; ++h) {
+      float[] item = items[h];
+      for (int i=0; i<size[h]; ++i)
+        append(h,item[i]);
+    }
+    compress();
+    return this;
+  }
+
+  /**
+   * Gets the number of values processed, excluding any NaNs.
+   * @return the number of values.
+   */
+  public long getCount() {
+    return _n;
+  }
+
+  /**
+   * Gets the minimum value processed.
+   * @return the minimum value; NaN, if no values have been processed.
+   */
+  public float getMin() {
+    return (_n>0)?_fmin:Float.NaN;
+  }
+
+  /**
+   * Gets the maximum value processed.
+   * @return the maximum value; NaN, if no values have been processed.
+   */
+  public float getMax() {
+    return (_n>0)?_fmax:Float.NaN;
+  }
+
+  /**
+   * Gets the mean of values processed.
+   * @return the mean; NaN, if no values have been processed.
+   */
+  public float getMean() {
+    return (_n>0)?(float)(_sum/_n):Float.NaN;
+  }
+
+  /**
+   * Gets the rms (root-mean-square) of values processed.
+   * @return the rms; NaN, if no values have been processed.
+   */
+  public float getRms() {
+    return (_n>0)?(float)Math.sqrt(_sumsq/_n):Float.NaN;
+  }
+
+  /**
+   * Returns an estimate of the specified quantile.
+   * @param q the quantile fraction; 0 &lt;= q &lt;= 1 is required.
+   * @return the quantile estimate; NaN, if no values have been processed.
+   */
+  public float quantile(double q) {
+    return quantiles(new double[]{q})[0];
+  }
+
+  /**
+   * Returns estimates of the specified quantiles. For a quantile fraction
+   * q, the estimate is the value with (zero-based) rank q*(n-1), rounded
+   * to the nearest integer, for n values processed. Quantile fractions 0
+   * and 1 correspond exactly to the minimum and maximum values. Estimates
+   * are exact while the number of values processed is less than the size
+   * of this sketch.
+   * @param q array of quantile fractions; 0 &lt;= q &lt;= 1 is required.
+   * @return array of quantile estimates; NaNs if no values processed.
+   */
+  public float[] quantiles(double[] q) {
+    int nq = q.length;
+    for (int iq=0; iq<nq; ++iq) {
+      Check.argument(0.0<=q[iq],"0<=q");
+      Check.argument(q[iq]<=1.0,"q<=1");
+    }
+    float[] f = new float[nq];
+    if (_n==0) {
+      fill(Float.NaN,f);
+      return f;
+    }
+
+    // Sorted values and cumulative weights.
+    int m = 0;
+    for (int h=0; h<_nlevel; ++h)
+      m += _size[h];
+    float[] v = new float[m];
+    long[] w = new long[m];
+    for (int h=0,j=0; h<_nlevel; ++h) {
+      for (int i=0; i<_size[h]; ++i,++j) {
+        v[j] = _item[h][i];
+        w[j] = 1L<<h;
+      }
+    }
+    int[] k = rampint(0,1,m);
+    quickIndexSort(v,k);
+    float[] vs = new float[m];
+    long[] ws = new long[m];
+    for (int j=0; j<m; ++j) {
+      vs[j] = v[k[j]];
+      ws[j] = w[k[j]]+((j>0)?ws[j-1]:0L);
+    }
+
+    // For each quantile, the first value with cumulative weight > rank.
+    for (int iq=0; iq<nq; ++iq) {
+      long r = (long)rint(q[iq]*(_n-1));
+      if (r<=0) {
+        f[iq] = _fmin;
+      } else if (r>=_n-1) {
+        f[iq] = _fmax;
+      } else {
+        int jlo = 0, jhi = m-1;
+        while (jlo<jhi) {
+          int j = (jlo+jhi)>>>1;
+          if (ws[j]>r) {
+            jhi = j;
+          } else {
+            jlo = j+1;
+          }
+        }
+        f[iq] = vs[jlo];
+      }
+    }
+    return f;
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static final int DEFAULT_K = 1024;
+  private static final double C = 2.0/3.0; // ratio of capacities
+  private static final long SEED = 314159L;
+
+  private int _k; // size of the top compactor
+  private int _nlevel; // number of compactors
+  private float[][] _item; // values in compactors
+  private int[] _size; // numbers of values in compactors
+  private Random _random; // chooses odd or even values to promote
+  private int _m; // number of values in all compactors
+  private int _mmax; // sum of capacities of all compactors
+  private long _n; // number of values processed
+  private float _fmin,_fmax; // min and max values
+  private double _sum,_sumsq; // sums of values and of squared values
+
+  // Capacity of the compactor at level h; lower levels are smaller.
+  private int capacity(int h) {
+    int d = _nlevel-1-h;
+    return max(2,(int)Math.ceil(_k*Math.pow(C,d)));
+  }
+
+  private void addLevel() {
+    float[][] item = new float[_nlevel+1][];
+    int[] size = new int[_nlevel+1];
+    System.arraycopy(_item,0,item,0,_nlevel);
+    System.arraycopy(_size,0,size,0,_nlevel);
+    item[_nlevel] = new float[_k];
+    _item = item;
+    _size = size;
+    ++_nlevel;
+    _mmax = 0;
+    for (int h=0; h<_nlevel; ++h)
+      _mmax += capacity(h);
+  }
+
+  private void append(int h, float f) {
+    if (_size[h]==_item[h].length)
+      grow(h);
+    _item[h][_size[h]++] = f;
+    ++_m;
+  }
+
+  private void grow(int h) {
+    float[] item = new float[2*_item[h].length];
+    System.arraycopy(_item[h],0,item,0,_size[h]);
+    _item[h] = item;
+  }
+
+  // While the sketch is full, compacts the lowest full compactor. Lower
+  // compactors may hold more values than their capacities, so that values
+  // need not be sorted so often.
+  private void compress() {
+    while (_m>=_mmax) {
+      int h = 0;
+      while (_size[h]<capacity(h))
+        ++h;
+      if (h==_nlevel-1)
+        addLevel();
+      compact(h);
+    }
+  }
+
+  // Sorts values at level h and promotes every other value to level h+1.
+  // For an odd number of values, the largest value remains at level h.
+  private void compact(int h) {
+    float[] item = _item[h];
+    int n = _size[h];
+    Arrays.sort(item,0,n);
+    int m = n&~1;
+    for (int i=_random.nextInt(2); i<m; i+=2)
+      append(h+1,item[i]);
+    if (m<n) {
+      item[0] = item[n-1];
+      _size[h] = 1;
+    } else {
+      _size[h] = 0;
+    }
+    _m -= m;
+  }
+}
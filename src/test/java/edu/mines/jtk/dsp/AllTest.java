@@ -19,6 +19,8 @@ public class AllTest extends TestSuite {
   public static Test suite() {
     TestSuite suite = new TestSuite();
 
+    suite.addTestSuite(ConvStreamTest.class);
+    suite.addTestSuite(DynamicWarpingTest.class);
     suite.addTestSuite(EigenTest.class);
     suite.addTestSuite(EigenTensors2Test.class);
     suite.addTestSuite(EigenTensors3Test.class);
@@ -28,13 +30,16 @@ public class AllTest extends TestSuite {
     suite.addTestSuite(HilbertTransformFilterTest.class);
     suite.addTestSuite(HistogramTest.class);
     suite.addTestSuite(LocalCausalFilterTest.class);
+    suite.addTestSuite(LocalCorrelationFilterTest.class);
     suite.addTestSuite(LocalOrientFilterTest.class);
+    suite.addTestSuite(LocalSemblanceFilterTest.class);
     suite.addTestSuite(Real1Test.class);
     suite.addTestSuite(Recursive2ndOrderFilterTest.class);
     suite.addTestSuite(RecursiveExponentialFilterTest.class);
     suite.addTestSuite(RecursiveGaussianFilterTest.class);
     suite.addTestSuite(SamplingTest.class);
     suite.addTestSuite(SincInterpolatorTest.class);
+    suite.addTestSuite(SteerablePyramidTest.class);
     suite.addTestSuite(SymmetricTridiagonalFilterTest.class);
 
     return suite;
@@ -0,0 +1,91 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.dsp.ConvStream}.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class ConvStreamTest extends TestCase {
+  public static void main(String[] args) {
+    TestSuite suite = new TestSuite(ConvStreamTest.class);
+    junit.textui.TestRunner.run(suite);
+  }
+
+  public void testDirect() {
+    int[] lhs = {1,2,7,63};
+    for (int lh:lhs)
+      test(lh,false);
+  }
+
+  public void testFft() {
+    int[] lhs = {64,100,501};
+    for (int lh:lhs)
+      test(lh,true);
+  }
+
+  public void testReset() {
+    int lh = 80, kh = -3, nx = 1000;
+    float[] h = randfloat(lh);
+    float[] x = randfloat(nx);
+    ConvStream cs = new ConvStream(lh,kh,h);
+    float[] z1 = zerofloat(nx);
+    float[] z2 = zerofloat(nx);
+    cs.apply(x,z1);
+    assertEquals(nx,cs.getCount());
+    cs.reset();
+    assertEquals(0,cs.getCount());
+    cs.apply(x,z2);
+    assertEquals(z1,z2);
+  }
+
+  private Random _random = new Random();
+
+  // Streams random blocks of x, some processed in place, followed by 
+  // lh-1 zeros, and compares the output with one full convolution.
+  private void test(int lh, boolean fft) {
+    int kh = _random.nextInt(5)-2;
+    int nx = 10000;
+    int kx = _random.nextInt(5)-2;
+    float[] h = randfloat(lh);
+    float[] x = randfloat(nx);
+    ConvStream cs = new ConvStream(lh,kh,h);
+    assertEquals(fft,cs.isFft());
+    assertEquals(kh,cs.getFirstH());
+    int nz = nx+lh-1;
+    float[] zs = zerofloat(nz);
+    for (int j=0; j<nz;) {
+      int n = min(nz-j,1+_random.nextInt(3*lh+5000));
+      float[] xj = zerofloat(n);
+      for (int i=0; i<n && j+i<nx; ++i)
+        xj[i] = x[j+i];
+      float[] zj = _random.nextBoolean()?xj:zerofloat(n);
+      cs.apply(xj,zj);
+      copy(n,0,zj,j,zs);
+      j += n;
+    }
+    float[] ze = zerofloat(nz);
+    Conv.conv(lh,kh,h,nx,kx,x,nz,kx+kh,ze);
+    float tolerance = 100.0f*FLT_EPSILON*max(1.0f,max(abs(ze)));
+    for (int i=0; i<nz; ++i)
+      assertEquals(ze[i],zs[i],tolerance);
+  }
+
+  private static void assertEquals(float[] a, float[] b) {
+    int n = a.length;
+    for (int i=0; i<n; ++i)
+      assertEquals(a[i],b[i],0.0f);
+  }
+}
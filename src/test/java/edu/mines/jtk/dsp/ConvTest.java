@@ -149,6 +149,57 @@ public class ConvTest extends TestCase {
     }
   }
 
+  public void test1Fft() {
+    int lx = 1000, ly = 1500, lz = 2600;
+    int kx = -3, ky = 2, kz = -5;
+    float[] x = randfloat(lx);
+    float[] y = randfloat(ly);
+    float[] zs = zerofloat(lz);
+    float[] zf = zerofloat(lz);
+    convSimple(lx,kx,x,ly,ky,y,lz,kz,zs);
+    Conv.conv(lx,kx,x,ly,ky,y,lz,kz,zf);
+    assertNear(zs,zf);
+    xcorSimple(lx,kx,x,ly,ky,y,lz,kz,zs);
+    Conv.xcor(lx,kx,x,ly,ky,y,lz,kz,zf);
+    assertNear(zs,zf);
+  }
+
+  public void test2Fft() {
+    int lx1 = 40, lx2 = 50, ly1 = 45, ly2 = 35;
+    int kx1 = 1, kx2 = -2, ky1 = 0, ky2 = 3;
+    int lz1 = 90, lz2 = 80, kz1 = -2, kz2 = 0;
+    float[][] x = randfloat(lx1,lx2);
+    float[][] y = randfloat(ly1,ly2);
+    float[][] zs = zerofloat(lz1,lz2);
+    float[][] zf = zerofloat(lz1,lz2);
+    convSimple(lx1,lx2,kx1,kx2,x,ly1,ly2,ky1,ky2,y,lz1,lz2,kz1,kz2,zs);
+    Conv.conv(lx1,lx2,kx1,kx2,x,ly1,ly2,ky1,ky2,y,lz1,lz2,kz1,kz2,zf);
+    assertNear(zs,zf);
+    xcorSimple(lx1,lx2,kx1,kx2,x,ly1,ly2,ky1,ky2,y,lz1,lz2,kz1,kz2,zs);
+    Conv.xcor(lx1,lx2,kx1,kx2,x,ly1,ly2,ky1,ky2,y,lz1,lz2,kz1,kz2,zf);
+    assertNear(zs,zf);
+  }
+
+  public void test3Fft() {
+    int lx1 = 32, lx2 = 33, lx3 = 34;
+    int ly1 = 35, ly2 = 32, ly3 = 32;
+    int lz1 = 16, lz2 = 17, lz3 = 18;
+    int kx1 = 0, kx2 = 1, kx3 = -1;
+    int ky1 = 2, ky2 = 0, ky3 = 0;
+    int kz1 = 20, kz2 = 15, kz3 = 25;
+    float[][][] x = randfloat(lx1,lx2,lx3);
+    float[][][] y = randfloat(ly1,ly2,ly3);
+    float[][][] zs = zerofloat(lz1,lz2,lz3);
+    float[][][] zf = zerofloat(lz1,lz2,lz3);
+    convSimple(lx1,lx2,lx3,kx1,kx2,kx3,x,
+               ly1,ly2,ly3,ky1,ky2,ky3,y,
+               lz1,lz2,lz3,kz1,kz2,kz3,zs);
+    Conv.conv(lx1,lx2,lx3,kx1,kx2,kx3,x,
+              ly1,ly2,ly3,ky1,ky2,ky3,y,
+              lz1,lz2,lz3,kz1,kz2,kz3,zf);
+    assertNear(zs,zf);
+  }
+
   private Random _random = new Random();
 
   private static void convSimple(
@@ -324,4 +375,20 @@ public class ConvTest extends TestCase {
       assertEquals(a[i],b[i]);
     }
   }
+
+  // Compares results computed with FFTs, for which rounding errors are
+  // proportional to the largest value.
+  private static void assertNear(float[] a, float[] b) {
+    float tolerance = 100.0f*FLT_EPSILON*max(1.0f,max(abs(a)));
+    int n = a.length;
+    for (int i=0; i<n; ++i) {
+      assertEquals(a[i],b[i],tolerance);
+    }
+  }
+  private static void assertNear(float[][] a, float[][] b) {
+    assertNear(flatten(a),flatten(b));
+  }
+  private static void assertNear(float[][][] a, float[][][] b) {
+    assertNear(flatten(a),flatten(b));
+  }
 }
@@ -0,0 +1,114 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.dsp.DynamicWarping}.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class DynamicWarpingTest extends TestCase {
+  public static void main(String[] args) {
+    TestSuite suite = new TestSuite(DynamicWarpingTest.class);
+    junit.textui.TestRunner.run(suite);
+  }
+
+  public void testShift3() {
+    int n1 = 101, n2 = 13, n3 = 11;
+    int shift = 3;
+    float[][][] g = randfloat(n1,n2,n3);
+    float[][][] f = new float[n3][n2][n1];
+    for (int i3=0; i3<n3; ++i3)
+      for (int i2=0; i2<n2; ++i2)
+        for (int i1=0; i1<n1-shift; ++i1)
+          f[i3][i2][i1] = g[i3][i2][i1+shift];
+    DynamicWarping dw = makeWarping();
+    assertEquals(shift,dw.findShifts(f,g),0.01f);
+  }
+
+  public void testMemoryBudget() {
+    int n1 = 51, n2 = 13, n3 = 11;
+    float[][][] f = randfloat(n1,n2,n3);
+    float[][][] g = randfloat(n1,n2,n3);
+    DynamicWarping dw = makeWarping();
+    float[][][] u = dw.findShifts(f,g);
+
+    // Several windows in memory, processed in parallel.
+    dw.setMemoryBudget(Long.MAX_VALUE);
+    assertEquals(u,dw.findShifts(f,g));
+
+    // Errors for one window exceed the budget, and are stored in a file.
+    dw.setMemoryBudget(1);
+    assertEquals(u,dw.findShifts(f,g));
+
+    // Errors for one 6x5 window with 11 lags just exceed the budget, but
+    // slices of errors are smoothed in batches of two.
+    dw.setMemoryBudget(4L*11*n1*6*5-1);
+    assertEquals(u,dw.findShifts(f,g));
+  }
+
+  public void testErrorPrecision() {
+    int n1 = 101, n2 = 13, n3 = 11;
+    int shift = 3;
+    float[][][] g = randfloat(n1,n2,n3);
+    float[][][] f = new float[n3][n2][n1];
+    for (int i3=0; i3<n3; ++i3)
+      for (int i2=0; i2<n2; ++i2)
+        for (int i1=0; i1<n1-shift; ++i1)
+          f[i3][i2][i1] = g[i3][i2][i1+shift];
+
+    // With 16-bit errors, shifts are accurate, even with error smoothing.
+    DynamicWarping dw = makeWarping();
+    dw.setErrorPrecision(DynamicWarping.ErrorPrecision.SHORT);
+    assertEquals(shift,dw.findShifts(f[0],g[0]),0.01f);
+    assertEquals(shift,dw.findShifts(f,g),0.01f);
+
+    // With 8-bit errors, repeated smoothing of errors loses precision.
+    dw.setErrorPrecision(DynamicWarping.ErrorPrecision.BYTE);
+    dw.setErrorSmoothing(0);
+    assertEquals(shift,dw.findShifts(f[0],g[0]),0.01f);
+    assertEquals(shift,dw.findShifts(f,g),0.01f);
+  }
+
+  private static DynamicWarping makeWarping() {
+    DynamicWarping dw = new DynamicWarping(-5,5);
+    dw.setStrainMax(0.5,0.5,0.5);
+    dw.setErrorSmoothing(2);
+    dw.setShiftSmoothing(1.0);
+    dw.setWindowSizeAndOverlap(6,5,0.5,0.5);
+    return dw;
+  }
+
+  private static void assertEquals(float e, float[][] a, float t) {
+    int n2 = a.length;
+    int n1 = a[0].length;
+    for (int i2=0; i2<n2; ++i2)
+      for (int i1=10; i1<n1-10; ++i1)
+        assertEquals(e,a[i2][i1],t);
+  }
+
+  private static void assertEquals(float e, float[][][] a, float t) {
+    int n3 = a.length;
+    for (int i3=0; i3<n3; ++i3)
+      assertEquals(e,a[i3],t);
+  }
+
+  private static void assertEquals(float[][][] e, float[][][] a) {
+    int n3 = e.length;
+    int n2 = e[0].length;
+    int n1 = e[0][0].length;
+    for (int i3=0; i3<n3; ++i3)
+      for (int i2=0; i2<n2; ++i2)
+        for (int i1=0; i1<n1; ++i1)
+          assertEquals(e[i3][i2][i1],a[i3][i2][i1],0.0f);
+  }
+}
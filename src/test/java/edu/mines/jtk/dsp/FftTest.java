@@ -95,6 +95,22 @@ public class FftTest extends TestCase {
     }
   }
 
+  public void testParallel() {
+    int[] ns = {1,5,36,37};
+    for (boolean complex:_complex) {
+      for (boolean center:_center) {
+        for (double f:_first) {
+          for (int n1:ns) {
+            for (int n2:ns) {
+              testParallel2(complex,center,f,n1,n2);
+              testParallel3(complex,center,f,n1,n2,7);
+            }
+          }
+        }
+      }
+    }
+  }
+
   public void xxtest3() { // too long for routine testing
     for (boolean complex:_complex) {
       for (boolean overwrite:_overwrite) {
@@ -214,6 +230,49 @@ public class FftTest extends TestCase {
       assertRealEqual(n1,n2,n3,f,h);
   }
 
+  private void testParallel2(
+    boolean complex, boolean center, double f, int n1, int n2)
+  {
+    Sampling s1 = new Sampling(n1,1.0,f);
+    Sampling s2 = new Sampling(n2,1.0,f);
+    Fft fft = new Fft(s1,s2);
+    fft.setComplex(complex);
+    fft.setCenter(center);
+    float[][] x = (complex)?crandfloat(n1,n2):randfloat(n1,n2);
+    float[][] gs = fft.applyForward(x);
+    float[][] hs = fft.applyInverse(gs);
+    fft.setParallel(true);
+    float[][] gp = fft.applyForward(x);
+    float[][] hp = fft.applyInverse(gp);
+    assertEquals(gs,gp);
+    assertEquals(hs,hp);
+  }
+  private void testParallel3(
+    boolean complex, boolean center, double f, int n1, int n2, int n3)
+  {
+    Sampling s1 = new Sampling(n1,1.0,f);
+    Sampling s2 = new Sampling(n2,1.0,f);
+    Sampling s3 = new Sampling(n3,1.0,f);
+    Fft fft = new Fft(s1,s2,s3);
+    fft.setComplex(complex);
+    fft.setCenter(center);
+    float[][][] x = (complex)?crandfloat(n1,n2,n3):randfloat(n1,n2,n3);
+    float[][][] gs = fft.applyForward(x);
+    float[][][] hs = fft.applyInverse(gs);
+    fft.setParallel(true);
+    float[][][] gp = fft.applyForward(x);
+    float[][][] hp = fft.applyInverse(gp);
+    assertEquals(gs,gp);
+    assertEquals(hs,hp);
+  }
+
+  private static void assertEquals(float[][] e, float[][] a) {
+    assertTrue(equal(e,a));
+  }
+  private static void assertEquals(float[][][] e, float[][][] a) {
+    assertTrue(equal(e,a));
+  }
+
   private static void assertRealEqual(int n1, float[] re, float[] ra) {
     float tolerance = (float)(n1)*FLT_EPSILON;
     for (int i1=0; i1<n1; ++i1)
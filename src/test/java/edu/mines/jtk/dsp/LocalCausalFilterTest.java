@@ -9,6 +9,8 @@ package edu.mines.jtk.dsp;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import edu.mines.jtk.util.Parallel;
+
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -233,6 +235,105 @@ public class LocalCausalFilterTest extends TestCase {
     }
   }
 
+  public void testParallel2() {
+    int[] lag1 = {
+       0, 1, 2, 3, 4,
+      -4,-3,-2,-1, 0
+    };
+    int[] lag2 = {
+       0, 0, 0, 0, 0,
+       1, 1, 1, 1, 1
+    };
+    float[] aa = {
+       1.79548454f, -0.64490664f, -0.03850411f, -0.01793403f, -0.00708972f,
+      -0.02290331f, -0.04141619f, -0.08457147f, -0.20031442f, -0.55659920f
+    };
+    final float[] ar = mul(1.0f,aa);
+    final float[] as = mul(2.0f,aa);
+    final LocalCausalFilter lcf = new LocalCausalFilter(lag1,lag2);
+    final LocalCausalFilter.A2 a2 = new LocalCausalFilter.A2() {
+      public void get(int i1, int i2, float[] a) {
+        copy(((i1+i2)%2==0)?ar:as,a);
+      }
+    };
+    int n1 = 101;
+    int n2 = 103;
+    final float[][] x = rands(n1,n2);
+    float[][] ys = zeros(n1,n2);
+    float[][] zs = zeros(n1,n2);
+    lcf.applyInverse(a2,x,ys);
+    lcf.applyInverseTranspose(a2,x,zs);
+    final float[][] yp = copy(x);
+    final float[][] zp = zeros(n1,n2);
+    lcf.setParallel(true);
+    Parallel.Context context = new Parallel.Context(4);
+    context.run(new Runnable() {
+      public void run() {
+        lcf.applyInverse(a2,yp,yp); // in-place
+        lcf.applyInverseTranspose(a2,x,zp);
+      }
+    });
+    context.shutdown();
+    assertIdentical(ys,yp);
+    assertIdentical(zs,zp);
+  }
+
+  public void testParallel3() {
+    int[] lag1 = {
+                   0, 1, 2,
+            -2,-1, 0, 1, 2,
+            -2,-1, 0, 1, 2,
+            -2,-1, 0,
+    };
+    int[] lag2 = {
+                   0, 0, 0,
+             1, 1, 1, 1, 1,
+            -1,-1,-1,-1,-1,
+             0, 0, 0,
+    };
+    int[] lag3 = {
+                   0, 0, 0,
+             0, 0, 0, 0, 0,
+             1, 1, 1, 1, 1,
+             1, 1, 1,
+    };
+    float[] aa = {
+                                 2.3110454f, -0.4805547f, -0.0143204f,
+      -0.0291793f, -0.1057476f, -0.4572746f, -0.0115732f, -0.0047283f,
+      -0.0149963f, -0.0408317f, -0.0945958f, -0.0223166f, -0.0062781f,
+      -0.0213786f, -0.0898909f, -0.4322719f
+    };
+    final float[] ar = mul(1.0f,aa);
+    final float[] as = mul(2.0f,aa);
+    final LocalCausalFilter lcf = new LocalCausalFilter(lag1,lag2,lag3);
+    final LocalCausalFilter.A3 a3 = new LocalCausalFilter.A3() {
+      public void get(int i1, int i2, int i3, float[] a) {
+        copy(((i1+i2+i3)%2==0)?ar:as,a);
+      }
+    };
+    int n1 = 11;
+    int n2 = 23;
+    int n3 = 22;
+    final float[][][] x = rands(n1,n2,n3);
+    float[][][] ys = zeros(n1,n2,n3);
+    float[][][] zs = zeros(n1,n2,n3);
+    lcf.applyInverse(a3,x,ys);
+    lcf.applyInverseTranspose(a3,x,zs);
+    final float[][][] yp = copy(x);
+    final float[][][] zp = zeros(n1,n2,n3);
+    lcf.setParallel(true);
+    Parallel.Context context = new Parallel.Context(4);
+    context.run(new Runnable() {
+      public void run() {
+        lcf.applyInverse(a3,yp,yp); // in-place
+        lcf.applyInverseTranspose(a3,x,zp);
+      }
+    });
+    context.shutdown();
+    assertIdentical(flatten(ys),flatten(yp));
+    assertIdentical(flatten(zs),flatten(zp));
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // private
 
@@ -293,6 +394,16 @@ public class LocalCausalFilterTest extends TestCase {
           assertEquals(re[i3][i2][i1],ra[i3][i2][i1],tolerance);
   }
 
+  private static void assertIdentical(float[] re, float[] ra) {
+    int n = re.length;
+    for (int i=0; i<n; ++i)
+      assertEquals(re[i],ra[i],0.0f);
+  }
+
+  private static void assertIdentical(float[][] re, float[][] ra) {
+    assertIdentical(flatten(re),flatten(ra));
+  }
+
   /*
   public void test1TwoPoles() {
     final int n = 1001;
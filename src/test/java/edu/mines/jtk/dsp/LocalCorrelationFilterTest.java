@@ -0,0 +1,122 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.dsp.LocalCorrelationFilter}.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class LocalCorrelationFilterTest extends TestCase {
+  public static void main(String[] args) {
+    TestSuite suite = new TestSuite(LocalCorrelationFilterTest.class);
+    junit.textui.TestRunner.run(suite);
+  }
+
+  public void testLags1() {
+    int n1 = 101;
+    int min = -5, max = 4;
+    float[] f = randfloat(n1);
+    float[] g = randfloat(n1);
+    for (LocalCorrelationFilter lcf:makeFilters()) {
+      lcf.setInputs(f,g);
+      float[][] c = new float[1+max-min][n1];
+      lcf.correlateLags(min,max,c);
+      lcf.normalizeLags(min,max,c);
+      float[] cl = new float[n1];
+      for (int lag=min; lag<=max; ++lag) {
+        lcf.correlate(lag,cl);
+        lcf.normalize(lag,cl);
+        assertEquals(cl,c[lag-min]);
+      }
+    }
+  }
+
+  public void testLags2() {
+    int n1 = 41, n2 = 37;
+    int min = -3, max = 4;
+    float[][] f = randfloat(n1,n2);
+    float[][] g = randfloat(n1,n2);
+    for (LocalCorrelationFilter lcf:makeFilters()) {
+      lcf.setInputs(f,g);
+      for (int dim=1; dim<=2; ++dim) {
+        float[][][] c = new float[1+max-min][n2][n1];
+        lcf.correlateLags(dim,min,max,c);
+        lcf.normalizeLags(dim,min,max,c);
+        float[][] cl = new float[n2][n1];
+        for (int lag=min; lag<=max; ++lag) {
+          int lag1 = (dim==1)?lag:0;
+          int lag2 = (dim==2)?lag:0;
+          lcf.correlate(lag1,lag2,cl);
+          lcf.normalize(lag1,lag2,cl);
+          assertEquals(cl,c[lag-min]);
+        }
+      }
+    }
+  }
+
+  public void testLags3() {
+    int n1 = 21, n2 = 19, n3 = 17;
+    int min = -2, max = 3;
+    float[][][] f = randfloat(n1,n2,n3);
+    float[][][] g = randfloat(n1,n2,n3);
+    for (LocalCorrelationFilter lcf:makeFilters()) {
+      lcf.setInputs(f,g);
+      for (int dim=1; dim<=3; ++dim) {
+        float[][][][] c = new float[1+max-min][n3][n2][n1];
+        lcf.correlateLags(dim,min,max,c);
+        lcf.normalizeLags(dim,min,max,c);
+        float[][][] cl = new float[n3][n2][n1];
+        for (int lag=min; lag<=max; ++lag) {
+          int lag1 = (dim==1)?lag:0;
+          int lag2 = (dim==2)?lag:0;
+          int lag3 = (dim==3)?lag:0;
+          lcf.correlate(lag1,lag2,lag3,cl);
+          lcf.normalize(lag1,lag2,lag3,cl);
+          assertEquals(cl,c[lag-min]);
+        }
+      }
+    }
+  }
+
+  private static LocalCorrelationFilter[] makeFilters() {
+    return new LocalCorrelationFilter[]{
+      new LocalCorrelationFilter(
+        LocalCorrelationFilter.Type.SIMPLE,
+        LocalCorrelationFilter.Window.GAUSSIAN,4.0),
+      new LocalCorrelationFilter(
+        LocalCorrelationFilter.Type.SYMMETRIC,
+        LocalCorrelationFilter.Window.GAUSSIAN,4.0),
+      new LocalCorrelationFilter(
+        LocalCorrelationFilter.Type.SYMMETRIC,
+        LocalCorrelationFilter.Window.RECTANGLE,4.0),
+    };
+  }
+
+  private static void assertEquals(float[] e, float[] a) {
+    int n1 = e.length;
+    for (int i1=0; i1<n1; ++i1)
+      assertEquals(e[i1],a[i1],0.0f);
+  }
+
+  private static void assertEquals(float[][] e, float[][] a) {
+    int n2 = e.length;
+    for (int i2=0; i2<n2; ++i2)
+      assertEquals(e[i2],a[i2]);
+  }
+
+  private static void assertEquals(float[][][] e, float[][][] a) {
+    int n3 = e.length;
+    for (int i3=0; i3<n3; ++i3)
+      assertEquals(e[i3],a[i3]);
+  }
+}
@@ -163,6 +163,37 @@ public class LocalOrientFilterTest extends TestCase {
     }
   }
 
+  public void test3Slabs() {
+    int n1 = 31, n2 = 22, n3 = 93;
+    float[][][] x = randfloat(n1,n2,n3);
+    LocalOrientFilter lof = new LocalOrientFilter(4.0,2.0,2.0);
+    EigenTensors3 et = lof.applyForTensors(x,false);
+
+    // Tensors for one slab that spans the image are the same. Otherwise,
+    // slab halos reduce truncation of the recursive filters to the level
+    // of rounding errors. But tensors are computed from eigenvectors and
+    // eigenvalues stored as floats, which amplifies those errors. Rounding
+    // errors of one ulp in the image x change some tensors by up to about
+    // 0.02 percent of their traces.
+    int[] m3s = {10,n3};
+    for (int m3:m3s) {
+      EigenTensors3 es = lof.applyForTensors(x,false,m3);
+      float[] a = new float[6];
+      float[] b = new float[6];
+      for (int i3=0; i3<n3; ++i3) {
+        for (int i2=0; i2<n2; ++i2) {
+          for (int i1=0; i1<n1; ++i1) {
+            et.getTensor(i1,i2,i3,a);
+            es.getTensor(i1,i2,i3,b);
+            float tol = (m3<n3)?0.0005f*(a[0]+a[3]+a[5]):0.0f;
+            for (int i=0; i<6; ++i)
+              assertEquals(a[i],b[i],tol);
+          }
+        }
+      }
+    }
+  }
+
   private static void assertEqual(double e, float[][] a, double tol) {
     int n1 = a[0].length;
     int n2 = a.length;
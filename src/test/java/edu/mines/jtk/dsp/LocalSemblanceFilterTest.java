@@ -0,0 +1,39 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.dsp.LocalSemblanceFilter}.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class LocalSemblanceFilterTest extends TestCase {
+  public static void main(String[] args) {
+    TestSuite suite = new TestSuite(LocalSemblanceFilterTest.class);
+    junit.textui.TestRunner.run(suite);
+  }
+
+  public void testSlabs() {
+    int n1 = 21, n2 = 19, n3 = 25;
+    float[][][] f = randfloat(new Random(314159),n1,n2,n3);
+    new RecursiveGaussianFilter(1.0).apply000(f,f);
+    EigenTensors3 t = new LocalOrientFilter(2.0).applyForTensors(f);
+    LocalSemblanceFilter lsf = new LocalSemblanceFilter(2,2);
+    LocalSemblanceFilter.Direction3 d = LocalSemblanceFilter.Direction3.W;
+    float[][][] s = lsf.semblance(d,t,f);
+    lsf.setSlabs(6,8);
+    float[][][] ss = lsf.semblance(d,t,f);
+    assertEquals(0.0f,max(abs(sub(s,ss))),0.01f);
+  }
+}
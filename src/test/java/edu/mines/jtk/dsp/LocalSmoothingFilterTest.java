@@ -51,6 +51,50 @@ public class LocalSmoothingFilterTest extends TestCase {
     }
   }
 
+  public void testPreconditioners2() {
+    int n1 = 41;
+    int n2 = 37;
+    float[][] s = randfloat(n1,n2);
+    float[][] x = sub(randfloat(n1,n2),0.5f);
+    Tensors2 d = new RandomTensors2(n1,n2);
+    float c = 20.0f;
+    LocalSmoothingFilter lsf = new LocalSmoothingFilter(1.0e-6,1000);
+    float[][] ye = zerofloat(n1,n2);
+    lsf.apply(d,c,s,x,ye);
+    float enorm = sqrt(dot(ye,ye));
+    for (LocalSmoothingFilter.Preconditioner pc:
+         LocalSmoothingFilter.Preconditioner.values()) {
+      lsf.setPreconditioner(pc);
+      float[][] y = zerofloat(n1,n2);
+      lsf.apply(d,c,s,x,y);
+      float[][] e = sub(y,ye);
+      assertTrue(lsf.getIterationCount()>0);
+      assertEquals(0.0f,sqrt(dot(e,e))/enorm,0.0001f);
+    }
+  }
+
+  public void testPreconditioners3() {
+    int n1 = 21;
+    int n2 = 19;
+    int n3 = 17;
+    float[][][] s = randfloat(n1,n2,n3);
+    float[][][] x = sub(randfloat(n1,n2,n3),0.5f);
+    float c = 20.0f;
+    LocalSmoothingFilter lsf = new LocalSmoothingFilter(1.0e-6,1000);
+    float[][][] ye = zerofloat(n1,n2,n3);
+    lsf.apply(c,s,x,ye);
+    float enorm = sqrt(dot(ye,ye));
+    for (LocalSmoothingFilter.Preconditioner pc:
+         LocalSmoothingFilter.Preconditioner.values()) {
+      lsf.setPreconditioner(pc);
+      float[][][] y = zerofloat(n1,n2,n3);
+      lsf.apply(c,s,x,y);
+      float[][][] e = sub(y,ye);
+      assertTrue(lsf.getIterationCount()>0);
+      assertEquals(0.0f,sqrt(dot(e,e))/enorm,0.0001f);
+    }
+  }
+
   private static float dot(float[][] x, float[][] y) {
     return sum(mul(x,y));
   }
@@ -9,6 +9,8 @@ package edu.mines.jtk.dsp;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import edu.mines.jtk.util.Parallel;
+
 import static edu.mines.jtk.util.ArrayMath.*;
 
 /**
@@ -160,6 +162,91 @@ public class MinimumPhaseFilterTest extends TestCase {
     assertEquals(d1,d2,tiny);
   }
 
+  public void testParallel2() {
+    int[] lag1 = {
+       0, 1, 2, 3, 4,
+      -4,-3,-2,-1, 0
+    };
+    int[] lag2 = {
+       0, 0, 0, 0, 0,
+       1, 1, 1, 1, 1
+    };
+    float[] a = {
+       1.79548454f, -0.64490664f, -0.03850411f, -0.01793403f, -0.00708972f,
+      -0.02290331f, -0.04141619f, -0.08457147f, -0.20031442f, -0.55659920f
+    };
+    final MinimumPhaseFilter mpf = new MinimumPhaseFilter(lag1,lag2,a);
+    int n1 = 101;
+    int n2 = 103;
+    final float[][] x = rands(n1,n2);
+    float[][] ys = zeros(n1,n2);
+    float[][] zs = zeros(n1,n2);
+    mpf.applyInverse(x,ys);
+    mpf.applyInverseTranspose(x,zs);
+    final float[][] yp = zeros(n1,n2);
+    final float[][] zp = copy(x);
+    mpf.setParallel(true);
+    Parallel.Context context = new Parallel.Context(4);
+    context.run(new Runnable() {
+      public void run() {
+        mpf.applyInverse(x,yp);
+        mpf.applyInverseTranspose(zp,zp); // in-place
+      }
+    });
+    context.shutdown();
+    assertIdentical(flatten(ys),flatten(yp));
+    assertIdentical(flatten(zs),flatten(zp));
+  }
+
+  public void testParallel3() {
+    int[] lag1 = {
+                   0, 1, 2,
+            -2,-1, 0, 1, 2,
+            -2,-1, 0, 1, 2,
+            -2,-1, 0,
+    };
+    int[] lag2 = {
+                   0, 0, 0,
+             1, 1, 1, 1, 1,
+            -1,-1,-1,-1,-1,
+             0, 0, 0,
+    };
+    int[] lag3 = {
+                   0, 0, 0,
+             0, 0, 0, 0, 0,
+             1, 1, 1, 1, 1,
+             1, 1, 1,
+    };
+    float[] a = {
+                                 2.3110454f, -0.4805547f, -0.0143204f,
+      -0.0291793f, -0.1057476f, -0.4572746f, -0.0115732f, -0.0047283f,
+      -0.0149963f, -0.0408317f, -0.0945958f, -0.0223166f, -0.0062781f,
+      -0.0213786f, -0.0898909f, -0.4322719f
+    };
+    final MinimumPhaseFilter mpf = new MinimumPhaseFilter(lag1,lag2,lag3,a);
+    int n1 = 11;
+    int n2 = 23;
+    int n3 = 22;
+    final float[][][] x = rands(n1,n2,n3);
+    float[][][] ys = zeros(n1,n2,n3);
+    float[][][] zs = zeros(n1,n2,n3);
+    mpf.applyInverse(x,ys);
+    mpf.applyInverseTranspose(x,zs);
+    final float[][][] yp = copy(x);
+    final float[][][] zp = zeros(n1,n2,n3);
+    mpf.setParallel(true);
+    Parallel.Context context = new Parallel.Context(4);
+    context.run(new Runnable() {
+      public void run() {
+        mpf.applyInverse(yp,yp); // in-place
+        mpf.applyInverseTranspose(x,zp);
+      }
+    });
+    context.shutdown();
+    assertIdentical(flatten(ys),flatten(yp));
+    assertIdentical(flatten(zs),flatten(zp));
+  }
+
   public void testFactorFomelExample() {
     float[] r = {24.0f,242.0f,867.0f,1334.0f,867.0f,242.0f,24.0f};
     int[] lag1 = {0,1,2,3};
@@ -510,4 +597,10 @@ public class MinimumPhaseFilterTest extends TestCase {
         for (int i1=0; i1<n1; ++i1)
           assertEquals(re[i3][i2][i1],ra[i3][i2][i1],tolerance);
   }
+
+  private static void assertIdentical(float[] re, float[] ra) {
+    int n = re.length;
+    for (int i=0; i<n; ++i)
+      assertEquals(re[i],ra[i],0.0f);
+  }
 }
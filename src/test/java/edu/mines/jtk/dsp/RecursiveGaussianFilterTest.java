@@ -89,6 +89,100 @@ public class RecursiveGaussianFilterTest extends TestCase {
     }
   }
 
+  public void test3Traces() {
+    int n1 = 151, n2 = 13, n3 = 11;
+    float[][][] x = randfloat(n1,n2,n3);
+    float[][][] y = zerofloat(n1,n2,n3);
+    double[] sigmas = {2.0,40.0};
+    for (double sigma:sigmas) {
+      RecursiveGaussianFilter rf = new RecursiveGaussianFilter(sigma);
+      rf.apply000(x,y);
+      assertNear(applyTraces(rf,0,0,0,x),y);
+      rf.apply200(x,y);
+      assertNear(applyTraces(rf,2,0,0,x),y);
+      rf.apply011(x,y);
+      assertNear(applyTraces(rf,0,1,1,x),y);
+      y = copy(x);
+      rf.apply002(y,y);
+      assertNear(applyTraces(rf,0,0,2,x),y);
+    }
+  }
+
+  public void testDerivatives() {
+    int n1 = 70, n2 = 21, n3 = 12;
+    float[][][] x = randfloat(n1,n2,n3);
+    RecursiveGaussianFilter rf = new RecursiveGaussianFilter(3.0);
+    float[][][][] g = new float[3][n3][n2][n1];
+    rf.applyGradient(x,g[0],g[1],g[2]);
+    float[][][] y = zerofloat(n1,n2,n3);
+    rf.apply100(x,y);  assertEquals(y,g[0]);
+    rf.apply010(x,y);  assertEquals(y,g[1]);
+    rf.apply001(x,y);  assertEquals(y,g[2]);
+    float[][][][] h = new float[6][n3][n2][n1];
+    rf.applyHessian(x,h[0],h[1],h[2],h[3],h[4],h[5]);
+    rf.apply200(x,y);  assertEquals(y,h[0]);
+    rf.apply110(x,y);  assertEquals(y,h[1]);
+    rf.apply101(x,y);  assertEquals(y,h[2]);
+    rf.apply020(x,y);  assertEquals(y,h[3]);
+    rf.apply011(x,y);  assertEquals(y,h[4]);
+    rf.apply002(x,y);  assertEquals(y,h[5]);
+    int[][] nd = {{0,0,0},{2,1,0},{0,2,2},{2,1,0},{1,1,1}};
+    float[][][][] z = new float[nd.length][n3][n2][n1];
+    rf.applyDerivatives(nd,x,z);
+    for (int iz=0; iz<nd.length; ++iz)
+      assertNear(applyTraces(rf,nd[iz][0],nd[iz][1],nd[iz][2],x),z[iz]);
+  }
+
+  // Applies the filter to one trace at a time, in all three dimensions.
+  private static float[][][] applyTraces(
+    RecursiveGaussianFilter rf, int nd1, int nd2, int nd3, float[][][] x)
+  {
+    int n1 = x[0][0].length;
+    int n2 = x[0].length;
+    int n3 = x.length;
+    float[][][] y = copy(x);
+    float[] t2 = new float[n2];
+    float[] t3 = new float[n3];
+    for (int i2=0; i2<n2; ++i2) {
+      for (int i1=0; i1<n1; ++i1) {
+        for (int i3=0; i3<n3; ++i3)
+          t3[i3] = y[i3][i2][i1];
+        apply(rf,nd3,t3);
+        for (int i3=0; i3<n3; ++i3)
+          y[i3][i2][i1] = t3[i3];
+      }
+    }
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i1=0; i1<n1; ++i1) {
+        for (int i2=0; i2<n2; ++i2)
+          t2[i2] = y[i3][i2][i1];
+        apply(rf,nd2,t2);
+        for (int i2=0; i2<n2; ++i2)
+          y[i3][i2][i1] = t2[i2];
+      }
+      for (int i2=0; i2<n2; ++i2)
+        apply(rf,nd1,y[i3][i2]);
+    }
+    return y;
+  }
+  private static void apply(RecursiveGaussianFilter rf, int nd, float[] x) {
+    if (nd==0) {
+      rf.apply0(x,x);
+    } else if (nd==1) {
+      rf.apply1(x,x);
+    } else {
+      rf.apply2(x,x);
+    }
+  }
+
+  private static void assertEquals(float[][][] a, float[][][] b) {
+    assertTrue(equal(a,b));
+  }
+  private static void assertNear(float[][][] a, float[][][] b) {
+    float tolerance = 10.0f*FLT_EPSILON*max(abs(a));
+    assertTrue(equal(tolerance,a,b));
+  }
+
   private static float gaussian(float s, float x) {
     float xx = x*x;
     float ss = s*s;
@@ -184,6 +184,65 @@ public class SincInterpolatorTest extends TestCase {
     }
   }
 
+  public void testBatch() {
+    // test that batch interpolation equals interpolation of each sequence
+    Random random = new Random(123456);
+    int ny = 7;
+    int nxu = 101;
+    double dxu = 0.5;
+    double fxu = 1.0;
+    int nxi = 233;
+    float[][] yu = new float[ny][nxu];
+    for (int iy=0; iy<ny; ++iy)
+      for (int ixu=0; ixu<nxu; ++ixu)
+        yu[iy][ixu] = 2*random.nextFloat()-1;
+    float[] xi = new float[nxi];
+    for (int ixi=0; ixi<nxi; ++ixi)
+      xi[ixi] = (float)(fxu+(1.2*random.nextFloat()-0.1)*(nxu-1)*dxu);
+    for (SincInterpolator.Extrapolation extrapolation:
+           SincInterpolator.Extrapolation.values()) {
+      SincInterpolator si = new SincInterpolator();
+      si.setExtrapolation(extrapolation);
+      float[][] yi = new float[ny][nxi];
+      si.interpolate(nxu,dxu,fxu,yu,nxi,xi,yi);
+      float[] yie = new float[nxi];
+      for (int iy=0; iy<ny; ++iy) {
+        si.interpolate(nxu,dxu,fxu,yu[iy],nxi,xi,yie);
+        for (int ixi=0; ixi<nxi; ++ixi)
+          assertEquals(yie[ixi],yi[iy][ixi],0.0f);
+      }
+    }
+  }
+
+  public void testShifts() {
+    // test that shifts equal interpolation of each sample
+    Random random = new Random(123456);
+    int n1 = 51, n2 = 3, n3 = 4;
+    float[][][] yu = new float[n3][n2][n1];
+    float[][][] u = new float[n3][n2][n1];
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        for (int i1=0; i1<n1; ++i1) {
+          yu[i3][i2][i1] = 2*random.nextFloat()-1;
+          u[i3][i2][i1] = 20*random.nextFloat()-10;
+        }
+      }
+    }
+    SincInterpolator si = new SincInterpolator();
+    si.setExtrapolation(SincInterpolator.Extrapolation.CONSTANT);
+    float[][][] yi = new float[n3][n2][n1];
+    si.applyShifts(u,yu,yi);
+    for (int i3=0; i3<n3; ++i3) {
+      for (int i2=0; i2<n2; ++i2) {
+        for (int i1=0; i1<n1; ++i1) {
+          float x = i1+u[i3][i2][i1];
+          float yie = si.interpolate(n1,1.0,0.0,yu[i3][i2],x);
+          assertEquals(yie,yi[i3][i2][i1],0.0f);
+        }
+      }
+    }
+  }
+
   private void testInterpolator(SincInterpolator si) {
     testInterpolatorWithSweep(si);
   }
@@ -0,0 +1,79 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.dsp;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.dsp.SteerablePyramid}.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class SteerablePyramidTest extends TestCase {
+  public static void main(String[] args) {
+    TestSuite suite = new TestSuite(SteerablePyramidTest.class);
+    junit.textui.TestRunner.run(suite);
+  }
+
+  public void testParallel2() {
+    float[][] x = randfloat(new Random(314159),41,37);
+    SteerablePyramid sps = new SteerablePyramid();
+    SteerablePyramid spp = new SteerablePyramid();
+    spp.setParallel(true);
+    float[][][][] ps = sps.makePyramid(x);
+    float[][][][] pp = spp.makePyramid(x);
+    assertEquals(ps,pp);
+    assertEquals(sps.estimateAttributes(2.0,ps),spp.estimateAttributes(2.0,pp));
+  }
+
+  public void testParallel3() {
+    float[][][] x = randfloat(new Random(314159),21,19,17);
+    SteerablePyramid sps = new SteerablePyramid();
+    SteerablePyramid spp = new SteerablePyramid();
+    spp.setParallel(true);
+    float[][][][][] ps = sps.makePyramid(x);
+    float[][][][][] pp = spp.makePyramid(x);
+    for (int lev=0; lev<ps.length; ++lev)
+      assertEquals(ps[lev],pp[lev]);
+    float[][][][][] as = sps.estimateAttributes(true,2.0,ps);
+    float[][][][][] ap = spp.estimateAttributes(true,2.0,pp);
+    for (int lev=0; lev<as.length; ++lev)
+      assertEquals(as[lev],ap[lev]);
+  }
+
+  public void testLazy() {
+    float[][][] x = randfloat(new Random(314159),21,19,17);
+    SteerablePyramid sp = new SteerablePyramid();
+    for (boolean keeplow:new boolean[]{true,false}) {
+      float[][][][][] spyr = sp.makePyramid(x);
+      SteerablePyramid.LazyPyramid lpyr = sp.makeLazyPyramid(x);
+      int nlev = lpyr.getLevelCount();
+      assertEquals(spyr.length-1,nlev);
+      for (int lev=0; lev<nlev; ++lev)
+        assertEquals(spyr[lev],lpyr.getLevel(lev));
+      float[][][] ye = sp.sumPyramid(keeplow,spyr);
+      float[][][] yl = sp.sumPyramid(keeplow,lpyr);
+      assertEquals(new float[][][][]{ye},new float[][][][]{yl});
+    }
+  }
+
+  private static void assertEquals(float[][][][] e, float[][][][] a) {
+    assertEquals(e.length,a.length);
+    for (int i=0; i<e.length; ++i) {
+      float[] ei = flatten(e[i]);
+      float[] ai = flatten(a[i]);
+      assertEquals(ei.length,ai.length);
+      for (int j=0; j<ei.length; ++j)
+        assertEquals(ei[j],ai[j],0.0f);
+    }
+  }
+}
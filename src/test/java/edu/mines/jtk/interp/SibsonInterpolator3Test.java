@@ -102,6 +102,39 @@ public class SibsonInterpolator3Test extends TestCase {
     }
   }
 
+  public void testParallel() {
+    testParallel(HL);
+    testParallel(BS);
+    testParallel(WS);
+  }
+  private void testParallel(SibsonInterpolator3.Method m) {
+    TestFunction tf = TestFunction.makeSine();
+    float[][] fx = tf.sampleScattered3(NS,XMIN,XMAX,XMIN,XMAX,XMIN,XMAX);
+    float[] f = fx[0], x1 = fx[1], x2 = fx[2], x3 = fx[3];
+    SibsonInterpolator3 si = new SibsonInterpolator3(m,f,x1,x2,x3);
+    Sampling s1 = new Sampling(13,0.08,0.02);
+    Sampling s2 = new Sampling(11,0.09,0.03);
+    Sampling s3 = new Sampling(9,0.11,0.04);
+    si.setBounds(s1,s2,s3);
+    si.setGradientPower(1.0);
+    float[][][] gs = si.interpolate(s1,s2,s3);
+    si.setParallel(true);
+    float[][][] gp = si.interpolate(s1,s2,s3);
+    int n1 = s1.getCount(), n2 = s2.getCount(), n3 = s3.getCount();
+    assertEquals(n3,gp.length);
+    for (int i3=0; i3<n3; ++i3) {
+      float x3i = (float)s3.getValue(i3);
+      for (int i2=0; i2<n2; ++i2) {
+        float x2i = (float)s2.getValue(i2);
+        for (int i1=0; i1<n1; ++i1) {
+          float x1i = (float)s1.getValue(i1);
+          assertEquals(gs[i3][i2][i1],gp[i3][i2][i1],0.0);
+          assertEquals(si.interpolate(x1i,x2i,x3i),gp[i3][i2][i1]);
+        }
+      }
+    }
+  }
+
   public static void benchMethods() {
     TestFunction tf = TestFunction.makeSine();
     //TestFunction tf = TestFunction.makeLinear();
@@ -20,6 +20,10 @@ public class AllTest extends TestSuite {
     TestSuite suite = new TestSuite();
 
     suite.addTestSuite(ArrayFileTest.class);
+    suite.addTestSuite(ArrayInputStreamTest.class);
+    suite.addTestSuite(BrickFileTest.class);
+    suite.addTestSuite(CompressedArrayStreamTest.class);
+    suite.addTestSuite(MappedArrayFileTest.class);
 
     return suite;
   }
@@ -0,0 +1,92 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.io.ArrayInputStream}.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class ArrayInputStreamTest extends TestCase {
+  public static void main(String[] args) {
+    TestSuite suite = new TestSuite(ArrayInputStreamTest.class);
+    junit.textui.TestRunner.run(suite);
+  }
+
+  public void testReadAhead() throws IOException {
+    ByteOrder[] orders = {ByteOrder.BIG_ENDIAN,ByteOrder.LITTLE_ENDIAN};
+    for (ByteOrder order:orders) {
+      int nh = 60, n1 = 1001, n2 = 200;
+      int[][] h = randint(nh,n2);
+      float[][] a = randfloat(n1,n2);
+      File file = File.createTempFile("junk","dat");
+      try {
+        ArrayOutputStream aos = new ArrayOutputStream(file,order);
+        for (int i2=0; i2<n2; ++i2) {
+          aos.writeInts(h[i2]);
+          aos.writeFloats(a[i2]);
+          aos.writeDouble(i2);
+        }
+        aos.close();
+
+        // Blocks not a multiple of trace length, so values span blocks.
+        ArrayInputStream ais = new ArrayInputStream(file,order,4,1000);
+        int[] g = new int[nh];
+        float[] b = new float[n1];
+        for (int i2=0; i2<n2; ++i2) {
+          ais.readInts(g);
+          ais.readFloats(b);
+          for (int ih=0; ih<nh; ++ih)
+            assertEquals(h[i2][ih],g[ih]);
+          for (int i1=0; i1<n1; ++i1)
+            assertEquals(a[i2][i1],b[i1]);
+          assertEquals((double)i2,ais.readDouble());
+        }
+        long nblock = ais.getReadAheadHits()+ais.getReadAheadMisses();
+        long nbyte = file.length();
+        assertEquals((nbyte+999)/1000,nblock);
+        double rate = ais.getReadAheadHitRate();
+        assertTrue(0.0<=rate && rate<=1.0);
+        try {
+          ais.readFloat();
+          fail("expected EOFException");
+        } catch (EOFException e) {
+          // expected
+        }
+        ais.close();
+      } finally {
+        file.delete();
+      }
+    }
+  }
+
+  public void testCloseEarly() throws IOException {
+    File file = File.createTempFile("junk","dat");
+    try {
+      ArrayOutputStream aos = new ArrayOutputStream(file);
+      aos.writeFloats(randfloat(100000));
+      aos.close();
+      ArrayInputStream ais = 
+        new ArrayInputStream(file,ByteOrder.BIG_ENDIAN,2,4096);
+      float[] b = new float[10];
+      ais.readFloats(b);
+      ais.close();
+    } finally {
+      file.delete();
+    }
+  }
+}
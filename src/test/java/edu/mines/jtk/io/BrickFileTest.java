@@ -0,0 +1,141 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import edu.mines.jtk.util.SimpleFloat3;
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.io.BrickFile}.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class BrickFileTest extends TestCase {
+  public static void main(String[] args) {
+    TestSuite suite = new TestSuite(BrickFileTest.class);
+    junit.textui.TestRunner.run(suite);
+  }
+
+  public void testConvert() throws IOException {
+    ByteOrder[] orders = {ByteOrder.BIG_ENDIAN,ByteOrder.LITTLE_ENDIAN};
+    for (ByteOrder order:orders) {
+      int n1 = 23, n2 = 19, n3 = 17;
+      float[][][] a = randfloat(n1,n2,n3);
+      File flat = File.createTempFile("junk","dat");
+      File brick = File.createTempFile("junk","dat");
+      try {
+        ArrayFile af = new ArrayFile(flat,"rw",order,order);
+        af.writeFloats(a);
+        af.close();
+        BrickFile.convert(flat,order,n1,n2,n3,brick,8,5,4);
+
+        // Cache size of two bricks, so that bricks are often discarded.
+        BrickFile bf = new BrickFile(brick,"r",2*4*8*5*4);
+        assertEquals(order,bf.getByteOrder());
+        assertEquals(n1,bf.getN1());
+        assertEquals(n2,bf.getN2());
+        assertEquals(n3,bf.getN3());
+        SimpleFloat3 sf = new SimpleFloat3(a);
+        for (int i1=0; i1<n1; i1+=7)
+          assertEqual(slice1(sf,i1),bf.getSlice1(i1));
+        for (int i2=0; i2<n2; i2+=6)
+          assertEqual(slice2(sf,i2),bf.getSlice2(i2));
+        for (int i3=0; i3<n3; i3+=5)
+          assertEqual(slice3(sf,i3),bf.getSlice3(i3));
+        float[][][] s = bf.getSubcube(11,7,9,3,10,8);
+        for (int i3=0; i3<9; ++i3)
+          for (int i2=0; i2<7; ++i2)
+            for (int i1=0; i1<11; ++i1)
+              assertEquals(a[i3+8][i2+10][i1+3],s[i3][i2][i1]);
+        bf.close();
+      } finally {
+        flat.delete();
+        brick.delete();
+      }
+    }
+  }
+
+  public void testFloat3() throws IOException {
+    int n1 = 13, n2 = 21, n3 = 11;
+    float[][][] a = randfloat(n1,n2,n3);
+    SimpleFloat3 sf = new SimpleFloat3(a);
+    File file = File.createTempFile("junk","dat");
+    try {
+      BrickFile bf = BrickFile.create(file,n1,n2,n3,4,8,3,
+        ByteOrder.BIG_ENDIAN);
+      bf.set123(n1,n2,n3,0,0,0,a);
+      float[] s2 = randfloat(n2);
+      bf.set2(n2,5,0,7,s2);
+      sf.set2(n2,5,0,7,s2);
+      float[][] s13 = randfloat(9,6);
+      bf.set13(9,6,2,4,3,s13);
+      sf.set13(9,6,2,4,3,s13);
+      float[][] s23 = randfloat(10,7);
+      bf.set23(10,7,12,3,4,s23);
+      sf.set23(10,7,12,3,4,s23);
+      bf.close();
+
+      // Cache size of one brick.
+      bf = new BrickFile(file,"r",0);
+      float[] b = new float[n1*n2*n3];
+      float[] c = new float[n1*n2*n3];
+      bf.get123(n1,n2,n3,0,0,0,b);
+      sf.get123(n1,n2,n3,0,0,0,c);
+      assertEquals(c,b);
+      float[] b3 = new float[n3];
+      float[] c3 = new float[n3];
+      bf.get3(n3,12,20,0,b3);
+      sf.get3(n3,12,20,0,c3);
+      assertEquals(c3,b3);
+      float[] b1 = new float[n1-2];
+      float[] c1 = new float[n1-2];
+      bf.get1(n1-2,2,5,7,b1);
+      sf.get1(n1-2,2,5,7,c1);
+      assertEquals(c1,b1);
+      bf.close();
+    } finally {
+      file.delete();
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static float[][] slice1(SimpleFloat3 sf, int i1) {
+    float[][] s = new float[sf.getN3()][sf.getN2()];
+    sf.get23(sf.getN2(),sf.getN3(),i1,0,0,s);
+    return s;
+  }
+  private static float[][] slice2(SimpleFloat3 sf, int i2) {
+    float[][] s = new float[sf.getN3()][sf.getN1()];
+    sf.get13(sf.getN1(),sf.getN3(),0,i2,0,s);
+    return s;
+  }
+  private static float[][] slice3(SimpleFloat3 sf, int i3) {
+    float[][] s = new float[sf.getN2()][sf.getN1()];
+    sf.get12(sf.getN1(),sf.getN2(),0,0,i3,s);
+    return s;
+  }
+
+  private static void assertEquals(float[] a, float[] b) {
+    assertEquals(a.length,b.length);
+    for (int i=0; i<a.length; ++i)
+      assertEquals(a[i],b[i]);
+  }
+  private static void assertEqual(float[][] a, float[][] b) {
+    assertEquals(a.length,b.length);
+    for (int i=0; i<a.length; ++i)
+      assertEquals(a[i],b[i]);
+  }
+}
@@ -0,0 +1,147 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.io.CompressedArrayOutputStream} and
+ * {@link edu.mines.jtk.io.CompressedArrayInputStream}.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class CompressedArrayStreamTest extends TestCase {
+  public static void main(String[] args) {
+    TestSuite suite = new TestSuite(CompressedArrayStreamTest.class);
+    junit.textui.TestRunner.run(suite);
+  }
+
+  public void testLossless() throws IOException {
+    ByteOrder[] orders = {ByteOrder.BIG_ENDIAN,ByteOrder.LITTLE_ENDIAN};
+    int[] blockSizes = {4*101,1000,4096,1<<20};
+    for (ByteOrder order:orders) {
+      for (int blockSize:blockSizes) {
+        int n1 = 101, n2 = 37, n3 = 13;
+        float[][][] a = smooth(randfloat(n1,n2,n3));
+        int[] h = randint(7);
+        File file = File.createTempFile("junk","dat");
+        try {
+          CompressedArrayOutputStream aos = 
+            new CompressedArrayOutputStream(file,order,blockSize);
+          aos.writeInts(h);
+          aos.writeFloats(a);
+          aos.writeDouble(Math.PI);
+          aos.flush();
+          aos.writeByte(1);
+          aos.close();
+          assertEquals(4*(7+n1*n2*n3)+8+1,aos.getCount());
+          CompressedArrayInputStream ais = 
+            new CompressedArrayInputStream(file);
+          assertEquals(order,ais.getByteOrder());
+          assertEquals(0.0f,ais.getMaxError());
+          assertEquals(aos.getCount(),ais.length());
+          int[] g = new int[7];
+          float[][][] b = new float[n3][n2][n1];
+          ais.readInts(g);
+          ais.readFloats(b);
+          for (int i=0; i<7; ++i)
+            assertEquals(h[i],g[i]);
+          assertEqual(0.0f,a,b);
+          assertEquals(Math.PI,ais.readDouble());
+          assertEquals(1,ais.readByte());
+          try {
+            ais.readByte();
+            fail("expected EOFException");
+          } catch (EOFException e) {
+            // expected
+          }
+
+          // Random access to individual traces.
+          float[] t = new float[n1];
+          for (int i3=n3-1; i3>=0; i3-=5) {
+            for (int i2=n2-1; i2>=0; i2-=3) {
+              ais.seek(4L*(7+n1*(i2+n2*i3)));
+              ais.readFloats(t);
+              for (int i1=0; i1<n1; ++i1)
+                assertEquals(a[i3][i2][i1],t[i1]);
+            }
+          }
+          ais.close();
+        } finally {
+          file.delete();
+        }
+      }
+    }
+  }
+
+  public void testLossy() throws IOException {
+    ByteOrder[] orders = {ByteOrder.BIG_ENDIAN,ByteOrder.LITTLE_ENDIAN};
+    float[] maxErrors = {0.1f,0.001f,1.0e-6f};
+    for (ByteOrder order:orders) {
+      for (float maxError:maxErrors) {
+        int n1 = 201, n2 = 31, n3 = 11;
+        float[][][] a = smooth(randfloat(n1,n2,n3));
+        a[3][4][5] = Float.NaN;
+        File file = File.createTempFile("junk","dat");
+        try {
+          CompressedArrayOutputStream aos = 
+            new CompressedArrayOutputStream(file,order,4*n1,maxError);
+          aos.writeFloats(a);
+          aos.close();
+          assertTrue(aos.getCompressedCount()<aos.getCount());
+          CompressedArrayInputStream ais = 
+            new CompressedArrayInputStream(file);
+          assertEquals(maxError,ais.getMaxError());
+          float[][][] b = new float[n3][n2][n1];
+          ais.readFloats(b);
+          assertTrue(Float.isNaN(b[3][4][5]));
+          a[3][4][5] = b[3][4][5] = 0.0f;
+          assertEqual(maxError,a,b);
+          ais.close();
+        } finally {
+          file.delete();
+        }
+      }
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  // Running sums make values that are correlated, like seismic traces.
+  private static float[][][] smooth(float[][][] a) {
+    for (float[][] a3:a) {
+      for (float[] a32:a3) {
+        sub(a32,0.5f,a32);
+        for (int i1=1; i1<a32.length; ++i1)
+          a32[i1] += 0.9f*a32[i1-1];
+      }
+    }
+    return a;
+  }
+
+  private static void assertEqual(float e, float[][][] a, float[][][] b) {
+    for (int i3=0; i3<a.length; ++i3) {
+      for (int i2=0; i2<a[i3].length; ++i2) {
+        for (int i1=0; i1<a[i3][i2].length; ++i1) {
+          float ai = a[i3][i2][i1];
+          float bi = b[i3][i2][i1];
+          float tol = e+Math.ulp(ai);
+          assertEquals(ai,bi,tol);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,365 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.io.MappedArrayFile}.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class MappedArrayFileTest extends TestCase {
+  public static void main(String[] args) {
+    TestSuite suite = new TestSuite(MappedArrayFileTest.class);
+    junit.textui.TestRunner.run(suite);
+  }
+
+  public void testBigEndian() throws IOException {
+    test(ByteOrder.BIG_ENDIAN);
+  }
+
+  public void testLittleEndian() throws IOException {
+    test(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  public void testArrayFile() throws IOException {
+    ByteOrder[] orders = {ByteOrder.BIG_ENDIAN,ByteOrder.LITTLE_ENDIAN};
+    for (ByteOrder order:orders) {
+      int n1 = 101, n2 = 103;
+      float[][] a = randfloat(n1,n2);
+      float[][] b = zerofloat(n1,n2);
+      File file = File.createTempFile("junk","dat");
+      try {
+        ArrayFile af = new ArrayFile(file,"rw",order,order);
+        af.writeFloats(a);
+        af.close();
+        MappedArrayFile mf = new MappedArrayFile(file,"r",order,order,512);
+        mf.readFloats(0,b);
+        assertEqual(a,b);
+        FloatBuffer fb = mf.getFloatBuffer(4L*n1*7,n1);
+        for (int i1=0; i1<n1; ++i1)
+          assertEquals(a[7][i1],fb.get(i1));
+        mf.close();
+        zero(b);
+        mf = new MappedArrayFile(file,"rw",order,order,512);
+        mf.writeFloats(a);
+        mf.close();
+        af = new ArrayFile(file,"r",order,order);
+        af.readFloats(b);
+        af.close();
+        assertEqual(a,b);
+      } finally {
+        file.delete();
+      }
+    }
+  }
+
+  public void testInterfaces() throws IOException {
+    ByteOrder[] orders = {ByteOrder.BIG_ENDIAN,ByteOrder.LITTLE_ENDIAN};
+    for (ByteOrder order:orders) {
+      File file = File.createTempFile("junk","dat");
+      try {
+        MappedArrayFile mf = new MappedArrayFile(file,"rw",order,order,512);
+        writeAll(mf);
+        mf.close();
+        ArrayFile af = new ArrayFile(file,"r",order,order);
+        readAll(af);
+        af.close();
+        af = new ArrayFile(file,"rw",order,order);
+        writeAll(af);
+        af.close();
+        mf = new MappedArrayFile(file,"r",order,order,512);
+        readAll(mf);
+        mf.close();
+      } finally {
+        file.delete();
+      }
+    }
+  }
+
+  public void testSetLength() throws IOException {
+    File file = File.createTempFile("junk","dat");
+    try {
+      MappedArrayFile mf = new MappedArrayFile(file,"rw");
+      mf.setLength(4000);
+      mf.writeFloats(3600,new float[100]);
+      assertEquals(4000,mf.length());
+      try {
+        mf.setLength(2000);
+        fail("truncation must be disallowed");
+      } catch (IllegalArgumentException e) {
+        assertEquals(4000,mf.length());
+      }
+      mf.close();
+    } finally {
+      file.delete();
+    }
+  }
+
+  public void testAppend() throws IOException {
+    int n = 200000;
+    File file = File.createTempFile("junk","dat");
+    try {
+      MappedArrayFile mf = new MappedArrayFile(file,"rw");
+      for (int i=0; i<n; ++i)
+        mf.writeFloat(i);
+      assertEquals(4L*n,mf.length());
+      mf.close();
+      assertEquals(4L*n,file.length());
+      mf = new MappedArrayFile(file,"rw",
+        ByteOrder.BIG_ENDIAN,ByteOrder.BIG_ENDIAN,1024);
+      mf.seek(mf.length());
+      for (int i=0; i<n; ++i)
+        mf.writeInt(i);
+      assertEquals(8L*n,mf.length());
+      mf.close();
+      assertEquals(8L*n,file.length());
+      mf = new MappedArrayFile(file,"r");
+      for (int i=0; i<n; ++i)
+        assertEquals((float)i,mf.readFloat());
+      for (int i=0; i<n; ++i)
+        assertEquals(i,mf.readInt());
+      mf.close();
+    } finally {
+      file.delete();
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static final int N1 = 11, N2 = 13, N3 = 7;
+
+  private static void writeAll(ArrayOutput ao) throws IOException {
+    ao.writeBoolean(true);
+    ao.writeByte(-3);
+    ao.writeShort(-1234);
+    ao.writeChar('z');
+    ao.writeInt(123456789);
+    ao.writeLong(-1234567890123L);
+    ao.writeFloat(1.5f);
+    ao.writeDouble(2.5);
+    ao.writeUTF("mapped");
+    ao.writeBytes(bytes(N1,N2));
+    ao.writeBytes(bytes(N1,N2,N3));
+    ao.writeChars(chars(N1,N2));
+    ao.writeChars(chars(N1,N2,N3));
+    ao.writeShorts(shorts(N1,N2));
+    ao.writeShorts(shorts(N1,N2,N3));
+    ao.writeInts(ints(N1,N2));
+    ao.writeInts(ints(N1,N2,N3));
+    ao.writeLongs(longs(N1,N2));
+    ao.writeLongs(longs(N1,N2,N3));
+  }
+
+  private static void readAll(ArrayInput ai) throws IOException {
+    assertTrue(ai.readBoolean());
+    assertEquals(-3,ai.readByte());
+    assertEquals(-1234,ai.readShort());
+    assertEquals('z',ai.readChar());
+    assertEquals(123456789,ai.readInt());
+    assertEquals(-1234567890123L,ai.readLong());
+    assertEquals(1.5f,ai.readFloat());
+    assertEquals(2.5,ai.readDouble());
+    assertEquals("mapped",ai.readUTF());
+    byte[][] b2 = new byte[N2][N1];
+    byte[][][] b3 = new byte[N3][N2][N1];
+    ai.readBytes(b2);
+    ai.readBytes(b3);
+    assertTrue(deepEquals(bytes(N1,N2),b2));
+    assertTrue(deepEquals(bytes(N1,N2,N3),b3));
+    char[][] c2 = new char[N2][N1];
+    char[][][] c3 = new char[N3][N2][N1];
+    ai.readChars(c2);
+    ai.readChars(c3);
+    assertTrue(deepEquals(chars(N1,N2),c2));
+    assertTrue(deepEquals(chars(N1,N2,N3),c3));
+    short[][] s2 = new short[N2][N1];
+    short[][][] s3 = new short[N3][N2][N1];
+    ai.readShorts(s2);
+    ai.readShorts(s3);
+    assertTrue(deepEquals(shorts(N1,N2),s2));
+    assertTrue(deepEquals(shorts(N1,N2,N3),s3));
+    int[][] i2 = new int[N2][N1];
+    int[][][] i3 = new int[N3][N2][N1];
+    ai.readInts(i2);
+    ai.readInts(i3);
+    assertTrue(deepEquals(ints(N1,N2),i2));
+    assertTrue(deepEquals(ints(N1,N2,N3),i3));
+    long[][] l2 = new long[N2][N1];
+    long[][][] l3 = new long[N3][N2][N1];
+    ai.readLongs(l2);
+    ai.readLongs(l3);
+    assertTrue(deepEquals(longs(N1,N2),l2));
+    assertTrue(deepEquals(longs(N1,N2,N3),l3));
+  }
+
+  private static boolean deepEquals(Object a, Object b) {
+    return java.util.Arrays.deepEquals(new Object[]{a},new Object[]{b});
+  }
+
+  private static byte[][] bytes(int n1, int n2) {
+    byte[][] v = new byte[n2][n1];
+    for (int i2=0; i2<n2; ++i2)
+      for (int i1=0; i1<n1; ++i1)
+        v[i2][i1] = (byte)(i1+i2*n1);
+    return v;
+  }
+  private static byte[][][] bytes(int n1, int n2, int n3) {
+    byte[][][] v = new byte[n3][][];
+    for (int i3=0; i3<n3; ++i3)
+      v[i3] = bytes(n1,n2);
+    return v;
+  }
+  private static char[][] chars(int n1, int n2) {
+    char[][] v = new char[n2][n1];
+    for (int i2=0; i2<n2; ++i2)
+      for (int i1=0; i1<n1; ++i1)
+        v[i2][i1] = (char)(40000+i1+i2*n1);
+    return v;
+  }
+  private static char[][][] chars(int n1, int n2, int n3) {
+    char[][][] v = new char[n3][][];
+    for (int i3=0; i3<n3; ++i3)
+      v[i3] = chars(n1,n2);
+    return v;
+  }
+  private static short[][] shorts(int n1, int n2) {
+    short[][] v = new short[n2][n1];
+    for (int i2=0; i2<n2; ++i2)
+      for (int i1=0; i1<n1; ++i1)
+        v[i2][i1] = (short)(-1000*i2+i1);
+    return v;
+  }
+  private static short[][][] shorts(int n1, int n2, int n3) {
+    short[][][] v = new short[n3][][];
+    for (int i3=0; i3<n3; ++i3)
+      v[i3] = shorts(n1,n2);
+    return v;
+  }
+  private static int[][] ints(int n1, int n2) {
+    int[][] v = new int[n2][n1];
+    for (int i2=0; i2<n2; ++i2)
+      for (int i1=0; i1<n1; ++i1)
+        v[i2][i1] = -100000*i2+i1;
+    return v;
+  }
+  private static int[][][] ints(int n1, int n2, int n3) {
+    int[][][] v = new int[n3][][];
+    for (int i3=0; i3<n3; ++i3)
+      v[i3] = ints(n1,n2);
+    return v;
+  }
+  private static long[][] longs(int n1, int n2) {
+    long[][] v = new long[n2][n1];
+    for (int i2=0; i2<n2; ++i2)
+      for (int i1=0; i1<n1; ++i1)
+        v[i2][i1] = -10000000000L*i2+i1;
+    return v;
+  }
+  private static long[][][] longs(int n1, int n2, int n3) {
+    long[][][] v = new long[n3][][];
+    for (int i3=0; i3<n3; ++i3)
+      v[i3] = longs(n1,n2);
+    return v;
+  }
+
+  private static void test(ByteOrder order) throws IOException {
+    int n = 10000;
+    File file = null;
+    MappedArrayFile af = null;
+    try {
+      file = File.createTempFile("junk","dat");
+      af = new MappedArrayFile(file,"rw",order,order,1024);
+      testFloat(af,n);
+      testDouble(af,n);
+    } finally {
+      if (af!=null)
+        af.close();
+      if (file!=null)
+        file.delete();
+    }
+  }
+
+  private static void testFloat(MappedArrayFile af, int n) 
+    throws IOException 
+  {
+    float[] a = randfloat(n);
+    float[] b = zerofloat(n);
+
+    af.seek(0);
+    af.writeFloats(a);
+    af.seek(0);
+    af.readFloats(b);
+    for (int i=0; i<n; ++i)
+      assertEquals(a[i],b[i]);
+
+    int mw = 3141;
+    af.seek(0);
+    for (int j=0; j<n; j+=mw)
+      af.writeFloats(a,j,min(n-j,mw));
+    zero(b);
+    af.seek(0);
+    int mr = 27;
+    for (int j=0; j<n; j+=mr)
+      af.readFloats(b,j,min(n-j,mr));
+    for (int i=0; i<n; ++i)
+      assertEquals(a[i],b[i]);
+
+    int m = 200;
+    long off = 4L*(n-m-3);
+    FloatBuffer fb = af.getFloatBuffer(off,m);
+    for (int i=0; i<m; ++i)
+      assertEquals(a[n-m-3+i],fb.get(i));
+    fb.put(0,a[n-m-3]=1.0f);
+    assertEquals(1.0f,af.getFloatBuffer(off,1).get(0));
+
+    float[][] c = zerofloat(100,n/100);
+    af.readFloats(0,c);
+    for (int i=0; i<n; ++i)
+      assertEquals(a[i],c[i/100][i%100]);
+  }
+
+  private static void testDouble(MappedArrayFile af, int n) 
+    throws IOException 
+  {
+    double[] a = randdouble(n);
+    double[] b = zerodouble(n);
+
+    af.seek(0);
+    af.writeDoubles(a);
+    af.seek(0);
+    af.readDoubles(b);
+    for (int i=0; i<n; ++i)
+      assertEquals(a[i],b[i]);
+
+    long off = 8L*n+4;
+    af.writeDoubles(off,a);
+    assertEquals(off+8L*n,af.length());
+    zero(b);
+    af.readDoubles(off,b);
+    for (int i=0; i<n; ++i)
+      assertEquals(a[i],b[i]);
+    for (int i=0; i<n; i+=37)
+      assertEquals(a[i],af.getDoubleBuffer(off+8L*i,1).get(0));
+  }
+
+  private static void assertEqual(float[][] a, float[][] b) {
+    for (int i2=0; i2<a.length; ++i2)
+      for (int i1=0; i1<a[i2].length; ++i1)
+        assertEquals(a[i2][i1],b[i2][i1]);
+  }
+}
@@ -19,6 +19,7 @@ public class AllTest extends TestSuite {
   public static Test suite() {
     TestSuite suite = new TestSuite();
 
+    suite.addTestSuite(CompactTetMeshTest.class);
     suite.addTestSuite(GeometryTest.class);
     suite.addTestSuite(TetMeshTest.class);
     suite.addTestSuite(TriMeshTest.class);
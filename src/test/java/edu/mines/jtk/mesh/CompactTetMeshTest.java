@@ -0,0 +1,236 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.mesh;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests {@link edu.mines.jtk.mesh.CompactTetMesh}.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class CompactTetMeshTest extends TestCase {
+  public static void main(String[] args) {
+    TestSuite suite = new TestSuite(CompactTetMeshTest.class);
+    junit.textui.TestRunner.run(suite);
+  }
+
+  public void testArrays() {
+    TetMesh.Node[] nodes = makeNodes(500);
+    TetMesh tm = makeMesh(nodes);
+    CompactTetMesh cm = new CompactTetMesh(tm);
+    assertEquals(tm.countNodes(),cm.countNodes());
+    assertEquals(tm.countTets(),cm.countTets());
+    int nnode = cm.countNodes();
+    for (int inode=0; inode<nnode; ++inode) {
+      TetMesh.Node node = nodes[cm.getNodeIndex(inode)];
+      assertEquals(node.x(),cm.getNodeX(inode));
+      assertEquals(node.y(),cm.getNodeY(inode));
+      assertEquals(node.z(),cm.getNodeZ(inode));
+      int tet = cm.getNodeTet(inode);
+      assertTrue(tet>=0);
+      assertTrue(references(cm,tet,inode));
+    }
+    int ntet = cm.countTets();
+    for (int itet=0; itet<ntet; ++itet) {
+      TetMesh.Tet tet = findTet(tm,nodes,cm,itet);
+      assertNotNull(tet);
+      for (int k=0; k<4; ++k) {
+        int jtet = cm.getTetNabor(itet,k);
+        TetMesh.Tet tetNabor = tet.tetNabor(nodes[node(cm,itet,k)]);
+        if (jtet<0) {
+          assertNull(tetNabor);
+        } else {
+          assertTrue(tetNabor==findTet(tm,nodes,cm,jtet));
+          assertFalse(references(cm,jtet,cm.getTetNode(itet,k)));
+        }
+      }
+    }
+
+    // Node marks used to construct the compact mesh must be cleared.
+    TetMesh.NodeIterator ni = tm.getNodes();
+    while (ni.hasNext())
+      assertFalse(tm.isMarked(ni.next()));
+    tm.validate();
+  }
+
+  public void testQueries() {
+    TetMesh.Node[] nodes = makeNodes(1000);
+    TetMesh tm = makeMesh(nodes);
+    CompactTetMesh cm = new CompactTetMesh(tm);
+    Random r = new Random(271828);
+    int tet = -1;
+    for (int i=0; i<1000; ++i) {
+      float x = 1.4f*r.nextFloat()-0.2f;
+      float y = 1.4f*r.nextFloat()-0.2f;
+      float z = 1.4f*r.nextFloat()-0.2f;
+
+      // Nearest nodes.
+      int node = cm.findNodeNearest(x,y,z);
+      assertTrue(nodes[cm.getNodeIndex(node)]==tm.findNodeNearest(x,y,z));
+
+      // Point location, beginning with the previously located tet.
+      TetMesh.PointLocation pl = tm.locatePoint(x,y,z);
+      tet = cm.locatePoint((tet>=0)?tet:-tet-1,x,y,z);
+      assertEquals(pl.isOutside(),tet<0);
+      if (pl.isInside())
+        assertTrue(pl.tet()==findTet(tm,nodes,cm,tet));
+      assertEquals(tet,cm.locatePoint(tet>=0?tet:-tet-1,x,y,z));
+
+      // Natural neighbor tets are all tets with circumspheres that
+      // contain the point, if the point is inside the mesh.
+      int[] tets = cm.getNaturalNaborTets(x,y,z);
+      if (pl.isOutside()) {
+        assertEquals(0,tets.length);
+      } else {
+        assertEquals(tet,tets[0]);
+        int ntets = 0;
+        TetMesh.TetIterator ti = tm.getTets();
+        while (ti.hasNext()) {
+          if (inSphere(ti.next(),x,y,z))
+            ++ntets;
+        }
+        assertEquals(ntets,tets.length);
+        for (int itet:tets)
+          assertTrue(inSphere(findTet(tm,nodes,cm,itet),x,y,z));
+      }
+    }
+  }
+
+  public void testEmpty() {
+    TetMesh tm = new TetMesh();
+    CompactTetMesh cm = new CompactTetMesh(tm);
+    assertEquals(-1,cm.findNodeNearest(0.0f,0.0f,0.0f));
+    assertEquals(-1,cm.locatePoint(0.0f,0.0f,0.0f));
+    assertEquals(0,cm.getNaturalNaborTets(0.0f,0.0f,0.0f).length);
+    tm.addNode(new TetMesh.Node(0.0f,0.0f,0.0f));
+    tm.addNode(new TetMesh.Node(1.0f,0.0f,0.0f));
+    cm = new CompactTetMesh(tm);
+    assertEquals(2,cm.countNodes());
+    assertEquals(0,cm.countTets());
+    int node = cm.findNodeNearest(0.9f,0.1f,0.0f);
+    assertEquals(1.0f,cm.getNodeX(node));
+  }
+
+  public void testRead() throws IOException {
+    TetMesh tm = makeMesh(makeNodes(500));
+    CompactTetMesh ca = new CompactTetMesh(tm);
+    File file = File.createTempFile("junk",".tm");
+    file.deleteOnExit();
+    String fileName = file.getPath();
+    tm.write(fileName);
+    CompactTetMesh cb = CompactTetMesh.read(fileName);
+
+    // A file too short for the number of nodes in its header.
+    RandomAccessFile raf = new RandomAccessFile(file,"rw");
+    ByteBuffer bb = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
+    bb.putInt(0,Integer.MAX_VALUE);
+    raf.getChannel().write(bb,16);
+    raf.close();
+    try {
+      CompactTetMesh.read(fileName);
+      fail("file is too short for its number of nodes");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+    file.delete();
+    int nnode = ca.countNodes();
+    int ntet = ca.countTets();
+    assertEquals(nnode,cb.countNodes());
+    assertEquals(ntet,cb.countTets());
+    for (int inode=0; inode<nnode; ++inode) {
+      assertEquals(ca.getNodeX(inode),cb.getNodeX(inode));
+      assertEquals(ca.getNodeY(inode),cb.getNodeY(inode));
+      assertEquals(ca.getNodeZ(inode),cb.getNodeZ(inode));
+      assertEquals(ca.getNodeIndex(inode),cb.getNodeIndex(inode));
+      assertEquals(ca.getNodeTet(inode),cb.getNodeTet(inode));
+    }
+    for (int itet=0; itet<ntet; ++itet) {
+      for (int k=0; k<4; ++k) {
+        assertEquals(ca.getTetNode(itet,k),cb.getTetNode(itet,k));
+        assertEquals(ca.getTetNabor(itet,k),cb.getTetNabor(itet,k));
+      }
+    }
+    Random r = new Random(271828);
+    for (int i=0; i<100; ++i) {
+      float x = r.nextFloat();
+      float y = r.nextFloat();
+      float z = r.nextFloat();
+      assertEquals(ca.findNodeNearest(x,y,z),cb.findNodeNearest(x,y,z));
+      assertEquals(ca.locatePoint(x,y,z),cb.locatePoint(x,y,z));
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private static TetMesh.Node[] makeNodes(int nnode) {
+    Random r = new Random(314159);
+    TetMesh.Node[] nodes = new TetMesh.Node[nnode];
+    for (int inode=0; inode<nnode; ++inode) {
+      float x = r.nextFloat();
+      float y = r.nextFloat();
+      float z = r.nextFloat();
+      nodes[inode] = new TetMesh.Node(x,y,z);
+      nodes[inode].index = inode;
+    }
+    return nodes;
+  }
+
+  private static TetMesh makeMesh(TetMesh.Node[] nodes) {
+    TetMesh tm = new TetMesh();
+    for (TetMesh.Node node:nodes)
+      tm.addNode(node);
+    return tm;
+  }
+
+  private static int node(CompactTetMesh cm, int tet, int k) {
+    return cm.getNodeIndex(cm.getTetNode(tet,k));
+  }
+
+  private static boolean references(CompactTetMesh cm, int tet, int node) {
+    for (int k=0; k<4; ++k)
+      if (cm.getTetNode(tet,k)==node) return true;
+    return false;
+  }
+
+  private static TetMesh.Tet findTet(
+    TetMesh tm, TetMesh.Node[] nodes, CompactTetMesh cm, int tet)
+  {
+    TetMesh.Tet t = tm.findTet(
+      nodes[node(cm,tet,0)],nodes[node(cm,tet,1)],
+      nodes[node(cm,tet,2)],nodes[node(cm,tet,3)]);
+    if (t!=null) {
+      assertTrue(t.nodeA()==nodes[node(cm,tet,0)]);
+      assertTrue(t.nodeB()==nodes[node(cm,tet,1)]);
+      assertTrue(t.nodeC()==nodes[node(cm,tet,2)]);
+      assertTrue(t.nodeD()==nodes[node(cm,tet,3)]);
+    }
+    return t;
+  }
+
+  private static boolean inSphere(TetMesh.Tet tet, float x, float y, float z) {
+    TetMesh.Node na = tet.nodeA();
+    TetMesh.Node nb = tet.nodeB();
+    TetMesh.Node nc = tet.nodeC();
+    TetMesh.Node nd = tet.nodeD();
+    return Geometry.inSphere(
+      na.xp(),na.yp(),na.zp(),
+      nb.xp(),nb.yp(),nb.zp(),
+      nc.xp(),nc.yp(),nc.zp(),
+      nd.xp(),nd.yp(),nd.zp(),
+      x,y,z)>0.0;
+  }
+}
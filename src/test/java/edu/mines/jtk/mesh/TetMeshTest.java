@@ -7,10 +7,13 @@ available at http://www.eclipse.org/legal/cpl-v10.html
 package edu.mines.jtk.mesh;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import edu.mines.jtk.util.Parallel;
 import edu.mines.jtk.util.Stopwatch;
 
 /**
@@ -343,6 +346,278 @@ public class TetMeshTest extends TestCase {
     //System.out.println("Nodes added/removed = "+nadd+"/"+nremove);
   }
 
+  public void testAddNodes() {
+    java.util.Random random = new java.util.Random();
+    int nnode = 2000;
+    TetMesh.Node[] na = new TetMesh.Node[nnode];
+    TetMesh.Node[] nb = new TetMesh.Node[nnode];
+    for (int inode=0; inode<nnode; ++inode) {
+      int jnode = (inode%100==99)?inode-1:inode; // some duplicates
+      float x = (jnode<inode)?na[jnode].x():random.nextFloat();
+      float y = (jnode<inode)?na[jnode].y():random.nextFloat();
+      float z = (jnode<inode)?na[jnode].z():random.nextFloat();
+      na[inode] = new TetMesh.Node(x,y,z);
+      nb[inode] = new TetMesh.Node(x,y,z);
+      nb[inode].index = jnode;
+    }
+    TetMesh ta = new TetMesh();
+    for (int inode=0; inode<nnode; ++inode)
+      ta.addNode(na[inode]);
+    TetMesh tb = new TetMesh();
+    assertFalse(tb.addNodes(nb));
+    tb.validate();
+    assertEquals(ta.countNodes(),tb.countNodes());
+    assertEquals(ta.countTets(),tb.countTets());
+    TetMesh.TetIterator ti = tb.getTets();
+    while (ti.hasNext()) {
+      TetMesh.Tet tet = ti.next();
+      TetMesh.Node n0 = na[tet.nodeA().index];
+      TetMesh.Node n1 = na[tet.nodeB().index];
+      TetMesh.Node n2 = na[tet.nodeC().index];
+      TetMesh.Node n3 = na[tet.nodeD().index];
+      assertNotNull(ta.findTet(n0,n1,n2,n3));
+    }
+  }
+
+  public void testAddNodesDuplicate() {
+    // Every node is duplicated, so that some of the first nodes in the
+    // order used to add nodes are likely to have the same coordinates.
+    int n = 11;
+    java.util.Random random = new java.util.Random(314159);
+    TetMesh.Node[] nodes = new TetMesh.Node[2*n];
+    for (int i=0; i<n; ++i) {
+      float x = random.nextFloat();
+      float y = random.nextFloat();
+      float z = random.nextFloat();
+      nodes[i] = new TetMesh.Node(x,y,z);
+      nodes[n+i] = new TetMesh.Node(x,y,z);
+    }
+    TetMesh tm = new TetMesh();
+    assertFalse(tm.addNodes(nodes));
+    tm.validate();
+    assertEquals(n,tm.countNodes());
+  }
+
+  public void testBinaryIO() throws IOException {
+    int nnode = 1000;
+    java.util.Random random = new java.util.Random(314159);
+    TetMesh.Node[] na = new TetMesh.Node[nnode];
+    TetMesh ta = new TetMesh();
+    TetMesh.NodePropertyMap mf = ta.getNodePropertyMap("f");
+    TetMesh.NodePropertyMap mi = ta.getNodePropertyMap("i");
+    for (int inode=0; inode<nnode; ++inode) {
+      float x = random.nextFloat();
+      float y = random.nextFloat();
+      float z = random.nextFloat();
+      na[inode] = new TetMesh.Node(x,y,z);
+      na[inode].index = inode;
+      ta.addNode(na[inode]);
+      mf.put(na[inode],x+y+z);
+      if (inode%3==0)
+        mi.put(na[inode],-inode);
+    }
+    ta.setOuterBox(0.1f,0.2f,0.3f,0.9f,0.8f,0.7f);
+
+    // Write and read it.
+    File file = File.createTempFile("tetmesh",".dat");
+    file.deleteOnExit();
+    ta.write(file.getPath());
+    TetMesh tb = TetMesh.read(file.getPath());
+    tb.validate();
+    assertEquals(ta.countNodes(),tb.countNodes());
+    assertEquals(ta.countTets(),tb.countTets());
+    assertEquals(ta.getVersion(),tb.getVersion());
+    assertEquals(countInnerTets(ta),countInnerTets(tb));
+
+    // Check nodes, tets, and property values.
+    mf = tb.getNodePropertyMap("f");
+    mi = tb.getNodePropertyMap("i");
+    TetMesh.NodeIterator ni = tb.getNodes();
+    while (ni.hasNext()) {
+      TetMesh.Node node = ni.next();
+      TetMesh.Node nodea = na[node.index];
+      assertEquals(nodea.xp(),node.xp());
+      assertEquals(nodea.yp(),node.yp());
+      assertEquals(nodea.zp(),node.zp());
+      assertEquals(nodea.x()+nodea.y()+nodea.z(),(Float)mf.get(node));
+      if (node.index%3==0) {
+        assertEquals(-node.index,((Integer)mi.get(node)).intValue());
+      } else {
+        assertNull(mi.get(node));
+      }
+    }
+    TetMesh.TetIterator ti = tb.getTets();
+    while (ti.hasNext()) {
+      TetMesh.Tet tet = ti.next();
+      TetMesh.Node n0 = na[tet.nodeA().index];
+      TetMesh.Node n1 = na[tet.nodeB().index];
+      TetMesh.Node n2 = na[tet.nodeC().index];
+      TetMesh.Node n3 = na[tet.nodeD().index];
+      assertNotNull(ta.findTet(n0,n1,n2,n3));
+    }
+
+    // The mesh read can be modified.
+    TetMesh.Node node = tb.findNodeNearest(0.5f,0.5f,0.5f);
+    assertTrue(tb.removeNode(node));
+    assertTrue(tb.addNode(new TetMesh.Node(0.5f,0.5f,0.5f)));
+    tb.validate();
+
+    // Values in property maps must be numbers.
+    ta.getNodePropertyMap("s").put(na[0],"not a number");
+    try {
+      ta.write(file.getPath());
+      fail("values that are not numbers cannot be written");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+    file.delete();
+  }
+
+  public void testBinaryIOCorrupt() throws IOException {
+    int nnode = 100;
+    java.util.Random random = new java.util.Random(314159);
+    TetMesh ma = new TetMesh();
+    TetMesh.NodePropertyMap mf = ma.getNodePropertyMap("f");
+    for (int inode=0; inode<nnode; ++inode) {
+      float x = random.nextFloat();
+      float y = random.nextFloat();
+      float z = random.nextFloat();
+      TetMesh.Node node = new TetMesh.Node(x,y,z);
+      ma.addNode(node);
+      mf.put(node,x);
+    }
+    int ntet = ma.countTets();
+    File file = File.createTempFile("tetmesh",".dat");
+    file.deleteOnExit();
+    String name = file.getPath();
+    long offNabors = MeshFile.HEADER_SIZE+20L*nnode+16L*ntet;
+    long offMaps = offNabors+16L*ntet;
+
+    // Numbers of nodes that the file is too short to contain.
+    ma.write(name);
+    putInt(file,16,Integer.MAX_VALUE);
+    assertNotReadable(name);
+
+    // Lengths of property names that are negative or too large.
+    ma.write(name);
+    putInt(file,offMaps,-1);
+    assertNotReadable(name);
+    putInt(file,offMaps,Integer.MAX_VALUE);
+    assertNotReadable(name);
+
+    // Tets that are not nabors of their nabors.
+    ma.write(name);
+    long off = offNabors;
+    while (getInt(file,off)<0)
+      off += 4;
+    putInt(file,off,-1);
+    assertNotReadable(name);
+    file.delete();
+  }
+
+  private static void assertNotReadable(String fileName) {
+    try {
+      TetMesh.read(fileName);
+      fail("corrupted mesh file cannot be read");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+
+  private static int getInt(File file, long off) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file,"r");
+    try {
+      ByteBuffer bb = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
+      raf.getChannel().read(bb,off);
+      return bb.getInt(0);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static void putInt(File file, long off, int v) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file,"rw");
+    try {
+      ByteBuffer bb = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
+      bb.putInt(0,v);
+      raf.getChannel().write(bb,off);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static int countInnerTets(TetMesh tm) {
+    int ninner = 0;
+    TetMesh.TetIterator ti = tm.getTets();
+    while (ti.hasNext()) {
+      if (tm.isInner(ti.next()))
+        ++ninner;
+    }
+    return ninner;
+  }
+
+  public void testNodesNearest() {
+    final TetMesh tm = new TetMesh();
+    java.util.Random random = new java.util.Random(314159);
+    for (int inode=0; inode<1000; ++inode) {
+      float x = random.nextFloat();
+      float y = random.nextFloat();
+      float z = random.nextFloat();
+      tm.addNode(new TetMesh.Node(x,y,z));
+    }
+    final int ntest = 1000;
+    final float[] x = new float[ntest];
+    final float[] y = new float[ntest];
+    final float[] z = new float[ntest];
+    for (int itest=0; itest<ntest; ++itest) {
+      x[itest] = 1.2f*random.nextFloat()-0.1f;
+      y[itest] = 1.2f*random.nextFloat()-0.1f;
+      z[itest] = 1.2f*random.nextFloat()-0.1f;
+    }
+
+    // Query from multiple threads.
+    final TetMesh.Node[] nodes = new TetMesh.Node[ntest];
+    Parallel.loop(ntest,new Parallel.LoopInt() {
+      public void compute(int itest) {
+        nodes[itest] = tm.findNodesNearest(x[itest],y[itest],z[itest],1)[0];
+      }
+    });
+    for (int itest=0; itest<ntest; ++itest) {
+      float xi = x[itest], yi = y[itest], zi = z[itest];
+      assertTrue(nodes[itest]==tm.findNodeNearest(xi,yi,zi));
+      TetMesh.Node[] kn = tm.findNodesNearest(xi,yi,zi,10);
+      assertEquals(10,kn.length);
+      for (int k=1; k<10; ++k)
+        assertTrue(distance(kn[k-1],xi,yi,zi)<=distance(kn[k],xi,yi,zi));
+      float r = distance(kn[9],xi,yi,zi);
+      int nr = 0;
+      TetMesh.NodeIterator ni = tm.getNodes();
+      while (ni.hasNext()) {
+        float d = distance(ni.next(),xi,yi,zi);
+        if (d<r) ++nr;
+      }
+      assertEquals(9,nr);
+      TetMesh.Node[] sn = tm.findNodesInSphere(xi,yi,zi,0.1f);
+      for (TetMesh.Node node:sn)
+        assertTrue(distance(node,xi,yi,zi)<=0.1001f);
+    }
+
+    // The tree is rebuilt after the mesh changes.
+    TetMesh.Node node = new TetMesh.Node(0.5f,0.5f,0.5f);
+    tm.addNode(node);
+    assertTrue(node==tm.findNodesNearest(0.5f,0.5f,0.5f,1)[0]);
+    tm.removeNode(node);
+    assertTrue(node!=tm.findNodesNearest(0.5f,0.5f,0.5f,1)[0]);
+    assertEquals(1000,tm.findNodesNearest(0.5f,0.5f,0.5f,2000).length);
+  }
+
+  private static float distance(TetMesh.Node n, float x, float y, float z) {
+    float dx = n.x()-x;
+    float dy = n.y()-y;
+    float dz = n.z()-z;
+    return (float)Math.sqrt(dx*dx+dy*dy+dz*dz);
+  }
+
   public void benchAddNode() {
     java.util.Random random = new java.util.Random();
     for (int itest=0; itest<16; ++itest) {
@@ -7,10 +7,13 @@ available at http://www.eclipse.org/legal/cpl-v10.html
 package edu.mines.jtk.mesh;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import edu.mines.jtk.util.Parallel;
 import edu.mines.jtk.util.Stopwatch;
 
 /**
@@ -190,6 +193,266 @@ public class TriMeshTest extends TestCase {
     //System.out.println("Nodes added/removed = "+nadd+"/"+nremove);
   }
 
+  public void testAddNodes() {
+    java.util.Random random = new java.util.Random();
+    int nnode = 2000;
+    TriMesh.Node[] na = new TriMesh.Node[nnode];
+    TriMesh.Node[] nb = new TriMesh.Node[nnode];
+    for (int inode=0; inode<nnode; ++inode) {
+      int jnode = (inode%100==99)?inode-1:inode; // some duplicates
+      float x = (jnode<inode)?na[jnode].x():random.nextFloat();
+      float y = (jnode<inode)?na[jnode].y():random.nextFloat();
+      na[inode] = new TriMesh.Node(x,y);
+      nb[inode] = new TriMesh.Node(x,y);
+      nb[inode].index = jnode;
+    }
+    TriMesh ta = new TriMesh();
+    for (int inode=0; inode<nnode; ++inode)
+      ta.addNode(na[inode]);
+    TriMesh tb = new TriMesh();
+    assertFalse(tb.addNodes(nb));
+    tb.validate();
+    assertEquals(ta.countNodes(),tb.countNodes());
+    assertEquals(ta.countTris(),tb.countTris());
+    TriMesh.TriIterator ti = tb.getTris();
+    while (ti.hasNext()) {
+      TriMesh.Tri tri = ti.next();
+      TriMesh.Node n0 = na[tri.nodeA().index];
+      TriMesh.Node n1 = na[tri.nodeB().index];
+      TriMesh.Node n2 = na[tri.nodeC().index];
+      assertNotNull(ta.findTri(n0,n1,n2));
+    }
+  }
+
+  public void testAddNodesDuplicate() {
+    // Every node is duplicated, so that some of the first nodes in the
+    // order used to add nodes are likely to have the same coordinates.
+    int n = 11;
+    java.util.Random random = new java.util.Random(314159);
+    TriMesh.Node[] nodes = new TriMesh.Node[2*n];
+    for (int i=0; i<n; ++i) {
+      float x = random.nextFloat();
+      float y = random.nextFloat();
+      nodes[i] = new TriMesh.Node(x,y);
+      nodes[n+i] = new TriMesh.Node(x,y);
+    }
+    TriMesh tm = new TriMesh();
+    assertFalse(tm.addNodes(nodes));
+    tm.validate();
+    assertEquals(n,tm.countNodes());
+  }
+
+  public void testBinaryIO() throws IOException {
+    int nnode = 1000;
+    java.util.Random random = new java.util.Random(314159);
+    TriMesh.Node[] na = new TriMesh.Node[nnode];
+    TriMesh ta = new TriMesh();
+    TriMesh.NodePropertyMap md = ta.getNodePropertyMap("d");
+    for (int inode=0; inode<nnode; ++inode) {
+      float x = random.nextFloat();
+      float y = random.nextFloat();
+      na[inode] = new TriMesh.Node(x,y);
+      na[inode].index = inode;
+      ta.addNode(na[inode]);
+      if (inode%2==0)
+        md.put(na[inode],(double)(x*y));
+    }
+    ta.setOuterBox(0.1f,0.2f,0.9f,0.8f);
+
+    // Write and read it.
+    File file = File.createTempFile("trimesh",".dat");
+    file.deleteOnExit();
+    ta.write(file.getPath());
+    TriMesh tb = TriMesh.read(file.getPath());
+    tb.validate();
+    assertEquals(ta.countNodes(),tb.countNodes());
+    assertEquals(ta.countTris(),tb.countTris());
+    assertEquals(ta.getVersion(),tb.getVersion());
+    assertEquals(countInnerTris(ta),countInnerTris(tb));
+
+    // Check nodes, tris, and property values.
+    md = tb.getNodePropertyMap("d");
+    TriMesh.NodeIterator ni = tb.getNodes();
+    while (ni.hasNext()) {
+      TriMesh.Node node = ni.next();
+      TriMesh.Node nodea = na[node.index];
+      assertEquals(nodea.xp(),node.xp());
+      assertEquals(nodea.yp(),node.yp());
+      if (node.index%2==0) {
+        double d = (double)(nodea.x()*nodea.y());
+        assertEquals(d,((Double)md.get(node)).doubleValue());
+      } else {
+        assertNull(md.get(node));
+      }
+    }
+    TriMesh.TriIterator ti = tb.getTris();
+    while (ti.hasNext()) {
+      TriMesh.Tri tri = ti.next();
+      TriMesh.Node n0 = na[tri.nodeA().index];
+      TriMesh.Node n1 = na[tri.nodeB().index];
+      TriMesh.Node n2 = na[tri.nodeC().index];
+      assertNotNull(ta.findTri(n0,n1,n2));
+    }
+
+    // The mesh read can be modified.
+    TriMesh.Node node = tb.findNodeNearest(0.5f,0.5f);
+    assertTrue(tb.removeNode(node));
+    assertTrue(tb.addNode(new TriMesh.Node(0.5f,0.5f)));
+    tb.validate();
+
+    // Files that are not mesh files cannot be read.
+    FileOutputStream fos = new FileOutputStream(file);
+    fos.write(new byte[256]);
+    fos.close();
+    try {
+      TriMesh.read(file.getPath());
+      fail("a file of zeros is not a mesh file");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+    file.delete();
+  }
+
+  public void testBinaryIOCorrupt() throws IOException {
+    int nnode = 100;
+    java.util.Random random = new java.util.Random(314159);
+    TriMesh ma = new TriMesh();
+    TriMesh.NodePropertyMap mf = ma.getNodePropertyMap("f");
+    for (int inode=0; inode<nnode; ++inode) {
+      float x = random.nextFloat();
+      float y = random.nextFloat();
+      TriMesh.Node node = new TriMesh.Node(x,y);
+      ma.addNode(node);
+      mf.put(node,x);
+    }
+    int ntri = ma.countTris();
+    File file = File.createTempFile("trimesh",".dat");
+    file.deleteOnExit();
+    String name = file.getPath();
+    long offNabors = MeshFile.HEADER_SIZE+16L*nnode+12L*ntri;
+    long offMaps = offNabors+12L*ntri;
+
+    // Numbers of nodes that the file is too short to contain.
+    ma.write(name);
+    putInt(file,16,Integer.MAX_VALUE);
+    assertNotReadable(name);
+
+    // Lengths of property names that are negative or too large.
+    ma.write(name);
+    putInt(file,offMaps,-1);
+    assertNotReadable(name);
+    putInt(file,offMaps,Integer.MAX_VALUE);
+    assertNotReadable(name);
+
+    // Tris that are not nabors of their nabors.
+    ma.write(name);
+    long off = offNabors;
+    while (getInt(file,off)<0)
+      off += 4;
+    putInt(file,off,-1);
+    assertNotReadable(name);
+    file.delete();
+  }
+
+  private static void assertNotReadable(String fileName) {
+    try {
+      TriMesh.read(fileName);
+      fail("corrupted mesh file cannot be read");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+
+  private static int getInt(File file, long off) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file,"r");
+    try {
+      ByteBuffer bb = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
+      raf.getChannel().read(bb,off);
+      return bb.getInt(0);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static void putInt(File file, long off, int v) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file,"rw");
+    try {
+      ByteBuffer bb = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
+      bb.putInt(0,v);
+      raf.getChannel().write(bb,off);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static int countInnerTris(TriMesh tm) {
+    int ninner = 0;
+    TriMesh.TriIterator ti = tm.getTris();
+    while (ti.hasNext()) {
+      if (tm.isInner(ti.next()))
+        ++ninner;
+    }
+    return ninner;
+  }
+
+  public void testNodesNearest() {
+    final TriMesh tm = new TriMesh();
+    java.util.Random random = new java.util.Random(314159);
+    for (int inode=0; inode<1000; ++inode) {
+      float x = random.nextFloat();
+      float y = random.nextFloat();
+      tm.addNode(new TriMesh.Node(x,y));
+    }
+    final int ntest = 1000;
+    final float[] x = new float[ntest];
+    final float[] y = new float[ntest];
+    for (int itest=0; itest<ntest; ++itest) {
+      x[itest] = 1.2f*random.nextFloat()-0.1f;
+      y[itest] = 1.2f*random.nextFloat()-0.1f;
+    }
+
+    // Query from multiple threads.
+    final TriMesh.Node[] nodes = new TriMesh.Node[ntest];
+    Parallel.loop(ntest,new Parallel.LoopInt() {
+      public void compute(int itest) {
+        nodes[itest] = tm.findNodesNearest(x[itest],y[itest],1)[0];
+      }
+    });
+    for (int itest=0; itest<ntest; ++itest) {
+      float xi = x[itest], yi = y[itest];
+      assertTrue(nodes[itest]==tm.findNodeNearest(xi,yi));
+      TriMesh.Node[] kn = tm.findNodesNearest(xi,yi,10);
+      assertEquals(10,kn.length);
+      for (int k=1; k<10; ++k)
+        assertTrue(distance(kn[k-1],xi,yi)<=distance(kn[k],xi,yi));
+      float r = distance(kn[9],xi,yi);
+      int nr = 0;
+      TriMesh.NodeIterator ni = tm.getNodes();
+      while (ni.hasNext()) {
+        float d = distance(ni.next(),xi,yi);
+        if (d<r) ++nr;
+      }
+      assertEquals(9,nr);
+      TriMesh.Node[] cn = tm.findNodesInCircle(xi,yi,0.1f);
+      for (TriMesh.Node node:cn)
+        assertTrue(distance(node,xi,yi)<=0.1001f);
+    }
+
+    // The tree is rebuilt after the mesh changes.
+    TriMesh.Node node = new TriMesh.Node(0.5f,0.5f);
+    tm.addNode(node);
+    assertTrue(node==tm.findNodesNearest(0.5f,0.5f,1)[0]);
+    tm.removeNode(node);
+    assertTrue(node!=tm.findNodesNearest(0.5f,0.5f,1)[0]);
+    assertEquals(1000,tm.findNodesNearest(0.5f,0.5f,2000).length);
+  }
+
+  private static float distance(TriMesh.Node n, float x, float y) {
+    float dx = n.x()-x;
+    float dy = n.y()-y;
+    return (float)Math.sqrt(dx*dx+dy*dy);
+  }
+
   public void benchAddNode() {
     java.util.Random random = new java.util.Random();
     for (int itest=0; itest<3; ++itest) {
@@ -27,10 +27,12 @@ public class AllTest extends TestSuite {
     suite.addTestSuite(CfloatTest.class);
     suite.addTestSuite(CleanFormatterTest.class);
     suite.addTestSuite(ClipsTest.class);
+    suite.addTestSuite(KdTreeTest.class);
     suite.addTestSuite(LocalizeTest.class);
     suite.addTestSuite(MathPlusTest.class);
     suite.addTestSuite(ParameterTest.class);
     suite.addTestSuite(ParameterSetTest.class);
+    suite.addTestSuite(QuantileSketchTest.class);
     suite.addTestSuite(QuantilerTest.class);
     suite.addTestSuite(SimpleFloat3Test.class);
     suite.addTestSuite(StopwatchTest.class);
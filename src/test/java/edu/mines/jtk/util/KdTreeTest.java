@@ -0,0 +1,125 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests {@link edu.mines.jtk.util.KdTree}.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class KdTreeTest extends TestCase {
+  public static void main(String[] args) {
+    TestSuite suite = new TestSuite(KdTreeTest.class);
+    junit.textui.TestRunner.run(suite);
+  }
+
+  public void testNearest() {
+    for (int ndim=1; ndim<=3; ++ndim) {
+      double[][] x = randomPoints(ndim,1000);
+      KdTree kt = new KdTree(x);
+      assertEquals(ndim,kt.getDimensions());
+      assertEquals(1000,kt.size());
+      for (int itest=0; itest<100; ++itest) {
+        double[] p = randomPoint(ndim);
+        double[] ds = distancesSquared(x,p);
+        int[] j = sortedIndices(ds);
+        assertEquals(j[0],kt.findNearest(p));
+        int k = _random.nextInt(20);
+        int[] i = kt.findNearest(k,p);
+        assertEquals(k,i.length);
+        for (int ik=0; ik<k; ++ik)
+          assertEquals(j[ik],i[ik]);
+      }
+    }
+  }
+
+  public void testSphere() {
+    for (int ndim=1; ndim<=3; ++ndim) {
+      double[][] x = randomPoints(ndim,1000);
+      KdTree kt = new KdTree(x);
+      for (int itest=0; itest<100; ++itest) {
+        double[] c = randomPoint(ndim);
+        double r = 0.2*_random.nextDouble();
+        double[] ds = distancesSquared(x,c);
+        int n = 0;
+        for (int i=0; i<ds.length; ++i)
+          if (ds[i]<=r*r) ++n;
+        int[] i = kt.findInSphere(c,r);
+        assertEquals(n,i.length);
+        for (int j:i)
+          assertTrue(ds[j]<=r*r);
+      }
+    }
+  }
+
+  public void testDegenerate() {
+    KdTree kt = new KdTree(new double[2][0]);
+    double[] p = {0.0,0.0};
+    assertEquals(-1,kt.findNearest(p));
+    assertEquals(0,kt.findNearest(3,p).length);
+    assertEquals(0,kt.findInSphere(p,1.0).length);
+
+    // Many points with equal coordinates.
+    double[][] x = new double[2][100];
+    for (int i=0; i<100; ++i)
+      x[0][i] = (i<50)?0.0:1.0;
+    kt = new KdTree(x);
+    assertEquals(100,kt.findNearest(200,p).length);
+    assertEquals(50,kt.findInSphere(p,0.5).length);
+    int[] i = kt.findNearest(50,p);
+    Arrays.sort(i);
+    for (int j=0; j<50; ++j)
+      assertEquals(j,i[j]);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  // private
+
+  private Random _random = new Random(314159);
+
+  private double[] randomPoint(int ndim) {
+    double[] p = new double[ndim];
+    for (int idim=0; idim<ndim; ++idim)
+      p[idim] = _random.nextDouble();
+    return p;
+  }
+
+  private double[][] randomPoints(int ndim, int n) {
+    double[][] x = new double[ndim][n];
+    for (int idim=0; idim<ndim; ++idim)
+      for (int i=0; i<n; ++i)
+        x[idim][i] = _random.nextDouble();
+    return x;
+  }
+
+  private static double[] distancesSquared(double[][] x, double[] p) {
+    int n = x[0].length;
+    double[] ds = new double[n];
+    for (int idim=0; idim<p.length; ++idim) {
+      for (int i=0; i<n; ++i) {
+        double d = p[idim]-x[idim][i];
+        ds[i] += d*d;
+      }
+    }
+    return ds;
+  }
+
+  private static int[] sortedIndices(double[] ds) {
+    int n = ds.length;
+    int[] i = new int[n];
+    for (int j=0; j<n; ++j)
+      i[j] = j;
+    ArrayMath.quickIndexSort(ds,i);
+    return i;
+  }
+}
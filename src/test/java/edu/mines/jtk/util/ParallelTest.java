@@ -7,6 +7,7 @@ available at http://www.eclipse.org/legal/cpl-v10.html
 package edu.mines.jtk.util;
 
 import java.util.Random;
+import java.util.concurrent.CancellationException;
 
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -103,6 +104,92 @@ public class ParallelTest extends TestCase {
     });
     */
   }
+  public void testContext() {
+    final int n = 1000;
+    final float[] a = randfloat(n);
+    final float[] b = zerofloat(n);
+    final float[] c = zerofloat(n);
+    sqrS(0,n,1,a,b);
+    final Context context = new Context(2);
+    assertEquals(2,context.getThreadCount());
+    LoopInt body = new LoopInt() {
+      public void compute(int i) {
+        c[i] = a[i]*a[i];
+      }
+    };
+    context.loop(n,body);
+    assertEquals(b,c,0.0f);
+    assertFalse(context.isCounting());
+    assertEquals(0,context.getTaskCount());
+    context.setCounting(true);
+    context.loop(n,body);
+    assertTrue(context.getTaskCount()>0);
+
+    // Static methods called in the scope of a context use that context.
+    context.resetCounters();
+    zero(c);
+    context.run(new Runnable() {
+      public void run() {
+        assertTrue(getContext()==context);
+        sqrP(0,n,1,1,a,c);
+      }
+    });
+    assertTrue(getContext()!=context);
+    assertEquals(b,c,0.0f);
+    assertTrue(context.getTaskCount()>0);
+    assertTrue(context.getBusyTime()>0.0);
+    context.shutdown();
+  }
+
+  public void testGrain() {
+    int n = 1000;
+    Context context = new Context();
+    context.setGrain(n);
+    context.setCounting(true);
+    float s = context.reduce(n,new ReduceInt<Float>() {
+      public Float compute(int i) {
+        return 1.0f;
+      }
+      public Float combine(Float s1, Float s2) {
+        return s1+s2;
+      }
+    });
+    assertEquals((float)n,s);
+    assertEquals(1,context.getTaskCount());
+    assertEquals(0,context.getStealCount());
+  }
+
+  public void testDefaultContext() {
+    Context context = getContext();
+    assertFalse(context.isCounting());
+    try {
+      context.setCounting(true);
+      fail("counting cannot be enabled for the default context");
+    } catch (IllegalStateException e) {
+      assertFalse(context.isCounting());
+    }
+  }
+
+  public void testCancel() {
+    final Context context = new Context(2);
+    final int[] count = {0};
+    try {
+      context.loop(1000,new LoopInt() {
+        public void compute(int i) {
+          synchronized(count) {
+            if (++count[0]==10) 
+              context.cancel();
+          }
+        }
+      });
+      fail("loop was not cancelled");
+    } catch (CancellationException e) {
+      assertTrue(context.isCancelled());
+      assertTrue(count[0]<1000);
+    }
+    context.shutdown();
+  }
+
   private static class Worker { // a simple class that is not thread safe
     public void work() { // should fail if entered from multiple threads
       assertTrue(!_working);
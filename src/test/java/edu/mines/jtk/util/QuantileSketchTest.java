@@ -0,0 +1,118 @@
+/****************************************************************************
+Copyright (c) 2026, Colorado School of Mines and others. All rights reserved.
+This program and accompanying materials are made available under the terms of
+the Common Public License - v1.0, which accompanies this distribution, and is
+available at http://www.eclipse.org/legal/cpl-v10.html
+****************************************************************************/
+package edu.mines.jtk.util;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import static edu.mines.jtk.util.ArrayMath.*;
+
+/**
+ * Tests {@link edu.mines.jtk.util.QuantileSketch}.
+ * @author agent
+ * @version 2026.10.18
+ */
+public class QuantileSketchTest extends TestCase {
+  public static void main(String[] args) {
+    TestSuite suite = new TestSuite(QuantileSketchTest.class);
+    junit.textui.TestRunner.run(suite);
+  }
+
+  public void testExact() {
+    int n = 1000;
+    float[] f = shuffledRamp(n);
+    QuantileSketch qs = new QuantileSketch();
+    qs.update(f);
+    assertEquals(n,qs.getCount());
+    assertEquals(0.0f,qs.getMin());
+    assertEquals(n-1,qs.getMax(),0.0f);
+    assertEquals(0.5f*(n-1),qs.getMean(),0.001f);
+    double[] q = {0.0,0.01,0.25,0.5,0.75,0.99,1.0};
+    float[] c = qs.quantiles(q);
+    for (int iq=0; iq<q.length; ++iq)
+      assertEquals(rint(q[iq]*(n-1)),c[iq],0.0f);
+  }
+
+  public void testStream() {
+    int n = 1000000;
+    float[] f = shuffledRamp(n);
+    QuantileSketch qs = new QuantileSketch();
+    for (int j=0; j<n; j+=999)
+      qs.update(f,j,min(999,n-j));
+    assertEquals(n,qs.getCount());
+    assertQuantiles(qs,n);
+  }
+
+  public void testMerge() {
+    final int n = 1000000;
+    final int m = 1000;
+    final float[] f = shuffledRamp(n);
+    QuantileSketch qs = Parallel.reduce(n/m,
+      new Parallel.ReduceInt<QuantileSketch>() {
+      public QuantileSketch compute(int i) {
+        QuantileSketch qsi = new QuantileSketch();
+        qsi.update(f,i*m,m);
+        return qsi;
+      }
+      public QuantileSketch combine(QuantileSketch qs1, QuantileSketch qs2) {
+        return qs1.merge(qs2);
+      }
+    });
+    assertEquals(n,qs.getCount());
+    assertEquals(0.0f,qs.getMin());
+    assertEquals(n-1,qs.getMax(),0.0f);
+    assertQuantiles(qs,n);
+  }
+
+  public void testMergeSelf() {
+    int n = 100000;
+    float[] f = shuffledRamp(n);
+    QuantileSketch qs = new QuantileSketch();
+    qs.update(f);
+    assertTrue(qs==qs.merge(qs));
+    assertEquals(2*n,qs.getCount());
+    assertEquals(0.0f,qs.getMin());
+    assertEquals(n-1,qs.getMax(),0.0f);
+    assertQuantiles(qs,n);
+  }
+
+  public void testClips() {
+    int n1 = 101, n2 = 102, n3 = 103;
+    float[][][] f = randfloat(new Random(314159),n1,n2,n3);
+    Clips ce = new Clips(1.0,99.0,f);
+    Clips cx = new Clips(1.0,99.0,new SimpleFloat3(f));
+    assertEquals(ce.getClipMin(),cx.getClipMin());
+    assertEquals(ce.getClipMax(),cx.getClipMax());
+    Clips cs = new Clips(1.0,99.0,new SimpleFloat3(f));
+    cs.setExactMax(n1*n2*n3-1);
+    assertEquals(ce.getClipMin(),cs.getClipMin(),0.002f);
+    assertEquals(ce.getClipMax(),cs.getClipMax(),0.002f);
+  }
+
+  private static float[] shuffledRamp(int n) {
+    Random r = new Random(314159);
+    float[] f = rampfloat(0.0f,1.0f,n);
+    for (int i=n-1; i>0; --i) {
+      int j = r.nextInt(i+1);
+      float fi = f[i];
+      f[i] = f[j];
+      f[j] = fi;
+    }
+    return f;
+  }
+
+  // Values are ranks, so errors in quantiles are errors in ranks.
+  private static void assertQuantiles(QuantileSketch qs, int n) {
+    int nq = 101;
+    double[] q = rampdouble(0.0,0.01,nq);
+    float[] c = qs.quantiles(q);
+    for (int iq=0; iq<nq; ++iq)
+      assertEquals(rint(q[iq]*(n-1)),c[iq],0.005f*n);
+  }
+}